@@ -33,7 +33,6 @@ import org.jboss.beans.info.spi.BeanInfo;
 import org.jboss.beans.info.spi.PropertyInfo;
 import org.jboss.config.plugins.property.PropertyConfiguration;
 import org.jboss.config.spi.Configuration;
-import org.jboss.joinpoint.plugins.Config;
 import org.jboss.reflect.spi.ConstructorInfo;
 import org.jboss.reflect.spi.MethodInfo;
 import org.jboss.reflect.spi.TypeInfo;
@@ -71,6 +70,11 @@ public class JavaBean extends BeanAdapter
       }
    }
 
+   static synchronized Configuration getConfiguration()
+   {
+      return configuration;
+   }
+
    private String className;
 
    private Constructor constructor;
@@ -117,14 +121,14 @@ public class JavaBean extends BeanAdapter
    @XmlTransient
    public Object getValue()
    {
-      ClassLoader cl = Thread.currentThread().getContextClassLoader();
+      JavaBeanCache cache = JavaBeanCache.getInstance(Thread.currentThread().getContextClassLoader());
       try
       {
          Object result;
 
          BeanInfo beanInfo = null;
          if (className != null)
-            beanInfo = configuration.getBeanInfo(className, cl);
+            beanInfo = cache.getBeanInfo(className);
 
          if (constructor != null)
          {
@@ -134,14 +138,14 @@ public class JavaBean extends BeanAdapter
                String factoryClass = constructor.getFactoryClass();
                BeanInfo factoryBeanInfo = beanInfo;
                if (factoryClass != null)
-                  factoryBeanInfo = configuration.getBeanInfo(factoryClass, cl);
+                  factoryBeanInfo = cache.getBeanInfo(factoryClass);
 
                if (factoryBeanInfo == null)
                   throw new IllegalArgumentException("Missing className or factoryClass: " + this);
 
                String[] signature = getSignature(constructor.getParameters());
-               MethodInfo factory = Config.findMethodInfo(factoryBeanInfo.getClassInfo(), factoryMethod, signature, true, true);
-               Object[] params = getParams(constructor.getParameters(), factory.getParameterTypes());
+               MethodInfo factory = cache.getFactoryMethod(factoryBeanInfo, factoryMethod, signature);
+               Object[] params = getParams(cache, constructor.getParameters(), factory.getParameterTypes());
                result = factory.invoke(null, params);
             }
             else
@@ -150,8 +154,8 @@ public class JavaBean extends BeanAdapter
                   throw new IllegalArgumentException("Missing className: " + this);
 
                String[] signature = getSignature(constructor.getParameters());
-               ConstructorInfo constructorInfo = Config.findConstructorInfo(beanInfo.getClassInfo(), signature);
-               Object[] params = getParams(constructor.getParameters(), constructorInfo.getParameterTypes());
+               ConstructorInfo constructorInfo = cache.getConstructor(beanInfo, signature);
+               Object[] params = getParams(cache, constructor.getParameters(), constructorInfo.getParameterTypes());
                result = constructorInfo.newInstance(params);
             }
          }
@@ -172,13 +176,8 @@ public class JavaBean extends BeanAdapter
                Object value = property.getValue();
                if (value != null)
                {
-                  PropertyInfo propertyInfo = beanInfo.getProperty(property.getName());
-                  TypeInfo typeInfo = propertyInfo.getType();
-                  String type = property.getType();
-                  if (type != null)
-                     typeInfo = configuration.getTypeInfo(type, cl);
-                  value = typeInfo.convertValue(value, false);
-                  propertyInfo.set(result, value);
+                  JavaBeanCache.PropertySetter setter = cache.getPropertySetter(beanInfo, property.getName(), property.getType());
+                  setter.set(result, value);
                }
             }
          }
@@ -229,6 +228,19 @@ public class JavaBean extends BeanAdapter
     * @return parameter values
     */
    protected Object[] getParams(List<? extends AbstractParameter> parameters, TypeInfo[] paramTypes)
+   {
+      return getParams(JavaBeanCache.getInstance(Thread.currentThread().getContextClassLoader()), parameters, paramTypes);
+   }
+
+   /**
+    * Get parameter values converting them through the cache.
+    *
+    * @param cache the cache
+    * @param parameters the parameters
+    * @param paramTypes the types
+    * @return parameter values
+    */
+   protected Object[] getParams(JavaBeanCache cache, List<? extends AbstractParameter> parameters, TypeInfo[] paramTypes)
    {
       if (parameters == null)
          return new String[0];
@@ -243,7 +255,7 @@ public class JavaBean extends BeanAdapter
             String type = parameter.getType();
             if (type != null)
                parameterType = parameterType.getTypeInfoFactory().getTypeInfo(type, null);
-            params[i] = parameterType.convertValue(value, false);
+            params[i] = cache.convertValue(parameterType, value);
          }
          catch (Throwable t)
          {
@@ -0,0 +1,395 @@
+/*
+* JBoss, Home of Professional Open Source
+* Copyright 2006, JBoss Inc., and individual contributors as indicated
+* by the @authors tag. See the copyright.txt in the distribution for a
+* full listing of individual contributors.
+*
+* This is free software; you can redistribute it and/or modify it
+* under the terms of the GNU Lesser General Public License as
+* published by the Free Software Foundation; either version 2.1 of
+* the License, or (at your option) any later version.
+*
+* This software is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+* Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public
+* License along with this software; if not, write to the Free
+* Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+* 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+*/
+package org.jboss.javabean.plugins.jaxb;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.jboss.beans.info.spi.BeanInfo;
+import org.jboss.beans.info.spi.PropertyInfo;
+import org.jboss.config.spi.Configuration;
+import org.jboss.joinpoint.plugins.Config;
+import org.jboss.reflect.spi.ConstructorInfo;
+import org.jboss.reflect.spi.MethodInfo;
+import org.jboss.reflect.spi.TypeInfo;
+
+/**
+ * Per classloader cache of the reflection data used by JavaBean to create
+ * and populate beans: bean infos, type infos, resolved constructors and
+ * factory methods, property setters and the results of converting string
+ * values to immutable types.
+ * <p>
+ * The caches of the class loader of this class, its ancestors and the bootstrap
+ * class loader are held strongly since those can't be unloaded before this class.
+ * The caches of other class loaders reference their classes, so they are held
+ * through soft references: they survive garbage collections as long as there is
+ * no memory pressure, and once a cache is cleared nothing but the weak key
+ * references its class loader. The lookup doesn't lock.
+ *
+ * @version $Revision: 1.1 $
+ */
+public class JavaBeanCache
+{
+   /** the maximum number of memoized conversions per target type */
+   private static final int MAX_CONVERSIONS = 256;
+
+   /** the types whose instances can be shared between beans */
+   private static final Set<Class<?>> IMMUTABLE_TYPES = new HashSet<Class<?>>();
+   static
+   {
+      IMMUTABLE_TYPES.add(String.class);
+      IMMUTABLE_TYPES.add(Boolean.class);
+      IMMUTABLE_TYPES.add(Character.class);
+      IMMUTABLE_TYPES.add(Byte.class);
+      IMMUTABLE_TYPES.add(Short.class);
+      IMMUTABLE_TYPES.add(Integer.class);
+      IMMUTABLE_TYPES.add(Long.class);
+      IMMUTABLE_TYPES.add(Float.class);
+      IMMUTABLE_TYPES.add(Double.class);
+      IMMUTABLE_TYPES.add(BigInteger.class);
+      IMMUTABLE_TYPES.add(BigDecimal.class);
+      IMMUTABLE_TYPES.add(Class.class);
+   }
+
+   /** the class loaders whose classes can't be unloaded before this class */
+   private static final Set<ClassLoader> PERMANENT_LOADERS = new HashSet<ClassLoader>();
+   static
+   {
+      PERMANENT_LOADERS.add(null);
+      ClassLoader cl = JavaBeanCache.class.getClassLoader();
+      while(cl != null)
+      {
+         PERMANENT_LOADERS.add(cl);
+         cl = cl.getParent();
+      }
+   }
+
+   /** the key of the bootstrap class loader in the permanent caches */
+   private static final Object BOOTSTRAP_LOADER = new Object();
+
+   private static final ConcurrentMap<Object, JavaBeanCache> permanentCaches = new ConcurrentHashMap<Object, JavaBeanCache>();
+   private static final ConcurrentMap<ClassLoaderKey, SoftReference<JavaBeanCache>> caches = new ConcurrentHashMap<ClassLoaderKey, SoftReference<JavaBeanCache>>();
+   private static final ReferenceQueue<ClassLoader> collectedLoaders = new ReferenceQueue<ClassLoader>();
+
+   /**
+    * Returns the cache for the classloader creating it if necessary.
+    *
+    * @param cl  the classloader the bean classes are loaded with, can be null
+    * @return the cache
+    */
+   public static JavaBeanCache getInstance(ClassLoader cl)
+   {
+      if(PERMANENT_LOADERS.contains(cl))
+      {
+         Object key = cl == null ? BOOTSTRAP_LOADER : cl;
+         JavaBeanCache cache = permanentCaches.get(key);
+         if(cache == null)
+         {
+            cache = new JavaBeanCache(JavaBean.getConfiguration(), cl);
+            JavaBeanCache existing = permanentCaches.putIfAbsent(key, cache);
+            if(existing != null)
+            {
+               cache = existing;
+            }
+         }
+         return cache;
+      }
+
+      removeCollectedLoaders();
+      SoftReference<JavaBeanCache> ref = caches.get(new ClassLoaderKey(cl, null));
+      JavaBeanCache cache = ref == null ? null : ref.get();
+      if(cache == null)
+      {
+         cache = new JavaBeanCache(JavaBean.getConfiguration(), cl);
+         caches.put(new ClassLoaderKey(cl, collectedLoaders), new SoftReference<JavaBeanCache>(cache));
+      }
+      return cache;
+   }
+
+   /**
+    * Flushes the caches of all the classloaders.
+    */
+   public static void flushCache()
+   {
+      permanentCaches.clear();
+      caches.clear();
+   }
+
+   private static void removeCollectedLoaders()
+   {
+      Reference<? extends ClassLoader> ref;
+      while((ref = collectedLoaders.poll()) != null)
+      {
+         caches.remove(ref);
+      }
+   }
+
+   private final Configuration configuration;
+   private final ClassLoader cl;
+
+   private final ConcurrentMap<String, BeanInfo> beanInfos = new ConcurrentHashMap<String, BeanInfo>();
+   private final ConcurrentMap<String, TypeInfo> typeInfos = new ConcurrentHashMap<String, TypeInfo>();
+   private final ConcurrentMap<String, ConstructorInfo> constructors = new ConcurrentHashMap<String, ConstructorInfo>();
+   private final ConcurrentMap<String, MethodInfo> factoryMethods = new ConcurrentHashMap<String, MethodInfo>();
+   private final ConcurrentMap<String, PropertySetter> setters = new ConcurrentHashMap<String, PropertySetter>();
+   private final ConcurrentMap<TypeInfo, ConcurrentMap<String, Object>> conversions = new ConcurrentHashMap<TypeInfo, ConcurrentMap<String, Object>>();
+
+   private JavaBeanCache(Configuration configuration, ClassLoader cl)
+   {
+      this.configuration = configuration;
+      this.cl = cl;
+   }
+
+   public BeanInfo getBeanInfo(String className) throws Throwable
+   {
+      BeanInfo beanInfo = beanInfos.get(className);
+      if(beanInfo == null)
+      {
+         beanInfo = configuration.getBeanInfo(className, cl);
+         beanInfos.put(className, beanInfo);
+      }
+      return beanInfo;
+   }
+
+   public TypeInfo getTypeInfo(String type) throws Throwable
+   {
+      TypeInfo typeInfo = typeInfos.get(type);
+      if(typeInfo == null)
+      {
+         typeInfo = configuration.getTypeInfo(type, cl);
+         typeInfos.put(type, typeInfo);
+      }
+      return typeInfo;
+   }
+
+   public ConstructorInfo getConstructor(BeanInfo beanInfo, String[] signature) throws Throwable
+   {
+      String key = getKey(beanInfo.getName(), null, signature);
+      ConstructorInfo constructor = constructors.get(key);
+      if(constructor == null)
+      {
+         constructor = Config.findConstructorInfo(beanInfo.getClassInfo(), signature);
+         constructors.put(key, constructor);
+      }
+      return constructor;
+   }
+
+   public MethodInfo getFactoryMethod(BeanInfo beanInfo, String name, String[] signature) throws Throwable
+   {
+      String key = getKey(beanInfo.getName(), name, signature);
+      MethodInfo method = factoryMethods.get(key);
+      if(method == null)
+      {
+         method = Config.findMethodInfo(beanInfo.getClassInfo(), name, signature, true, true);
+         factoryMethods.put(key, method);
+      }
+      return method;
+   }
+
+   /**
+    * Returns the setter of the property resolved with the type the value
+    * is converted to.
+    *
+    * @param beanInfo  the bean
+    * @param name  the name of the property
+    * @param type  the name of the type the value is converted to or null
+    * to convert it to the type of the property
+    * @return  the setter
+    * @throws Throwable  if the property or the type can't be resolved
+    */
+   public PropertySetter getPropertySetter(BeanInfo beanInfo, String name, String type) throws Throwable
+   {
+      String key = beanInfo.getName() + '.' + name + (type == null ? "" : ':' + type);
+      PropertySetter setter = setters.get(key);
+      if(setter == null)
+      {
+         PropertyInfo propertyInfo = beanInfo.getProperty(name);
+         TypeInfo typeInfo = type == null ? propertyInfo.getType() : getTypeInfo(type);
+         setter = new PropertySetter(propertyInfo, typeInfo, getConversions(typeInfo));
+         setters.put(key, setter);
+      }
+      return setter;
+   }
+
+   /**
+    * Converts the value to the type. The results of converting strings
+    * to immutable types are memoized and shared.
+    *
+    * @param typeInfo  the target type
+    * @param value  the value to convert
+    * @return  the converted value
+    * @throws Throwable  if the conversion fails
+    */
+   public Object convertValue(TypeInfo typeInfo, Object value) throws Throwable
+   {
+      if(!(value instanceof String))
+      {
+         return typeInfo.convertValue(value, false);
+      }
+      return convertString(typeInfo, getConversions(typeInfo), (String)value);
+   }
+
+   private ConcurrentMap<String, Object> getConversions(TypeInfo typeInfo)
+   {
+      ConcurrentMap<String, Object> converted = conversions.get(typeInfo);
+      if(converted == null)
+      {
+         converted = new ConcurrentHashMap<String, Object>();
+         ConcurrentMap<String, Object> existing = conversions.putIfAbsent(typeInfo, converted);
+         if(existing != null)
+         {
+            converted = existing;
+         }
+      }
+      return converted;
+   }
+
+   private static Object convertString(TypeInfo typeInfo, ConcurrentMap<String, Object> converted, String value) throws Throwable
+   {
+      Object result = converted.get(value);
+      if(result == null)
+      {
+         result = typeInfo.convertValue(value, false);
+         if(result != null && isImmutable(result) && converted.size() < MAX_CONVERSIONS)
+         {
+            converted.put(value, result);
+         }
+      }
+      return result;
+   }
+
+   private static boolean isImmutable(Object o)
+   {
+      return IMMUTABLE_TYPES.contains(o.getClass()) || o instanceof Enum;
+   }
+
+   private static String getKey(String className, String method, String[] signature)
+   {
+      StringBuilder key = new StringBuilder(className);
+      if(method != null)
+      {
+         key.append('.').append(method);
+      }
+      key.append('(');
+      for(int i = 0; i < signature.length; ++i)
+      {
+         if(i > 0)
+         {
+            key.append(',');
+         }
+         if(signature[i] != null)
+         {
+            key.append(signature[i]);
+         }
+      }
+      return key.append(')').toString();
+   }
+
+   /**
+    * A resolved property together with the type its values are converted to
+    * and the memoized conversions of that type.
+    */
+   public static final class PropertySetter
+   {
+      private final PropertyInfo propertyInfo;
+      private final TypeInfo typeInfo;
+      private final ConcurrentMap<String, Object> conversions;
+
+      PropertySetter(PropertyInfo propertyInfo, TypeInfo typeInfo, ConcurrentMap<String, Object> conversions)
+      {
+         this.propertyInfo = propertyInfo;
+         this.typeInfo = typeInfo;
+         this.conversions = conversions;
+      }
+
+      public PropertyInfo getPropertyInfo()
+      {
+         return propertyInfo;
+      }
+
+      public TypeInfo getTypeInfo()
+      {
+         return typeInfo;
+      }
+
+      /**
+       * Converts the value and sets it on the bean.
+       *
+       * @param bean  the bean
+       * @param value  the value
+       * @throws Throwable  if the conversion or the setter fails
+       */
+      public void set(Object bean, Object value) throws Throwable
+      {
+         if(value instanceof String)
+         {
+            value = convertString(typeInfo, conversions, (String)value);
+         }
+         else
+         {
+            value = typeInfo.convertValue(value, false);
+         }
+         propertyInfo.set(bean, value);
+      }
+   }
+
+   /**
+    * Weak identity key of a class loader.
+    */
+   private static final class ClassLoaderKey extends WeakReference<ClassLoader>
+   {
+      private final int hash;
+
+      ClassLoaderKey(ClassLoader cl, ReferenceQueue<ClassLoader> queue)
+      {
+         super(cl, queue);
+         hash = System.identityHashCode(cl);
+      }
+
+      public int hashCode()
+      {
+         return hash;
+      }
+
+      public boolean equals(Object o)
+      {
+         if(o == this)
+         {
+            return true;
+         }
+         if(!(o instanceof ClassLoaderKey))
+         {
+            return false;
+         }
+         ClassLoader cl = get();
+         return cl != null && cl == ((ClassLoaderKey)o).get();
+      }
+   }
+}
@@ -23,6 +23,7 @@ package org.jboss.xb.binding;
 
 import java.io.IOException;
 import java.io.Writer;
+import java.lang.ref.SoftReference;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -30,9 +31,11 @@ import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Iterator;
+import java.util.WeakHashMap;
 import javax.xml.namespace.QName;
 import org.jboss.logging.Logger;
 import org.jboss.xb.binding.introspection.FieldInfo;
+import org.jboss.xb.binding.sunday.unmarshalling.SchemaBindingResolver;
 import org.xml.sax.SAXException;
 import org.xml.sax.ContentHandler;
 import org.xml.sax.Locator;
@@ -64,6 +67,12 @@ public abstract class AbstractMarshaller
 
    private Properties props;
 
+   /**
+    * Stacks used to marshal wildcard content, reused per wildcard nesting level
+    */
+   private List<Stack> wildcardStacks = Collections.emptyList();
+   private int wildcardDepth;
+
    // Marshaller implementation
 
    public void mapClassToGlobalElement(Class<?> cls,
@@ -280,6 +289,39 @@ public abstract class AbstractMarshaller
       return (ClassMapping)classMappings.get(cls);
    }
 
+   /**
+    * Returns an empty stack for the content of a wildcard at the current nesting level.
+    * The stacks are reused by subsequent wildcards at the same level.
+    * Must be followed by releaseWildcardStack() once the wildcard content is marshalled.
+    * 
+    * @return  an empty stack
+    */
+   protected Stack borrowWildcardStack()
+   {
+      Stack stack;
+      if(wildcardDepth < wildcardStacks.size())
+      {
+         stack = wildcardStacks.get(wildcardDepth);
+         stack.clear();
+      }
+      else
+      {
+         if(wildcardStacks.isEmpty())
+         {
+            wildcardStacks = new ArrayList<Stack>();
+         }
+         stack = new StackImpl();
+         wildcardStacks.add(stack);
+      }
+      ++wildcardDepth;
+      return stack;
+   }
+
+   protected void releaseWildcardStack()
+   {
+      --wildcardDepth;
+   }
+
    private void addClassMapping(ClassMapping mapping)
    {
       if(classMappings.isEmpty())
@@ -432,6 +474,48 @@ public abstract class AbstractMarshaller
       }
    }
 
+   /**
+    * Schemas loaded for class mappings, i.e. by schema URL, shared by the marshallers
+    * of an implementation or owned by one marshaller.
+    * The cache is keyed by schema resolver, which is referenced weakly, and schema URL.
+    * The schemas are referenced softly since they may reference the resolver.
+    * The cache should be cleared when the schemas it was populated with may have changed.
+    */
+   public static class ClassMappingSchemaCache<T>
+   {
+      private static final Object NULL_RESOLVER = new Object();
+
+      private final Map<Object, Map<String, SoftReference<T>>> cache = new WeakHashMap<Object, Map<String, SoftReference<T>>>();
+
+      public synchronized T get(String schemaUrl, SchemaBindingResolver resolver)
+      {
+         Map<String, SoftReference<T>> schemas = cache.get(resolver == null ? NULL_RESOLVER : resolver);
+         if(schemas == null)
+         {
+            return null;
+         }
+         SoftReference<T> ref = schemas.get(schemaUrl);
+         return ref == null ? null : ref.get();
+      }
+
+      public synchronized void put(String schemaUrl, SchemaBindingResolver resolver, T schema)
+      {
+         Object key = resolver == null ? NULL_RESOLVER : resolver;
+         Map<String, SoftReference<T>> schemas = cache.get(key);
+         if(schemas == null)
+         {
+            schemas = new HashMap<String, SoftReference<T>>();
+            cache.put(key, schemas);
+         }
+         schemas.put(schemaUrl, new SoftReference<T>(schema));
+      }
+
+      public synchronized void clear()
+      {
+         cache.clear();
+      }
+   }
+
    protected static interface Stack
    {
       void clear();
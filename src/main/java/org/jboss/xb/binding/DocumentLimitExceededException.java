@@ -0,0 +1,65 @@
+/*
+* JBoss, Home of Professional Open Source
+* Copyright 2006, JBoss Inc., and individual contributors as indicated
+* by the @authors tag. See the copyright.txt in the distribution for a
+* full listing of individual contributors.
+*
+* This is free software; you can redistribute it and/or modify it
+* under the terms of the GNU Lesser General Public License as
+* published by the Free Software Foundation; either version 2.1 of
+* the License, or (at your option) any later version.
+*
+* This software is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+* Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public
+* License along with this software; if not, write to the Free
+* Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+* 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+*/
+package org.jboss.xb.binding;
+
+/**
+ * Thrown when a document being unmarshalled exceeds one of the configured
+ * {@link org.jboss.xb.binding.parser.DocumentLimits}.
+ *
+ * @version $Revision: 1.1 $
+ */
+public class DocumentLimitExceededException
+   extends JBossXBRuntimeException
+{
+   static final long serialVersionUID = 2718437513957146254L;
+
+   private final String limit;
+   private final long maxValue;
+
+   /**
+    * @param limit  the name of the exceeded limit
+    * @param maxValue  the configured maximum
+    * @param message  the message
+    */
+   public DocumentLimitExceededException(String limit, long maxValue, String message)
+   {
+      super(message);
+      this.limit = limit;
+      this.maxValue = maxValue;
+   }
+
+   /**
+    * @return the name of the exceeded limit, one of the DocumentLimits constants
+    */
+   public String getLimit()
+   {
+      return limit;
+   }
+
+   /**
+    * @return the configured maximum
+    */
+   public long getMaxValue()
+   {
+      return maxValue;
+   }
+}
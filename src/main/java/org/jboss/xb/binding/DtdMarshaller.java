@@ -50,6 +50,8 @@ import java.util.Map;
 import java.util.HashMap;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.net.URL;
 import java.net.MalformedURLException;
 import javax.xml.parsers.ParserConfigurationException;
@@ -66,13 +68,26 @@ public class DtdMarshaller
 {
    private static final Logger log = Logger.getLogger(DtdMarshaller.class);
 
+   /**
+    * DTDs parsed from URIs, shared by all the DTD marshallers
+    */
+   private static final ConcurrentMap<String, CompiledDtd> DTDS = new ConcurrentHashMap<String, CompiledDtd>();
+
+   /**
+    * Removes all the parsed DTDs from the cache, e.g. in case the DTD at an URI was modified.
+    */
+   public static void clearDtdCache()
+   {
+      DTDS.clear();
+   }
+
    private String publicId;
    private String systemId;
 
    private final Stack stack = new StackImpl();
    private DTD dtd;
    private GenericObjectModelProvider provider;
-   private Content content = new Content();
+   private ContentWriterAdaptor content;
 
    private final List<Element> elementStack = new ArrayList<Element>();
 
@@ -99,9 +114,44 @@ public class DtdMarshaller
       throw new UnsupportedOperationException("addAttribute is not implemented.");
    }
 
+   /**
+    * Marshals the document using the DTD located at the schemaUri.
+    * If the schemaUri is the public id mapped with mapPublicIdToSystemId,
+    * the DTD is read from the mapped system id.
+    * Parsed DTDs are cached by their URI and shared by all the DTD marshallers.
+    */
    public void marshal(String schemaUri, ObjectModelProvider provider, Object root, Writer writer) throws IOException,
          ParserConfigurationException,
       SAXException
+   {
+      String dtdUri = schemaUri;
+      if(publicId != null && systemId != null && publicId.equals(schemaUri))
+      {
+         dtdUri = systemId;
+      }
+
+      CompiledDtd compiled = DTDS.get(dtdUri);
+      if(compiled == null)
+      {
+         compiled = new CompiledDtd(parse(dtdUri));
+         CompiledDtd cached = DTDS.putIfAbsent(dtdUri, compiled);
+         if(cached != null)
+         {
+            compiled = cached;
+         }
+      }
+
+      marshal(compiled, provider, root, writer);
+   }
+
+   public void marshal(Reader dtdReader, ObjectModelProvider provider, Object document, Writer writer)
+      throws IOException, SAXException
+   {
+      DTDParser parser = new DTDParser(dtdReader);
+      marshal(new CompiledDtd(parser.parse(true)), provider, document, writer);
+   }
+
+   private static DTD parse(String schemaUri) throws IOException
    {
       URL url;
       try
@@ -126,7 +176,8 @@ public class DtdMarshaller
       try
       {
          InputStreamReader reader = new InputStreamReader(is);
-         marshal(reader, provider, root, writer);
+         DTDParser parser = new DTDParser(reader);
+         return parser.parse(true);
       }
       finally
       {
@@ -134,31 +185,13 @@ public class DtdMarshaller
       }
    }
 
-   public void marshal(Reader dtdReader, ObjectModelProvider provider, Object document, Writer writer)
+   private void marshal(CompiledDtd compiled, ObjectModelProvider provider, Object document, Writer writer)
       throws IOException, SAXException
    {
-      DTDParser parser = new DTDParser(dtdReader);
-      dtd = parser.parse(true);
+      dtd = compiled.dtd;
 
       this.provider = provider instanceof GenericObjectModelProvider ?
          (GenericObjectModelProvider)provider : new DelegatingObjectModelProvider(provider);
-      //stack.push(document);
-
-      DTDElement[] roots = null;
-      if(dtd.rootElement != null)
-      {
-         handleRootElement(document, dtd.rootElement);
-      }
-      else
-      {
-         roots = getRootList(dtd);
-         for(int i = 0; i < roots.length; ++i)
-         {
-            handleRootElement(document, roots[i]);
-         }
-      }
-
-      //stack.pop();
 
       // version & encoding
       writeXmlVersion(writer);
@@ -166,6 +199,7 @@ public class DtdMarshaller
       // DOCTYPE
       writer.write("<!DOCTYPE ");
 
+      DTDElement[] roots = compiled.roots;
       if(dtd.rootElement != null)
       {
          writer.write(dtd.rootElement.getName());
@@ -185,8 +219,30 @@ public class DtdMarshaller
       writer.write(systemId);
       writer.write("\">\n");
 
-      ContentWriter contentWriter = new ContentWriter(writer, propertyIsTrueOrNotSet(Marshaller.PROP_OUTPUT_INDENTATION));
-      content.handleContent(contentWriter);
+      // the content is written directly to the writer
+      content = new ContentWriterAdaptor(new ContentWriter(writer, propertyIsTrueOrNotSet(Marshaller.PROP_OUTPUT_INDENTATION)));
+      try
+      {
+         if(dtd.rootElement != null)
+         {
+            handleRootElement(document, dtd.rootElement);
+         }
+         else
+         {
+            for(int i = 0; i < roots.length; ++i)
+            {
+               handleRootElement(document, roots[i]);
+            }
+         }
+      }
+      catch(ContentWriterException e)
+      {
+         throw e.saxException;
+      }
+      finally
+      {
+         content = null;
+      }
    }
 
    private void handleRootElement(Object o, final DTDElement dtdRoot)
@@ -501,6 +557,109 @@ public class DtdMarshaller
 
    // Inner
 
+   /**
+    * Parsed DTD with its root elements
+    */
+   private static final class CompiledDtd
+   {
+      final DTD dtd;
+      final DTDElement[] roots;
+
+      CompiledDtd(DTD dtd)
+      {
+         this.dtd = dtd;
+         this.roots = dtd.rootElement == null ? getRootList(dtd) : null;
+      }
+   }
+
+   /**
+    * Streams the content to the ContentWriter.
+    * SAXExceptions are tunneled through the marshalling methods as ContentWriterException.
+    */
+   private static final class ContentWriterAdaptor
+   {
+      private final ContentWriter writer;
+
+      ContentWriterAdaptor(ContentWriter writer)
+      {
+         this.writer = writer;
+      }
+
+      public void startDocument()
+      {
+         try
+         {
+            writer.startDocument();
+         }
+         catch(SAXException e)
+         {
+            throw new ContentWriterException(e);
+         }
+      }
+
+      public void endDocument()
+      {
+         try
+         {
+            writer.endDocument();
+         }
+         catch(SAXException e)
+         {
+            throw new ContentWriterException(e);
+         }
+      }
+
+      public void startElement(String namespaceURI, String localName, String qName, Attributes atts)
+      {
+         try
+         {
+            writer.startElement(namespaceURI, localName, qName, atts);
+         }
+         catch(SAXException e)
+         {
+            throw new ContentWriterException(e);
+         }
+      }
+
+      public void endElement(String namespaceURI, String localName, String qName)
+      {
+         try
+         {
+            writer.endElement(namespaceURI, localName, qName);
+         }
+         catch(SAXException e)
+         {
+            throw new ContentWriterException(e);
+         }
+      }
+
+      public void characters(char[] ch, int start, int length)
+      {
+         try
+         {
+            writer.characters(ch, start, length);
+         }
+         catch(SAXException e)
+         {
+            throw new ContentWriterException(e);
+         }
+      }
+   }
+
+   private static final class ContentWriterException
+      extends RuntimeException
+   {
+      private static final long serialVersionUID = 1L;
+
+      final SAXException saxException;
+
+      ContentWriterException(SAXException saxException)
+      {
+         super(saxException);
+         this.saxException = saxException;
+      }
+   }
+
    private static final class Element
    {
       public final DTDElement element;
@@ -0,0 +1,293 @@
+/*
+  * JBoss, Home of Professional Open Source
+  * Copyright 2005, JBoss Inc., and individual contributors as indicated
+  * by the @authors tag. See the copyright.txt in the distribution for a
+  * full listing of individual contributors.
+  *
+  * This is free software; you can redistribute it and/or modify it
+  * under the terms of the GNU Lesser General Public License as
+  * published by the Free Software Foundation; either version 2.1 of
+  * the License, or (at your option) any later version.
+  *
+  * This software is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+  * Lesser General Public License for more details.
+  *
+  * You should have received a copy of the GNU Lesser General Public
+  * License along with this software; if not, write to the Free
+  * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+  * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+  */
+package org.jboss.xb.binding;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import org.jboss.xb.binding.parser.DocumentLimits;
+import org.jboss.xb.binding.parser.FeedParser;
+import org.jboss.xb.binding.parser.JBossXBParser;
+
+/**
+ * Unmarshals a document fed in chunks as they arrive, e.g. the body of a request
+ * received by a non-blocking front end, so that no thread waits for the rest of the document.
+ * <pre>
+ * FeedUnmarshaller feed = unmarshaller.newFeed(schema);
+ * feed.setCallback(callback);
+ * ...
+ * feed.feed(chunk);
+ * ...
+ * feed.end();
+ * </pre>
+ * The unmarshalled root object (or the failure) is delivered as the result
+ * and to the callback, if there is one, by the thread that completes the document.
+ * <p>
+ * If the parser is a FeedParser, e.g. BinaryJBossXBParser, the content is unmarshalled as it's fed
+ * and the result is delivered as soon as the end of the document is fed.
+ * Otherwise, each chunk is copied into a buffer that doubles when it's full and the document
+ * is parsed synchronously by end(), so the thread that ends the feed is busy for the whole parse.
+ * The bytes collected are limited by DocumentLimits.getMaxBufferedBytes(), the feed fails
+ * as soon as a chunk exceeds it.
+ * <p>
+ * The feed should always be ended, also when the result is cancelled or has been delivered.
+ * The chunks fed after the result has been delivered or cancelled are ignored.
+ * <p>
+ * WARNING: this implementation is not thread-safe, the chunks must be fed by one thread at a time.
+ *
+ * @version $Revision: 1.1 $
+ */
+public class FeedUnmarshaller
+{
+   /**
+    * Receives the result of the feed.
+    */
+   public interface Callback
+   {
+      void unmarshalled(Object root);
+
+      void failed(JBossXBException e);
+   }
+
+   private final JBossXBParser parser;
+   private final JBossXBParser.ContentHandler handler;
+   /** not null while the document is being fed to the parser */
+   private FeedParser feedParser;
+   /** the chunks collected if the parser is not a FeedParser */
+   private byte[] collected;
+   private int collectedLength;
+   private final DocumentLimits limits;
+   private final int maxCollectedLength;
+   private Callback callback;
+
+   private Object root;
+   private JBossXBException error;
+   private final FutureTask<Object> result = new FutureTask<Object>(new Callable<Object>()
+   {
+      public Object call() throws JBossXBException
+      {
+         if(error != null)
+            throw error;
+         return root;
+      }
+   });
+
+   FeedUnmarshaller(JBossXBParser parser, JBossXBParser.ContentHandler handler, DocumentLimits limits)
+   {
+      this.parser = parser;
+      this.handler = handler;
+      this.limits = limits;
+      maxCollectedLength = limits == null ? DocumentLimits.UNLIMITED : limits.getMaxBufferedBytes();
+      if(parser instanceof FeedParser)
+      {
+         feedParser = (FeedParser) parser;
+         feedParser.startFeed(handler);
+      }
+      else
+         collected = new byte[8192];
+   }
+
+   /**
+    * The callback is notified when the document has been unmarshalled or has failed.
+    * If that has already happened, it's notified immediately.
+    *
+    * @param callback  the callback
+    */
+   public void setCallback(Callback callback)
+   {
+      this.callback = callback;
+      if(result.isDone() && !result.isCancelled())
+         notifyCallback();
+   }
+
+   /**
+    * @return the future root object unmarshalled from the document
+    */
+   public Future<Object> getResult()
+   {
+      return result;
+   }
+
+   public void feed(byte[] bytes, int offset, int length)
+   {
+      if(result.isDone())
+      {
+         abandon();
+         return;
+      }
+
+      if(feedParser == null)
+      {
+         if(!ensureCollectedCapacity(length))
+            return;
+         System.arraycopy(bytes, offset, collected, collectedLength, length);
+         collectedLength += length;
+         return;
+      }
+
+      try
+      {
+         if(feedParser.feed(bytes, offset, length))
+            completed();
+      }
+      catch(JBossXBException e)
+      {
+         failed(e);
+      }
+   }
+
+   public void feed(ByteBuffer bytes)
+   {
+      if(result.isDone())
+      {
+         abandon();
+         return;
+      }
+
+      if(feedParser == null)
+      {
+         int length = bytes.remaining();
+         if(!ensureCollectedCapacity(length))
+            return;
+         bytes.get(collected, collectedLength, length);
+         collectedLength += length;
+         return;
+      }
+
+      try
+      {
+         if(feedParser.feed(bytes))
+            completed();
+      }
+      catch(JBossXBException e)
+      {
+         failed(e);
+      }
+   }
+
+   /**
+    * Ends the feed. If the document has not been completed yet, it's either parsed now,
+    * if the chunks have been collected, or the feed fails.
+    */
+   public void end()
+   {
+      if(result.isDone())
+      {
+         abandon();
+         return;
+      }
+
+      try
+      {
+         if(feedParser == null)
+         {
+            ByteArrayInputStream is = new ByteArrayInputStream(collected, 0, collectedLength);
+            collected = null;
+            parser.parse(is, handler);
+            completed();
+         }
+         else
+            feedParser.endFeed();
+      }
+      catch(JBossXBException e)
+      {
+         failed(e);
+      }
+   }
+
+   /**
+    * Makes room for the next chunk to collect or fails the feed if the chunk exceeds the limit.
+    *
+    * @return false if the feed has failed
+    */
+   private boolean ensureCollectedCapacity(int length)
+   {
+      if(length > maxCollectedLength - collectedLength)
+      {
+         if(limits != null)
+            limits.documentParsed(0, 0, true);
+         failed(new JBossXBException("Failed to collect the document fed",
+               DocumentLimits.exceeded(DocumentLimits.MAX_BUFFERED_BYTES, maxCollectedLength, "byte " + collectedLength)));
+         return false;
+      }
+
+      if(collected.length - collectedLength < length)
+      {
+         int newLength = (int) Math.min((long) collected.length << 1, maxCollectedLength);
+         byte[] newCollected = new byte[Math.max(collectedLength + length, newLength)];
+         System.arraycopy(collected, 0, newCollected, 0, collectedLength);
+         collected = newCollected;
+      }
+      return true;
+   }
+
+   private void completed()
+   {
+      feedParser = null;
+      root = handler.getRoot();
+      result.run();
+      notifyCallback();
+   }
+
+   private void failed(JBossXBException e)
+   {
+      feedParser = null;
+      collected = null;
+      error = e;
+      result.run();
+      notifyCallback();
+   }
+
+   private void notifyCallback()
+   {
+      if(callback == null || result.isCancelled())
+         return;
+      if(error == null)
+         callback.unmarshalled(root);
+      else
+         callback.failed(error);
+   }
+
+   /**
+    * Discards the document after the result has been cancelled.
+    */
+   private void abandon()
+   {
+      collected = null;
+      if(feedParser != null)
+      {
+         FeedParser feedParser = this.feedParser;
+         this.feedParser = null;
+         try
+         {
+            feedParser.endFeed();
+         }
+         catch(JBossXBException e)
+         {
+            // the result has been cancelled
+         }
+      }
+   }
+}
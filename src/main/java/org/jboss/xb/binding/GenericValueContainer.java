@@ -127,7 +127,7 @@ public interface GenericValueContainer
                         ctor = wrapperType.getConstructor(sig);
                         Object[] args = null;
                         result = ctor.newInstance(args);
-                        RtUtil.set(result, arr, itemProp, null, false, null);
+                        RtUtil.set(result, arr, itemProp, (String) null, false, null);
                      }
                      catch(NoSuchMethodException e)
                      {
@@ -25,12 +25,9 @@ import javax.xml.namespace.NamespaceContext;
 import javax.xml.namespace.QName;
 
 import java.io.Serializable;
-import java.util.Collections;
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.Iterator;
-import java.util.Map;
 import java.util.List;
-import java.util.ArrayList;
 
 /**
  * A simple namespace registry.
@@ -38,6 +35,11 @@ import java.util.ArrayList;
  * It assignes namespace prefixes of the form 'ns?' where ? is an incrementing integer.
  * {@see registerURI(String,String)}
  *
+ * The prefix mappings are kept in a flat stack of (prefix, URI) pairs, the last added
+ * mapping being on top, so adding and removing mappings in the reverse order doesn't
+ * allocate. Lookups scan the stack from the top. Scopes can be marked with pushContext()
+ * and all the mappings added in a scope removed at once with popContext().
+ *
  * [TODO] cleanup the api
  *
  * @author Thomas.Diesler@jboss.org
@@ -47,13 +49,19 @@ import java.util.ArrayList;
  */
 public class NamespaceRegistry implements NamespaceContext, Serializable
 {
-   private static final long serialVersionUID = 8435680858785550261L;
+   private static final long serialVersionUID = -1416403934282428237L;
 
    // The index of the last assigned prefix
    private int namespaceIndex;
 
-   private final Map<String, Object> prefixByUri = new HashMap<String, Object>();
-   private final Map<String, Object> uriByPrefix = new HashMap<String, Object>();
+   // prefix mappings in the order they were added
+   private String[] prefixes = new String[16];
+   private String[] uris = new String[16];
+   private int mappings;
+
+   // the number of mappings at each pushContext()
+   private int[] contexts = new int[8];
+   private int depth;
 
    public NamespaceRegistry()
    {
@@ -100,7 +108,8 @@ public class NamespaceRegistry implements NamespaceContext, Serializable
    }
 
    /**
-    * Adds prefix mapping.
+    * Adds prefix mapping. The mapping is added even if the prefix is currently
+    * mapped to the same URI, so each call can be undone by removePrefixMapping().
     *
     * @param prefix  prefix to map
     * @param nsURI  the URI to prefix to
@@ -110,50 +119,17 @@ public class NamespaceRegistry implements NamespaceContext, Serializable
       if (nsURI == null)
          throw new IllegalArgumentException("Cannot add mapping for null namespace URI");
 
-      Object obj = uriByPrefix.get(prefix);
-      if (nsURI.equals(obj) == false)
+      if (mappings == prefixes.length)
       {
-         if (obj == null)
-         {
-            uriByPrefix.put(prefix, nsURI);
-         }
-         else if (obj instanceof String)
-         {
-            List<String> list = new ArrayList<String>();
-            list.add((String) obj);
-            list.add(nsURI);
-            uriByPrefix.put(prefix, list);
-         }
-         else if (obj instanceof List)
-         {
-            ((List<String>)obj).add(nsURI);
-         }
-         else
-         {
-            throwUnexpectedEntryException(obj);
-         }
-
-         obj = prefixByUri.get(nsURI);
-         if (obj == null)
-         {
-            prefixByUri.put(nsURI, prefix);
-         }
-         else if (obj instanceof String)
-         {
-            List<String> list = new ArrayList<String>();
-            list.add((String) obj);
-            list.add(prefix);
-            prefixByUri.put(nsURI, list);
-         }
-         else if (obj instanceof List)
-         {
-            ((List<String>)obj).add(prefix);
-         }
-         else
-         {
-            throwUnexpectedEntryException(obj);
-         }
+         String[] tmp = new String[mappings << 1];
+         System.arraycopy(prefixes, 0, tmp, 0, mappings);
+         prefixes = tmp;
+         tmp = new String[mappings << 1];
+         System.arraycopy(uris, 0, tmp, 0, mappings);
+         uris = tmp;
       }
+      prefixes[mappings] = prefix;
+      uris[mappings++] = nsURI;
    }
 
    /**
@@ -163,54 +139,10 @@ public class NamespaceRegistry implements NamespaceContext, Serializable
     */
    public void removePrefixMapping(String prefix)
    {
-      Object obj = uriByPrefix.get(prefix);
-      if (obj != null)
+      int i = lastIndexOfPrefix(prefix);
+      if (i >= 0)
       {
-         String uri = null;
-         if (obj instanceof String)
-         {
-            uri = (String)obj;
-            uriByPrefix.remove(prefix);
-         }
-         else if (obj instanceof List)
-         {
-            List<String> list = (List<String>)obj;
-            uri = (String)list.remove(list.size() - 1);
-            if (list.isEmpty())
-            {
-               uriByPrefix.remove(prefix);
-            }
-         }
-         else
-         {
-            throwUnexpectedEntryException(obj);
-         }
-
-         if (uri != null)
-         {
-            obj = prefixByUri.get(uri);
-            if (obj instanceof String)
-            {
-               if (!prefix.equals(obj))
-               {
-                  throw new IllegalStateException("Inconsistent mapping: prefix=" + prefix + ", found=" + obj);
-               }
-               prefixByUri.remove(uri);
-            }
-            else if (obj instanceof List)
-            {
-               List<String> list = (ArrayList<String>)obj;
-               list.remove(prefix);
-               if (list.isEmpty())
-               {
-                  prefixByUri.remove(uri);
-               }
-            }
-            else
-            {
-               throwUnexpectedEntryException(obj);
-            }
-         }
+         removeMapping(i);
       }
    }
 
@@ -222,51 +154,69 @@ public class NamespaceRegistry implements NamespaceContext, Serializable
     */
    public void unregisterURI(String nsURI)
    {
-      Object obj = prefixByUri.get(nsURI);
-      if (obj != null)
+      for (int i = mappings - 1; i >= 0; --i)
       {
-         String prefix = null;
-         if (obj instanceof String)
-         {
-            prefix = (String)obj;
-            prefixByUri.remove(nsURI);
-            removePrefixMappingOnly(prefix, nsURI);
-         }
-         else if (obj instanceof List)
+         if (uris[i].equals(nsURI))
          {
-            List<?> list = (List<?>)obj;
-            for (int i = 0; i < list.size(); ++i)
-            {
-               removePrefixMappingOnly((String)list.get(i), nsURI);
-            }
-            prefixByUri.remove(nsURI);
-         }
-         else
-         {
-            throwUnexpectedEntryException(obj);
+            removeMapping(i);
          }
       }
    }
 
+   /**
+    * Starts a new scope. The prefix mappings added after this call
+    * will be removed by the matching popContext().
+    */
+   public void pushContext()
+   {
+      if (depth == contexts.length)
+      {
+         int[] tmp = new int[depth << 1];
+         System.arraycopy(contexts, 0, tmp, 0, depth);
+         contexts = tmp;
+      }
+      contexts[depth++] = mappings;
+   }
+
+   /**
+    * Ends the current scope removing all the prefix mappings added
+    * since the matching pushContext().
+    */
+   public void popContext()
+   {
+      if (depth == 0)
+      {
+         throw new IllegalStateException("popContext() without matching pushContext()");
+      }
+
+      int start = contexts[--depth];
+      for (int i = start; i < mappings; ++i)
+      {
+         prefixes[i] = null;
+         uris[i] = null;
+      }
+      mappings = start;
+   }
+
    /** True if the given nsURI is registered.
     */
    public boolean isRegistered(String nsURI)
    {
-      return prefixByUri.containsKey(nsURI);
+      return lastIndexOfURI(nsURI) >= 0;
    }
 
    /** Return an iterator over all registered nsURIs.
     */
    public Iterator<String> getRegisteredURIs()
    {
-      return prefixByUri.keySet().iterator();
+      return distinct(uris).iterator();
    }
 
    /** Return an iterator over all registered nsURIs.
     */
    public Iterator<String> getRegisteredPrefixes()
    {
-      return uriByPrefix.keySet().iterator();
+      return distinct(prefixes).iterator();
    }
 
    /**
@@ -274,7 +224,15 @@ public class NamespaceRegistry implements NamespaceContext, Serializable
     */
    public int size()
    {
-      return prefixByUri.size();
+      int size = 0;
+      for (int i = 0; i < mappings; ++i)
+      {
+         if (lastIndexOf(uris, uris[i], i - 1) < 0)
+         {
+            ++size;
+         }
+      }
+      return size;
    }
 
    // NamespaceContext implementation
@@ -284,27 +242,8 @@ public class NamespaceRegistry implements NamespaceContext, Serializable
     */
    public String getPrefix(String nsURI)
    {
-      Object obj = prefixByUri.get(nsURI);
-
-      String prefix = null;
-      if (obj != null)
-      {
-         if (obj instanceof String)
-         {
-            prefix = (String)obj;
-         }
-         else if (obj instanceof List)
-         {
-            List<String> list = (List<String>)obj;
-            prefix = (String)list.get(list.size() - 1);
-         }
-         else
-         {
-            throwUnexpectedEntryException(obj);
-         }
-      }
-
-      return prefix;
+      int i = lastIndexOfURI(nsURI);
+      return i < 0 ? null : prefixes[i];
    }
 
    /**
@@ -315,82 +254,79 @@ public class NamespaceRegistry implements NamespaceContext, Serializable
     */
    public Iterator<String> getPrefixes(String namespaceURI)
    {
-      Object obj = prefixByUri.get(namespaceURI);
-
-      Iterator<String> result = null;
-      if (obj == null)
-      {
-         result = Collections.EMPTY_LIST.iterator();
-      }
-      else if (obj instanceof String)
-      {
-         result = Collections.singletonList((String)obj).iterator();
-      }
-      else if (obj instanceof List)
+      List<String> result = new ArrayList<String>();
+      for (int i = 0; i < mappings; ++i)
       {
-         result = ((List<String>)obj).iterator();
-      }
-      else
-      {
-         throwUnexpectedEntryException(obj);
+         if (uris[i].equals(namespaceURI))
+         {
+            result.add(prefixes[i]);
+         }
       }
-
-      return result;
+      return result.iterator();
    }
 
    /** Get the nsURI for a given prefix, maybe null.
     */
    public String getNamespaceURI(String prefix)
    {
-      Object obj = uriByPrefix.get(prefix);
+      int i = lastIndexOfPrefix(prefix);
+      return i < 0 ? null : uris[i];
+   }
 
-      String uri = null;
-      if (obj != null)
-      {
-         if (obj instanceof String)
-         {
-            uri = (String)obj;
-         }
-         else if (obj instanceof List)
-         {
-            List<String> list = (List<String>)obj;
-            uri = (String)list.get(list.size() - 1);
-         }
-         else
-         {
-            throwUnexpectedEntryException(obj);
-         }
-      }
+   // Private
 
-      return uri;
+   private int lastIndexOfPrefix(String prefix)
+   {
+      return lastIndexOf(prefixes, prefix, mappings - 1);
    }
 
-   // Private
+   private int lastIndexOfURI(String nsURI)
+   {
+      return lastIndexOf(uris, nsURI, mappings - 1);
+   }
 
-   private void removePrefixMappingOnly(String prefix, String nsURI)
+   private static int lastIndexOf(String[] values, String value, int from)
    {
-      Object obj = uriByPrefix.get(prefix);
-      if (obj instanceof String)
+      for (int i = from; i >= 0; --i)
       {
-         if (!obj.equals(nsURI))
+         String v = values[i];
+         if (v == value || v != null && v.equals(value))
          {
-            throw new IllegalStateException("Inconsistent mapping: uri=" + nsURI + ", found=" + obj);
+            return i;
          }
-         uriByPrefix.remove(prefix);
       }
-      else if (obj instanceof List)
+      return -1;
+   }
+
+   private void removeMapping(int i)
+   {
+      int moved = mappings - i - 1;
+      if (moved > 0)
       {
-         List<String> list = (List<String>) obj;
-         list.remove(prefix);
-         if (list.isEmpty())
-         {
-            uriByPrefix.remove(prefix);
-         }
+         System.arraycopy(prefixes, i + 1, prefixes, i, moved);
+         System.arraycopy(uris, i + 1, uris, i, moved);
+      }
+      --mappings;
+      prefixes[mappings] = null;
+      uris[mappings] = null;
+
+      // the scopes started after the removed mapping was added shrink by one
+      for (int d = depth - 1; d >= 0 && contexts[d] > i; --d)
+      {
+         --contexts[d];
       }
    }
 
-   private void throwUnexpectedEntryException(Object entry)
+   private List<String> distinct(String[] values)
    {
-      throw new IllegalStateException("Unexpected entry type: expected java.lang.String or java.util.List but got " + entry.getClass());
+      List<String> result = new ArrayList<String>(mappings);
+      for (int i = 0; i < mappings; ++i)
+      {
+         if (lastIndexOf(values, values[i], i - 1) < 0)
+         {
+            result.add(values[i]);
+         }
+      }
+      return result;
    }
 }
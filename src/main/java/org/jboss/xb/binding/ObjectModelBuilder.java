@@ -120,6 +120,18 @@ public class ObjectModelBuilder
       this.root = root;
    }
 
+   /**
+    * Releases the references to the factory and the unmarshalled object graph.
+    */
+   void reset()
+   {
+      defaultFactory = null;
+      curFactory = null;
+      all.clear();
+      accepted.clear();
+      root = null;
+   }
+
    public void pushFactory(String namespaceURI, String localName, GenericObjectModelFactory factory)
    {
       if(curNsSwitchingFactory != null)
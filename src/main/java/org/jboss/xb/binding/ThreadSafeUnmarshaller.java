@@ -0,0 +1,423 @@
+/*
+* JBoss, Home of Professional Open Source
+* Copyright 2006, JBoss Inc., and individual contributors as indicated
+* by the @authors tag. See the copyright.txt in the distribution for a
+* full listing of individual contributors.
+*
+* This is free software; you can redistribute it and/or modify it
+* under the terms of the GNU Lesser General Public License as
+* published by the Free Software Foundation; either version 2.1 of
+* the License, or (at your option) any later version.
+*
+* This software is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+* Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public
+* License along with this software; if not, write to the Free
+* Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+* 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+*/
+package org.jboss.xb.binding;
+
+import java.io.InputStream;
+import java.io.Reader;
+
+import org.jboss.xb.binding.metadata.unmarshalling.DocumentBinding;
+import org.jboss.xb.binding.parser.DocumentLimits;
+import org.jboss.xb.binding.parser.JBossXBParser;
+import org.jboss.xb.binding.sunday.unmarshalling.SchemaBinding;
+import org.jboss.xb.binding.sunday.unmarshalling.SchemaBindingResolver;
+import org.jboss.xb.util.ConfiguredInstances;
+import org.jboss.xb.util.ConfiguredInstances.Call;
+import org.jboss.xb.util.ConfiguredInstances.Setting;
+import org.w3c.dom.Node;
+import org.xml.sax.EntityResolver;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.InputSource;
+
+/**
+ * Thread-safe unmarshaller. The settings are recorded and applied
+ * to an unmarshaller created by the factory for each thread, so one configured
+ * instance can be shared by all the threads unmarshalling the same kind of documents.
+ *
+ * @version $Revision: 1.1 $
+ */
+public class ThreadSafeUnmarshaller implements Unmarshaller
+{
+   private final ConfiguredInstances<Unmarshaller> unmarshallers;
+
+   private volatile boolean warnOnParserErrors;
+   private volatile DocumentLimits documentLimits;
+
+   /**
+    * Creates an unmarshaller with the default factory settings.
+    */
+   public ThreadSafeUnmarshaller()
+   {
+      this(UnmarshallerFactory.newInstance());
+   }
+
+   /**
+    * Creates an unmarshaller the per thread instances of which are created by the factory.
+    *
+    * @param factory  the factory
+    */
+   public ThreadSafeUnmarshaller(final UnmarshallerFactory factory)
+   {
+      if(factory == null)
+         throw new IllegalArgumentException("Null factory");
+
+      unmarshallers = new ConfiguredInstances<Unmarshaller>()
+      {
+         protected Unmarshaller newInstance()
+         {
+            return factory.newUnmarshaller();
+         }
+      };
+      warnOnParserErrors = factory.isWarnOnParserErrors();
+      if(warnOnParserErrors)
+         setWarnOnParserErrors(true);
+      documentLimits = factory.getDocumentLimits();
+   }
+
+   public void setValidation(final boolean validation)
+   {
+      unmarshallers.addSetting("validation", new Setting<Unmarshaller>()
+      {
+         public void apply(Unmarshaller unmarshaller) throws JBossXBException
+         {
+            unmarshaller.setValidation(validation);
+         }
+      });
+   }
+
+   public void setNamespaceAware(final boolean namespaces)
+   {
+      unmarshallers.addSetting("namespaceAware", new Setting<Unmarshaller>()
+      {
+         public void apply(Unmarshaller unmarshaller) throws JBossXBException
+         {
+            unmarshaller.setNamespaceAware(namespaces);
+         }
+      });
+   }
+
+   public void setSchemaValidation(final boolean validation)
+   {
+      unmarshallers.addSetting("schemaValidation", new Setting<Unmarshaller>()
+      {
+         public void apply(Unmarshaller unmarshaller) throws JBossXBException
+         {
+            unmarshaller.setSchemaValidation(validation);
+         }
+      });
+   }
+
+   public void setFeature(final String feature, final boolean value)
+   {
+      unmarshallers.addSetting("feature:" + feature, new Setting<Unmarshaller>()
+      {
+         public void apply(Unmarshaller unmarshaller) throws JBossXBException
+         {
+            try
+            {
+               unmarshaller.setFeature(feature, value);
+            }
+            catch(JBossXBException e)
+            {
+               throw e;
+            }
+            catch(Exception e)
+            {
+               throw new JBossXBException("Failed to set feature " + feature, e);
+            }
+         }
+      });
+   }
+
+   public void setWarnOnParserErrors(final boolean value)
+   {
+      warnOnParserErrors = value;
+      unmarshallers.addSetting("warnOnParserErrors", new Setting<Unmarshaller>()
+      {
+         public void apply(Unmarshaller unmarshaller)
+         {
+            unmarshaller.setWarnOnParserErrors(value);
+         }
+      });
+   }
+
+   public boolean isWarnOnParserErrors()
+   {
+      return warnOnParserErrors;
+   }
+
+   public void setDocumentLimits(final DocumentLimits limits)
+   {
+      documentLimits = limits;
+      unmarshallers.addSetting("documentLimits", new Setting<Unmarshaller>()
+      {
+         public void apply(Unmarshaller unmarshaller)
+         {
+            unmarshaller.setDocumentLimits(limits);
+         }
+      });
+   }
+
+   public DocumentLimits getDocumentLimits()
+   {
+      return documentLimits;
+   }
+
+   public void setEntityResolver(final EntityResolver entityResolver)
+   {
+      unmarshallers.addSetting("entityResolver", new Setting<Unmarshaller>()
+      {
+         public void apply(Unmarshaller unmarshaller) throws JBossXBException
+         {
+            unmarshaller.setEntityResolver(entityResolver);
+         }
+      });
+   }
+
+   /**
+    * @deprecated
+    */
+   public void setErrorHandler(ErrorHandler errorHandler)
+   {
+      // the unmarshaller implementation ignores it
+   }
+
+   public void mapFactoryToNamespace(final ObjectModelFactory factory, final String namespaceUri)
+   {
+      unmarshallers.addSetting("factory:" + namespaceUri, new Setting<Unmarshaller>()
+      {
+         public void apply(Unmarshaller unmarshaller)
+         {
+            unmarshaller.mapFactoryToNamespace(factory, namespaceUri);
+         }
+      });
+   }
+
+   public Object unmarshal(final String xmlFile, final JBossXBParser.ContentHandler handler) throws JBossXBException
+   {
+      return unmarshal(new Call<Unmarshaller, Object>()
+      {
+         public Object call(Unmarshaller unmarshaller) throws JBossXBException
+         {
+            return unmarshaller.unmarshal(xmlFile, handler);
+         }
+      });
+   }
+
+   public Object unmarshal(final String xmlFile) throws JBossXBException
+   {
+      return unmarshal(new Call<Unmarshaller, Object>()
+      {
+         public Object call(Unmarshaller unmarshaller) throws JBossXBException
+         {
+            return unmarshaller.unmarshal(xmlFile);
+         }
+      });
+   }
+
+   public Object unmarshal(final String xml, final SchemaBinding schemaBinding) throws JBossXBException
+   {
+      return unmarshal(new Call<Unmarshaller, Object>()
+      {
+         public Object call(Unmarshaller unmarshaller) throws JBossXBException
+         {
+            return unmarshaller.unmarshal(xml, schemaBinding);
+         }
+      });
+   }
+
+   public Object unmarshal(final Reader xmlReader, final SchemaBinding schemaBinding) throws JBossXBException
+   {
+      return unmarshal(new Call<Unmarshaller, Object>()
+      {
+         public Object call(Unmarshaller unmarshaller) throws JBossXBException
+         {
+            return unmarshaller.unmarshal(xmlReader, schemaBinding);
+         }
+      });
+   }
+
+   public Object unmarshal(final InputStream xmlStream, final SchemaBinding schemaBinding) throws JBossXBException
+   {
+      return unmarshal(new Call<Unmarshaller, Object>()
+      {
+         public Object call(Unmarshaller unmarshaller) throws JBossXBException
+         {
+            return unmarshaller.unmarshal(xmlStream, schemaBinding);
+         }
+      });
+   }
+
+   public Object unmarshal(final InputSource source, final SchemaBinding schemaBinding) throws JBossXBException
+   {
+      return unmarshal(new Call<Unmarshaller, Object>()
+      {
+         public Object call(Unmarshaller unmarshaller) throws JBossXBException
+         {
+            return unmarshaller.unmarshal(source, schemaBinding);
+         }
+      });
+   }
+
+   public Object unmarshal(final String xml, final SchemaBindingResolver schemaResolver) throws JBossXBException
+   {
+      return unmarshal(new Call<Unmarshaller, Object>()
+      {
+         public Object call(Unmarshaller unmarshaller) throws JBossXBException
+         {
+            return unmarshaller.unmarshal(xml, schemaResolver);
+         }
+      });
+   }
+
+   public Object unmarshal(final Reader xmlReader, final SchemaBindingResolver schemaResolver) throws JBossXBException
+   {
+      return unmarshal(new Call<Unmarshaller, Object>()
+      {
+         public Object call(Unmarshaller unmarshaller) throws JBossXBException
+         {
+            return unmarshaller.unmarshal(xmlReader, schemaResolver);
+         }
+      });
+   }
+
+   public Object unmarshal(final InputStream xmlStream, final SchemaBindingResolver schemaResolver) throws JBossXBException
+   {
+      return unmarshal(new Call<Unmarshaller, Object>()
+      {
+         public Object call(Unmarshaller unmarshaller) throws JBossXBException
+         {
+            return unmarshaller.unmarshal(xmlStream, schemaResolver);
+         }
+      });
+   }
+
+   public Object unmarshal(final InputSource source, final SchemaBindingResolver schemaResolver) throws JBossXBException
+   {
+      return unmarshal(new Call<Unmarshaller, Object>()
+      {
+         public Object call(Unmarshaller unmarshaller) throws JBossXBException
+         {
+            return unmarshaller.unmarshal(source, schemaResolver);
+         }
+      });
+   }
+
+   public Object unmarshal(final Node node, final SchemaBinding schemaBinding) throws JBossXBException
+   {
+      return unmarshal(new Call<Unmarshaller, Object>()
+      {
+         public Object call(Unmarshaller unmarshaller) throws JBossXBException
+         {
+            return unmarshaller.unmarshal(node, schemaBinding);
+         }
+      });
+   }
+
+   public Object unmarshal(final Node node, final SchemaBindingResolver schemaResolver) throws JBossXBException
+   {
+      return unmarshal(new Call<Unmarshaller, Object>()
+      {
+         public Object call(Unmarshaller unmarshaller) throws JBossXBException
+         {
+            return unmarshaller.unmarshal(node, schemaResolver);
+         }
+      });
+   }
+
+   public Object unmarshal(final Reader reader, final ObjectModelFactory factory, final Object root) throws JBossXBException
+   {
+      return unmarshal(new Call<Unmarshaller, Object>()
+      {
+         public Object call(Unmarshaller unmarshaller) throws JBossXBException
+         {
+            return unmarshaller.unmarshal(reader, factory, root);
+         }
+      });
+   }
+
+   public Object unmarshal(final InputStream is, final ObjectModelFactory factory, final Object root) throws JBossXBException
+   {
+      return unmarshal(new Call<Unmarshaller, Object>()
+      {
+         public Object call(Unmarshaller unmarshaller) throws JBossXBException
+         {
+            return unmarshaller.unmarshal(is, factory, root);
+         }
+      });
+   }
+
+   public Object unmarshal(final InputSource source, final ObjectModelFactory factory, final Object root) throws JBossXBException
+   {
+      return unmarshal(new Call<Unmarshaller, Object>()
+      {
+         public Object call(Unmarshaller unmarshaller) throws JBossXBException
+         {
+            return unmarshaller.unmarshal(source, factory, root);
+         }
+      });
+   }
+
+   public Object unmarshal(final String systemId, final ObjectModelFactory factory, final Object root) throws JBossXBException
+   {
+      return unmarshal(new Call<Unmarshaller, Object>()
+      {
+         public Object call(Unmarshaller unmarshaller) throws JBossXBException
+         {
+            return unmarshaller.unmarshal(systemId, factory, root);
+         }
+      });
+   }
+
+   public Object unmarshal(final String systemId, final ObjectModelFactory factory, final DocumentBinding binding)
+      throws JBossXBException
+   {
+      return unmarshal(new Call<Unmarshaller, Object>()
+      {
+         public Object call(Unmarshaller unmarshaller) throws JBossXBException
+         {
+            return unmarshaller.unmarshal(systemId, factory, binding);
+         }
+      });
+   }
+
+   public Object unmarshal(final Reader reader, final ObjectModelFactory factory, final DocumentBinding binding) throws JBossXBException
+   {
+      return unmarshal(new Call<Unmarshaller, Object>()
+      {
+         public Object call(Unmarshaller unmarshaller) throws JBossXBException
+         {
+            return unmarshaller.unmarshal(reader, factory, binding);
+         }
+      });
+   }
+
+   private Object unmarshal(Call<Unmarshaller, Object> call) throws JBossXBException
+   {
+      try
+      {
+         return unmarshallers.call(call);
+      }
+      catch(JBossXBException e)
+      {
+         throw e;
+      }
+      catch(RuntimeException e)
+      {
+         throw e;
+      }
+      catch(Exception e)
+      {
+         // the calls throw only JBossXBException
+         throw new JBossXBException("Failed to unmarshal", e);
+      }
+   }
+}
@@ -25,9 +25,11 @@ import java.io.InputStream;
 import java.io.Reader;
 
 import org.jboss.xb.binding.metadata.unmarshalling.DocumentBinding;
+import org.jboss.xb.binding.parser.DocumentLimits;
 import org.jboss.xb.binding.parser.JBossXBParser;
 import org.jboss.xb.binding.sunday.unmarshalling.SchemaBinding;
 import org.jboss.xb.binding.sunday.unmarshalling.SchemaBindingResolver;
+import org.w3c.dom.Node;
 import org.xml.sax.EntityResolver;
 import org.xml.sax.ErrorHandler;
 import org.xml.sax.InputSource;
@@ -45,6 +47,11 @@ public interface Unmarshaller extends FeatureAware
    String DYNAMIC_VALIDATION = "http://apache.org/xml/features/validation/dynamic";
    String SCHEMA_VALIDATION = "http://apache.org/xml/features/validation/schema";
    String SCHEMA_FULL_CHECKING = "http://apache.org/xml/features/validation/schema-full-checking";
+   /**
+    * Binding-validated mode: the parser is not validating and the content
+    * is validated against the schema binding during unmarshalling instead.
+    */
+   String CONTENT_VALIDATION = "http://www.jboss.org/xb/features/validation/content";
 
    void setValidation(boolean validation) throws JBossXBException;
 
@@ -68,6 +75,16 @@ public interface Unmarshaller extends FeatureAware
     */
    boolean isWarnOnParserErrors();
 
+   /**
+    * The limits on the size of the documents checked during unmarshalling.
+    * A document that exceeds a limit fails with a DocumentLimitExceededException as the cause.
+    * 
+    * @param limits  the limits or null if the documents are not limited
+    */
+   void setDocumentLimits(DocumentLimits limits);
+
+   DocumentLimits getDocumentLimits();
+
    void setEntityResolver(EntityResolver entityResolver) throws JBossXBException;
 
    /**
@@ -97,6 +114,26 @@ public interface Unmarshaller extends FeatureAware
 
    Object unmarshal(InputSource source, SchemaBindingResolver schemaResolver) throws JBossXBException;
 
+   /**
+    * Unmarshals a DOM document, document fragment or element walking the tree directly,
+    * i.e. without serializing and parsing it. The namespaces declared on the ancestors
+    * of an element are in scope while the element is unmarshalled.
+    * Parser features don't apply and, of the document limits, only the number
+    * of buffered characters is checked.
+    *
+    * @param node  the node to unmarshal
+    * @param schemaBinding  the schema binding
+    * @return  the unmarshalled object
+    * @throws JBossXBException  in case of an error
+    */
+   Object unmarshal(Node node, SchemaBinding schemaBinding) throws JBossXBException;
+
+   /**
+    * Same as unmarshal(Node, SchemaBinding) except that the schema binding is resolved
+    * by the resolver.
+    */
+   Object unmarshal(Node node, SchemaBindingResolver schemaResolver) throws JBossXBException;
+
    Object unmarshal(Reader reader, ObjectModelFactory factory, Object root) throws JBossXBException;
 
    Object unmarshal(InputStream is, ObjectModelFactory factory, Object root) throws JBossXBException;
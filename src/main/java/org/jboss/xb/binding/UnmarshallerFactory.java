@@ -24,6 +24,7 @@ package org.jboss.xb.binding;
 import java.util.Map;
 import java.util.HashMap;
 import java.util.Iterator;
+import org.jboss.xb.binding.parser.DocumentLimits;
 import org.jboss.xb.binding.parser.JBossXBParser;
 
 /**
@@ -36,6 +37,7 @@ public abstract class UnmarshallerFactory
    protected Boolean validation;
    protected Boolean namespaces;
    protected Boolean warnOnParserErrors;
+   protected DocumentLimits documentLimits;
 
    public static UnmarshallerFactory newInstance()
    {
@@ -105,6 +107,22 @@ public abstract class UnmarshallerFactory
       return warnOnParserErrors == null ? false : warnOnParserErrors;
    }
 
+   /**
+    * The limits on the size of the documents set on the created unmarshallers.
+    * The limits and their counters are shared by the unmarshallers.
+    * 
+    * @param limits  the limits or null if the documents are not limited
+    */
+   public void setDocumentLimits(DocumentLimits limits)
+   {
+      this.documentLimits = limits;
+   }
+
+   public DocumentLimits getDocumentLimits()
+   {
+      return documentLimits;
+   }
+
    // Inner
 
    static class UnmarshallerFactoryImpl
@@ -127,7 +145,10 @@ public abstract class UnmarshallerFactory
             parser.setFeature(Unmarshaller.VALIDATION, validation.booleanValue());
          if(namespaces != null)
             parser.setFeature(Unmarshaller.NAMESPACES, namespaces.booleanValue());
+         if(documentLimits != null)
+            unmarshaller.setDocumentLimits(documentLimits);
 
+         Boolean contentValidation = null;
          if(features != null)
          {
             for(Iterator<?> i = features.entrySet().iterator(); i.hasNext();)
@@ -136,7 +157,10 @@ public abstract class UnmarshallerFactory
                if(entry.getValue() != null)
                {
                   Boolean value = (Boolean)entry.getValue();
-                  parser.setFeature((String)entry.getKey(), value.booleanValue());
+                  if(Unmarshaller.CONTENT_VALIDATION.equals(entry.getKey()))
+                     contentValidation = value;
+                  else
+                     parser.setFeature((String)entry.getKey(), value.booleanValue());
                }
             }
          }
@@ -153,6 +177,19 @@ public abstract class UnmarshallerFactory
             // dynamic_validation is a required xerces-specific feature
          }
 
+         // turns the parser validation off, so it goes after the validation features
+         if(contentValidation != null)
+         {
+            try
+            {
+               unmarshaller.setFeature(Unmarshaller.CONTENT_VALIDATION, contentValidation.booleanValue());
+            }
+            catch(JBossXBException e)
+            {
+               throw new JBossXBRuntimeException(e.getMessage(), e);
+            }
+         }
+
          return unmarshaller;
       }
    }
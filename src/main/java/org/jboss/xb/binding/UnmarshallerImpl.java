@@ -25,11 +25,15 @@ import java.io.InputStream;
 import java.io.Reader;
 
 import org.jboss.xb.binding.metadata.unmarshalling.DocumentBinding;
+import org.jboss.xb.binding.parser.DocumentLimits;
+import org.jboss.xb.binding.parser.DocumentLimitsAware;
 import org.jboss.xb.binding.parser.JBossXBParser;
 import org.jboss.xb.binding.parser.sax.SaxJBossXBParser;
 import org.jboss.xb.binding.sunday.unmarshalling.SchemaBinding;
 import org.jboss.xb.binding.sunday.unmarshalling.SchemaBindingResolver;
 import org.jboss.xb.binding.sunday.unmarshalling.SundayContentHandler;
+import org.jboss.xb.util.DomWalker;
+import org.w3c.dom.Node;
 import org.xml.sax.EntityResolver;
 import org.xml.sax.ErrorHandler;
 import org.xml.sax.InputSource;
@@ -45,6 +49,7 @@ public class UnmarshallerImpl implements Unmarshaller
 {
    private ObjectModelBuilder builder;
    private final JBossXBParser parser;
+   private boolean contentValidation;
 
    // Constructor
 
@@ -56,6 +61,19 @@ public class UnmarshallerImpl implements Unmarshaller
       parser = new SaxJBossXBParser();
    }
 
+   /**
+    * Creates an unmarshaller reading the content with the given parser,
+    * e.g. org.jboss.xb.binding.parser.binary.BinaryJBossXBParser.
+    *
+    * @param parser  the parser
+    */
+   public UnmarshallerImpl(JBossXBParser parser)
+   {
+      if(parser == null)
+         throw new IllegalArgumentException("The parser is null");
+      this.parser = parser;
+   }
+
    public void setValidation(boolean validation) throws JBossXBException
    {
       parser.setFeature(VALIDATION, validation);
@@ -74,7 +92,28 @@ public class UnmarshallerImpl implements Unmarshaller
 
    public void setFeature(String feature, boolean value) throws JBossXBException
    {
-      parser.setFeature(feature, value);
+      if(CONTENT_VALIDATION.equals(feature))
+         setContentValidation(value);
+      else
+         parser.setFeature(feature, value);
+   }
+
+   private void setContentValidation(boolean value)
+   {
+      contentValidation = value;
+      if(value)
+      {
+         parser.setFeature(VALIDATION, false);
+         try
+         {
+            parser.setFeature(DYNAMIC_VALIDATION, false);
+            parser.setFeature(SCHEMA_VALIDATION, false);
+         }
+         catch(JBossXBRuntimeException e)
+         {
+            // xerces-specific features
+         }
+      }
    }
 
    public void setNamespaceAware(boolean namespaces) throws JBossXBException
@@ -102,6 +141,19 @@ public class UnmarshallerImpl implements Unmarshaller
       return parser.getWarnOnParserErrors();
    }
 
+   public void setDocumentLimits(DocumentLimits limits)
+   {
+      if(parser instanceof DocumentLimitsAware)
+         ((DocumentLimitsAware) parser).setDocumentLimits(limits);
+      else if(limits != null)
+         throw new JBossXBRuntimeException("The parser doesn't check document limits: " + parser);
+   }
+
+   public DocumentLimits getDocumentLimits()
+   {
+      return parser instanceof DocumentLimitsAware ? ((DocumentLimitsAware) parser).getDocumentLimits() : null;
+   }
+
    public void mapFactoryToNamespace(ObjectModelFactory factory, String namespaceUri)
    {
       if(builder == null)
@@ -125,60 +177,74 @@ public class UnmarshallerImpl implements Unmarshaller
 
    public Object unmarshal(String xml, SchemaBinding schemaBinding) throws JBossXBException
    {
-      JBossXBParser.ContentHandler cHandler = new SundayContentHandler(schemaBinding);
+      JBossXBParser.ContentHandler cHandler = newContentHandler(schemaBinding);
       parser.parse(xml, cHandler);
       return cHandler.getRoot();
    }
 
    public Object unmarshal(Reader xmlReader, SchemaBinding schemaBinding) throws JBossXBException
    {
-      JBossXBParser.ContentHandler cHandler = new SundayContentHandler(schemaBinding);
+      JBossXBParser.ContentHandler cHandler = newContentHandler(schemaBinding);
       parser.parse(xmlReader, cHandler);
       return cHandler.getRoot();
    }
 
    public Object unmarshal(InputStream xmlStream, SchemaBinding schemaBinding) throws JBossXBException
    {
-      JBossXBParser.ContentHandler cHandler = new SundayContentHandler(schemaBinding);
+      JBossXBParser.ContentHandler cHandler = newContentHandler(schemaBinding);
       parser.parse(xmlStream, cHandler);
       return cHandler.getRoot();
    }
 
    public Object unmarshal(InputSource source, SchemaBinding schemaBinding) throws JBossXBException
    {
-      JBossXBParser.ContentHandler cHandler = new SundayContentHandler(schemaBinding);
+      JBossXBParser.ContentHandler cHandler = newContentHandler(schemaBinding);
       parser.parse(source, cHandler);
       return cHandler.getRoot();
    }
 
    public Object unmarshal(String xml, SchemaBindingResolver schemaResolver) throws JBossXBException
    {
-      JBossXBParser.ContentHandler cHandler = new SundayContentHandler(schemaResolver);
+      JBossXBParser.ContentHandler cHandler = newContentHandler(schemaResolver);
       parser.parse(xml, cHandler);
       return cHandler.getRoot();
    }
 
    public Object unmarshal(Reader xmlReader, SchemaBindingResolver schemaResolver) throws JBossXBException
    {
-      JBossXBParser.ContentHandler cHandler = new SundayContentHandler(schemaResolver);
+      JBossXBParser.ContentHandler cHandler = newContentHandler(schemaResolver);
       parser.parse(xmlReader, cHandler);
       return cHandler.getRoot();
    }
 
    public Object unmarshal(InputStream xmlStream, SchemaBindingResolver schemaResolver) throws JBossXBException
    {
-      JBossXBParser.ContentHandler cHandler = new SundayContentHandler(schemaResolver);
+      JBossXBParser.ContentHandler cHandler = newContentHandler(schemaResolver);
       parser.parse(xmlStream, cHandler);
       return cHandler.getRoot();
    }
 
    public Object unmarshal(InputSource source, SchemaBindingResolver schemaResolver) throws JBossXBException
    {
-      JBossXBParser.ContentHandler cHandler = new SundayContentHandler(schemaResolver);
+      JBossXBParser.ContentHandler cHandler = newContentHandler(schemaResolver);
       parser.parse(source, cHandler);
       return cHandler.getRoot();
    }
 
+   public Object unmarshal(Node node, SchemaBinding schemaBinding) throws JBossXBException
+   {
+      JBossXBParser.ContentHandler cHandler = newContentHandler(schemaBinding);
+      walk(node, cHandler, getDocumentLimits());
+      return cHandler.getRoot();
+   }
+
+   public Object unmarshal(Node node, SchemaBindingResolver schemaResolver) throws JBossXBException
+   {
+      JBossXBParser.ContentHandler cHandler = newContentHandler(schemaResolver);
+      walk(node, cHandler, getDocumentLimits());
+      return cHandler.getRoot();
+   }
+
    public Object unmarshal(Reader reader, ObjectModelFactory factory, Object root) throws JBossXBException
    {
       if(builder == null)
@@ -187,7 +253,7 @@ public class UnmarshallerImpl implements Unmarshaller
       }
       builder.init(factory, root);
       parser.parse(reader, builder);
-      return builder.getRoot();
+      return getRootAndReset();
    }
 
    public Object unmarshal(InputStream is, ObjectModelFactory factory, Object root) throws JBossXBException
@@ -198,7 +264,7 @@ public class UnmarshallerImpl implements Unmarshaller
       }
       builder.init(factory, root);
       parser.parse(is, builder);
-      return builder.getRoot();
+      return getRootAndReset();
    }
 
    public Object unmarshal(String systemId, ObjectModelFactory factory, Object root) throws JBossXBException
@@ -209,7 +275,7 @@ public class UnmarshallerImpl implements Unmarshaller
       }
       builder.init(factory, root);
       parser.parse(systemId, builder);
-      return builder.getRoot();
+      return getRootAndReset();
    }
 
    public Object unmarshal(InputSource is, ObjectModelFactory factory, Object root) throws JBossXBException
@@ -220,7 +286,7 @@ public class UnmarshallerImpl implements Unmarshaller
       }
       builder.init(factory, root);
       parser.parse(is, builder);
-      return builder.getRoot();
+      return getRootAndReset();
    }
 
    public Object unmarshal(String systemId, ObjectModelFactory factory, DocumentBinding binding)
@@ -242,8 +308,75 @@ public class UnmarshallerImpl implements Unmarshaller
       return unmarshal(reader, factory, (Object)null);
    }
 
+   /**
+    * Creates a feed the document to unmarshal can be fed to in chunks as they arrive.
+    * The feed uses the parser of this unmarshaller, so only one document can be fed at a time
+    * and the unmarshaller shouldn't be used until the feed has been ended.
+    *
+    * @param schemaBinding  the schema binding
+    * @return  the feed
+    */
+   public FeedUnmarshaller newFeed(SchemaBinding schemaBinding)
+   {
+      return new FeedUnmarshaller(parser, newContentHandler(schemaBinding), getDocumentLimits());
+   }
+
+   /**
+    * Creates a feed the document to unmarshal can be fed to in chunks as they arrive.
+    * The feed uses the parser of this unmarshaller, so only one document can be fed at a time
+    * and the unmarshaller shouldn't be used until the feed has been ended.
+    *
+    * @param schemaResolver  the schema binding resolver
+    * @return  the feed
+    */
+   public FeedUnmarshaller newFeed(SchemaBindingResolver schemaResolver)
+   {
+      return new FeedUnmarshaller(parser, newContentHandler(schemaResolver), getDocumentLimits());
+   }
+
+   /**
+    * Returns the root built by the object model builder and releases the builder's
+    * references to it so that a pooled unmarshaller doesn't keep the last document alive.
+    *
+    * @return  the root
+    */
+   private Object getRootAndReset()
+   {
+      Object root = builder.getRoot();
+      builder.reset();
+      return root;
+   }
+
    JBossXBParser getParser()
    {
       return parser;
    }
+
+   private static void walk(Node node, JBossXBParser.ContentHandler cHandler, DocumentLimits limits) throws JBossXBException
+   {
+      try
+      {
+         DomWalker.walk(node, cHandler, limits);
+      }
+      catch(RuntimeException e)
+      {
+         throw new JBossXBException("Failed to unmarshal node " + node.getNodeName(), e);
+      }
+   }
+
+   private JBossXBParser.ContentHandler newContentHandler(SchemaBinding schemaBinding)
+   {
+      SundayContentHandler cHandler = new SundayContentHandler(schemaBinding);
+      cHandler.setValidateContent(contentValidation);
+      cHandler.setDocumentLimits(getDocumentLimits());
+      return cHandler;
+   }
+
+   private JBossXBParser.ContentHandler newContentHandler(SchemaBindingResolver schemaResolver)
+   {
+      SundayContentHandler cHandler = new SundayContentHandler(schemaResolver);
+      cHandler.setValidateContent(contentValidation);
+      cHandler.setDocumentLimits(getDocumentLimits());
+      return cHandler;
+   }
 }
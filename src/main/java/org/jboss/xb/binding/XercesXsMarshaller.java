@@ -62,6 +62,13 @@ import org.xml.sax.SAXException;
 public class XercesXsMarshaller
    extends AbstractMarshaller
 {
+   /**
+    * Schemas loaded for class mappings of wildcard content, cleared when the schema resolver changes.
+    * Unlike the SchemaBindings of MarshallerImpl, which are shared by all the marshallers,
+    * the models are cached per marshaller since XSModel is not thread-safe.
+    */
+   private final ClassMappingSchemaCache<XSModel> classMappingSchemas = new ClassMappingSchemaCache<XSModel>();
+
    private Stack stack = new StackImpl();
 
    /**
@@ -159,6 +166,7 @@ public class XercesXsMarshaller
    public void setSchemaResolver(SchemaBindingResolver schemaResolver)
    {
       this.schemaResolver = schemaResolver;
+      classMappingSchemas.clear();
    }
 
    public QName getRootTypeQName()
@@ -956,87 +964,104 @@ public class XercesXsMarshaller
       XSModel parentModel = this.model;
 
       this.root = o;
-      this.stack = new StackImpl();
-      this.model = mapping.schemaUrl == null ? this.model : Util.loadSchema(mapping.schemaUrl, schemaResolver);
-      if(mapping.provider != null)
-      {
-         this.provider = mapping.provider;
-      }
-
+      this.stack = borrowWildcardStack();
       boolean marshalled;
-      if(mapping.elementName != null)
+      try
       {
-         XSElementDeclaration elDec = model.getElementDeclaration(mapping.elementName.getLocalPart(),
-            mapping.elementName.getNamespaceURI()
-         );
-
-         if(elDec == null)
+         this.model = mapping.schemaUrl == null ? this.model : getClassMappingSchema(mapping.schemaUrl);
+         if(mapping.provider != null)
          {
-            throw new JBossXBRuntimeException("Element " + mapping.elementName + " is not declared in the schema.");
+            this.provider = mapping.provider;
          }
 
-         Object elementValue = provider.getRoot(root, null, elDec.getNamespace(), elDec.getName());
-         marshalled = marshalElementOccurence(elDec.getNamespace(),
-            elDec.getName(),
-            elDec.getTypeDefinition(),
-            elementValue,
-            elDec.getNillable(),
-            particle.getMinOccurs() == 0,
-            declareNs
-         );
-      }
-      else if(mapping.typeName != null)
-      {
-         XSTypeDefinition typeDef = model.getTypeDefinition(mapping.typeName.getLocalPart(),
-            mapping.typeName.getNamespaceURI()
-         );
-
-         if(typeDef == null)
+         if(mapping.elementName != null)
          {
-            List<QName> typeNames = new ArrayList<QName>();
-            XSNamedMap types = model.getComponents(XSConstants.TYPE_DEFINITION);
-            for(int i = 0; i < types.getLength(); ++i)
+            XSElementDeclaration elDec = model.getElementDeclaration(mapping.elementName.getLocalPart(),
+               mapping.elementName.getNamespaceURI()
+            );
+
+            if(elDec == null)
             {
-               XSObject type = types.item(i);
-               if(!Constants.NS_XML_SCHEMA.equals(type.getNamespace()))
-               {
-                  typeNames.add(new QName(type.getNamespace(), type.getName()));
-               }
+               throw new JBossXBRuntimeException("Element " + mapping.elementName + " is not declared in the schema.");
             }
-            throw new JBossXBRuntimeException("Type " +
-               mapping.typeName +
-               " is not defined in the schema." +
-               " Defined types are: " + typeNames
-            );
-         }
 
-         Object elementValue = provider.getRoot(root, null, wildcard.getNamespace(), wildcard.getName());
-         marshalled =
-            marshalElementOccurence(wildcard.getNamespace(),
-               wildcard.getName(),
-               typeDef,
+            Object elementValue = provider.getRoot(root, null, elDec.getNamespace(), elDec.getName());
+            marshalled = marshalElementOccurence(elDec.getNamespace(),
+               elDec.getName(),
+               elDec.getTypeDefinition(),
                elementValue,
-               true,
+               elDec.getNillable(),
                particle.getMinOccurs() == 0,
                declareNs
             );
+         }
+         else if(mapping.typeName != null)
+         {
+            XSTypeDefinition typeDef = model.getTypeDefinition(mapping.typeName.getLocalPart(),
+               mapping.typeName.getNamespaceURI()
+            );
+
+            if(typeDef == null)
+            {
+               List<QName> typeNames = new ArrayList<QName>();
+               XSNamedMap types = model.getComponents(XSConstants.TYPE_DEFINITION);
+               for(int i = 0; i < types.getLength(); ++i)
+               {
+                  XSObject type = types.item(i);
+                  if(!Constants.NS_XML_SCHEMA.equals(type.getNamespace()))
+                  {
+                     typeNames.add(new QName(type.getNamespace(), type.getName()));
+                  }
+               }
+               throw new JBossXBRuntimeException("Type " +
+                  mapping.typeName +
+                  " is not defined in the schema." +
+                  " Defined types are: " + typeNames
+               );
+            }
+
+            Object elementValue = provider.getRoot(root, null, wildcard.getNamespace(), wildcard.getName());
+            marshalled =
+               marshalElementOccurence(wildcard.getNamespace(),
+                  wildcard.getName(),
+                  typeDef,
+                  elementValue,
+                  true,
+                  particle.getMinOccurs() == 0,
+                  declareNs
+               );
+         }
+         else
+         {
+            throw new JBossXBRuntimeException("Class mapping for " +
+               mapping.cls +
+               " is associated with neither global element name nor global type name."
+            );
+         }
       }
-      else
+      finally
       {
-         throw new JBossXBRuntimeException("Class mapping for " +
-            mapping.cls +
-            " is associated with neither global element name nor global type name."
-         );
+         this.root = parentRoot;
+         this.provider = parentProvider;
+         this.stack = parentStack;
+         this.model = parentModel;
+         releaseWildcardStack();
       }
 
-      this.root = parentRoot;
-      this.provider = parentProvider;
-      this.stack = parentStack;
-      this.model = parentModel;
-
       return marshalled;
    }
 
+   private XSModel getClassMappingSchema(String schemaUrl)
+   {
+      XSModel model = classMappingSchemas.get(schemaUrl, schemaResolver);
+      if(model == null)
+      {
+         model = Util.loadSchema(schemaUrl, schemaResolver);
+         classMappingSchemas.put(schemaUrl, schemaResolver, model);
+      }
+      return model;
+   }
+
    private boolean marshalModelGroup(XSParticle particle, boolean declareNs)
    {
       XSModelGroup modelGroup = (XSModelGroup)particle.getTerm();
@@ -1076,17 +1101,43 @@ public class XercesXsMarshaller
       for(int i = 0; i < particles.getLength() && !marshalled; ++i)
       {
          XSParticle particle = (XSParticle)particles.item(i);
-         this.content = new Content();
-         marshalled = marshalParticle(particle, declareNs);
+         if(isMarshalledOrEmpty(particle))
+         {
+            // no need to buffer the content since if the particle is not marshalled nothing is written
+            marshalled = marshalParticle(particle, declareNs);
+         }
+         else
+         {
+            this.content = new Content();
+            marshalled = marshalParticle(particle, declareNs);
+            if(marshalled)
+            {
+               mainContent.append(this.content);
+            }
+            this.content = mainContent;
+         }
       }
 
-      if(marshalled)
+      return marshalled;
+   }
+
+   /**
+    * Checks whether marshalling of the particle either succeeds or writes nothing,
+    * i.e. it can be tried as a choice alternative without buffering its content.
+    * This is the case for elements that are not repeatable, or
+    * every occurrence of which is marshalled successfully even if the value is null.
+    * 
+    * @param particle  choice alternative
+    * @return  true if unsuccessful marshalling of the particle doesn't produce content
+    */
+   private static boolean isMarshalledOrEmpty(XSParticle particle)
+   {
+      XSTerm term = particle.getTerm();
+      if(term.getType() != XSConstants.ELEMENT_DECLARATION)
       {
-         mainContent.append(this.content);
+         return false;
       }
-      this.content = mainContent;
-
-      return marshalled;
+      return !isRepeatable(particle) || particle.getMinOccurs() == 0 || ((XSElementDeclaration)term).getNillable();
    }
 
    private boolean marshalModelGroupSequence(XSObjectList particles, boolean declareNs)
@@ -29,7 +29,6 @@ import java.util.Map;
 import javax.xml.namespace.QName;
 
 import org.jboss.xb.binding.JBossXBRuntimeException;
-import org.jboss.xb.binding.metadata.PropertyMetaData;
 import org.jboss.xb.binding.sunday.unmarshalling.AttributeBinding;
 import org.jboss.xb.binding.sunday.unmarshalling.ElementBinding;
 import org.jboss.xb.binding.sunday.unmarshalling.ParticleBinding;
@@ -134,25 +133,7 @@ public class ValueList
       
       if (!isSameBinding)
       {
-         Collection col;
-         PropertyMetaData propMetaData = binding.getTerm().getPropertyMetaData();
-         if(propMetaData != null && propMetaData.getCollectionType() != null)
-         {
-            Class<?> colCls = RtUtil.loadClass(propMetaData.getCollectionType(), true);
-            try
-            {
-               col = (Collection) colCls.newInstance();
-            }
-            catch (Exception e)
-            {
-               throw new JBossXBRuntimeException("Failed to create an instance of " + colCls.getName() + " for property " + propMetaData.getName());
-            }
-         }
-         else
-         {
-            col = new ArrayList();
-         }
-         
+         Collection<Object> col = RtUtil.newCollection(binding.getTerm().getPropertyMetaData());
          col.add(value);
          setNonRequiredValue(qName, binding, handler, col, parentParticle);
       }
@@ -24,6 +24,7 @@ package org.jboss.xb.binding.introspection;
 import java.beans.BeanInfo;
 import java.beans.IntrospectionException;
 import java.beans.PropertyDescriptor;
+import java.lang.ref.WeakReference;
 import java.lang.reflect.Method;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
@@ -31,24 +32,26 @@ import java.util.concurrent.ConcurrentHashMap;
 import org.jboss.xb.binding.JBossXBRuntimeException;
 
 /**
+ * The properties of a class. The class is referenced weakly, see FieldInfo.
+ *
  * @author <a href="mailto:alex@jboss.org">Alexey Loubyansky</a>
  * @version <tt>$Revision: $</tt>
  */
 public class ClassInfo
 {
    private static final Object FIELD_INFO_NA = new Object();
-   private final Class<?> type;
+   private final WeakReference<Class<?>> type;
    private Map<String, Object> fields = new ConcurrentHashMap<String, Object>();
    private boolean introspected;
 
    public ClassInfo(Class<?> cls)
    {
-      this.type = cls;
+      this.type = new WeakReference<Class<?>>(cls);
    }
 
    public Class<?> getType()
    {
-      return type;
+      return type.get();
    }
 
    /**
@@ -80,7 +83,7 @@ public class ClassInfo
       if(required)
       {
          throw new JBossXBRuntimeException(
-            "Failed to find read method or field for property '" + name + "' in " + type
+            "Failed to find read method or field for property '" + name + "' in " + getType()
          );
       }
 
@@ -99,6 +102,7 @@ public class ClassInfo
          return null;
       }
 
+      Class<?> type = getType();
       try
       {
          BeanInfo info = java.beans.Introspector.getBeanInfo(type);
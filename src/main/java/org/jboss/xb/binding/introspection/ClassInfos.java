@@ -21,22 +21,41 @@
   */
 package org.jboss.xb.binding.introspection;
 
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
 import java.util.Map;
-import java.util.WeakHashMap;
 import java.util.concurrent.ConcurrentHashMap;
-import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentMap;
 import org.jboss.xb.binding.JBossXBRuntimeException;
-import org.jboss.xb.util.NoopMap;
 
 
 /**
+ * Cache of ClassInfo's per class loader.
+ * <p>
+ * Lookups don't lock and don't allocate. ClassInfo's are held strongly, so they are
+ * not re-created while their classes are in use. Class loaders are referenced weakly
+ * and their caches are removed once they are collected. ClassInfo's and FieldInfo's
+ * reference their classes, methods and fields weakly, so a cache doesn't keep
+ * its class loader reachable.
+ *
  * @author <a href="mailto:alex@jboss.org">Alexey Loubyansky</a>
  * @version <tt>$Revision: $</tt>
  */
 public class ClassInfos
 {
-   private static final Map<ClassLoader, Map<String, WeakReference<ClassInfo>>> NO_CACHE = new NoopMap<ClassLoader, Map<String, WeakReference<ClassInfo>>>();
-   private static Map<ClassLoader, Map<String, WeakReference<ClassInfo>>> classloaderCache = new WeakHashMap<ClassLoader, Map<String, WeakReference<ClassInfo>>>();
+   private static final ReferenceQueue<ClassLoader> STALE_LOADERS = new ReferenceQueue<ClassLoader>();
+   private static final ConcurrentMap<ClassLoaderKey, ClassLoaderCache> classloaderCache = new ConcurrentHashMap<ClassLoaderKey, ClassLoaderCache>();
+   private static final ClassLoaderCache bootstrapCache = new ClassLoaderCache();
+   /** the keys to look up the caches with, one per thread */
+   private static final ThreadLocal<LookupKey> lookupKeys = new ThreadLocal<LookupKey>()
+   {
+      protected LookupKey initialValue()
+      {
+         return new LookupKey();
+      }
+   };
+   private static volatile boolean cacheEnabled = true;
 
    /**
     * Disables caching of ClassInfo's. Already cached ClassInfo's will be lost after
@@ -44,10 +63,8 @@ public class ClassInfos
     */
    public static void disableCache()
    {
-      synchronized(classloaderCache)
-      {
-         classloaderCache = NO_CACHE;
-      }
+      cacheEnabled = false;
+      flushCache();
    }
 
    /**
@@ -55,13 +72,7 @@ public class ClassInfos
     */
    public static void enableCache()
    {
-      synchronized(classloaderCache)
-      {
-         if(!isCacheEnabled())
-         {
-            classloaderCache = new WeakHashMap<ClassLoader, Map<String, WeakReference<ClassInfo>>>();
-         }
-      }
+      cacheEnabled = true;
    }
 
    /**
@@ -69,10 +80,7 @@ public class ClassInfos
     */
    public static boolean isCacheEnabled()
    {
-      synchronized(classloaderCache)
-      {
-         return classloaderCache != NO_CACHE;
-      }
+      return cacheEnabled;
    }
 
    /**
@@ -80,10 +88,8 @@ public class ClassInfos
     */
    public static void flushCache()
    {
-      synchronized(classloaderCache)
-      {
-         classloaderCache.clear();
-      }
+      classloaderCache.clear();
+      bootstrapCache.clear();
    }
 
    /**
@@ -93,8 +99,11 @@ public class ClassInfos
    public static void flushCache(String cls)
    {
       ClassLoader cl = Thread.currentThread().getContextClassLoader();
-      Map<String, WeakReference<ClassInfo>> classLoaderCache = getClassLoaderCache(cl);
-      classLoaderCache.remove(cls);
+      ClassLoaderCache classLoaderCache = getClassLoaderCache(cl, false);
+      if(classLoaderCache != null)
+      {
+         classLoaderCache.remove(cls);
+      }
    }
 
    /**
@@ -103,50 +112,50 @@ public class ClassInfos
     */
    public static void flushCache(Class<?> cls)
    {
-      Map<String, WeakReference<ClassInfo>> classLoaderCache = getClassLoaderCache(cls.getClassLoader());
-      classLoaderCache.remove(cls.getName());
+      ClassLoaderCache classLoaderCache = getClassLoaderCache(cls.getClassLoader(), false);
+      if(classLoaderCache != null)
+      {
+         classLoaderCache.remove(cls.getName());
+      }
    }
 
    public static ClassInfo getClassInfo(Class<?> cls)
    {
-      Map<String, WeakReference<ClassInfo>> classLoaderCache = getClassLoaderCache(cls.getClassLoader());
-
-      WeakReference<ClassInfo> weak = classLoaderCache.get(cls.getName());
-      if(weak != null)
+      if(!cacheEnabled)
       {
-         Object result = weak.get();
-         if(result != null)
-         {
-            return (ClassInfo)result;
-         }
+         return new ClassInfo(cls);
       }
 
-      ClassInfo clsInfo = new ClassInfo(cls);
-      weak = new WeakReference<ClassInfo>(clsInfo);
-      classLoaderCache.put(cls.getName(), weak);
+      ClassLoaderCache classLoaderCache = getClassLoaderCache(cls.getClassLoader(), true);
+      ClassInfo clsInfo = classLoaderCache.get(cls.getName());
+      if(clsInfo == null)
+      {
+         clsInfo = new ClassInfo(cls);
+         classLoaderCache.put(clsInfo);
+      }
       return clsInfo;
    }
 
    public static ClassInfo getClassInfo(String name, boolean required)
    {
       ClassLoader cl = Thread.currentThread().getContextClassLoader();
-      Map<String, WeakReference<ClassInfo>> classLoaderCache = getClassLoaderCache(cl);
-
-      WeakReference<ClassInfo> weak = classLoaderCache.get(name);
-      if(weak != null)
+      ClassLoaderCache classLoaderCache = cacheEnabled ? getClassLoaderCache(cl, true) : null;
+      if(classLoaderCache != null)
       {
-         Object result = weak.get();
-         if(result != null)
+         ClassInfo clsInfo = classLoaderCache.get(name);
+         if(clsInfo != null)
          {
-            return (ClassInfo)result;
+            return clsInfo;
          }
       }
 
       try
       {
          ClassInfo clsInfo = new ClassInfo(cl.loadClass(name));
-         weak = new WeakReference<ClassInfo>(clsInfo);
-         classLoaderCache.put(name, weak);
+         if(classLoaderCache != null)
+         {
+            classLoaderCache.put(name, clsInfo);
+         }
          return clsInfo;
       }
       catch(ClassNotFoundException e)
@@ -160,17 +169,128 @@ public class ClassInfos
       return null;
    }
 
-   private static Map<String, WeakReference<ClassInfo>> getClassLoaderCache(ClassLoader cl)
+   private static ClassLoaderCache getClassLoaderCache(ClassLoader cl, boolean create)
+   {
+      if(cl == null)
+      {
+         return bootstrapCache;
+      }
+
+      LookupKey key = lookupKeys.get();
+      key.cl = cl;
+      key.hash = System.identityHashCode(cl);
+      ClassLoaderCache result = classloaderCache.get(key);
+      // the thread local key must not keep the class loader reachable
+      key.cl = null;
+      if(result == null && create)
+      {
+         expungeStaleLoaders();
+         result = new ClassLoaderCache();
+         ClassLoaderCache previous = classloaderCache.putIfAbsent(new ClassLoaderKey(cl, STALE_LOADERS), result);
+         if(previous != null)
+         {
+            result = previous;
+         }
+      }
+      return result;
+   }
+
+   private static void expungeStaleLoaders()
+   {
+      Reference<? extends ClassLoader> stale;
+      while((stale = STALE_LOADERS.poll()) != null)
+      {
+         classloaderCache.remove(stale);
+      }
+   }
+
+   /**
+    * Weak reference to a class loader comparing the referents by identity.
+    */
+   private static final class ClassLoaderKey
+      extends WeakReference<ClassLoader>
    {
-      synchronized(classloaderCache)
+      private final int hash;
+
+      ClassLoaderKey(ClassLoader cl, ReferenceQueue<ClassLoader> queue)
+      {
+         super(cl, queue);
+         hash = System.identityHashCode(cl);
+      }
+
+      public int hashCode()
       {
-         Map<String, WeakReference<ClassInfo>> result = classloaderCache.get(cl);
-         if (result == null)
+         return hash;
+      }
+
+      public boolean equals(Object o)
+      {
+         if(this == o)
+         {
+            return true;
+         }
+         ClassLoader cl = get();
+         if(cl == null)
+         {
+            return false;
+         }
+         if(o instanceof LookupKey)
          {
-            result = new ConcurrentHashMap<String, WeakReference<ClassInfo>>();
-            classloaderCache.put(cl, result);
+            return cl == ((LookupKey)o).cl;
          }
-         return result;
+         return o instanceof ClassLoaderKey && cl == ((ClassLoaderKey)o).get();
+      }
+   }
+
+   /**
+    * Reusable key to look up the cache of a class loader without allocating a ClassLoaderKey.
+    */
+   private static final class LookupKey
+   {
+      ClassLoader cl;
+      int hash;
+
+      public int hashCode()
+      {
+         return hash;
+      }
+
+      public boolean equals(Object o)
+      {
+         return o instanceof ClassLoaderKey && cl != null && cl == ((ClassLoaderKey)o).get();
+      }
+   }
+
+   /**
+    * ClassInfo's of a single class loader.
+    */
+   private static final class ClassLoaderCache
+   {
+      private final Map<String, ClassInfo> infos = new ConcurrentHashMap<String, ClassInfo>();
+
+      ClassInfo get(String name)
+      {
+         return infos.get(name);
+      }
+
+      void put(ClassInfo clsInfo)
+      {
+         put(clsInfo.getType().getName(), clsInfo);
+      }
+
+      void put(String name, ClassInfo clsInfo)
+      {
+         infos.put(name, clsInfo);
+      }
+
+      void remove(String name)
+      {
+         infos.remove(name);
+      }
+
+      void clear()
+      {
+         infos.clear();
       }
    }
 }
@@ -21,6 +21,7 @@
   */
 package org.jboss.xb.binding.introspection;
 
+import java.lang.ref.WeakReference;
 import java.lang.reflect.Method;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
@@ -30,6 +31,12 @@ import org.jboss.util.Classes;
 import org.jboss.xb.binding.JBossXBRuntimeException;
 
 /**
+ * Access to a property of a class.
+ * <p>
+ * The classes, methods and fields are referenced weakly, so that a cached FieldInfo
+ * doesn't keep the class loader of its class reachable. Classes can't be collected before
+ * their class loader, the methods and fields are looked up again if they have been collected.
+ *
  * @author <a href="mailto:alex@jboss.org">Alexey Loubyansky</a>
  * @version <tt>$Revision: $</tt>
  */
@@ -44,24 +51,26 @@ public class FieldInfo
 
    public static class GetValueAccessFactory
    {
-      public static GetValueAccess fieldAccess(final Field field)
+      public static GetValueAccess fieldAccess(Field field)
       {
+         final FieldRef ref = new FieldRef(field);
          return new GetValueAccess()
          {
             public Object get(Object owner) throws IllegalAccessException
             {
-               return field.get(owner);
+               return ref.get().get(owner);
             }
          };
       }
 
-      public static GetValueAccess methodAccess(final Method m)
+      public static GetValueAccess methodAccess(Method m)
       {
+         final MethodRef ref = new MethodRef(m);
          return new GetValueAccess()
          {
             public Object get(Object owner) throws IllegalAccessException, InvocationTargetException
             {
-               return m.invoke(owner, NO_ARGS);
+               return ref.get().invoke(owner, NO_ARGS);
             }
          };
       }
@@ -74,23 +83,26 @@ public class FieldInfo
 
    public static class SetValueAccessFactory
    {
-      public static SetValueAccess fieldAccess(final Field field)
+      public static SetValueAccess fieldAccess(Field field)
       {
+         final FieldRef ref = new FieldRef(field);
          return new SetValueAccess()
          {
             public void set(Object owner, Object value) throws IllegalAccessException
             {
-               field.set(owner, value);
+               ref.get().set(owner, value);
             }
          };
       }
 
-      public static SetValueAccess methodAccess(final Method m)
+      public static SetValueAccess methodAccess(Method method)
       {
+         final MethodRef ref = new MethodRef(method);
          return new SetValueAccess()
          {
             public void set(Object owner, Object value) throws IllegalAccessException, InvocationTargetException
             {
+               Method m = ref.get();
                Object[] arguments = new Object[] { value };
                try
                {
@@ -125,6 +137,89 @@ public class FieldInfo
       }
    }
 
+   /**
+    * A weak reference to a method, the method is looked up again once it's collected.
+    */
+   private static class MethodRef
+   {
+      private final WeakReference<Class<?>> declaringClass;
+      private final String name;
+      private final WeakReference<Class<?>>[] parameterTypes;
+      private volatile WeakReference<Method> method;
+
+      @SuppressWarnings("unchecked")
+      MethodRef(Method method)
+      {
+         this.declaringClass = new WeakReference<Class<?>>(method.getDeclaringClass());
+         this.name = method.getName();
+         Class<?>[] types = method.getParameterTypes();
+         this.parameterTypes = new WeakReference[types.length];
+         for(int i = 0; i < types.length; ++i)
+         {
+            parameterTypes[i] = new WeakReference<Class<?>>(types[i]);
+         }
+         this.method = new WeakReference<Method>(method);
+      }
+
+      Method get()
+      {
+         Method m = method.get();
+         if(m == null)
+         {
+            Class<?>[] types = new Class<?>[parameterTypes.length];
+            for(int i = 0; i < types.length; ++i)
+            {
+               types[i] = parameterTypes[i].get();
+            }
+            try
+            {
+               m = declaringClass.get().getDeclaredMethod(name, types);
+            }
+            catch(NoSuchMethodException e)
+            {
+               throw new JBossXBRuntimeException("Failed to look up method " + name + " again", e);
+            }
+            method = new WeakReference<Method>(m);
+         }
+         return m;
+      }
+   }
+
+   /**
+    * A weak reference to a field, the field is looked up again once it's collected.
+    */
+   private static class FieldRef
+   {
+      private final WeakReference<Class<?>> declaringClass;
+      private final String name;
+      private volatile WeakReference<Field> field;
+
+      FieldRef(Field field)
+      {
+         this.declaringClass = new WeakReference<Class<?>>(field.getDeclaringClass());
+         this.name = field.getName();
+         this.field = new WeakReference<Field>(field);
+      }
+
+      Field get()
+      {
+         Field f = field.get();
+         if(f == null)
+         {
+            try
+            {
+               f = declaringClass.get().getDeclaredField(name);
+            }
+            catch(NoSuchFieldException e)
+            {
+               throw new JBossXBRuntimeException("Failed to look up field " + name + " again", e);
+            }
+            field = new WeakReference<Field>(f);
+         }
+         return f;
+      }
+   }
+
    static FieldInfo getFieldInfo(ClassInfo clsInfo, String name)
    {
       FieldInfo fieldInfo = null;
@@ -155,36 +250,36 @@ public class FieldInfo
       return ClassInfos.getClassInfo(cls).getFieldInfo(fieldName, required);
    }
 
-   private final Class<?> owner;
+   private final WeakReference<Class<?>> owner;
    private final String name;
-   private final Class<?> type;
+   private final WeakReference<Class<?>> type;
    private final GetValueAccess getter;
    private SetValueAccess setter;
    private boolean setterInitialized;
 
    public FieldInfo(Class<?> owner, String name, Method getter)
    {
-      this.owner = owner;
+      this.owner = new WeakReference<Class<?>>(owner);
       this.name = name;
-      this.type = getter.getReturnType();
+      this.type = new WeakReference<Class<?>>(getter.getReturnType());
       this.getter = GetValueAccessFactory.methodAccess(getter);
    }
 
    public FieldInfo(Class<?> owner, String name, Method getter, Method setter)
    {
-      this.owner = owner;
+      this.owner = new WeakReference<Class<?>>(owner);
       this.name = name;
-      this.type = getter.getReturnType();
+      this.type = new WeakReference<Class<?>>(getter.getReturnType());
       this.getter = GetValueAccessFactory.methodAccess(getter);
-      this.setter = SetValueAccessFactory.methodAccess(setter);
+      this.setter = setter == null ? null : SetValueAccessFactory.methodAccess(setter);
       setterInitialized = true;
    }
 
    public FieldInfo(Class<?> owner, Field field)
    {
-      this.owner = owner;
+      this.owner = new WeakReference<Class<?>>(owner);
       this.name = field.getName();
-      this.type = field.getType();
+      this.type = new WeakReference<Class<?>>(field.getType());
       this.getter = GetValueAccessFactory.fieldAccess(field);
       this.setter = SetValueAccessFactory.fieldAccess(field);
       setterInitialized = true;
@@ -192,7 +287,7 @@ public class FieldInfo
 
    public Class<?> getOwner()
    {
-      return owner;
+      return owner.get();
    }
 
    public String getName()
@@ -202,7 +297,7 @@ public class FieldInfo
 
    public Class<?> getType()
    {
-      return type;
+      return type.get();
    }
 
    public boolean isReadable()
@@ -259,7 +354,7 @@ public class FieldInfo
    {
       try
       {
-         setter = SetValueAccessFactory.methodAccess(Classes.getAttributeSetter(owner, name, type));
+         setter = SetValueAccessFactory.methodAccess(Classes.getAttributeSetter(getOwner(), name, getType()));
       }
       catch(NoSuchMethodException e)
       {
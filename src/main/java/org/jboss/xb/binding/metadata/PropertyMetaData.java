@@ -30,6 +30,7 @@ public class PropertyMetaData
 {
    private String name;
    private String collectionType;
+   private volatile ResolvedValue<Class<?>> collectionClass;
 
    public String getName()
    {
@@ -49,5 +50,30 @@ public class PropertyMetaData
    public void setCollectionType(String collectionType)
    {
       this.collectionType = collectionType;
+      this.collectionClass = null;
+   }
+
+   /**
+    * @param cl  the class loader the collection type is resolved with
+    * @return  the class the collection type was resolved to with the class loader
+    * or null if it hasn't been resolved with it
+    */
+   public Class<?> getCollectionClass(ClassLoader cl)
+   {
+      ResolvedValue<Class<?>> resolved = collectionClass;
+      return resolved == null ? null : resolved.get(cl);
+   }
+
+   /**
+    * Caches the class the collection type was resolved to, so that it is loaded
+    * only once per class loader. Only the class resolved with the last class loader
+    * is cached. The cached class is dropped when the collection type changes.
+    *
+    * @param cl  the class loader the collection type was resolved with
+    * @param collectionClass  the resolved collection class
+    */
+   public void setCollectionClass(ClassLoader cl, Class<?> collectionClass)
+   {
+      this.collectionClass = new ResolvedValue<Class<?>>(cl, collectionClass);
    }
 }
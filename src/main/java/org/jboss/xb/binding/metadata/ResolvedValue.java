@@ -0,0 +1,58 @@
+/*
+  * JBoss, Home of Professional Open Source
+  * Copyright 2005, JBoss Inc., and individual contributors as indicated
+  * by the @authors tag. See the copyright.txt in the distribution for a
+  * full listing of individual contributors.
+  *
+  * This is free software; you can redistribute it and/or modify it
+  * under the terms of the GNU Lesser General Public License as
+  * published by the Free Software Foundation; either version 2.1 of
+  * the License, or (at your option) any later version.
+  *
+  * This software is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+  * Lesser General Public License for more details.
+  *
+  * You should have received a copy of the GNU Lesser General Public
+  * License along with this software; if not, write to the Free
+  * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+  * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+  */
+package org.jboss.xb.binding.metadata;
+
+import java.lang.ref.WeakReference;
+
+/**
+ * A value resolved from metadata with a class loader, e.g. a class loaded by name.
+ * The same metadata can be used with different thread context class loaders,
+ * so the value is valid only for the class loader it was resolved with.
+ * The class loader is referenced weakly.
+ *
+ * @param <T> the type of the value
+ * @version $Revision: 1.1 $
+ */
+final class ResolvedValue<T>
+{
+   /** null for the bootstrap class loader */
+   private final WeakReference<ClassLoader> classLoader;
+   private final T value;
+
+   ResolvedValue(ClassLoader classLoader, T value)
+   {
+      this.classLoader = classLoader == null ? null : new WeakReference<ClassLoader>(classLoader);
+      this.value = value;
+   }
+
+   /**
+    * @param cl  the class loader
+    * @return  the value if it was resolved with the class loader, otherwise null
+    */
+   T get(ClassLoader cl)
+   {
+      if(classLoader == null)
+         return cl == null ? value : null;
+      ClassLoader resolvedWith = classLoader.get();
+      return resolvedWith != null && resolvedWith == cl ? value : null;
+   }
+}
@@ -21,6 +21,7 @@
   */
 package org.jboss.xb.binding.metadata;
 
+import java.lang.reflect.Method;
 
 /**
  * @author <a href="mailto:alex@jboss.org">Alexey Loubyansky</a>
@@ -32,6 +33,7 @@ public class ValueMetaData
    private String ref;
    private String unmarshalMethod;
    private String marshalMethod;
+   private volatile ResolvedValue<Method> resolvedUnmarshalMethod;
 
    public String getId()
    {
@@ -61,6 +63,31 @@ public class ValueMetaData
    public void setUnmarshalMethod(String unmarshalMethod)
    {
       this.unmarshalMethod = unmarshalMethod;
+      this.resolvedUnmarshalMethod = null;
+   }
+
+   /**
+    * @param cl  the class loader the class of the unmarshal method is loaded with
+    * @return  the method the unmarshal method was resolved to with the class loader
+    * or null if it hasn't been resolved with it
+    */
+   public Method getResolvedUnmarshalMethod(ClassLoader cl)
+   {
+      ResolvedValue<Method> resolved = resolvedUnmarshalMethod;
+      return resolved == null ? null : resolved.get(cl);
+   }
+
+   /**
+    * Caches the method the unmarshal method was resolved to, so that it is looked up
+    * only once per class loader. Only the method resolved with the last class loader
+    * is cached. The cached method is dropped when the unmarshal method changes.
+    *
+    * @param cl  the class loader the class of the unmarshal method was loaded with
+    * @param resolvedUnmarshalMethod  the resolved unmarshal method
+    */
+   public void setResolvedUnmarshalMethod(ClassLoader cl, Method resolvedUnmarshalMethod)
+   {
+      this.resolvedUnmarshalMethod = new ResolvedValue<Method>(cl, resolvedUnmarshalMethod);
    }
 
    public String getMarshalMethod()
@@ -50,10 +50,20 @@ public class XsdAnnotation
 
    public static final XsdAnnotation unmarshal(String annotation)
    {
-      Unmarshaller unmarshaller = UnmarshallerFactory.newInstance().newUnmarshaller();
-      unmarshaller.mapFactoryToNamespace(JaxbObjectModelFactory.INSTANCE, Constants.NS_JAXB);
-      unmarshaller.mapFactoryToNamespace(JbxbObjectModelFactory.INSTANCE, Constants.NS_JBXB);
+      return unmarshal(annotation, newUnmarshaller());
+   }
 
+   /**
+    * Unmarshals the annotation string using the unmarshaller created with
+    * {@link #newUnmarshaller()}. This allows the same unmarshaller (and its parser)
+    * to be reused for all the annotations of a schema.
+    *
+    * @param annotation  the annotation string
+    * @param unmarshaller  the unmarshaller created with newUnmarshaller()
+    * @return  unmarshalled annotation
+    */
+   public static final XsdAnnotation unmarshal(String annotation, Unmarshaller unmarshaller)
+   {
       try
       {
          return (XsdAnnotation)unmarshaller.unmarshal(new StringReader(annotation),
@@ -69,6 +79,35 @@ public class XsdAnnotation
       }
    }
 
+   /**
+    * Creates an unmarshaller with the factories for the JAXB and JBossXB namespaces mapped.
+    * The instance is not thread-safe but can be used to unmarshal
+    * any number of annotations one after another.
+    *
+    * @return  a new annotation unmarshaller
+    */
+   public static Unmarshaller newUnmarshaller()
+   {
+      Unmarshaller unmarshaller = UnmarshallerFactory.newInstance().newUnmarshaller();
+      unmarshaller.mapFactoryToNamespace(JaxbObjectModelFactory.INSTANCE, Constants.NS_JAXB);
+      unmarshaller.mapFactoryToNamespace(JbxbObjectModelFactory.INSTANCE, Constants.NS_JBXB);
+      return unmarshaller;
+   }
+
+   /**
+    * Checks whether the annotation string could contain binding customizations,
+    * i.e. whether it references the JAXB or JBossXB namespace.
+    * Annotations that don't (e.g. documentation) can't affect the binding
+    * and don't have to be unmarshalled.
+    *
+    * @param annotation  the annotation string
+    * @return  true if the annotation references the JAXB or JBossXB namespace
+    */
+   public static boolean isCustomization(String annotation)
+   {
+      return annotation.indexOf(Constants.NS_JBXB) != -1 || annotation.indexOf(Constants.NS_JAXB) != -1;
+   }
+
    public XsdAppInfo getAppInfo()
    {
       return (XsdAppInfo)getChild(XsdAppInfo.QNAME);
@@ -447,6 +486,11 @@ public class XsdAnnotation
             XsdAppInfo appInfo = (XsdAppInfo)parent;
             appInfo.setSkip(true);
          }
+         else if("lazy".equals(localName))
+         {
+            XsdAppInfo appInfo = (XsdAppInfo)parent;
+            appInfo.setLazy(true);
+         }
          else
          {
             // Log a warning for any unexpected elements
@@ -700,6 +744,11 @@ public class XsdAnnotation
             XsdAppInfo appInfo = (XsdAppInfo)root;
             appInfo.setSkip(true);
          }
+         else if("lazy".equals(localName))
+         {
+            XsdAppInfo appInfo = (XsdAppInfo)root;
+            appInfo.setLazy(true);
+         }
          else
          {
             log.warn("Unexpected jbxb annotation: ns=" + namespaceURI + ", localName=" + localName);
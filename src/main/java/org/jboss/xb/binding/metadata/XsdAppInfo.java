@@ -45,6 +45,7 @@ public class XsdAppInfo
    private boolean mapEntryKey;
    private boolean mapEntryValue;
    private boolean skip;
+   private boolean lazy;
 
    public XsdAppInfo()
    {
@@ -151,6 +152,16 @@ public class XsdAppInfo
       this.skip = skip;
    }
 
+   public boolean isLazy()
+   {
+      return lazy;
+   }
+
+   public void setLazy(boolean lazy)
+   {
+      this.lazy = lazy;
+   }
+
    public CharactersMetaData getCharactersMetaData()
    {
       return charactersMetaData;
@@ -0,0 +1,209 @@
+/*
+* JBoss, Home of Professional Open Source
+* Copyright 2006, JBoss Inc., and individual contributors as indicated
+* by the @authors tag. See the copyright.txt in the distribution for a
+* full listing of individual contributors.
+*
+* This is free software; you can redistribute it and/or modify it
+* under the terms of the GNU Lesser General Public License as
+* published by the Free Software Foundation; either version 2.1 of
+* the License, or (at your option) any later version.
+*
+* This software is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+* Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public
+* License along with this software; if not, write to the Free
+* Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+* 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+*/
+package org.jboss.xb.binding.parser;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jboss.xb.binding.DocumentLimitExceededException;
+
+/**
+ * Limits on the size of a document being unmarshalled. The limits are checked
+ * as the document is parsed, so a document exceeding a limit fails as soon as the
+ * limit is reached and before the rest of it is read.
+ * <p>
+ * The same instance can be shared by unmarshallers in different threads.
+ * It also keeps counters of the documents, elements and characters parsed
+ * with these limits and of the documents that exceeded them, for monitoring.
+ *
+ * @version $Revision: 1.1 $
+ */
+public class DocumentLimits
+{
+   /** the value of a limit that is not checked */
+   public static final int UNLIMITED = Integer.MAX_VALUE;
+
+   /** the number of characters in one text node */
+   public static final String MAX_TEXT_LENGTH = "maxTextLength";
+   /** the nesting depth of elements */
+   public static final String MAX_DEPTH = "maxDepth";
+   /** the number of elements in a document */
+   public static final String MAX_ELEMENTS = "maxElements";
+   /** the number of attributes of one element */
+   public static final String MAX_ATTRIBUTES = "maxAttributes";
+   /** the number of characters of the text content buffered at the same time */
+   public static final String MAX_BUFFERED_CHARS = "maxBufferedChars";
+   /** the number of bytes of a document collected in memory before it's parsed, e.g. by a FeedUnmarshaller */
+   public static final String MAX_BUFFERED_BYTES = "maxBufferedBytes";
+
+   private volatile int maxTextLength = UNLIMITED;
+   private volatile int maxDepth = UNLIMITED;
+   private volatile int maxElements = UNLIMITED;
+   private volatile int maxAttributes = UNLIMITED;
+   private volatile int maxBufferedChars = UNLIMITED;
+   private volatile int maxBufferedBytes = UNLIMITED;
+
+   private final AtomicLong documents = new AtomicLong();
+   private final AtomicLong elements = new AtomicLong();
+   private final AtomicLong characters = new AtomicLong();
+   private final AtomicLong rejectedDocuments = new AtomicLong();
+
+   public int getMaxTextLength()
+   {
+      return maxTextLength;
+   }
+
+   public void setMaxTextLength(int maxTextLength)
+   {
+      this.maxTextLength = checkLimit(maxTextLength);
+   }
+
+   public int getMaxDepth()
+   {
+      return maxDepth;
+   }
+
+   public void setMaxDepth(int maxDepth)
+   {
+      this.maxDepth = checkLimit(maxDepth);
+   }
+
+   public int getMaxElements()
+   {
+      return maxElements;
+   }
+
+   public void setMaxElements(int maxElements)
+   {
+      this.maxElements = checkLimit(maxElements);
+   }
+
+   public int getMaxAttributes()
+   {
+      return maxAttributes;
+   }
+
+   public void setMaxAttributes(int maxAttributes)
+   {
+      this.maxAttributes = checkLimit(maxAttributes);
+   }
+
+   public int getMaxBufferedChars()
+   {
+      return maxBufferedChars;
+   }
+
+   public void setMaxBufferedChars(int maxBufferedChars)
+   {
+      this.maxBufferedChars = checkLimit(maxBufferedChars);
+   }
+
+   public int getMaxBufferedBytes()
+   {
+      return maxBufferedBytes;
+   }
+
+   public void setMaxBufferedBytes(int maxBufferedBytes)
+   {
+      this.maxBufferedBytes = checkLimit(maxBufferedBytes);
+   }
+
+   // Monitoring
+
+   /**
+    * @return the number of documents parsed with these limits, including the rejected ones
+    */
+   public long getDocumentCount()
+   {
+      return documents.get();
+   }
+
+   /**
+    * @return the number of elements parsed with these limits
+    */
+   public long getElementCount()
+   {
+      return elements.get();
+   }
+
+   /**
+    * @return the number of characters of text parsed with these limits
+    */
+   public long getCharacterCount()
+   {
+      return characters.get();
+   }
+
+   /**
+    * @return the number of documents that exceeded a limit
+    */
+   public long getRejectedDocumentCount()
+   {
+      return rejectedDocuments.get();
+   }
+
+   /**
+    * Adds the counts of a parsed document to the counters.
+    *
+    * @param elements  the number of elements parsed
+    * @param characters  the number of characters of text parsed
+    * @param rejected  whether the document exceeded a limit
+    */
+   public void documentParsed(long elements, long characters, boolean rejected)
+   {
+      documents.incrementAndGet();
+      this.elements.addAndGet(elements);
+      this.characters.addAndGet(characters);
+      if(rejected)
+         rejectedDocuments.incrementAndGet();
+   }
+
+   /**
+    * Creates the exception for an exceeded limit.
+    *
+    * @param limit  the name of the limit
+    * @param maxValue  the configured maximum
+    * @param location  the location in the document or the element being parsed
+    * @return  the exception to throw
+    */
+   public static DocumentLimitExceededException exceeded(String limit, long maxValue, String location)
+   {
+      return new DocumentLimitExceededException(limit, maxValue,
+            "The document exceeded " + limit + "=" + maxValue + (location == null ? "" : " at " + location));
+   }
+
+   public String toString()
+   {
+      return "[" + MAX_TEXT_LENGTH + "=" + maxTextLength +
+         ", " + MAX_DEPTH + "=" + maxDepth +
+         ", " + MAX_ELEMENTS + "=" + maxElements +
+         ", " + MAX_ATTRIBUTES + "=" + maxAttributes +
+         ", " + MAX_BUFFERED_CHARS + "=" + maxBufferedChars +
+         ", " + MAX_BUFFERED_BYTES + "=" + maxBufferedBytes + "]";
+   }
+
+   private static int checkLimit(int value)
+   {
+      if(value < 0)
+         throw new IllegalArgumentException("A limit can't be negative: " + value);
+      return value;
+   }
+}
@@ -0,0 +1,70 @@
+/*
+  * JBoss, Home of Professional Open Source
+  * Copyright 2005, JBoss Inc., and individual contributors as indicated
+  * by the @authors tag. See the copyright.txt in the distribution for a
+  * full listing of individual contributors.
+  *
+  * This is free software; you can redistribute it and/or modify it
+  * under the terms of the GNU Lesser General Public License as
+  * published by the Free Software Foundation; either version 2.1 of
+  * the License, or (at your option) any later version.
+  *
+  * This software is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+  * Lesser General Public License for more details.
+  *
+  * You should have received a copy of the GNU Lesser General Public
+  * License along with this software; if not, write to the Free
+  * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+  * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+  */
+package org.jboss.xb.binding.parser;
+
+import java.nio.ByteBuffer;
+
+import org.jboss.xb.binding.JBossXBException;
+
+/**
+ * A parser that can also be fed a document in chunks as they arrive,
+ * instead of blocking on a stream until the whole document is available.
+ * The content handler is notified of the content as soon as it's fed.
+ * 
+ * @version $Revision: 1.1 $
+ */
+public interface FeedParser extends JBossXBParser
+{
+   /**
+    * Starts a new document to be fed.
+    *
+    * @param handler  the handler to notify of the content
+    */
+   void startFeed(ContentHandler handler);
+
+   /**
+    * Feeds the next chunk of the document.
+    *
+    * @param bytes  the bytes
+    * @param offset  the offset of the chunk
+    * @param length  the length of the chunk
+    * @return true if the document has been completed
+    * @throws JBossXBException  if the document is not valid, in which case the feed is over
+    */
+   boolean feed(byte[] bytes, int offset, int length) throws JBossXBException;
+
+   /**
+    * Feeds the remaining bytes of the buffer as the next chunk of the document.
+    *
+    * @param bytes  the buffer
+    * @return true if the document has been completed
+    * @throws JBossXBException  if the document is not valid, in which case the feed is over
+    */
+   boolean feed(ByteBuffer bytes) throws JBossXBException;
+
+   /**
+    * Ends the feed. If the document has not been completed, it's discarded.
+    *
+    * @throws JBossXBException  if the document has not been completed
+    */
+   void endFeed() throws JBossXBException;
+}
@@ -60,6 +60,30 @@ public interface JBossXBParser
       public void endDTD();
    }
 
+   /**
+    * Extended to receive text that is already available as a CharSequence,
+    * e.g. the data of a DOM text node, without copying it into a char array first.
+    */
+   interface CharSequenceContentHandler extends ContentHandler
+   {
+      void characters(CharSequence text);
+   }
+
+   /**
+    * Extended to let the parser fast-forward through the content of elements
+    * the handler ignores. Right after an element has been started, the parser asks
+    * the handler whether to skip its content. If so, the parser consumes the content
+    * counting only the depth, without reporting its elements, text, namespace mappings
+    * and processing instructions. The end of the skipped element itself is reported.
+    */
+   interface SkippingContentHandler extends ContentHandler
+   {
+      /**
+       * @return  true if the content of the element started last should not be reported
+       */
+      boolean isSkipContent();
+   }
+
    /**
     * This property controls whether the (underlying) parser errors should be
     * logged as warnings or should they terminate parsing with errors.
@@ -0,0 +1,761 @@
+/*
+  * JBoss, Home of Professional Open Source
+  * Copyright 2005, JBoss Inc., and individual contributors as indicated
+  * by the @authors tag. See the copyright.txt in the distribution for a
+  * full listing of individual contributors.
+  *
+  * This is free software; you can redistribute it and/or modify it
+  * under the terms of the GNU Lesser General Public License as
+  * published by the Free Software Foundation; either version 2.1 of
+  * the License, or (at your option) any later version.
+  *
+  * This software is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+  * Lesser General Public License for more details.
+  *
+  * You should have received a copy of the GNU Lesser General Public
+  * License along with this software; if not, write to the Free
+  * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+  * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+  */
+package org.jboss.xb.binding.parser.binary;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jboss.logging.Logger;
+import org.jboss.xb.binding.DocumentLimitExceededException;
+import org.jboss.xb.binding.JBossXBException;
+import org.jboss.xb.binding.JBossXBRuntimeException;
+import org.jboss.xb.binding.parser.DocumentLimits;
+import org.jboss.xb.binding.parser.DocumentLimitsAware;
+import org.jboss.xb.binding.parser.FeedParser;
+import org.jboss.xb.binding.parser.JBossXBParser;
+import org.xml.sax.EntityResolver;
+import org.xml.sax.InputSource;
+import org.xml.sax.helpers.AttributesImpl;
+
+/**
+ * Reads documents written by BinaryXmlWriter and reports their content
+ * to the content handler as a namespace aware SAX parser would, e.g.
+ * <pre>
+ * new UnmarshallerImpl(new BinaryJBossXBParser()).unmarshal(is, schema);
+ * </pre>
+ * The values written in binary are reported in their canonical lexical form,
+ * which is the text they were written from. Binary documents are not validated,
+ * so the features, the properties and the entity resolver are ignored.
+ * The document limits are enforced like by the SAX parser.
+ * <p>
+ * Documents can also be fed in chunks as they arrive, see FeedParser. A token
+ * split between chunks is decoded once its last byte arrives, the content handler
+ * is notified of each complete token as soon as it's fed.
+ * <p>
+ * The content of elements skipped by a JBossXBParser.SkippingContentHandler is
+ * consumed without decoding the attribute values and without notifying the handler.
+ * <p>
+ * WARNING: this implementation is not thread-safe.
+ *
+ * @version $Revision: 1.1 $
+ */
+public class BinaryJBossXBParser implements FeedParser, DocumentLimitsAware
+{
+   private static final Logger log = Logger.getLogger(BinaryJBossXBParser.class);
+
+   private static final String CDATA = "CDATA";
+
+   /** thrown when a token being fed is incomplete */
+   private static final EndOfInput END_OF_INPUT = new EndOfInput();
+
+   private boolean warnOnParserErrors;
+   private DocumentLimits limits;
+
+   // the state of the document being parsed
+   private InputStream in;
+   private ContentHandler feedHandler;
+   private byte[] buf = new byte[8192];
+   private int pos;
+   private int end;
+   private long offset;
+   private boolean headerRead;
+   private int tokenStart;
+   /** the number of bytes from the start of the incomplete token fed that are known to be required to decode it */
+   private int requiredBytes;
+   private char[] chars = new char[256];
+   private int charsLength;
+   private final List<String> strings = new ArrayList<String>();
+   private final List<String[]> names = new ArrayList<String[]>();
+   private final AttributesImpl atts = new AttributesImpl();
+   private String[][] openElements = new String[16][];
+   private int depth;
+   // the depth inside the element whose content is skipped or 0 if the content is reported
+   private int skipDepth;
+
+   // the limits and the counts of the document being parsed
+   private int maxTextLength;
+   private int maxDepth;
+   private int maxElements;
+   private int maxAttributes;
+   private int elements;
+   private long textLength;
+   private long characterCount;
+
+   // JBossXBParser implementation
+
+   public void setWarnOnParserErrors(boolean value)
+   {
+      this.warnOnParserErrors = value;
+   }
+
+   public boolean getWarnOnParserErrors()
+   {
+      return warnOnParserErrors;
+   }
+
+   public void setEntityResolver(EntityResolver entityResolver) throws JBossXBException
+   {
+   }
+
+   public void setDocumentLimits(DocumentLimits limits)
+   {
+      this.limits = limits;
+   }
+
+   public DocumentLimits getDocumentLimits()
+   {
+      return limits;
+   }
+
+   public void setProperty(String name, Object value)
+   {
+      if(log.isTraceEnabled())
+         log.trace("ignored property " + name + "=" + value);
+   }
+
+   public void setFeature(String name, boolean value)
+   {
+      if(log.isTraceEnabled())
+         log.trace("ignored feature " + name + "=" + value);
+   }
+
+   public void parse(String systemId, ContentHandler handler) throws JBossXBException
+   {
+      InputStream is;
+      try
+      {
+         is = new URL(systemId).openStream();
+      }
+      catch(IOException e)
+      {
+         throw new JBossXBException("Failed to open source: " + systemId, e);
+      }
+
+      try
+      {
+         parse(is, handler);
+      }
+      finally
+      {
+         try
+         {
+            is.close();
+         }
+         catch(IOException e)
+         {
+            log.trace("Failed to close " + systemId, e);
+         }
+      }
+   }
+
+   public void parse(InputStream is, ContentHandler handler) throws JBossXBException
+   {
+      if(feedHandler != null)
+         throw new IllegalStateException("A document is being fed");
+
+      start(is);
+      Throwable error = null;
+      try
+      {
+         readHeader();
+         parseTokens(handler);
+      }
+      catch(Throwable e)
+      {
+         error = e;
+         throw new JBossXBException("Failed to parse source: " + is + " at " + getLocation(), e);
+      }
+      finally
+      {
+         end(error);
+      }
+   }
+
+   public void parse(Reader reader, ContentHandler handler) throws JBossXBException
+   {
+      throw new JBossXBException("Binary XML can't be read from a character stream");
+   }
+
+   public void parse(InputSource source, ContentHandler handler) throws JBossXBException
+   {
+      if(source.getByteStream() != null)
+         parse(source.getByteStream(), handler);
+      else if(source.getSystemId() != null)
+         parse(source.getSystemId(), handler);
+      else
+         throw new JBossXBException("Binary XML can only be read from a byte stream or a system id");
+   }
+
+   // FeedParser implementation
+
+   public void startFeed(ContentHandler handler)
+   {
+      if(handler == null)
+         throw new IllegalArgumentException("The handler is null");
+      if(feedHandler != null)
+         throw new IllegalStateException("A document is already being fed");
+
+      start(null);
+      feedHandler = handler;
+   }
+
+   public boolean feed(byte[] bytes, int offset, int length) throws JBossXBException
+   {
+      ensureFeedCapacity(length);
+      System.arraycopy(bytes, offset, buf, end, length);
+      return fed(length);
+   }
+
+   public boolean feed(ByteBuffer bytes) throws JBossXBException
+   {
+      int length = bytes.remaining();
+      ensureFeedCapacity(length);
+      bytes.get(buf, end, length);
+      return fed(length);
+   }
+
+   public void endFeed() throws JBossXBException
+   {
+      if(feedHandler == null)
+         return;
+
+      JBossXBException error = new JBossXBException("Unexpected end of document fed at " + getLocation());
+      end(error);
+      throw error;
+   }
+
+   // Private
+
+   private void start(InputStream is)
+   {
+      in = is;
+      pos = 0;
+      end = 0;
+      offset = 0;
+      headerRead = false;
+      tokenStart = 0;
+      requiredBytes = 0;
+      depth = 0;
+      skipDepth = 0;
+
+      maxTextLength = DocumentLimits.UNLIMITED;
+      maxDepth = DocumentLimits.UNLIMITED;
+      maxElements = DocumentLimits.UNLIMITED;
+      maxAttributes = DocumentLimits.UNLIMITED;
+      if(limits != null)
+      {
+         maxTextLength = limits.getMaxTextLength();
+         maxDepth = limits.getMaxDepth();
+         maxElements = limits.getMaxElements();
+         maxAttributes = limits.getMaxAttributes();
+      }
+      elements = 0;
+      textLength = 0;
+      characterCount = 0;
+   }
+
+   private void end(Throwable error)
+   {
+      if(limits != null)
+      {
+         boolean rejected = false;
+         while(error != null && !rejected)
+         {
+            rejected = error instanceof DocumentLimitExceededException;
+            error = error.getCause();
+         }
+         limits.documentParsed(elements, characterCount, rejected);
+      }
+
+      in = null;
+      feedHandler = null;
+      strings.clear();
+      names.clear();
+      atts.clear();
+      for(int i = 0; i < depth; ++i)
+         openElements[i] = null;
+   }
+
+   private void ensureFeedCapacity(int length)
+   {
+      if(feedHandler == null)
+         throw new IllegalStateException("The feed has not been started or the document has been completed");
+
+      // discard what's been decoded
+      if(pos > 0)
+      {
+         System.arraycopy(buf, pos, buf, 0, end - pos);
+         end -= pos;
+         pos = 0;
+      }
+
+      if(buf.length - end < length)
+      {
+         byte[] newBuf = new byte[Math.max(end + length, buf.length << 1)];
+         System.arraycopy(buf, 0, newBuf, 0, end);
+         buf = newBuf;
+      }
+   }
+
+   /**
+    * Decodes the tokens completed by the bytes fed.
+    *
+    * @return true if the document has been completed
+    */
+   private boolean fed(int length) throws JBossXBException
+   {
+      end += length;
+      offset += length;
+      if(end - pos < requiredBytes)
+         return false;
+
+      Throwable error = null;
+      try
+      {
+         if(!headerRead)
+         {
+            if(end - pos < BinaryXml.MAGIC.length + 1)
+               return false;
+            readHeader();
+         }
+
+         if(!parseTokens(feedHandler))
+            return false;
+      }
+      catch(Throwable e)
+      {
+         error = e;
+         throw new JBossXBException("Failed to parse the document fed at " + getLocation(), e);
+      }
+      finally
+      {
+         if(error != null)
+            end(error);
+      }
+
+      end(null);
+      return true;
+   }
+
+   private void readHeader() throws IOException
+   {
+      for(int i = 0; i < BinaryXml.MAGIC.length; ++i)
+      {
+         if(read() != (BinaryXml.MAGIC[i] & 0xFF))
+            throw new JBossXBRuntimeException("Not a binary XML document");
+      }
+      int version = read();
+      if(version != BinaryXml.VERSION)
+         throw new JBossXBRuntimeException("Unsupported binary XML version " + version);
+      headerRead = true;
+   }
+
+   /**
+    * Decodes tokens and notifies the handler until the end of the document
+    * or, if the document is being fed, the end of the bytes fed so far.
+    * Each token is decoded completely before the handler is notified.
+    *
+    * @return true if the end of the document has been reached, false if the bytes fed so far have been decoded
+    */
+   private boolean parseTokens(ContentHandler handler) throws IOException
+   {
+      while(true)
+      {
+         tokenStart = pos;
+         requiredBytes = 0;
+         int stringsTotal = strings.size();
+         int namesTotal = names.size();
+         try
+         {
+            if(parseToken(handler))
+               return true;
+         }
+         catch(EndOfInput e)
+         {
+            // wait for the rest of the token
+            pos = tokenStart;
+            while(strings.size() > stringsTotal)
+               strings.remove(strings.size() - 1);
+            while(names.size() > namesTotal)
+               names.remove(names.size() - 1);
+            return false;
+         }
+      }
+   }
+
+   /**
+    * @return true if the token is the end of the document
+    */
+   private boolean parseToken(ContentHandler handler) throws IOException
+   {
+      int token = read();
+      switch(token)
+      {
+         case BinaryXml.START_ELEMENT:
+         {
+            String[] name = readName();
+            int attsTotal = readInt();
+            if(skipDepth > 0)
+            {
+               for(int i = 0; i < attsTotal; ++i)
+               {
+                  // the names are read to keep the table complete
+                  readName();
+                  skipValue();
+               }
+            }
+            else
+            {
+               atts.clear();
+               for(int i = 0; i < attsTotal; ++i)
+               {
+                  String[] attName = readName();
+                  readValue();
+                  atts.addAttribute(attName[0], attName[1], attName[2], CDATA, new String(chars, 0, charsLength));
+               }
+            }
+
+            textLength = 0;
+            if(++elements > maxElements)
+               throw DocumentLimits.exceeded(DocumentLimits.MAX_ELEMENTS, maxElements, getLocation());
+            if(depth + 1 > maxDepth)
+               throw DocumentLimits.exceeded(DocumentLimits.MAX_DEPTH, maxDepth, getLocation());
+            if(attsTotal > maxAttributes)
+               throw DocumentLimits.exceeded(DocumentLimits.MAX_ATTRIBUTES, maxAttributes, name[2] + " " + getLocation());
+
+            if(depth == openElements.length)
+            {
+               String[][] newOpenElements = new String[depth << 1][];
+               System.arraycopy(openElements, 0, newOpenElements, 0, depth);
+               openElements = newOpenElements;
+            }
+            openElements[depth++] = name;
+            if(skipDepth > 0)
+            {
+               ++skipDepth;
+               return false;
+            }
+
+            handler.startElement(name[0], name[1], name[2], atts);
+            if(handler instanceof JBossXBParser.SkippingContentHandler && ((JBossXBParser.SkippingContentHandler) handler).isSkipContent())
+               skipDepth = 1;
+            return false;
+         }
+         case BinaryXml.END_ELEMENT:
+         {
+            if(depth == 0)
+               throw new JBossXBRuntimeException("Unexpected end of element at " + getLocation());
+            String[] name = openElements[--depth];
+            openElements[depth] = null;
+            textLength = 0;
+            // only the end of the skipped element itself is reported
+            if(skipDepth > 0 && --skipDepth > 0)
+               return false;
+            handler.endElement(name[0], name[1], name[2]);
+            return false;
+         }
+         case BinaryXml.CHARACTERS:
+            readValue();
+            characterCount += charsLength;
+            textLength += charsLength;
+            if(textLength > maxTextLength)
+               throw DocumentLimits.exceeded(DocumentLimits.MAX_TEXT_LENGTH, maxTextLength, getLocation());
+            if(skipDepth == 0)
+               handler.characters(chars, 0, charsLength);
+            return false;
+         case BinaryXml.START_PREFIX_MAPPING:
+         {
+            String prefix = readIndexed();
+            String uri = readIndexed();
+            if(skipDepth == 0)
+               handler.startPrefixMapping(prefix, uri);
+            return false;
+         }
+         case BinaryXml.END_PREFIX_MAPPING:
+         {
+            String prefix = readIndexed();
+            if(skipDepth == 0)
+               handler.endPrefixMapping(prefix);
+            return false;
+         }
+         case BinaryXml.PROCESSING_INSTRUCTION:
+         {
+            String target = readString();
+            String data = readString();
+            if(skipDepth == 0)
+               handler.processingInstruction(target, data);
+            return false;
+         }
+         case BinaryXml.END_DOCUMENT:
+            if(depth != 0)
+               throw new JBossXBRuntimeException("Unexpected end of document at " + getLocation() + ", unclosed element " + openElements[depth - 1][2]);
+            return true;
+         default:
+            throw new JBossXBRuntimeException("Unexpected token " + token + " at " + getLocation());
+      }
+   }
+
+   private String getLocation()
+   {
+      return "byte " + (offset - end + pos);
+   }
+
+   private String[] readName() throws IOException
+   {
+      int index = readInt();
+      if(index > 0)
+      {
+         if(index > names.size())
+            throw new JBossXBRuntimeException("Unknown name index " + index + " at " + getLocation());
+         return names.get(index - 1);
+      }
+
+      String uri = readIndexed();
+      String localName = readString();
+      String qName = readString();
+      String[] name = new String[]{uri, localName, qName};
+      names.add(name);
+      return name;
+   }
+
+   private String readIndexed() throws IOException
+   {
+      int index = readInt();
+      if(index > 0)
+      {
+         if(index > strings.size())
+            throw new JBossXBRuntimeException("Unknown string index " + index + " at " + getLocation());
+         return strings.get(index - 1);
+      }
+
+      String str = readString();
+      strings.add(str);
+      return str;
+   }
+
+   private String readString() throws IOException
+   {
+      if(!readChars())
+         return null;
+      return new String(chars, 0, charsLength);
+   }
+
+   /**
+    * Reads a value into the chars buffer.
+    */
+   private void readValue() throws IOException
+   {
+      int type = read();
+      String value;
+      switch(type)
+      {
+         case BinaryXml.VALUE_STRING:
+            if(!readChars())
+               throw new JBossXBRuntimeException("Unexpected null value at " + getLocation());
+            return;
+         case BinaryXml.VALUE_TRUE:
+            value = "true";
+            break;
+         case BinaryXml.VALUE_FALSE:
+            value = "false";
+            break;
+         case BinaryXml.VALUE_INT:
+            int i = readInt();
+            value = Integer.toString((i >>> 1) ^ -(i & 1));
+            break;
+         case BinaryXml.VALUE_LONG:
+            long l = readLong();
+            value = Long.toString((l >>> 1) ^ -(l & 1));
+            break;
+         case BinaryXml.VALUE_FLOAT:
+            value = Float.toString(Float.intBitsToFloat((int)readFixed(4)));
+            break;
+         case BinaryXml.VALUE_DOUBLE:
+            value = Double.toString(Double.longBitsToDouble(readFixed(8)));
+            break;
+         default:
+            throw new JBossXBRuntimeException("Unexpected value type " + type + " at " + getLocation());
+      }
+
+      charsLength = value.length();
+      value.getChars(0, charsLength, chars, 0);
+   }
+
+   /**
+    * Consumes a value without decoding it.
+    */
+   private void skipValue() throws IOException
+   {
+      int type = read();
+      switch(type)
+      {
+         case BinaryXml.VALUE_STRING:
+            int length = readLength();
+            if(length < 0)
+               throw new JBossXBRuntimeException("Unexpected null value at " + getLocation());
+            for(int i = 0; i < length; ++i)
+               readInt();
+            break;
+         case BinaryXml.VALUE_TRUE:
+         case BinaryXml.VALUE_FALSE:
+            break;
+         case BinaryXml.VALUE_INT:
+            readInt();
+            break;
+         case BinaryXml.VALUE_LONG:
+            readLong();
+            break;
+         case BinaryXml.VALUE_FLOAT:
+            readFixed(4);
+            break;
+         case BinaryXml.VALUE_DOUBLE:
+            readFixed(8);
+            break;
+         default:
+            throw new JBossXBRuntimeException("Unexpected value type " + type + " at " + getLocation());
+      }
+   }
+
+   /**
+    * Reads a string into the chars buffer.
+    *
+    * @return  false if the string is null
+    */
+   private boolean readChars() throws IOException
+   {
+      int length = readLength();
+      if(length < 0)
+         return false;
+
+      // the bytes left in a stream are not known, so the buffer is sized
+      // by the bytes read, not by the length declared
+      int capacity = in == null ? length : Math.min(length, end - pos);
+      if(capacity > chars.length)
+         chars = new char[Math.max(capacity, chars.length << 1)];
+      for(int i = 0; i < length; ++i)
+      {
+         if(i == chars.length)
+         {
+            char[] newChars = new char[Math.min(length, i << 1)];
+            System.arraycopy(chars, 0, newChars, 0, i);
+            chars = newChars;
+         }
+         chars[i] = (char)readInt();
+      }
+      charsLength = length;
+      return true;
+   }
+
+   /**
+    * Reads the length of a string and checks it before the string is read.
+    * A length above maxTextLength is rejected. If the document is being fed,
+    * the token is not decoded until the bytes for the declared length have arrived,
+    * each character taking at least a byte.
+    *
+    * @return  the length or -1 if the string is null
+    */
+   private int readLength() throws IOException
+   {
+      int length = readInt() - 1;
+      if(length < -1)
+         throw new JBossXBRuntimeException("Malformed string length at " + getLocation());
+      if(length > maxTextLength)
+         throw DocumentLimits.exceeded(DocumentLimits.MAX_TEXT_LENGTH, maxTextLength, getLocation());
+
+      if(in == null && end - pos < length)
+      {
+         long required = (long)(pos - tokenStart) + length;
+         if(required > Integer.MAX_VALUE)
+            throw new JBossXBRuntimeException("Malformed string length " + length + " at " + getLocation());
+         requiredBytes = (int)required;
+         throw END_OF_INPUT;
+      }
+      return length;
+   }
+
+   private int readInt() throws IOException
+   {
+      int value = 0;
+      for(int shift = 0; shift < 35; shift += 7)
+      {
+         int b = read();
+         value |= (b & 0x7F) << shift;
+         if((b & 0x80) == 0)
+            return value;
+      }
+      throw new JBossXBRuntimeException("Malformed integer at " + getLocation());
+   }
+
+   private long readLong() throws IOException
+   {
+      long value = 0;
+      for(int shift = 0; shift < 70; shift += 7)
+      {
+         int b = read();
+         value |= (long)(b & 0x7F) << shift;
+         if((b & 0x80) == 0)
+            return value;
+      }
+      throw new JBossXBRuntimeException("Malformed long at " + getLocation());
+   }
+
+   private long readFixed(int bytes) throws IOException
+   {
+      long value = 0;
+      for(int i = 0; i < bytes; ++i)
+         value = (value << 8) | read();
+      return value;
+   }
+
+   private int read() throws IOException
+   {
+      if(pos == end)
+      {
+         if(in == null)
+            throw END_OF_INPUT;
+         end = in.read(buf, 0, buf.length);
+         if(end <= 0)
+         {
+            end = pos = 0;
+            throw new JBossXBRuntimeException("Unexpected end of stream at " + getLocation());
+         }
+         offset += end;
+         pos = 0;
+      }
+      return buf[pos++] & 0xFF;
+   }
+
+   private static final class EndOfInput extends RuntimeException
+   {
+      private static final long serialVersionUID = 1L;
+
+      public Throwable fillInStackTrace()
+      {
+         return this;
+      }
+   }
+}
@@ -0,0 +1,79 @@
+/*
+  * JBoss, Home of Professional Open Source
+  * Copyright 2005, JBoss Inc., and individual contributors as indicated
+  * by the @authors tag. See the copyright.txt in the distribution for a
+  * full listing of individual contributors.
+  *
+  * This is free software; you can redistribute it and/or modify it
+  * under the terms of the GNU Lesser General Public License as
+  * published by the Free Software Foundation; either version 2.1 of
+  * the License, or (at your option) any later version.
+  *
+  * This software is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+  * Lesser General Public License for more details.
+  *
+  * You should have received a copy of the GNU Lesser General Public
+  * License along with this software; if not, write to the Free
+  * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+  * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+  */
+package org.jboss.xb.binding.parser.binary;
+
+/**
+ * The constants of the binary XML encoding shared by BinaryXmlWriter and BinaryJBossXBParser.
+ * <p>
+ * A document starts with the MAGIC bytes followed by the VERSION byte and continues
+ * with a sequence of tokens terminated by END_DOCUMENT. All the integers are written
+ * as unsigned variable length integers, seven bits per byte, the least significant
+ * group first.
+ * <ul>
+ * <li>A string is written as its length plus one (zero stands for null) followed by its
+ * characters, each written as an integer. Nothing is escaped.</li>
+ * <li>Namespace URIs and prefixes are indexed: the first occurrence is written as zero
+ * followed by the string, the next ones as the index assigned to the string (starting with one).</li>
+ * <li>Element and attribute names are indexed in the same way, a new name is written
+ * as its indexed namespace URI, its local name and its qualified name.</li>
+ * <li>A value starts with one of the VALUE_* codes, followed by the string
+ * or the binary representation of the value.</li>
+ * </ul>
+ * 
+ * @version $Revision: 1.1 $
+ */
+final class BinaryXml
+{
+   static final byte[] MAGIC = {'J', 'B', 'X', 'B'};
+   static final int VERSION = 1;
+
+   // tokens
+   static final int END_DOCUMENT = 0;
+   // name, the number of attributes, attribute names and values
+   static final int START_ELEMENT = 1;
+   static final int END_ELEMENT = 2;
+   // value
+   static final int CHARACTERS = 3;
+   // indexed prefix, indexed namespace URI
+   static final int START_PREFIX_MAPPING = 4;
+   // indexed prefix
+   static final int END_PREFIX_MAPPING = 5;
+   // target string, data string
+   static final int PROCESSING_INSTRUCTION = 6;
+
+   // values
+   static final int VALUE_STRING = 0;
+   static final int VALUE_TRUE = 1;
+   static final int VALUE_FALSE = 2;
+   // zig-zag encoded integer
+   static final int VALUE_INT = 3;
+   // zig-zag encoded long
+   static final int VALUE_LONG = 4;
+   // the four bytes of Float.floatToIntBits(), the most significant first
+   static final int VALUE_FLOAT = 5;
+   // the eight bytes of Double.doubleToLongBits(), the most significant first
+   static final int VALUE_DOUBLE = 6;
+
+   private BinaryXml()
+   {
+   }
+}
@@ -0,0 +1,555 @@
+/*
+  * JBoss, Home of Professional Open Source
+  * Copyright 2005, JBoss Inc., and individual contributors as indicated
+  * by the @authors tag. See the copyright.txt in the distribution for a
+  * full listing of individual contributors.
+  *
+  * This is free software; you can redistribute it and/or modify it
+  * under the terms of the GNU Lesser General Public License as
+  * published by the Free Software Foundation; either version 2.1 of
+  * the License, or (at your option) any later version.
+  *
+  * This software is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+  * Lesser General Public License for more details.
+  *
+  * You should have received a copy of the GNU Lesser General Public
+  * License along with this software; if not, write to the Free
+  * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+  * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+  */
+package org.jboss.xb.binding.parser.binary;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.namespace.QName;
+
+import org.jboss.xb.binding.Constants;
+import org.jboss.xb.binding.SimpleTypeBindings;
+import org.jboss.xb.binding.sunday.unmarshalling.AttributeBinding;
+import org.jboss.xb.binding.sunday.unmarshalling.ElementBinding;
+import org.jboss.xb.binding.sunday.unmarshalling.SchemaBinding;
+import org.jboss.xb.binding.sunday.unmarshalling.TypeBinding;
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+
+/**
+ * Writes the SAX events it receives in the binary XML encoding read by BinaryJBossXBParser.
+ * It is meant for the traffic between two ends that both use JBossXB, e.g.
+ * <pre>
+ * marshaller.marshal(schema, null, root, new BinaryXmlWriter(os, schema));
+ * ...
+ * new UnmarshallerImpl(new BinaryJBossXBParser()).unmarshal(is, schema);
+ * </pre>
+ * Element and attribute names, namespace URIs and prefixes are written once and referenced
+ * by their index afterwards. Text is written without escaping. The values of elements and
+ * attributes the schema binds to the boolean, integer and floating point built-in types
+ * are written in binary as long as the text read back is exactly the text written.
+ * Other values, and all values when the schema binding is not available, are written as strings.
+ * <p>
+ * The namespace declarations among the attributes (xmlns and xmlns:prefix) are written
+ * as prefix mappings, as they would be reported by a namespace aware SAX parser.
+ * <p>
+ * WARNING: this implementation is not thread-safe.
+ *
+ * @version $Revision: 1.1 $
+ */
+public class BinaryXmlWriter implements ContentHandler
+{
+   private static final int KIND_STRING = 0;
+   private static final int KIND_BOOLEAN = 1;
+   private static final int KIND_INT = 2;
+   private static final int KIND_LONG = 3;
+   private static final int KIND_FLOAT = 4;
+   private static final int KIND_DOUBLE = 5;
+
+   /** the kinds of values of the built-in types that are written in binary */
+   private static final Map<String, Integer> BUILTIN_KINDS = new HashMap<String, Integer>();
+   static
+   {
+      BUILTIN_KINDS.put(SimpleTypeBindings.XS_BOOLEAN_NAME, KIND_BOOLEAN);
+      BUILTIN_KINDS.put(SimpleTypeBindings.XS_INT_NAME, KIND_INT);
+      BUILTIN_KINDS.put(SimpleTypeBindings.XS_SHORT_NAME, KIND_INT);
+      BUILTIN_KINDS.put(SimpleTypeBindings.XS_BYTE_NAME, KIND_INT);
+      BUILTIN_KINDS.put(SimpleTypeBindings.XS_UNSIGNEDSHORT_NAME, KIND_INT);
+      BUILTIN_KINDS.put(SimpleTypeBindings.XS_UNSIGNEDBYTE_NAME, KIND_INT);
+      BUILTIN_KINDS.put(SimpleTypeBindings.XS_LONG_NAME, KIND_LONG);
+      BUILTIN_KINDS.put(SimpleTypeBindings.XS_UNSIGNEDINT_NAME, KIND_LONG);
+      BUILTIN_KINDS.put(SimpleTypeBindings.XS_UNSIGNEDLONG_NAME, KIND_LONG);
+      BUILTIN_KINDS.put(SimpleTypeBindings.XS_INTEGER_NAME, KIND_LONG);
+      BUILTIN_KINDS.put(SimpleTypeBindings.XS_NONPOSITIVEINTEGER_NAME, KIND_LONG);
+      BUILTIN_KINDS.put(SimpleTypeBindings.XS_NEGATIVEINTEGER_NAME, KIND_LONG);
+      BUILTIN_KINDS.put(SimpleTypeBindings.XS_NONNEGATIVEINTEGER_NAME, KIND_LONG);
+      BUILTIN_KINDS.put(SimpleTypeBindings.XS_POSITIVEINTEGER_NAME, KIND_LONG);
+      BUILTIN_KINDS.put(SimpleTypeBindings.XS_FLOAT_NAME, KIND_FLOAT);
+      BUILTIN_KINDS.put(SimpleTypeBindings.XS_DOUBLE_NAME, KIND_DOUBLE);
+   }
+
+   private final OutputStream out;
+   private final SchemaBinding schema;
+
+   private final byte[] buf = new byte[8192];
+   private int pos;
+
+   private final Map<String, Integer> strings = new HashMap<String, Integer>();
+   private final Map<Name, Integer> names = new HashMap<Name, Integer>();
+   private final Name lookupName = new Name();
+
+   /** the kinds of values of the types seen so far */
+   private final Map<TypeBinding, Integer> kinds = new IdentityHashMap<TypeBinding, Integer>();
+   /** the types of the open elements, null if the type is unknown */
+   private TypeBinding[] types = new TypeBinding[16];
+   /** the number of prefixes declared with attributes before each open element was started */
+   private int[] declaredMarks = new int[16];
+   private int depth;
+
+   /** the prefixes declared with attributes of the open elements */
+   private final List<String> declaredPrefixes = new ArrayList<String>();
+   /** the prefixes mapped with startPrefixMapping() for the next element */
+   private final List<String> mappedPrefixes = new ArrayList<String>();
+
+   private final StringBuilder text = new StringBuilder();
+
+   /**
+    * @param out  the stream to write to, it is flushed but not closed at the end of the document
+    * @param schema  the schema binding of the content or null, in which case all the values are written as strings
+    */
+   public BinaryXmlWriter(OutputStream out, SchemaBinding schema)
+   {
+      if(out == null)
+         throw new IllegalArgumentException("The output stream is null");
+      this.out = out;
+      this.schema = schema;
+   }
+
+   /**
+    * @return  the number of characters of the current character content that haven't been written yet
+    */
+   public int getBufferedTextLength()
+   {
+      return text.length();
+   }
+
+   // ContentHandler implementation
+
+   public void setDocumentLocator(Locator locator)
+   {
+   }
+
+   public void startDocument() throws SAXException
+   {
+      for(int i = 0; i < BinaryXml.MAGIC.length; ++i)
+         write(BinaryXml.MAGIC[i]);
+      write(BinaryXml.VERSION);
+   }
+
+   public void endDocument() throws SAXException
+   {
+      flushText();
+      write(BinaryXml.END_DOCUMENT);
+      flushBuffer();
+      try
+      {
+         out.flush();
+      }
+      catch(IOException e)
+      {
+         throw new SAXException("Failed to flush the output stream", e);
+      }
+   }
+
+   public void startPrefixMapping(String prefix, String uri) throws SAXException
+   {
+      flushText();
+      write(BinaryXml.START_PREFIX_MAPPING);
+      writeIndexed(prefix);
+      writeIndexed(uri);
+      mappedPrefixes.add(prefix);
+   }
+
+   public void endPrefixMapping(String prefix) throws SAXException
+   {
+      flushText();
+      write(BinaryXml.END_PREFIX_MAPPING);
+      writeIndexed(prefix);
+   }
+
+   public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException
+   {
+      flushText();
+
+      TypeBinding type = null;
+      if(schema != null && (depth == 0 || types[depth - 1] != null))
+      {
+         QName name = new QName(uri == null ? "" : uri, localName);
+         ElementBinding element = depth == 0 ? schema.getElement(name) : types[depth - 1].getElement(name);
+         if(element != null)
+            type = element.getType();
+      }
+
+      int declaredMark = declaredPrefixes.size();
+      int attsTotal = 0;
+      for(int i = 0; i < atts.getLength(); ++i)
+      {
+         String prefix = getDeclaredPrefix(atts.getQName(i));
+         if(prefix == null)
+         {
+            // the actual type can't be resolved here since the prefix mappings are not tracked
+            if(Constants.NS_XML_SCHEMA_INSTANCE.equals(atts.getURI(i)) && "type".equals(atts.getLocalName(i)))
+               type = null;
+            ++attsTotal;
+         }
+         else if(!mappedPrefixes.contains(prefix))
+         {
+            write(BinaryXml.START_PREFIX_MAPPING);
+            writeIndexed(prefix);
+            writeIndexed(atts.getValue(i));
+            declaredPrefixes.add(prefix);
+         }
+      }
+      mappedPrefixes.clear();
+
+      if(depth == types.length)
+      {
+         TypeBinding[] newTypes = new TypeBinding[depth << 1];
+         System.arraycopy(types, 0, newTypes, 0, depth);
+         types = newTypes;
+         int[] newMarks = new int[depth << 1];
+         System.arraycopy(declaredMarks, 0, newMarks, 0, depth);
+         declaredMarks = newMarks;
+      }
+      types[depth] = type;
+      declaredMarks[depth++] = declaredMark;
+
+      write(BinaryXml.START_ELEMENT);
+      writeName(uri, localName, qName);
+      writeInt(attsTotal);
+      for(int i = 0; i < atts.getLength(); ++i)
+      {
+         String attQName = atts.getQName(i);
+         if(getDeclaredPrefix(attQName) != null)
+            continue;
+
+         String attUri = atts.getURI(i);
+         String attLocal = atts.getLocalName(i);
+         writeName(attUri, attLocal, attQName);
+
+         TypeBinding attType = null;
+         if(type != null)
+         {
+            AttributeBinding attr = type.getAttribute(new QName(attUri == null ? "" : attUri, attLocal));
+            if(attr != null)
+               attType = attr.getType();
+         }
+         writeValue(atts.getValue(i), attType);
+      }
+   }
+
+   public void endElement(String uri, String localName, String qName) throws SAXException
+   {
+      flushText();
+      write(BinaryXml.END_ELEMENT);
+
+      int declaredMark = declaredMarks[--depth];
+      types[depth] = null;
+      for(int i = declaredPrefixes.size() - 1; i >= declaredMark; --i)
+      {
+         write(BinaryXml.END_PREFIX_MAPPING);
+         writeIndexed(declaredPrefixes.remove(i));
+      }
+   }
+
+   public void characters(char[] ch, int start, int length) throws SAXException
+   {
+      text.append(ch, start, length);
+   }
+
+   /**
+    * Appends text to the current character content.
+    *
+    * @param text  the text
+    */
+   public void characters(CharSequence text)
+   {
+      this.text.append(text);
+   }
+
+   public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException
+   {
+      text.append(ch, start, length);
+   }
+
+   public void processingInstruction(String target, String data) throws SAXException
+   {
+      flushText();
+      write(BinaryXml.PROCESSING_INSTRUCTION);
+      writeString(target);
+      writeString(data);
+   }
+
+   public void skippedEntity(String name) throws SAXException
+   {
+   }
+
+   // Private
+
+   private static String getDeclaredPrefix(String attQName)
+   {
+      if(attQName == null || !attQName.startsWith("xmlns"))
+         return null;
+      if(attQName.length() == 5)
+         return "";
+      return attQName.charAt(5) == ':' ? attQName.substring(6) : null;
+   }
+
+   private void flushText() throws SAXException
+   {
+      if(text.length() == 0)
+         return;
+
+      write(BinaryXml.CHARACTERS);
+      writeValue(text, depth == 0 ? null : types[depth - 1]);
+      text.setLength(0);
+   }
+
+   private void writeValue(CharSequence value, TypeBinding type) throws SAXException
+   {
+      int kind = getKind(type);
+      if(kind != KIND_STRING)
+      {
+         String str = value.toString();
+         try
+         {
+            switch(kind)
+            {
+               case KIND_BOOLEAN:
+                  if("true".equals(str))
+                  {
+                     write(BinaryXml.VALUE_TRUE);
+                     return;
+                  }
+                  if("false".equals(str))
+                  {
+                     write(BinaryXml.VALUE_FALSE);
+                     return;
+                  }
+                  break;
+               case KIND_INT:
+                  int i = Integer.parseInt(str);
+                  if(Integer.toString(i).equals(str))
+                  {
+                     write(BinaryXml.VALUE_INT);
+                     writeInt((i << 1) ^ (i >> 31));
+                     return;
+                  }
+                  break;
+               case KIND_LONG:
+                  long l = Long.parseLong(str);
+                  if(Long.toString(l).equals(str))
+                  {
+                     write(BinaryXml.VALUE_LONG);
+                     writeLong((l << 1) ^ (l >> 63));
+                     return;
+                  }
+                  break;
+               case KIND_FLOAT:
+                  float f = Float.parseFloat(str);
+                  if(Float.toString(f).equals(str))
+                  {
+                     write(BinaryXml.VALUE_FLOAT);
+                     writeFixed(Float.floatToIntBits(f), 4);
+                     return;
+                  }
+                  break;
+               case KIND_DOUBLE:
+                  double d = Double.parseDouble(str);
+                  if(Double.toString(d).equals(str))
+                  {
+                     write(BinaryXml.VALUE_DOUBLE);
+                     writeFixed(Double.doubleToLongBits(d), 8);
+                     return;
+                  }
+                  break;
+               default:
+            }
+         }
+         catch(NumberFormatException e)
+         {
+            // not in the canonical form, written as a string
+         }
+      }
+
+      write(BinaryXml.VALUE_STRING);
+      writeString(value);
+   }
+
+   private int getKind(TypeBinding type)
+   {
+      if(type == null)
+         return KIND_STRING;
+
+      Integer kind = kinds.get(type);
+      if(kind == null)
+      {
+         kind = KIND_STRING;
+         TypeBinding t = type;
+         while(t != null && t.getItemType() == null)
+         {
+            QName typeName = t.getQName();
+            if(typeName != null && Constants.NS_XML_SCHEMA.equals(typeName.getNamespaceURI()))
+            {
+               Integer builtinKind = BUILTIN_KINDS.get(typeName.getLocalPart());
+               if(builtinKind != null)
+                  kind = builtinKind;
+               break;
+            }
+
+            TypeBinding baseType = t.getBaseType();
+            t = baseType == t ? null : baseType;
+         }
+         kinds.put(type, kind);
+      }
+      return kind;
+   }
+
+   private void writeName(String uri, String localName, String qName) throws SAXException
+   {
+      lookupName.set(uri, localName, qName);
+      Integer index = names.get(lookupName);
+      if(index != null)
+      {
+         writeInt(index);
+         return;
+      }
+
+      Name name = new Name();
+      name.set(uri, localName, qName);
+      names.put(name, names.size() + 1);
+
+      writeInt(0);
+      writeIndexed(uri);
+      writeString(localName);
+      writeString(qName);
+   }
+
+   private void writeIndexed(String str) throws SAXException
+   {
+      Integer index = strings.get(str);
+      if(index != null)
+      {
+         writeInt(index);
+         return;
+      }
+
+      strings.put(str, strings.size() + 1);
+      writeInt(0);
+      writeString(str);
+   }
+
+   private void writeString(CharSequence str) throws SAXException
+   {
+      if(str == null)
+      {
+         writeInt(0);
+         return;
+      }
+
+      int length = str.length();
+      writeInt(length + 1);
+      for(int i = 0; i < length; ++i)
+         writeInt(str.charAt(i));
+   }
+
+   private void writeInt(int value) throws SAXException
+   {
+      while((value & ~0x7F) != 0)
+      {
+         write((value & 0x7F) | 0x80);
+         value >>>= 7;
+      }
+      write(value);
+   }
+
+   private void writeLong(long value) throws SAXException
+   {
+      while((value & ~0x7FL) != 0)
+      {
+         write(((int)value & 0x7F) | 0x80);
+         value >>>= 7;
+      }
+      write((int)value);
+   }
+
+   private void writeFixed(long value, int bytes) throws SAXException
+   {
+      for(int shift = (bytes - 1) << 3; shift >= 0; shift -= 8)
+         write((int)(value >>> shift));
+   }
+
+   private void write(int b) throws SAXException
+   {
+      if(pos == buf.length)
+         flushBuffer();
+      buf[pos++] = (byte)b;
+   }
+
+   private void flushBuffer() throws SAXException
+   {
+      try
+      {
+         out.write(buf, 0, pos);
+      }
+      catch(IOException e)
+      {
+         throw new SAXException("Failed to write to the output stream", e);
+      }
+      pos = 0;
+   }
+
+   private static final class Name
+   {
+      private String uri;
+      private String localName;
+      private String qName;
+      private int hash;
+
+      void set(String uri, String localName, String qName)
+      {
+         this.uri = uri;
+         this.localName = localName;
+         this.qName = qName;
+         int h = localName == null ? 0 : localName.hashCode();
+         h = 31 * h + (uri == null ? 0 : uri.hashCode());
+         hash = 31 * h + (qName == null ? 0 : qName.hashCode());
+      }
+
+      public int hashCode()
+      {
+         return hash;
+      }
+
+      public boolean equals(Object o)
+      {
+         if(o == this)
+            return true;
+         if(!(o instanceof Name))
+            return false;
+         Name other = (Name)o;
+         return hash == other.hash && equal(localName, other.localName) && equal(uri, other.uri) && equal(qName, other.qName);
+      }
+
+      private static boolean equal(String s1, String s2)
+      {
+         return s1 == null ? s2 == null : s1.equals(s2);
+      }
+   }
+}
@@ -30,8 +30,11 @@ import javax.xml.parsers.SAXParserFactory;
 import org.jboss.logging.Logger;
 import org.jboss.util.JBossStringBuilder;
 import org.jboss.util.xml.JBossEntityResolver;
+import org.jboss.xb.binding.DocumentLimitExceededException;
 import org.jboss.xb.binding.JBossXBException;
 import org.jboss.xb.binding.JBossXBRuntimeException;
+import org.jboss.xb.binding.parser.DocumentLimits;
+import org.jboss.xb.binding.parser.DocumentLimitsAware;
 import org.jboss.xb.binding.parser.JBossXBParser;
 import org.xml.sax.Attributes;
 import org.xml.sax.EntityResolver;
@@ -46,7 +49,7 @@ import org.xml.sax.XMLReader;
  * @author <a href="mailto:alex@jboss.org">Alexey Loubyansky</a>
  * @version <tt>$Revision$</tt>
  */
-public class SaxJBossXBParser implements JBossXBParser, org.xml.sax.ContentHandler, org.xml.sax.ext.LexicalHandler, ErrorHandler
+public class SaxJBossXBParser implements DocumentLimitsAware, org.xml.sax.ContentHandler, org.xml.sax.ext.LexicalHandler, ErrorHandler
 {
    private static final Logger log = Logger.getLogger("org.jboss.xb.binding.parser.sax.SaxJBossXBParser");
 
@@ -69,9 +72,23 @@ public class SaxJBossXBParser implements JBossXBParser, org.xml.sax.ContentHandl
    private final SAXParser parser;
    private final XMLReader reader;
    private JBossXBParser.ContentHandler contentHandler;
+   private JBossXBParser.SkippingContentHandler skippingHandler;
+   // the depth inside the element whose content is skipped or 0 if the content is reported
+   private int skipDepth;
    private boolean trace;
    private boolean warnOnParserErrors;
 
+   private DocumentLimits limits;
+   // the limits and the counts of the document being parsed, maintained only when there are limits
+   private int maxTextLength;
+   private int maxDepth;
+   private int maxElements;
+   private int maxAttributes;
+   private int depth;
+   private int elements;
+   private long textLength;
+   private long characterCount;
+
    public SaxJBossXBParser()
       throws JBossXBException
    {
@@ -146,6 +163,16 @@ public class SaxJBossXBParser implements JBossXBParser, org.xml.sax.ContentHandl
       reader.setEntityResolver(entityResolver);
    }
 
+   public void setDocumentLimits(DocumentLimits limits)
+   {
+      this.limits = limits;
+   }
+
+   public DocumentLimits getDocumentLimits()
+   {
+      return limits;
+   }
+
    public void setProperty(String name, Object value)
    {
       try
@@ -174,18 +201,27 @@ public class SaxJBossXBParser implements JBossXBParser, org.xml.sax.ContentHandl
 
    public void parse(String systemId, ContentHandler handler) throws JBossXBException
    {
-      this.contentHandler = handler;
+      setContentHandler(handler);
       if(trace)
          logParserInfo();
       
+      startCounting();
+      Throwable error = null;
       try
       {
          reader.parse(systemId);
       }
       catch(Throwable e)
       {
+         error = e;
          throw new JBossXBException("Failed to parse source: " + getLocationAsString(systemId), e);
       }
+      finally
+      {
+         endCounting(error);
+         // don't keep the handler and the object graph it built reachable
+         setContentHandler(null);
+      }
    }
 
    public void parse(InputStream is, ContentHandler handler) throws JBossXBException
@@ -200,16 +236,19 @@ public class SaxJBossXBParser implements JBossXBParser, org.xml.sax.ContentHandl
 
    public void parse(InputSource source, ContentHandler handler) throws JBossXBException
    {
-      this.contentHandler = handler;
+      setContentHandler(handler);
       if(trace)
          logParserInfo();
 
+      startCounting();
+      Throwable error = null;
       try
       {
          reader.parse(source);
       }
       catch(Throwable e)
       {
+         error = e;
          String str;
          if(locator != null)
             str = getLocationAsString(null);
@@ -223,6 +262,12 @@ public class SaxJBossXBParser implements JBossXBParser, org.xml.sax.ContentHandl
             str = "";
          throw new JBossXBException("Failed to parse source: " + str, e);
       }
+      finally
+      {
+         endCounting(error);
+         // don't keep the handler and the object graph it built reachable
+         setContentHandler(null);
+      }
    }
 
    public String getLocationAsString(String fileName)
@@ -245,6 +290,53 @@ public class SaxJBossXBParser implements JBossXBParser, org.xml.sax.ContentHandl
       }
    }
 
+   private void startCounting()
+   {
+      if(limits == null)
+         return;
+
+      maxTextLength = limits.getMaxTextLength();
+      maxDepth = limits.getMaxDepth();
+      maxElements = limits.getMaxElements();
+      maxAttributes = limits.getMaxAttributes();
+      depth = 0;
+      elements = 0;
+      textLength = 0;
+      characterCount = 0;
+   }
+
+   private void setContentHandler(ContentHandler handler)
+   {
+      contentHandler = handler;
+      skippingHandler = handler instanceof SkippingContentHandler ? (SkippingContentHandler) handler : null;
+      skipDepth = 0;
+   }
+
+   private void endCounting(Throwable error)
+   {
+      if(limits == null)
+         return;
+
+      boolean rejected = false;
+      while(error != null && !rejected)
+      {
+         rejected = error instanceof DocumentLimitExceededException;
+         error = error.getCause();
+      }
+      limits.documentParsed(elements, characterCount, rejected);
+   }
+
+   private void countStartElement(String name, Attributes atts)
+   {
+      textLength = 0;
+      if(++elements > maxElements)
+         throw DocumentLimits.exceeded(DocumentLimits.MAX_ELEMENTS, maxElements, getLocationAsString(null));
+      if(++depth > maxDepth)
+         throw DocumentLimits.exceeded(DocumentLimits.MAX_DEPTH, maxDepth, getLocationAsString(null));
+      if(atts.getLength() > maxAttributes)
+         throw DocumentLimits.exceeded(DocumentLimits.MAX_ATTRIBUTES, maxAttributes, name + " " + getLocationAsString(null));
+   }
+
    private void logParserInfo()
    {
       StringBuffer sb = new StringBuffer();
@@ -316,6 +408,17 @@ public class SaxJBossXBParser implements JBossXBParser, org.xml.sax.ContentHandl
 
    public void characters(char ch[], int start, int length)
    {
+      if(limits != null)
+      {
+         characterCount += length;
+         textLength += length;
+         if(textLength > maxTextLength)
+            throw DocumentLimits.exceeded(DocumentLimits.MAX_TEXT_LENGTH, maxTextLength, getLocationAsString(null));
+      }
+
+      if(skipDepth > 0)
+         return;
+
       // todo look at this later
       // do not notify content handler if these are just whitespaces
       //int i = start;
@@ -335,6 +438,8 @@ public class SaxJBossXBParser implements JBossXBParser, org.xml.sax.ContentHandl
 
    public void endPrefixMapping(String prefix)
    {
+      if(skipDepth > 0)
+         return;
       contentHandler.endPrefixMapping(prefix);
    }
 
@@ -354,16 +459,30 @@ public class SaxJBossXBParser implements JBossXBParser, org.xml.sax.ContentHandl
 
    public void processingInstruction(String target, String data)
    {
+      if(skipDepth > 0)
+         return;
       contentHandler.processingInstruction(target, data);
    }
 
    public void startPrefixMapping(String prefix, String uri)
    {
+      if(skipDepth > 0)
+         return;
       contentHandler.startPrefixMapping(prefix, uri);
    }
 
    public void endElement(String namespaceURI, String localName, String qName)
    {
+      if(limits != null)
+      {
+         --depth;
+         textLength = 0;
+      }
+
+      // only the end of the skipped element itself is reported
+      if(skipDepth > 0 && --skipDepth > 0)
+         return;
+
       if (trace)
       {
          String name = localName.length() == 0 ? qName : namespaceURI + ':' + localName;
@@ -383,6 +502,15 @@ public class SaxJBossXBParser implements JBossXBParser, org.xml.sax.ContentHandl
 
    public void startElement(String namespaceURI, String localName, String qName, Attributes atts)
    {
+      if(limits != null)
+         countStartElement(qName, atts);
+
+      if(skipDepth > 0)
+      {
+         ++skipDepth;
+         return;
+      }
+
       if (trace)
       {
          String name = localName.length() == 0 ? qName : namespaceURI + ':' + localName;
@@ -399,6 +527,9 @@ public class SaxJBossXBParser implements JBossXBParser, org.xml.sax.ContentHandl
       }
       else
          contentHandler.startElement(namespaceURI, localName, qName, atts);
+
+      if(skippingHandler != null && skippingHandler.isSkipContent())
+         skipDepth = 1;
    }
 
    // Error handling
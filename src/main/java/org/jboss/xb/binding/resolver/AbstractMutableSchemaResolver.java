@@ -28,6 +28,8 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.xml.namespace.QName;
 
@@ -57,7 +59,7 @@ public abstract class AbstractMutableSchemaResolver implements MutableSchemaReso
    private JBossEntityResolver resolver;
    private boolean cacheResolvedSchemas = true;
    /** Namespace to SchemaBinding cache */
-   private Map<String, SchemaBinding> schemasByUri = Collections.emptyMap();
+   private final ConcurrentMap<String, SchemaBinding> schemasByUri = new ConcurrentHashMap<String, SchemaBinding>();
    /** Namespace to processAnnotations flag used with the XsdBinder.bind call */
    private Map<String, Boolean> schemaParseAnnotationsByUri = Collections.emptyMap();
    private Map<String, SchemaBindingInitializer> schemaInitByUri = Collections.emptyMap();
@@ -144,7 +146,7 @@ public abstract class AbstractMutableSchemaResolver implements MutableSchemaReso
       this.cacheResolvedSchemas = cacheResolvedSchemas;
       if(cacheResolvedSchemas == false)
       {
-         schemasByUri = Collections.emptyMap();
+         schemasByUri.clear();
       }
    }
    
@@ -287,7 +289,8 @@ public abstract class AbstractMutableSchemaResolver implements MutableSchemaReso
       boolean trace = log.isTraceEnabled();
       // Was the schema binding based on the nsURI
       boolean foundByNS = false;
-      SchemaBinding schema = schemasByUri.get(nsURI);
+      // ConcurrentHashMap doesn't accept null keys
+      SchemaBinding schema = nsURI == null ? null : schemasByUri.get(nsURI);
       if(schema != null)
       {
          if(trace)
@@ -359,11 +362,12 @@ public abstract class AbstractMutableSchemaResolver implements MutableSchemaReso
          if(sbi != null)
             schema = sbi.init(schema);
 
-         if(schema != null && nsURI.length() > 0 && cacheResolvedSchemas && foundByNS)
+         if(schema != null && nsURI != null && nsURI.length() > 0 && cacheResolvedSchemas && foundByNS)
          {
-            if(schemasByUri.isEmpty())
-               schemasByUri = new HashMap<String, SchemaBinding>();
-            schemasByUri.put(nsURI, schema);
+            // another thread may have resolved the same schema concurrently
+            SchemaBinding cached = schemasByUri.putIfAbsent(nsURI, schema);
+            if(cached != null)
+               return cached;
          }         
       }
 
@@ -390,7 +394,8 @@ public abstract class AbstractMutableSchemaResolver implements MutableSchemaReso
                catch(RuntimeException rt)
                {
                   // don't cache invalid schema
-                  schemasByUri.remove(nsURI);
+                  if(nsURI != null)
+                     schemasByUri.remove(nsURI);
                   throw rt;
                }
             }
@@ -21,6 +21,7 @@
   */
 package org.jboss.xb.binding.sunday.marshalling;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import javax.xml.namespace.QName;
@@ -118,6 +119,7 @@ public class DefaultAttributeMarshaller
                );
             }
 
+            List<String> declaredPrefixes = null;
             if(Constants.QNAME_QNAME.getLocalPart().equals(itemType.getQName().getLocalPart()))
             {
                String attrLocal = binding.getQName().getLocalPart();
@@ -136,6 +138,11 @@ public class DefaultAttributeMarshaller
                            itemPrefix = attrLocal + listInd;
                         }
                         ctx.declareNamespace(itemPrefix, itemNs);
+                        if(declaredPrefixes == null)
+                        {
+                           declaredPrefixes = new ArrayList<String>();
+                        }
+                        declaredPrefixes.add(itemPrefix);
                      }
 
                      if(!itemPrefix.equals(item.getPrefix()))
@@ -148,6 +155,15 @@ public class DefaultAttributeMarshaller
             }
 
             marshalled = SimpleTypeBindings.marshalList(itemType.getQName().getLocalPart(), list, null);
+
+            if(declaredPrefixes != null)
+            {
+               // the namespaces are declared on the current element only
+               for(String declared : declaredPrefixes)
+               {
+                  ctx.getNamespaceContext().removePrefixMapping(declared);
+               }
+            }
          }
          else
          {
@@ -160,14 +176,12 @@ public class DefaultAttributeMarshaller
          attrType.getBaseType() != null &&
          Constants.QNAME_BOOLEAN.equals(attrType.getBaseType().getQName()))
       {
-         String item = attrType.getLexicalPattern().get(0);
-         if(item.indexOf('0') != -1 && item.indexOf('1') != -1)
-         {
-            marshalled = ((Boolean)value).booleanValue() ? "1" : "0";
-         }
-         else
+         // prefer the numeric form if the patterns allow it
+         boolean b = ((Boolean)value).booleanValue();
+         marshalled = b ? "1" : "0";
+         if(!attrType.getFacets().isValid(marshalled))
          {
-            marshalled = ((Boolean)value).booleanValue() ? "true" : "false";
+            marshalled = b ? "true" : "false";
          }
       }
       else if(Constants.QNAME_QNAME.equals(attrType.getQName()))
@@ -185,10 +199,10 @@ public class DefaultAttributeMarshaller
                {
                   prefix = "ns_" + ((QName)value).getLocalPart();
                }
+               // adds the prefix mapping removed below
                ctx.declareNamespace(prefix, ns);
+               removePrefix = true;
             }
-            ctx.getNamespaceContext().addPrefixMapping(prefix, ns);
-            removePrefix = true;
          }
 
          marshalled = SimpleTypeBindings.marshalQName((QName)value, ctx.getNamespaceContext());
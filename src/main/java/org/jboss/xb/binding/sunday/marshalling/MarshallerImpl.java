@@ -50,6 +50,8 @@ import org.jboss.xb.binding.metadata.PropertyMetaData;
 import org.jboss.xb.binding.sunday.unmarshalling.*;
 import org.jboss.xb.binding.sunday.xop.XOPMarshaller;
 import org.jboss.xb.binding.sunday.xop.XOPObject;
+import org.jboss.xb.util.Sax2Dom;
+import org.w3c.dom.Node;
 import org.xml.sax.ContentHandler;
 import org.xml.sax.SAXException;
 
@@ -60,6 +62,12 @@ import org.xml.sax.SAXException;
 public class MarshallerImpl
     extends AbstractMarshaller
 {
+   /**
+    * Schemas bound for class mappings of wildcard content, shared by all the marshallers.
+    * Bound schemas are only read while marshalling, so they can be used by different threads.
+    */
+   private static final ClassMappingSchemaCache<SchemaBinding> classMappingSchemas = new ClassMappingSchemaCache<SchemaBinding>();
+
    private Stack stack = new StackImpl();
 
    private Object root;
@@ -99,6 +107,16 @@ public class MarshallerImpl
       this.schemaResolver = schemaResolver;
    }
 
+   /**
+    * Clears the schemas bound for class mappings of wildcard content, which are shared
+    * by all the marshallers and keyed by schema resolver and schema URL.
+    * Should be called when a schema at a URL already used for a class mapping has changed.
+    */
+   public static void clearClassMappingSchemas()
+   {
+      classMappingSchemas.clear();
+   }
+
    public QName getRootTypeQName()
    {
       return rootTypeQName;
@@ -157,8 +175,63 @@ public class MarshallerImpl
       marshallInternal(root, model, writer);
    }
 
+   /**
+    * Marshals the object directly into a DOM node without producing text.
+    *
+    * @param model  the schema binding
+    * @param provider  the object model provider
+    * @param root  the object to marshal
+    * @param parent  the document, document fragment or element to append the marshalled content to
+    * @throws SAXException  in case of an error
+    */
+   public void marshal(SchemaBinding model, ObjectModelProvider provider, Object root, Node parent)
+       throws SAXException
+   {
+      marshal(model, provider, root, new Sax2Dom(parent));
+   }
+
+   /**
+    * Marshals the object into the given SAX content handler instead of producing text,
+    * e.g. org.jboss.xb.binding.parser.binary.BinaryXmlWriter.
+    *
+    * @param model  the schema binding
+    * @param provider  the object model provider
+    * @param root  the object to marshal
+    * @param target  the content handler receiving the marshalled content as a document
+    * @throws SAXException  in case of an error
+    */
+   public void marshal(SchemaBinding model, ObjectModelProvider provider, Object root, ContentHandler target)
+       throws SAXException
+   {
+      buildContent(root, model);
+      content.handleContent(target);
+   }
+
    private void marshallInternal(Object root, SchemaBinding schema, Writer writer)
        throws IOException, SAXException
+   {
+      buildContent(root, schema);
+
+      // version & encoding
+      writeXmlVersion(writer);
+
+      ContentWriter contentWriter = new ContentWriter(writer,
+          propertyIsTrueOrNotSet(org.jboss.xb.binding.Marshaller.PROP_OUTPUT_INDENTATION)
+      );
+      content.handleContent(contentWriter);
+
+      if(log.isTraceEnabled())
+      {
+         java.io.StringWriter traceWriter = new java.io.StringWriter();
+         contentWriter = new ContentWriter(traceWriter,
+             propertyIsTrueOrNotSet(org.jboss.xb.binding.Marshaller.PROP_OUTPUT_INDENTATION)
+         );
+         content.handleContent(contentWriter);
+         log.trace("marshalled:\n" + traceWriter.getBuffer().toString());
+      }
+   }
+
+   private void buildContent(Object root, SchemaBinding schema)
    {
       if(schema == null)
       {
@@ -243,24 +316,6 @@ public class MarshallerImpl
       }
 
       content.endDocument();
-
-      // version & encoding
-      writeXmlVersion(writer);
-
-      ContentWriter contentWriter = new ContentWriter(writer,
-          propertyIsTrueOrNotSet(org.jboss.xb.binding.Marshaller.PROP_OUTPUT_INDENTATION)
-      );
-      content.handleContent(contentWriter);
-
-      if(log.isTraceEnabled())
-      {
-         java.io.StringWriter traceWriter = new java.io.StringWriter();
-         contentWriter = new ContentWriter(traceWriter,
-             propertyIsTrueOrNotSet(org.jboss.xb.binding.Marshaller.PROP_OUTPUT_INDENTATION)
-         );
-         content.handleContent(contentWriter);
-         log.trace("marshalled:\n" + traceWriter.getBuffer().toString());
-      }
    }
 
    private boolean marshalElementOccurence(ElementBinding element,
@@ -268,6 +323,10 @@ public class MarshallerImpl
                                            boolean optional,
                                            boolean declareNs)
    {
+      // the content of a lazy element is marshalled from its bound value
+      if(value instanceof LazyValue)
+         value = ((LazyValue<?>)value).getValue();
+
       QName xsiTypeQName = null;
       TypeBinding xsiType = null;
       if(value != null)
@@ -840,60 +899,77 @@ public class MarshallerImpl
       SchemaBinding parentSchema = this.schema;
 
       this.root = o;
-      this.stack = new StackImpl();
-      this.schema = mapping.schemaUrl == null ? this.schema : XsdBinder.bind(mapping.schemaUrl, schemaResolver);
-
+      this.stack = borrowWildcardStack();
       boolean marshalled;
-      if(mapping.elementName != null)
+      try
       {
-         ParticleBinding element = schema.getElementParticle(mapping.elementName);
-         if(element == null)
-         {
-            throw new JBossXBRuntimeException("Element " + mapping.elementName + " is not declared in the schema.");
-         }
+         this.schema = mapping.schemaUrl == null ? this.schema : getClassMappingSchema(mapping.schemaUrl);
 
-         ParticleBinding ctxParticle = ctx.particle;
-         ctx.particle = element;
-         marshalled = marshalElementOccurence((ElementBinding) element.getTerm(), root, particle.getMinOccurs() == 0, declareNs);
-         ctx.particle = ctxParticle;
-      }
-      else if(mapping.typeName != null)
-      {
-         TypeBinding typeDef = schema.getType(mapping.typeName);
-         if(typeDef == null)
+         if(mapping.elementName != null)
          {
-            throw new JBossXBRuntimeException("Type " +
-                mapping.typeName +
-                " is not defined in the schema."
-            );
+            ParticleBinding element = schema.getElementParticle(mapping.elementName);
+            if(element == null)
+            {
+               throw new JBossXBRuntimeException("Element " + mapping.elementName + " is not declared in the schema.");
+            }
+
+            ParticleBinding ctxParticle = ctx.particle;
+            ctx.particle = element;
+            marshalled = marshalElementOccurence((ElementBinding) element.getTerm(), root, particle.getMinOccurs() == 0, declareNs);
+            ctx.particle = ctxParticle;
          }
+         else if(mapping.typeName != null)
+         {
+            TypeBinding typeDef = schema.getType(mapping.typeName);
+            if(typeDef == null)
+            {
+               throw new JBossXBRuntimeException("Type " +
+                   mapping.typeName +
+                   " is not defined in the schema."
+               );
+            }
+
+            if(wildcard.getQName() == null)
+            {
+               throw new JBossXBRuntimeException("Expected the wildcard to have a non-null QName.");
+            }
 
-         if(wildcard.getQName() == null)
+            ElementBinding element = new ElementBinding(schema, wildcard.getQName(), typeDef);
+            ParticleBinding ctxParticle = ctx.particle;
+            ctx.particle = new ParticleBinding(element);
+            marshalled = marshalElementOccurence(element, root, particle.getMinOccurs() == 0, declareNs);
+            ctx.particle = ctxParticle;
+         }
+         else
          {
-            throw new JBossXBRuntimeException("Expected the wildcard to have a non-null QName.");
+            throw new JBossXBRuntimeException("Class mapping for " +
+                mapping.cls +
+                " is associated with neither global element name nor global type name."
+            );
          }
-
-         ElementBinding element = new ElementBinding(schema, wildcard.getQName(), typeDef);
-         ParticleBinding ctxParticle = ctx.particle;
-         ctx.particle = new ParticleBinding(element);
-         marshalled = marshalElementOccurence(element, root, particle.getMinOccurs() == 0, declareNs);
-         ctx.particle = ctxParticle;
       }
-      else
+      finally
       {
-         throw new JBossXBRuntimeException("Class mapping for " +
-             mapping.cls +
-             " is associated with neither global element name nor global type name."
-         );
+         this.root = parentRoot;
+         this.stack = parentStack;
+         this.schema = parentSchema;
+         releaseWildcardStack();
       }
 
-      this.root = parentRoot;
-      this.stack = parentStack;
-      this.schema = parentSchema;
-
       return marshalled;
    }
 
+   private SchemaBinding getClassMappingSchema(String schemaUrl)
+   {
+      SchemaBinding schema = classMappingSchemas.get(schemaUrl, schemaResolver);
+      if(schema == null)
+      {
+         schema = XsdBinder.bind(schemaUrl, schemaResolver);
+         classMappingSchemas.put(schemaUrl, schemaResolver, schema);
+      }
+      return schema;
+   }
+
    private boolean marshalModelGroup(ModelGroupBinding modelGroup, boolean declareNs)
    {
       boolean marshalled;
@@ -930,17 +1006,43 @@ public class MarshallerImpl
       for(Iterator<ParticleBinding> i = particles.iterator(); i.hasNext() && !marshalled;)
       {
          ParticleBinding particle = i.next();
-         this.content = new Content();
-         marshalled = marshalParticle(particle, declareNs);
+         if(isMarshalledOrEmpty(particle))
+         {
+            // no need to buffer the content since if the particle is not marshalled nothing is written
+            marshalled = marshalParticle(particle, declareNs);
+         }
+         else
+         {
+            this.content = new Content();
+            marshalled = marshalParticle(particle, declareNs);
+            if(marshalled)
+            {
+               mainContent.append(this.content);
+            }
+            this.content = mainContent;
+         }
       }
 
-      if(marshalled)
+      return marshalled;
+   }
+
+   /**
+    * Checks whether marshalling of the particle either succeeds or writes nothing,
+    * i.e. it can be tried as a choice alternative without buffering its content.
+    * This is the case for elements that are not repeatable, or
+    * every occurrence of which is marshalled successfully even if the value is null.
+    * 
+    * @param particle  choice alternative
+    * @return  true if unsuccessful marshalling of the particle doesn't produce content
+    */
+   private static boolean isMarshalledOrEmpty(ParticleBinding particle)
+   {
+      TermBinding term = particle.getTerm();
+      if(!term.isElement())
       {
-         mainContent.append(this.content);
+         return false;
       }
-      this.content = mainContent;
-
-      return marshalled;
+      return !isRepeatable(particle) || particle.getMinOccurs() == 0 || ((ElementBinding)term).isNillable();
    }
 
    private boolean marshalModelGroupSequence(ModelGroupBinding sequence, boolean declareNs)
@@ -1035,7 +1137,7 @@ public class MarshallerImpl
                   {
                      prefix = qNameValue.getLocalPart() + "_ns";
                   }
-                  nsRegistry.addPrefixMapping(prefix, qNameValue.getNamespaceURI());
+                  // adds the prefix mapping removed below
                   ctx.declareNamespace(prefix, qNameValue.getNamespaceURI());
 
                   removePrefix = true;
@@ -1055,14 +1157,12 @@ public class MarshallerImpl
           simpleType.getBaseType() != null &&
           Constants.QNAME_BOOLEAN.equals(simpleType.getBaseType().getQName()))
       {
-         String item = simpleType.getLexicalPattern().get(0);
-         if(item.indexOf('0') != -1 && item.indexOf('1') != -1)
-         {
-            marshalled = ((Boolean)value).booleanValue() ? "1" : "0";
-         }
-         else
+         // prefer the numeric form if the patterns allow it
+         boolean b = ((Boolean)value).booleanValue();
+         marshalled = b ? "1" : "0";
+         if(!simpleType.getFacets().isValid(marshalled))
          {
-            marshalled = ((Boolean)value).booleanValue() ? "true" : "false";
+            marshalled = b ? "true" : "false";
          }
       }
       else
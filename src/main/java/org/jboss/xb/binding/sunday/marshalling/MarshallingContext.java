@@ -55,6 +55,9 @@ public interface MarshallingContext
    String getPrefix(String ns);
 
    /**
+    * Declares the namespace on the current component and adds the prefix mapping
+    * to the namespace context. The caller removes the mapping once it is out of scope.
+    *
     * @param prefix  prefix for the namespace being declared
     * @param ns  the namespace to declare for the current component
     */
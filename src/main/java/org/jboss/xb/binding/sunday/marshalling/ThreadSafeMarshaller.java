@@ -0,0 +1,348 @@
+/*
+* JBoss, Home of Professional Open Source
+* Copyright 2006, JBoss Inc., and individual contributors as indicated
+* by the @authors tag. See the copyright.txt in the distribution for a
+* full listing of individual contributors.
+*
+* This is free software; you can redistribute it and/or modify it
+* under the terms of the GNU Lesser General Public License as
+* published by the Free Software Foundation; either version 2.1 of
+* the License, or (at your option) any later version.
+*
+* This software is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+* Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public
+* License along with this software; if not, write to the Free
+* Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+* 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+*/
+package org.jboss.xb.binding.sunday.marshalling;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.Set;
+
+import javax.xml.namespace.QName;
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.jboss.xb.binding.JBossXBException;
+import org.jboss.xb.binding.JBossXBRuntimeException;
+import org.jboss.xb.binding.Marshaller;
+import org.jboss.xb.binding.ObjectLocalMarshaller;
+import org.jboss.xb.binding.ObjectModelProvider;
+import org.jboss.xb.binding.sunday.unmarshalling.SchemaBinding;
+import org.jboss.xb.binding.sunday.unmarshalling.SchemaBindingResolver;
+import org.jboss.xb.util.ConfiguredInstances;
+import org.jboss.xb.util.ConfiguredInstances.Call;
+import org.jboss.xb.util.ConfiguredInstances.Setting;
+import org.xml.sax.SAXException;
+
+/**
+ * Thread-safe marshaller. The settings are recorded and applied to a
+ * MarshallerImpl created for each thread, so one configured instance
+ * can be shared by all the threads marshalling the same kind of objects.
+ * <p>
+ * A namespace declaration is recorded under its prefix, so declaring the prefix
+ * again replaces it and removing the prefix drops the declaration instead of adding
+ * a setting that undoes it.
+ *
+ * @version $Revision: 1.1 $
+ */
+public class ThreadSafeMarshaller implements Marshaller
+{
+   private final ConfiguredInstances<MarshallerImpl> marshallers = new ConfiguredInstances<MarshallerImpl>()
+   {
+      protected MarshallerImpl newInstance()
+      {
+         return new MarshallerImpl();
+      }
+   };
+
+   private final Properties props = new Properties();
+
+   /** the prefixes declared with declareNamespace and not removed since, guarded by itself */
+   private final Set<String> declaredPrefixes = new HashSet<String>();
+
+   public void setVersion(final String version)
+   {
+      marshallers.addSetting("version", new Setting<MarshallerImpl>()
+      {
+         public void apply(MarshallerImpl marshaller)
+         {
+            marshaller.setVersion(version);
+         }
+      });
+   }
+
+   public void setEncoding(final String encoding)
+   {
+      marshallers.addSetting("encoding", new Setting<MarshallerImpl>()
+      {
+         public void apply(MarshallerImpl marshaller)
+         {
+            marshaller.setEncoding(encoding);
+         }
+      });
+   }
+
+   public void mapPublicIdToSystemId(String publicId, String systemId)
+   {
+      throw new UnsupportedOperationException("MarshallerImpl doesn't support mapping public ids to system ids");
+   }
+
+   public void mapClassToGlobalElement(final Class<?> cls, final String localName, final String nsUri,
+         final String schemaUrl, final ObjectModelProvider provider)
+   {
+      marshallers.addSetting("globalElement:" + cls.getName(), new Setting<MarshallerImpl>()
+      {
+         public void apply(MarshallerImpl marshaller)
+         {
+            marshaller.mapClassToGlobalElement(cls, localName, nsUri, schemaUrl, provider);
+         }
+      });
+   }
+
+   public void mapClassToGlobalType(final Class<?> cls, final String localName, final String nsUri,
+         final String schemaUrl, final ObjectModelProvider provider)
+   {
+      marshallers.addSetting("globalType:" + cls.getName(), new Setting<MarshallerImpl>()
+      {
+         public void apply(MarshallerImpl marshaller)
+         {
+            marshaller.mapClassToGlobalType(cls, localName, nsUri, schemaUrl, provider);
+         }
+      });
+   }
+
+   public void mapFieldToWildcard(final Class<?> cls, final String field, final ObjectLocalMarshaller marshaller)
+   {
+      marshallers.addSetting("wildcard:" + cls.getName() + "." + field, new Setting<MarshallerImpl>()
+      {
+         public void apply(MarshallerImpl instance)
+         {
+            instance.mapFieldToWildcard(cls, field, marshaller);
+         }
+      });
+   }
+
+   public void mapClassToXsiType(final Class<?> cls, final String typeNs, final String typeLocalPart)
+   {
+      marshallers.addSetting("xsiType:" + cls.getName(), new Setting<MarshallerImpl>()
+      {
+         public void apply(MarshallerImpl marshaller)
+         {
+            marshaller.mapClassToXsiType(cls, typeNs, typeLocalPart);
+         }
+      });
+   }
+
+   public void addRootElement(String namespaceUri, String prefix, String name)
+   {
+      addRootElement(new QName(namespaceUri, name, prefix));
+   }
+
+   public void addRootElement(final QName qName)
+   {
+      marshallers.addSetting("rootElement:" + qName, new Setting<MarshallerImpl>()
+      {
+         public void apply(MarshallerImpl marshaller)
+         {
+            marshaller.addRootElement(qName);
+         }
+      });
+   }
+
+   public void declareNamespace(final String prefix, final String uri)
+   {
+      synchronized(declaredPrefixes)
+      {
+         marshallers.addSetting("ns:" + prefix, new Setting<MarshallerImpl>()
+         {
+            public void apply(MarshallerImpl marshaller)
+            {
+               marshaller.declareNamespace(prefix, uri);
+            }
+         });
+         declaredPrefixes.add(prefix);
+      }
+   }
+
+   public void removePrefixMapping(final String prefix)
+   {
+      synchronized(declaredPrefixes)
+      {
+         if(declaredPrefixes.remove(prefix))
+         {
+            // the removal cancels the declaration
+            marshallers.addSetting("ns:" + prefix, new Setting<MarshallerImpl>()
+            {
+               public void apply(MarshallerImpl marshaller)
+               {
+               }
+            });
+         }
+         else
+         {
+            marshallers.addSetting("ns:" + prefix, new Setting<MarshallerImpl>()
+            {
+               public void apply(MarshallerImpl marshaller)
+               {
+                  marshaller.removePrefixMapping(prefix);
+               }
+            });
+         }
+      }
+   }
+
+   public void setSupportNil(final boolean supportNil)
+   {
+      marshallers.addSetting("supportNil", new Setting<MarshallerImpl>()
+      {
+         public void apply(MarshallerImpl marshaller)
+         {
+            marshaller.setSupportNil(supportNil);
+         }
+      });
+   }
+
+   public void setIgnoreUnresolvedWildcard(final boolean ignoreUnresolvedWildcard)
+   {
+      marshallers.addSetting("ignoreUnresolvedWildcard", new Setting<MarshallerImpl>()
+      {
+         public void apply(MarshallerImpl marshaller)
+         {
+            marshaller.setIgnoreUnresolvedWildcard(ignoreUnresolvedWildcard);
+         }
+      });
+   }
+
+   public void setRootTypeQName(final QName rootTypeQName)
+   {
+      marshallers.addSetting("rootTypeQName", new Setting<MarshallerImpl>()
+      {
+         public void apply(MarshallerImpl marshaller)
+         {
+            marshaller.setRootTypeQName(rootTypeQName);
+         }
+      });
+   }
+
+   public void setSchemaResolver(final SchemaBindingResolver schemaResolver)
+   {
+      marshallers.addSetting("schemaResolver", new Setting<MarshallerImpl>()
+      {
+         public void apply(MarshallerImpl marshaller)
+         {
+            marshaller.setSchemaResolver(schemaResolver);
+         }
+      });
+   }
+
+   public void setProperty(final String name, final String value)
+   {
+      synchronized(props)
+      {
+         props.setProperty(name, value);
+      }
+      marshallers.addSetting("property:" + name, new Setting<MarshallerImpl>()
+      {
+         public void apply(MarshallerImpl marshaller)
+         {
+            marshaller.setProperty(name, value);
+         }
+      });
+   }
+
+   public String getProperty(String name)
+   {
+      synchronized(props)
+      {
+         return props.getProperty(name);
+      }
+   }
+
+   public void marshal(final String schemaUri, final ObjectModelProvider provider, final Object root, final Writer writer)
+      throws IOException, ParserConfigurationException, SAXException
+   {
+      marshal(new Call<MarshallerImpl, Object>()
+      {
+         public Object call(MarshallerImpl marshaller) throws IOException, ParserConfigurationException, SAXException
+         {
+            marshaller.marshal(schemaUri, provider, root, writer);
+            return null;
+         }
+      });
+   }
+
+   public void marshal(final Reader schema, final ObjectModelProvider provider, final Object document, final Writer writer)
+      throws IOException, SAXException, ParserConfigurationException
+   {
+      marshal(new Call<MarshallerImpl, Object>()
+      {
+         public Object call(MarshallerImpl marshaller) throws IOException, SAXException, ParserConfigurationException
+         {
+            marshaller.marshal(schema, provider, document, writer);
+            return null;
+         }
+      });
+   }
+
+   public void marshal(final SchemaBinding schema, final ObjectModelProvider provider, final Object root, final Writer writer)
+      throws IOException, SAXException
+   {
+      try
+      {
+         marshal(new Call<MarshallerImpl, Object>()
+         {
+            public Object call(MarshallerImpl marshaller) throws IOException, SAXException
+            {
+               marshaller.marshal(schema, provider, root, writer);
+               return null;
+            }
+         });
+      }
+      catch(ParserConfigurationException e)
+      {
+         // not thrown when the schema is already bound
+         throw new JBossXBRuntimeException("Failed to marshal", e);
+      }
+   }
+
+   private void marshal(Call<MarshallerImpl, Object> call) throws IOException, SAXException, ParserConfigurationException
+   {
+      try
+      {
+         marshallers.call(call);
+      }
+      catch(IOException e)
+      {
+         throw e;
+      }
+      catch(SAXException e)
+      {
+         throw e;
+      }
+      catch(ParserConfigurationException e)
+      {
+         throw e;
+      }
+      catch(RuntimeException e)
+      {
+         throw e;
+      }
+      catch(JBossXBException e)
+      {
+         throw new JBossXBRuntimeException("Failed to create a marshaller", e);
+      }
+      catch(Exception e)
+      {
+         throw new JBossXBRuntimeException("Failed to marshal", e);
+      }
+   }
+}
@@ -44,7 +44,7 @@ public abstract class AbstractPosition
    }
    
    protected PositionStack stack;
-   protected final QName qName;
+   protected QName qName;
    protected ParticleBinding particle;
    protected TermBinding term;
    protected ParticleHandler handler;
@@ -62,6 +62,17 @@ public abstract class AbstractPosition
    protected boolean skip;
    
    protected AbstractPosition(QName qName, ParticleBinding particle)
+   {
+      init(qName, particle);
+   }
+
+   /**
+    * Initializes the position for the particle.
+    * 
+    * @param qName  the name of the element the position is created for
+    * @param particle  the particle
+    */
+   protected void init(QName qName, ParticleBinding particle)
    {
       if (particle == null)
          throw new IllegalArgumentException("Null particle");
@@ -76,8 +87,7 @@ public abstract class AbstractPosition
       this.term = particle.getTerm();
       this.skip = term.isSkip();
 
-      if(particle.isRepeatable())
-         repeatableHandler = term.getRepeatableHandler();
+      repeatableHandler = particle.isRepeatable() ? term.getRepeatableHandler() : null;
 
 //      if(skip)
 //         handler = DefaultHandlers.UOE_PARTICLE_HANDLER;
@@ -131,6 +141,8 @@ public abstract class AbstractPosition
    public abstract void endParticle();
    
    public abstract void characters(char[] ch, int start, int length);
+
+   public abstract void characters(CharSequence text);
    
    public abstract ElementPosition startParticle(QName startName, Attributes atts);
 
@@ -208,6 +220,19 @@ public abstract class AbstractPosition
          handler = DefaultHandlers.ELEMENT_HANDLER;
    }
 
+   /**
+    * Returns the positions following this one to the free list of the stack.
+    * The positions must have ended and must not be referenced anymore.
+    */
+   protected void releaseNext()
+   {
+      if(next == null)
+         return;
+      if(stack != null)
+         stack.releasePositions(next);
+      next = null;
+   }
+
    protected abstract void repeatForChild(Attributes atts);
    
    protected abstract AbstractPosition nextPosition(QName startName, Attributes atts);
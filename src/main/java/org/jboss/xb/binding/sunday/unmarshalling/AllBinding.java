@@ -78,11 +78,16 @@ public class AllBinding
    }
 
    public AbstractPosition newPosition(QName qName, Attributes attrs, ParticleBinding allParticle)
+   {
+      return newPosition(qName, attrs, allParticle, null);
+   }
+
+   AbstractPosition newPosition(QName qName, Attributes attrs, ParticleBinding allParticle, PositionStack stack)
    {
       ParticleBinding particle = elements.get(qName);
       if(particle != null)
       {
-         AbstractPosition next = particle.getTerm().newPosition(qName, attrs, particle);
+         AbstractPosition next = particle.getTerm().newPosition(qName, attrs, particle, stack);
          return new AllPosition(qName, allParticle, next);
       }
 
@@ -107,7 +112,8 @@ public class AllBinding
          ParticleBinding particle = elements.get(qName);
          if(particle != null)
          {
-            next = particle.getTerm().newPosition(qName, atts, particle);
+            releaseNext();
+            next = particle.getTerm().newPosition(qName, atts, particle, stack);
             next.previous = this;
             // TODO occurrence is not used here ++occurrence;
             return this;
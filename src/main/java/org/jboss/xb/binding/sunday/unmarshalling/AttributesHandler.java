@@ -40,18 +40,21 @@ public class AttributesHandler
 
    public void attributes(Object o, QName elementName, TypeBinding type, Attributes attrs, NamespaceContext nsCtx)
    {
+      CompiledAttributes compiled = type.getCompiledAttributes();
       for(int i = 0; i < attrs.getLength(); ++i)
       {
-         QName qName = new QName(attrs.getURI(i), attrs.getLocalName(i));
-         AttributeBinding binding = type.getAttribute(qName);
-         if(binding != null)
+         int index = compiled.indexOf(attrs.getURI(i), attrs.getLocalName(i));
+         if(index >= 0)
          {
+            AttributeBinding binding = compiled.get(index);
+            QName qName = binding.getQName();
             AttributeHandler handler = binding.getHandler();
             Object value = handler.unmarshal(elementName, qName, binding, nsCtx, attrs.getValue(i));
             handler.attribute(elementName, qName, binding, o, value);
          }
          else
          {
+            QName qName = new QName(attrs.getURI(i), attrs.getLocalName(i));
             AnyAttributeBinding anyAttribute = type.getAnyAttribute();
             if(anyAttribute != null)
             {
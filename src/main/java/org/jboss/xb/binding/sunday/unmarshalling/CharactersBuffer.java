@@ -0,0 +1,199 @@
+/*
+* JBoss, Home of Professional Open Source
+* Copyright 2009, JBoss Inc., and individual contributors as indicated
+* by the @authors tag. See the copyright.txt in the distribution for a
+* full listing of individual contributors.
+*
+* This is free software; you can redistribute it and/or modify it
+* under the terms of the GNU Lesser General Public License as
+* published by the Free Software Foundation; either version 2.1 of
+* the License, or (at your option) any later version.
+*
+* This software is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+* Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public
+* License along with this software; if not, write to the Free
+* Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+* 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+*/
+package org.jboss.xb.binding.sunday.unmarshalling;
+
+/**
+ * A growable character buffer shared by all the element positions
+ * of one content handler.
+ * Positions append their text content at the end of the buffer
+ * and release it when the element ends, which, since only the innermost
+ * element can receive characters, makes the buffer work as a stack of
+ * text contents of the currently open elements.
+ * This replaces a StringBuffer per position and a copy of the text
+ * into a String for every chunk of characters.
+ * 
+ * @version $Revision: 1.1 $
+ */
+public class CharactersBuffer implements CharSequence
+{
+   /** no non-whitespace characters and no new line characters */
+   public static final int WHITESPACE = 0;
+   /** whitespaces including new line characters, i.e. indentation */
+   public static final int INDENTATION = 1;
+   /** there is at least one non-whitespace character */
+   public static final int TEXT = 2;
+   
+   private static final int INITIAL_CAPACITY = 256;
+   /** the buffer is not retained across documents if it grew beyond this size */
+   private static final int MAX_RETAINED_CAPACITY = 16384;
+
+   private char[] chars = new char[INITIAL_CAPACITY];
+   private int length;
+
+   /**
+    * Classifies the characters in the specified range.
+    * The loop is kept free of method calls for the common ASCII characters.
+    * 
+    * @param ch  characters
+    * @param start  the start index
+    * @param length  the number of characters
+    * @return  WHITESPACE, INDENTATION or TEXT
+    */
+   public static int classify(char[] ch, int start, int length)
+   {
+      int result = WHITESPACE;
+      for(int i = start, end = start + length; i < end; ++i)
+      {
+         char c = ch[i];
+         if(c == ' ' || c == '\t' || c == '\r')
+            continue;
+         if(c == '\n')
+            result = INDENTATION;
+         else if(!Character.isWhitespace(c))
+            return TEXT;
+      }
+      return result;
+   }
+
+   /**
+    * Classifies the characters of the text.
+    * 
+    * @param text  the text
+    * @return  WHITESPACE, INDENTATION or TEXT
+    */
+   public static int classify(CharSequence text)
+   {
+      int result = WHITESPACE;
+      for(int i = 0, end = text.length(); i < end; ++i)
+      {
+         char c = text.charAt(i);
+         if(c == ' ' || c == '\t' || c == '\r')
+            continue;
+         if(c == '\n')
+            result = INDENTATION;
+         else if(!Character.isWhitespace(c))
+            return TEXT;
+      }
+      return result;
+   }
+
+   public void append(char[] ch, int start, int length)
+   {
+      ensureCapacity(this.length + length);
+      System.arraycopy(ch, start, chars, this.length, length);
+      this.length += length;
+   }
+
+   /**
+    * Appends the text. Strings are copied directly into the buffer.
+    * 
+    * @param text  the text to append
+    */
+   public void append(CharSequence text)
+   {
+      int length = text.length();
+      ensureCapacity(this.length + length);
+      if(text instanceof String)
+      {
+         ((String)text).getChars(0, length, chars, this.length);
+      }
+      else
+      {
+         for(int i = 0; i < length; ++i)
+            chars[this.length + i] = text.charAt(i);
+      }
+      this.length += length;
+   }
+
+   public void setLength(int length)
+   {
+      if(length < 0 || length > this.length)
+         throw new IndexOutOfBoundsException("length=" + length + ", current length=" + this.length);
+      this.length = length;
+   }
+
+   /**
+    * Empties the buffer and drops the underlying array if it grew too big.
+    */
+   public void reset()
+   {
+      length = 0;
+      if(chars.length > MAX_RETAINED_CAPACITY)
+         chars = new char[INITIAL_CAPACITY];
+   }
+
+   /**
+    * Creates a string from the characters starting at the specified index till the end of the buffer.
+    * 
+    * @param start  the start index
+    * @param trim  whether leading and trailing whitespaces should be excluded the same way String.trim() does it
+    * @return  the string
+    */
+   public String toString(int start, boolean trim)
+   {
+      int end = length;
+      if(trim)
+      {
+         while(start < end && chars[start] <= ' ')
+            ++start;
+         while(start < end && chars[end - 1] <= ' ')
+            --end;
+      }
+      return new String(chars, start, end - start);
+   }
+
+   private void ensureCapacity(int capacity)
+   {
+      if(capacity > chars.length)
+      {
+         char[] newChars = new char[Math.max(capacity, chars.length << 1)];
+         System.arraycopy(chars, 0, newChars, 0, this.length);
+         chars = newChars;
+      }
+   }
+
+   // CharSequence impl
+
+   public int length()
+   {
+      return length;
+   }
+
+   public char charAt(int index)
+   {
+      if(index >= length)
+         throw new IndexOutOfBoundsException("index=" + index + ", length=" + length);
+      return chars[index];
+   }
+
+   public CharSequence subSequence(int start, int end)
+   {
+      if(start < 0 || end > length || start > end)
+         throw new IndexOutOfBoundsException("start=" + start + ", end=" + end + ", length=" + length);
+      return new String(chars, start, end - start);
+   }
+
+   public String toString()
+   {
+      return new String(chars, 0, length);
+   }
+}
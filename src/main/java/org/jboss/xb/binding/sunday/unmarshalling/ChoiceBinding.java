@@ -71,11 +71,16 @@ public class ChoiceBinding
    }
 
    public AbstractPosition newPosition(QName qName, Attributes attrs, ParticleBinding choiceParticle)
+   {
+      return newPosition(qName, attrs, choiceParticle, null);
+   }
+
+   AbstractPosition newPosition(QName qName, Attributes attrs, ParticleBinding choiceParticle, PositionStack stack)
    {
       for(int i = 0; i < choices.size(); ++i)
       {
          ParticleBinding particle = (ParticleBinding)choices.get(i);
-         AbstractPosition next = particle.getTerm().newPosition(qName, attrs, particle);
+         AbstractPosition next = particle.getTerm().newPosition(qName, attrs, particle, stack);
          if(next != null)
             return new ChoicePosition(qName, choiceParticle, next);
       }
@@ -111,7 +116,8 @@ public class ChoiceBinding
             {
                ParticleBinding choice = (ParticleBinding) choices.get(i);
                TermBinding term = choice.getTerm();
-               next = term.newPosition(qName, atts, choice);
+               releaseNext();
+               next = term.newPosition(qName, atts, choice, stack);
 
                if (next != null)
                {
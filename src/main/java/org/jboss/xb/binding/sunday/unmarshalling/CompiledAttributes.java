@@ -0,0 +1,169 @@
+/*
+  * JBoss, Home of Professional Open Source
+  * Copyright 2005, JBoss Inc., and individual contributors as indicated
+  * by the @authors tag. See the copyright.txt in the distribution for a
+  * full listing of individual contributors.
+  *
+  * This is free software; you can redistribute it and/or modify it
+  * under the terms of the GNU Lesser General Public License as
+  * published by the Free Software Foundation; either version 2.1 of
+  * the License, or (at your option) any later version.
+  *
+  * This software is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+  * Lesser General Public License for more details.
+  *
+  * You should have received a copy of the GNU Lesser General Public
+  * License along with this software; if not, write to the Free
+  * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+  * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+  */
+package org.jboss.xb.binding.sunday.unmarshalling;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * Attribute bindings compiled into an open addressing hash table keyed by
+ * namespace URI and local name, so that attributes can be looked up
+ * without creating a QName. Each attribute is also assigned an index,
+ * which is used to track the attributes present in an element in a bitmask.
+ *
+ * @version $Revision: 1.1 $
+ */
+final class CompiledAttributes
+{
+   static final CompiledAttributes EMPTY = new CompiledAttributes(Collections.<AttributeBinding>emptyList());
+
+   /** attribute bindings by index */
+   private final AttributeBinding[] bindings;
+   /** namespace URIs of the attributes by slot */
+   private final String[] uris;
+   /** local names of the attributes by slot */
+   private final String[] localNames;
+   /** attribute indexes by slot, -1 for empty slots */
+   private final int[] indexes;
+   private final int mask;
+
+   CompiledAttributes(Collection<AttributeBinding> attrs)
+   {
+      bindings = attrs.toArray(new AttributeBinding[attrs.size()]);
+
+      int capacity = 2;
+      while(capacity < bindings.length * 2)
+      {
+         capacity <<= 1;
+      }
+      mask = capacity - 1;
+      uris = new String[capacity];
+      localNames = new String[capacity];
+      indexes = new int[capacity];
+      Arrays.fill(indexes, -1);
+
+      for(int i = 0; i < bindings.length; ++i)
+      {
+         String uri = bindings[i].getQName().getNamespaceURI();
+         String localName = bindings[i].getQName().getLocalPart();
+         int slot = hash(uri, localName) & mask;
+         while(indexes[slot] != -1)
+         {
+            slot = (slot + 1) & mask;
+         }
+         uris[slot] = uri;
+         localNames[slot] = localName;
+         indexes[slot] = i;
+      }
+   }
+
+   /**
+    * @return  the number of attributes
+    */
+   int size()
+   {
+      return bindings.length;
+   }
+
+   /**
+    * @param index  the index of the attribute
+    * @return  the attribute binding with the index
+    */
+   AttributeBinding get(int index)
+   {
+      return bindings[index];
+   }
+
+   /**
+    * @param uri  the namespace URI of the attribute, null is treated as no namespace
+    * @param localName  the local name of the attribute
+    * @return  the index of the attribute or -1 if the attribute is not bound
+    */
+   int indexOf(String uri, String localName)
+   {
+      if(uri == null)
+      {
+         uri = "";
+      }
+
+      int slot = hash(uri, localName) & mask;
+      int index;
+      while((index = indexes[slot]) != -1)
+      {
+         if(localName.equals(localNames[slot]) && uri.equals(uris[slot]))
+         {
+            return index;
+         }
+         slot = (slot + 1) & mask;
+      }
+      return -1;
+   }
+
+   /**
+    * @return  the words of the bitmask of seen attributes if the attributes don't fit
+    * into a single long, null otherwise
+    */
+   long[] newSeenWords()
+   {
+      return bindings.length > 64 ? new long[(bindings.length + 63) >>> 6] : null;
+   }
+
+   /**
+    * Marks the attribute with the index as seen.
+    *
+    * @param seen  the bitmask of seen attributes if seenWords is null
+    * @param seenWords  the bitmask words returned from newSeenWords()
+    * @param index  the index of the attribute
+    * @return  the new value of the seen bitmask
+    */
+   static long markSeen(long seen, long[] seenWords, int index)
+   {
+      if(seenWords == null)
+      {
+         return seen | (1L << index);
+      }
+      seenWords[index >>> 6] |= 1L << index;
+      return seen;
+   }
+
+   /**
+    * @param seen  the bitmask of seen attributes if seenWords is null
+    * @param seenWords  the bitmask words returned from newSeenWords()
+    * @param index  the index of the attribute
+    * @return  true if the attribute with the index was marked as seen
+    */
+   static boolean isSeen(long seen, long[] seenWords, int index)
+   {
+      if(seenWords == null)
+      {
+         return (seen & (1L << index)) != 0;
+      }
+      return (seenWords[index >>> 6] & (1L << index)) != 0;
+   }
+
+   private static int hash(String uri, String localName)
+   {
+      int h = localName.hashCode() * 31 + uri.hashCode();
+      return h ^ (h >>> 16);
+   }
+}
@@ -0,0 +1,144 @@
+/*
+* JBoss, Home of Professional Open Source
+* Copyright 2009, JBoss Inc., and individual contributors as indicated
+* by the @authors tag. See the copyright.txt in the distribution for a
+* full listing of individual contributors.
+*
+* This is free software; you can redistribute it and/or modify it
+* under the terms of the GNU Lesser General Public License as
+* published by the Free Software Foundation; either version 2.1 of
+* the License, or (at your option) any later version.
+*
+* This software is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+* Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public
+* License along with this software; if not, write to the Free
+* Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+* 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+*/
+package org.jboss.xb.binding.sunday.unmarshalling;
+
+import java.util.Collection;
+import java.util.List;
+
+import javax.xml.namespace.QName;
+
+import org.jboss.xb.binding.JBossXBRuntimeException;
+import org.xml.sax.Attributes;
+
+/**
+ * Content checks done by the positions when the parser is not validating
+ * and the content is validated against the binding instead
+ * (see {@link org.jboss.xb.binding.Unmarshaller#CONTENT_VALIDATION}).
+ * The checks cover the minimum occurrence of particles, required attributes,
+ * and the facets of simple types.
+ *
+ * @version $Revision: 1.1 $
+ */
+final class ContentValidator
+{
+   private ContentValidator()
+   {
+   }
+
+   /**
+    * @param particle  the particle
+    * @return true if the particle may have no content
+    */
+   static boolean isEmptiable(ParticleBinding particle)
+   {
+      if(particle.getMinOccurs() == 0)
+         return true;
+
+      TermBinding term = particle.getTerm();
+      if(!term.isModelGroup())
+         return false;
+
+      Collection<ParticleBinding> particles = ((ModelGroupBinding)term).getParticles();
+      if(particles.isEmpty())
+         return true;
+
+      boolean choice = term instanceof ChoiceBinding;
+      for(ParticleBinding item : particles)
+      {
+         if(isEmptiable(item) == choice)
+            return choice;
+      }
+      return !choice;
+   }
+
+   /**
+    * Checks that the particles starting from the index may have no content.
+    *
+    * @param group  the model group
+    * @param particles  the particles of the group
+    * @param from  the index of the first particle
+    */
+   static void checkEmptiable(ModelGroupBinding group, List<ParticleBinding> particles, int from)
+   {
+      for(int i = from; i < particles.size(); ++i)
+      {
+         ParticleBinding particle = particles.get(i);
+         if(!isEmptiable(particle))
+            throw new JBossXBRuntimeException("Content is incomplete: expected " + particle.getTerm() + " in " + group);
+      }
+   }
+
+   /**
+    * Checks that the term of the position occurred at least minOccurs times.
+    *
+    * @param position  the position
+    */
+   static void checkMinOccurs(AbstractPosition position)
+   {
+      ParticleBinding particle = position.particle;
+      if(position.occurrence < particle.getMinOccurs())
+         throw new JBossXBRuntimeException(position.qName + " occurred " + position.occurrence
+               + " time(s) but is expected at least " + particle.getMinOccurs() + " time(s)");
+   }
+
+   /**
+    * Checks the required attributes are present and the values of the attributes satisfy their facets.
+    *
+    * @param elementName  the element
+    * @param type  the type of the element
+    * @param attrs  the attributes of the element
+    */
+   static void checkAttributes(QName elementName, TypeBinding type, Attributes attrs)
+   {
+      for(AttributeBinding attribute : type.getAttributes())
+      {
+         QName attrName = attribute.getQName();
+         String value = attrs.getValue(attrName.getNamespaceURI(), attrName.getLocalPart());
+         if(value == null)
+         {
+            if(attribute.getRequired())
+               throw new JBossXBRuntimeException("Required attribute " + attrName + " is missing in " + elementName);
+         }
+         else
+         {
+            checkValue(attrName, attribute.getType(), value);
+         }
+      }
+   }
+
+   /**
+    * Checks the value against the facets of the type.
+    *
+    * @param name  the name of the element or attribute the value belongs to
+    * @param type  the simple type
+    * @param value  the lexical value
+    */
+   static void checkValue(QName name, TypeBinding type, String value)
+   {
+      if(type == null)
+         return;
+
+      String violation = type.getFacets().validate(value);
+      if(violation != null)
+         throw new JBossXBRuntimeException("Value '" + value + "' of " + name + " " + violation);
+   }
+}
@@ -49,6 +49,8 @@ public class ElementBinding
    protected TypeBinding typeBinding;
    protected boolean nillable;
    protected int normalizeSpace;
+   protected int lazy;
+   protected boolean ignored;
 
    protected XOPUnmarshaller xopUnmarshaller;
 
@@ -103,6 +105,9 @@ public class ElementBinding
    
    public void pushInterceptor(ElementInterceptor interceptor)
    {
+      if(isLazy())
+         throw new JBossXBRuntimeException("Lazy element " + qName + " can't have interceptors");
+
       switch(interceptors.size())
       {
          case 0:
@@ -226,16 +231,80 @@ public class ElementBinding
       return normalizeSpace == Constants.TRUE;
    }
    
+   /**
+    * The content of a lazy element is captured on unmarshalling
+    * and bound only when first requested, see LazyValue.
+    * Unless it's set on the element, it's inherited from the type.
+    * A lazy element can't have interceptors or be repeatable, see {@link #checkLazy(ParticleBinding, TypeBinding)}.
+    *
+    * @param lazy  whether the element is lazy
+    * @throws JBossXBRuntimeException  if the element is made lazy and has interceptors
+    */
+   public void setLazy(boolean lazy)
+   {
+      if(lazy && !interceptors.isEmpty())
+         throw new JBossXBRuntimeException("Lazy element " + qName + " can't have interceptors");
+      this.lazy = lazy ? Constants.TRUE : Constants.FALSE;
+   }
+
+   public boolean isLazy()
+   {
+      if(lazy == Constants.NOT_SET)
+         return typeBinding != null && typeBinding.isLazy();
+      return lazy == Constants.TRUE;
+   }
+
+   /**
+    * Checks that the element, if it's lazy, can be lazy in the particle.
+    * The captured content is bound later as a standalone element, i.e. without
+    * the parent objects the interceptors would be given and without the occurrences
+    * a repeatable handler would collect.
+    *
+    * @param particle  the particle of this element
+    * @param parentType  the type whose content the particle is in, can be null
+    * @throws JBossXBRuntimeException  if the element is lazy and has interceptors or the particle is repeatable
+    */
+   public void checkLazy(ParticleBinding particle, TypeBinding parentType)
+   {
+      if(!isLazy())
+         return;
+      if(!interceptors.isEmpty() || parentType != null && !parentType.getInterceptors(qName).isEmpty())
+         throw new JBossXBRuntimeException("Lazy element " + qName + " can't have interceptors");
+      if(particle.isRepeatable())
+         throw new JBossXBRuntimeException("Lazy element " + qName + " can't be repeatable");
+   }
+
+   /**
+    * The content of an ignored element is not bound, so the parser
+    * may fast-forward through it without reporting it to the handler.
+    *
+    * @param ignored  whether the content of the element is ignored
+    */
+   public void setIgnored(boolean ignored)
+   {
+      this.ignored = ignored;
+   }
+
+   public boolean isIgnored()
+   {
+      return ignored;
+   }
+
    public String toString()
    {
       return "element(" + qName + ", type=" + typeBinding.getQName() + ")";
    }
 
    public ElementPosition newPosition(QName name, Attributes attrs, ParticleBinding particle)
+   {
+      return newPosition(name, attrs, particle, null);
+   }
+
+   ElementPosition newPosition(QName name, Attributes attrs, ParticleBinding particle, PositionStack stack)
    {
       if(!qName.equals(name))
          return null;
       
-      return new ElementPosition(name, particle);
+      return stack == null ? new ElementPosition(name, particle) : stack.newElementPosition(name, particle);
    }
 }
@@ -47,9 +47,14 @@ public class ElementPosition extends AbstractPosition
    private TypeBinding type;
    private ParticleBinding nonXsiParticle;
    private boolean ignoreCharacters;
-   private StringBuffer textContent;
+   // the index of the text content of this position in the shared characters buffer or -1 if there is no text
+   private int textStart = -1;
    private Boolean indentation;
    private boolean ignorableCharacters = true;
+   // whether a child element has started in the current occurrence, used to validate the content
+   private boolean childStarted;
+   // whether the content of the current occurrence is captured to be bound on first access
+   private boolean lazy;
 
    private Object[] interceptorObjects;
 
@@ -59,6 +64,41 @@ public class ElementPosition extends AbstractPosition
       type = ((ElementBinding)term).getType();
    }
 
+   /**
+    * Initializes a released position for the next element.
+    * 
+    * @param qName  the name of the element
+    * @param particle  the element particle
+    */
+   void reuse(QName qName, ParticleBinding particle)
+   {
+      init(qName, particle);
+      type = ((ElementBinding)term).getType();
+   }
+
+   /**
+    * Clears the state of the ended position before it is added to the free list
+    * so that it doesn't keep the unmarshalled objects reachable.
+    */
+   void release()
+   {
+      ended = false;
+      o = null;
+      repeatableParticleValue = null;
+      parentType = null;
+      previous = null;
+      next = null;
+      notSkippedParent = null;
+      nonXsiParticle = null;
+      interceptorObjects = null;
+      ignoreCharacters = false;
+      textStart = -1;
+      indentation = null;
+      ignorableCharacters = true;
+      childStarted = false;
+      lazy = false;
+   }
+
    public boolean isElement()
    {
       return true;
@@ -71,11 +111,11 @@ public class ElementPosition extends AbstractPosition
       ended = false;
       o = null;
       
-      if(textContent != null)
-         textContent.setLength(0);
+      releaseTextContent();
       
       indentation = null;
       ignorableCharacters = true;
+      childStarted = false;
       
       if(nonXsiParticle != null)
       {
@@ -105,9 +145,48 @@ public class ElementPosition extends AbstractPosition
       this.ignoreCharacters = ignoreCharacters;
    }
    
+   /**
+    * @return  true if the content of the current occurrence is captured instead of being bound
+    */
+   public boolean isLazy()
+   {
+      return lazy;
+   }
+
+   /**
+    * Sets the captured content of the lazy element as its value.
+    *
+    * @param content  the captured content in the binary XML encoding
+    */
+   public void setLazyContent(byte[] content)
+   {
+      o = new LazyValue<Object>(particle, content, stack.isValidateContent());
+   }
+
+   /**
+    * Returns a copy of the text content accumulated so far.
+    * Modifications of the returned buffer don't affect the position.
+    * 
+    * @return  the copy of the text content or null if there is none
+    */
    public StringBuffer getTextContent()
    {
-      return this.textContent;
+      CharSequence text = getText();
+      return text == null ? null : new StringBuffer(text);
+   }
+
+   /**
+    * Returns the text content accumulated so far without
+    * the intermediate StringBuffer of {@link #getTextContent()}.
+    * 
+    * @return  the text content or null if there is none
+    */
+   public CharSequence getText()
+   {
+      if(textStart < 0)
+         return null;
+      CharactersBuffer buffer = stack.getCharactersBuffer();
+      return buffer.subSequence(textStart, buffer.length());
    }
 
    public AbstractPosition nextPosition(QName startName, Attributes atts)
@@ -139,11 +218,7 @@ public class ElementPosition extends AbstractPosition
          reset();
          previous.repeatForChild(atts);
          occurrence = 1;
-         if(next != null)
-         {
-            next.previous = null;
-            next = null;
-         }
+         releaseNext();
          return this;
       }
       
@@ -155,10 +230,6 @@ public class ElementPosition extends AbstractPosition
          if (startName.equals(Constants.QNAME_XOP_INCLUDE))
          {
             SchemaBinding schema = term.getSchema();
-            TypeBinding anyUriType = schema.getType(Constants.QNAME_ANYURI);
-            if (anyUriType == null)
-               log.warn("Type " + Constants.QNAME_ANYURI + " not bound.");
-
             ElementBinding element = (ElementBinding) term;
             element.setXopUnmarshaller(schema.getXopUnmarshaller());
 
@@ -167,13 +238,8 @@ public class ElementPosition extends AbstractPosition
             ignoreCharacters = true;
             initValue(null);
 
-            TypeBinding xopIncludeType = new TypeBinding(new QName(Constants.NS_XOP_INCLUDE, "Include"));
-            xopIncludeType.setSchemaBinding(schema);
-            xopIncludeType.addAttribute(new QName("href"), anyUriType, DefaultHandlers.ATTRIBUTE_HANDLER);
-            xopIncludeType.setHandler(new XOPIncludeHandler(type, schema.getXopUnmarshaller()));
-
-            ElementBinding xopInclude = new ElementBinding(schema, Constants.QNAME_XOP_INCLUDE, xopIncludeType);
-            next = new ElementPosition(startName, new ParticleBinding(xopInclude));
+            releaseNext();
+            next = stack.newElementPosition(startName, getXopIncludeParticle(schema));
             next.stack = stack;
             next.previous = this;
             next.notSkippedParent = getLastNotSkipped();
@@ -194,9 +260,11 @@ public class ElementPosition extends AbstractPosition
                   + qName + " is " + modelGroup);
       }
 
-      next = modelGroup.newPosition(startName, atts, typeParticle);
+      releaseNext();
+      next = modelGroup.newPosition(startName, atts, typeParticle, stack);
       if (next == null)
          throw new JBossXBRuntimeException(startName + " not found as a child of " + qName + " in " + modelGroup);
+      childStarted = true;
 
       next.previous = this;      
       
@@ -221,10 +289,38 @@ public class ElementPosition extends AbstractPosition
    }
 
    public void characters(char[] ch, int start, int length)
+   {
+      if(!acceptCharacters(ch, start, length, null))
+         return;
+         
+      CharactersBuffer buffer = stack.getCharactersBuffer();
+      if(textStart < 0)
+         textStart = buffer.length();
+      buffer.append(ch, start, length);
+   }
+
+   public void characters(CharSequence text)
+   {
+      if(!acceptCharacters(null, 0, 0, text))
+         return;
+         
+      CharactersBuffer buffer = stack.getCharactersBuffer();
+      if(textStart < 0)
+         textStart = buffer.length();
+      buffer.append(text);
+   }
+
+   /**
+    * Checks whether the characters are allowed content and updates the indentation state.
+    * The characters are passed either as a char array range or as a CharSequence.
+    * 
+    * @return  true if the characters should be collected
+    */
+   private boolean acceptCharacters(char[] ch, int start, int length, CharSequence text)
    {
       // collect characters only if they are allowed content
       if(!type.isTextContentAllowed())
-         return;
+         return false;
       
       if(indentation != Boolean.FALSE)
       {
@@ -243,30 +339,32 @@ public class ElementPosition extends AbstractPosition
          {
             // the indentation is currently defined as whitespaces with next line characters
             // this should probably be externalized in the form of a filter or something
-            for (int i = start; i < start + length; ++i)
+            int kind = text == null ? CharactersBuffer.classify(ch, start, length) : CharactersBuffer.classify(text);
+            if(kind == CharactersBuffer.TEXT)
             {
-               if(ch[i] == 0x0a)
-               {
-                  indentation = Boolean.TRUE;
-               }
-               else if (!Character.isWhitespace(ch[i]))
-               {
-                  indentation = Boolean.FALSE;
-                  ignorableCharacters = false;
-                  break;
-               }
+               indentation = Boolean.FALSE;
+               ignorableCharacters = false;
+            }
+            else if(kind == CharactersBuffer.INDENTATION)
+            {
+               indentation = Boolean.TRUE;
             }
          }
       }
-         
-      if (textContent == null)
-         textContent = new StringBuffer();
-      textContent.append(ch, start, length);
+      return true;
    }
    
    public void endParticle()
    {
       ended = true;
+
+      if(lazy)
+      {
+         releaseTextContent();
+         if(!skip)
+            setParentValue();
+         return;
+      }
       
       ElementBinding element = (ElementBinding) term;
       List<ElementInterceptor> interceptors = null;
@@ -279,6 +377,14 @@ public class ElementPosition extends AbstractPosition
 
       if(o != SundayContentHandler.NIL)
       {
+         // the content of an ignored element may not have been reported
+         if(!childStarted && stack.isValidateContent() && !element.isIgnored())
+         {
+            ParticleBinding typeParticle = type.getParticle();
+            if(typeParticle != null && !ContentValidator.isEmptiable(typeParticle))
+               throw new JBossXBRuntimeException("Content of " + qName + " is incomplete: expected " + typeParticle.getTerm());
+         }
+
          //
          // characters
          //
@@ -299,24 +405,31 @@ public class ElementPosition extends AbstractPosition
           * of the empty text content is assumed to be null
           * (in case of simple types that's not always true and depends on nillable attribute).
           */
-         String textContent = this.textContent == null ? "" : this.textContent.toString();
-         if(textContent.length() > 0 || charHandler != null && !type.isIgnoreEmptyString())
+         CharactersBuffer buffer = textStart < 0 ? null : stack.getCharactersBuffer();
+         int textLength = buffer == null ? 0 : buffer.length() - textStart;
+         if(textLength > 0 || charHandler != null && !type.isIgnoreEmptyString())
          {
             String dataContent;
             SchemaBinding schema = term.getSchema();
-            if(textContent.length() == 0)
+            if(textLength == 0)
             {
                dataContent = null;
             }
-            else
+            else if(schema != null && schema.isReplacePropertyRefs())
             {
-               dataContent = textContent;
-               if(schema != null && schema.isReplacePropertyRefs())
-                  dataContent = StringPropertyReplacer.replaceProperties(dataContent);
-               
+               dataContent = StringPropertyReplacer.replaceProperties(buffer.toString(textStart, false));
                if(element.isNormalizeSpace())
                   dataContent = dataContent.trim();
             }
+            else
+            {
+               // the string is created only once, already trimmed if necessary
+               dataContent = buffer.toString(textStart, element.isNormalizeSpace());
+            }
+            releaseTextContent();
+
+            if(stack.isValidateContent())
+               ContentValidator.checkValue(qName, charType, dataContent == null ? "" : dataContent);
 
             Object unmarshalled;
 
@@ -398,6 +511,8 @@ public class ElementPosition extends AbstractPosition
          o = null;
       }
 
+      releaseTextContent();
+
       if(skip)
          return;
 
@@ -440,34 +555,8 @@ public class ElementPosition extends AbstractPosition
             o = parent;
          }
       }
-      else if (notSkippedParent != null)
-      {
-         if (notSkippedParent.o != null)
-         {
-            ParticleHandler handler = this.handler;
-            if (notSkippedParent.term.isWildcard())
-            {
-               ParticleHandler wh = ((WildcardBinding) notSkippedParent.term).getWildcardHandler();
-               if (wh != null)
-                  handler = wh;
-            }
-            setParent(notSkippedParent, handler);
-         }
-         else if (notSkippedParent.term.isWildcard())
-         {
-            // the parent has anyType, so it gets the value of its child
-            AbstractPosition parentPos = previous;
-            parentPos.o = o;
-            while(!parentPos.isElement())
-            {
-               parentPos = parentPos.getPrevious();
-               parentPos.o = o;
-            }
-
-            if (trace)
-               log.trace("Value of " + qName + " " + o + " is promoted as the value of its parent element.");
-         }
-      }
+      else
+         setParentValue();
    }
    
    public ElementPosition startParticle(QName startName, Attributes atts)
@@ -484,6 +573,19 @@ public class ElementPosition extends AbstractPosition
 
    public void push(Attributes atts)
    {
+      // the root element is never lazy since there is no parent to hold the captured content
+      lazy = previous != null && ((ElementBinding) term).isLazy();
+      if(lazy)
+      {
+         // checked when the schema is bound too, but the bindings may have been changed since
+         ((ElementBinding) term).checkLazy(particle, parentType);
+
+         // the content is captured by the handler, xsi:type
+         // and validation are applied when the value is bound
+         o = null;
+         return;
+      }
+
       // TODO xsi:type support should be implemented in a better way
       String xsiType = atts.getValue(Constants.NS_XML_SCHEMA_INSTANCE, "type");
       if (xsiType != null)
@@ -527,6 +629,9 @@ public class ElementPosition extends AbstractPosition
          type = xsiTypeBinding;
       }
 
+      if (stack.isValidateContent())
+         ContentValidator.checkAttributes(qName, type, atts);
+
       if (occurrence == 1 && repeatableHandler != null)
          startRepeatableParticle();
 
@@ -582,17 +687,91 @@ public class ElementPosition extends AbstractPosition
          initValue(atts);
    }
    
+   /**
+    * Sets the value of this element on the parent or promotes it
+    * as the value of the parent if the parent is a wildcard without a value.
+    */
+   private void setParentValue()
+   {
+      if (notSkippedParent == null)
+         return;
+
+      if (notSkippedParent.o != null)
+      {
+         ParticleHandler handler = this.handler;
+         if (notSkippedParent.term.isWildcard())
+         {
+            ParticleHandler wh = ((WildcardBinding) notSkippedParent.term).getWildcardHandler();
+            if (wh != null)
+               handler = wh;
+         }
+         setParent(notSkippedParent, handler);
+      }
+      else if (notSkippedParent.term.isWildcard())
+      {
+         // the parent has anyType, so it gets the value of its child
+         AbstractPosition parentPos = previous;
+         parentPos.o = o;
+         while(!parentPos.isElement())
+         {
+            parentPos = parentPos.getPrevious();
+            parentPos.o = o;
+         }
+
+         if (trace)
+            log.trace("Value of " + qName + " " + o + " is promoted as the value of its parent element.");
+      }
+   }
+   
+   /**
+    * The xop:Include binding is created once per type and schema
+    * instead of every time an XOP-optimized element is unmarshalled.
+    */
+   private ParticleBinding getXopIncludeParticle(SchemaBinding schema)
+   {
+      ParticleBinding xopIncludeParticle = type.getXopIncludeParticle();
+      if(xopIncludeParticle != null && xopIncludeParticle.getTerm().getSchema() == schema)
+         return xopIncludeParticle;
+
+      TypeBinding anyUriType = schema.getType(Constants.QNAME_ANYURI);
+      if (anyUriType == null)
+         log.warn("Type " + Constants.QNAME_ANYURI + " not bound.");
+
+      TypeBinding xopIncludeType = new TypeBinding(new QName(Constants.NS_XOP_INCLUDE, "Include"));
+      xopIncludeType.setSchemaBinding(schema);
+      xopIncludeType.addAttribute(new QName("href"), anyUriType, DefaultHandlers.ATTRIBUTE_HANDLER);
+      xopIncludeType.setHandler(new XOPIncludeHandler(type, schema));
+
+      ElementBinding xopInclude = new ElementBinding(schema, Constants.QNAME_XOP_INCLUDE, xopIncludeType);
+      xopIncludeParticle = new ParticleBinding(xopInclude);
+      type.setXopIncludeParticle(xopIncludeParticle);
+      return xopIncludeParticle;
+   }
+
    private void flushIgnorableCharacters()
    {
-      if(textContent == null)
+      if(textStart < 0)
          return;
 
       if(indentation == Boolean.TRUE || ignorableCharacters)
       {
          if(trace)
-            log.trace("ignored characters: " + term.getQName() + " '" + textContent + "'");
-         textContent = null;
+            log.trace("ignored characters: " + term.getQName() + " '" + getText() + "'");
+         releaseTextContent();
          indentation = null;
       }
    }
+
+   /**
+    * Removes the text content of this position from the shared characters buffer.
+    * Since only the innermost open element receives characters, the text content
+    * of this position is always at the end of the buffer.
+    */
+   private void releaseTextContent()
+   {
+      if(textStart < 0)
+         return;
+      stack.getCharactersBuffer().setLength(textStart);
+      textStart = -1;
+   }
 }
\ No newline at end of file
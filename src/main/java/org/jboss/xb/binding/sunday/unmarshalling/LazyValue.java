@@ -0,0 +1,144 @@
+/*
+  * JBoss, Home of Professional Open Source
+  * Copyright 2005, JBoss Inc., and individual contributors as indicated
+  * by the @authors tag. See the copyright.txt in the distribution for a
+  * full listing of individual contributors.
+  *
+  * This is free software; you can redistribute it and/or modify it
+  * under the terms of the GNU Lesser General Public License as
+  * published by the Free Software Foundation; either version 2.1 of
+  * the License, or (at your option) any later version.
+  *
+  * This software is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+  * Lesser General Public License for more details.
+  *
+  * You should have received a copy of the GNU Lesser General Public
+  * License along with this software; if not, write to the Free
+  * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+  * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+  */
+package org.jboss.xb.binding.sunday.unmarshalling;
+
+import java.io.ByteArrayInputStream;
+
+import org.jboss.xb.binding.JBossXBException;
+import org.jboss.xb.binding.JBossXBRuntimeException;
+import org.jboss.xb.binding.parser.binary.BinaryJBossXBParser;
+
+/**
+ * The value of a lazy element, i.e. an element whose binding is lazy.
+ * On unmarshalling, the content of a lazy element is not bound. Instead, it's captured
+ * in the binary XML encoding and an instance of this class is set on the parent.
+ * The content is bound when the value is first requested and the captured content
+ * is released then.
+ * <p>
+ * The namespace declarations in scope of the lazy element are captured with its content.
+ * The content is validated, if validation was enabled, when it's bound. The classes are loaded
+ * with the thread context class loader of the unmarshalling, not of the thread that requests the value.
+ * <p>
+ * The content is bound as a standalone element, so a lazy element can't have interceptors
+ * and can't be repeatable.
+ *
+ * @version $Revision: 1.1 $
+ */
+public class LazyValue<T>
+{
+   private final ParticleBinding particle;
+   private final boolean validateContent;
+   private final ClassLoader classLoader;
+   private byte[] content;
+   private T value;
+
+   /**
+    * Creates a value that has already been bound, e.g. to be marshalled.
+    *
+    * @param value  the value
+    */
+   public LazyValue(T value)
+   {
+      this.particle = null;
+      this.validateContent = false;
+      this.classLoader = null;
+      this.value = value;
+   }
+
+   /**
+    * Creates a value to be bound from the captured content.
+    * The current thread context class loader will be used to bind it.
+    *
+    * @param particle  the particle of the lazy element
+    * @param content  the content of the element in the binary XML encoding
+    * @param validateContent  whether the content should be validated when it's bound
+    */
+   public LazyValue(ParticleBinding particle, byte[] content, boolean validateContent)
+   {
+      if(particle == null)
+         throw new IllegalArgumentException("The particle is null");
+      if(content == null)
+         throw new IllegalArgumentException("The content is null");
+      // the value is bound as a single occurrence of the element
+      this.particle = new ParticleBinding(particle.getTerm());
+      this.content = content;
+      this.validateContent = validateContent;
+      this.classLoader = Thread.currentThread().getContextClassLoader();
+   }
+
+   /**
+    * @return  true if the content has been bound
+    */
+   public synchronized boolean isBound()
+   {
+      return content == null;
+   }
+
+   /**
+    * @return  the size of the captured content in bytes or 0 if it has been bound
+    */
+   public synchronized int getContentSize()
+   {
+      return content == null ? 0 : content.length;
+   }
+
+   /**
+    * Binds the content, if it hasn't been bound yet, and returns the value.
+    *
+    * @return  the value
+    * @throws JBossXBRuntimeException  if the content could not be bound
+    */
+   @SuppressWarnings("unchecked")
+   public synchronized T getValue()
+   {
+      if(content != null)
+      {
+         SundayContentHandler handler = new SundayContentHandler(particle);
+         handler.setValidateContent(validateContent);
+         Thread thread = Thread.currentThread();
+         ClassLoader threadClassLoader = thread.getContextClassLoader();
+         thread.setContextClassLoader(classLoader);
+         try
+         {
+            new BinaryJBossXBParser().parse(new ByteArrayInputStream(content), handler);
+         }
+         catch(JBossXBException e)
+         {
+            throw new JBossXBRuntimeException("Failed to bind lazy element " + particle.getTerm().getQName(), e);
+         }
+         finally
+         {
+            thread.setContextClassLoader(threadClassLoader);
+         }
+
+         value = (T) handler.getRoot();
+         content = null;
+      }
+      return value;
+   }
+
+   public synchronized String toString()
+   {
+      return "LazyValue[" + (particle == null ? "" : particle.getTerm().getQName() + ", ") +
+         (isBound() ? "value=" + value : "content=" + content.length + " bytes") + "]";
+   }
+}
@@ -47,13 +47,20 @@ public abstract class NonElementPosition extends AbstractPosition
    public void characters(char[] ch, int start, int length)
    {
    }
+
+   public void characters(CharSequence text)
+   {
+   }
    
    
    public void endParticle()
    {
       if(ended)
          throw new JBossXBRuntimeException("The position has already been ended!");
-      
+
+      if(stack != null && stack.isValidateContent())
+         validateContent();
+
       if(!skip)
       {
          o = handler.endParticle(o, qName, particle);
@@ -113,10 +120,22 @@ public abstract class NonElementPosition extends AbstractPosition
       return (ElementPosition) nextPosition;
    }
 
+   /**
+    * Validates the content of the position when it is ended.
+    * The default implementation checks the minimum occurrence of this position and
+    * of the last element matched in it.
+    */
+   protected void validateContent()
+   {
+      ContentValidator.checkMinOccurs(this);
+      if(next != null && next.isElement())
+         ContentValidator.checkMinOccurs(next);
+   }
+
    protected void nextNotFound()
    {
       endParticle();
-      next = null;
+      releaseNext();
       occurrence = 0;
    }
 }
\ No newline at end of file
@@ -21,6 +21,8 @@
   */
 package org.jboss.xb.binding.sunday.unmarshalling;
 
+import javax.xml.namespace.QName;
+
 import org.jboss.xb.binding.NamespaceRegistry;
 import org.jboss.xb.binding.sunday.unmarshalling.SundayContentHandler.UnmarshallingContextImpl;
 
@@ -33,4 +35,28 @@ public interface PositionStack
    NamespaceRegistry getNamespaceRegistry();
    
    UnmarshallingContextImpl getContext();
+   
+   CharactersBuffer getCharactersBuffer();
+
+   /**
+    * @return true if the positions should validate the content against the binding
+    */
+   boolean isValidateContent();
+
+   /**
+    * Returns an element position for the particle, reusing a released one if available.
+    * 
+    * @param qName  the name of the element
+    * @param particle  the element particle
+    * @return  the element position
+    */
+   ElementPosition newElementPosition(QName qName, ParticleBinding particle);
+
+   /**
+    * Adds the element positions of the chain starting with the position to the free list.
+    * The positions must have ended and must not be referenced anymore.
+    * 
+    * @param position  the first position of the chain
+    */
+   void releasePositions(AbstractPosition position);
 }
\ No newline at end of file
@@ -39,44 +39,50 @@ import org.xml.sax.Attributes;
 public class RegisteredAttributesHandler extends AttributesHandler
 {
    private Map<QName, AttributeBinding> registered;
+   private volatile CompiledAttributes compiled;
    private AnyAttributeBinding any;
-   private Map<QName, AttributeBinding> defaultAttrs;
    
    public void attributes(Object o, QName elementName, TypeBinding type, Attributes attrs, NamespaceContext nsCtx)
    {
       if(registered == null)
          return;
       
-      Map<QName, AttributeBinding> notSetDefaultAttrs = null;
-      // note: this is never used in the builder impl
-      // but there is a test for this in SchemaDefaultAttributeValueUnitTestCase
-      if(defaultAttrs != null)
-         notSetDefaultAttrs = new HashMap<QName, AttributeBinding>(defaultAttrs);
-      
+      CompiledAttributes compiled = this.compiled;
+      if(compiled == null)
+      {
+         compiled = new CompiledAttributes(registered.values());
+         this.compiled = compiled;
+      }
+
+      long seen = 0;
+      long[] seenWords = compiled.newSeenWords();
       for(int i = 0; i < attrs.getLength(); ++i)
       {
-         QName qName = new QName(attrs.getURI(i), attrs.getLocalName(i));
-         AttributeBinding binding = registered.get(qName);
-         if(binding != null)
+         int index = compiled.indexOf(attrs.getURI(i), attrs.getLocalName(i));
+         if(index >= 0)
          {
+            AttributeBinding binding = compiled.get(index);
+            QName qName = binding.getQName();
             AttributeHandler handler = binding.getHandler();
             Object value = handler.unmarshal(elementName, qName, binding, nsCtx, attrs.getValue(i));
             handler.attribute(elementName, qName, binding, o, value);
-            
-            if(notSetDefaultAttrs != null && binding.getDefaultConstraint() != null)
-               notSetDefaultAttrs.remove(qName);
+            seen = CompiledAttributes.markSeen(seen, seenWords, index);
          }
          else if (any != null)
          {
+            QName qName = new QName(attrs.getURI(i), attrs.getLocalName(i));
             AnyAttributeHandler handler = any.getHandler();
             Object value = handler.unmarshal(elementName, qName, any, nsCtx, attrs.getValue(i));
             handler.attribute(elementName, qName, any, o, value);
          }
       }
       
-      if(notSetDefaultAttrs != null && !notSetDefaultAttrs.isEmpty())
+      // note: defaults are never used in the builder impl
+      // but there is a test for this in SchemaDefaultAttributeValueUnitTestCase
+      for(int i = 0; i < compiled.size(); ++i)
       {
-         for(AttributeBinding binding : notSetDefaultAttrs.values())
+         AttributeBinding binding = compiled.get(i);
+         if(binding.getDefaultConstraint() != null && !CompiledAttributes.isSeen(seen, seenWords, i))
          {
             AttributeHandler handler = binding.getHandler();
             Object value = handler.unmarshal(elementName, binding.getQName(), binding, nsCtx, binding.getDefaultConstraint());
@@ -95,18 +101,7 @@ public class RegisteredAttributesHandler extends AttributesHandler
             registered = new HashMap<QName, AttributeBinding>(registered);
          registered.put(attr.getQName(), attr);
       }
-      
-      if(attr.getDefaultConstraint() != null)
-      {
-         if(defaultAttrs == null)
-            defaultAttrs = Collections.singletonMap(attr.getQName(), attr);
-         else
-         {
-            if(defaultAttrs.size() == 1)
-               defaultAttrs = new HashMap<QName, AttributeBinding>(defaultAttrs);
-            defaultAttrs.put(attr.getQName(), attr);
-         }
-      }
+      compiled = null;
    }
    
    public void setAnyAttribute(AnyAttributeBinding any)
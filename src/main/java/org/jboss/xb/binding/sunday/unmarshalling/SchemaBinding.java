@@ -29,6 +29,7 @@ import java.util.HashMap;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.xml.namespace.NamespaceContext;
 import javax.xml.namespace.QName;
@@ -70,10 +71,11 @@ public class SchemaBinding
    private Set<String> namespaces = Collections.emptySet();
    /** namespace to prefix map, used in xb builder during binding */
    private Map<String, String> nsByPrefix = Collections.emptyMap();
-   /** Map<QName, TypeBinding> for simple/complex types */
-   private Map<QName, TypeBinding> types = new HashMap<QName, TypeBinding>();
+   /** Map<QName, TypeBinding> for simple/complex types,
+    * concurrent since global types and elements can be added by lazily bound types while the schema is in use */
+   private Map<QName, TypeBinding> types = new ConcurrentHashMap<QName, TypeBinding>();
    /** Map<QName, ParticleBinding> for */
-   private Map<QName, ParticleBinding> elements = new HashMap<QName, ParticleBinding>();
+   private Map<QName, ParticleBinding> elements = new ConcurrentHashMap<QName, ParticleBinding>();
    /** Map<QName, ModelGroupBinding> for */
    private Map<QName, ModelGroupBinding> groups = new HashMap<QName, ModelGroupBinding>();
    /** The default package information */
@@ -616,7 +618,7 @@ public class SchemaBinding
 
    public TypeBinding getType(QName qName)
    {
-      return types.get(qName);
+      return qName == null ? null : types.get(qName);
    }
 
    public void addType(TypeBinding type)
@@ -631,20 +633,19 @@ public class SchemaBinding
 
    public ElementBinding getElement(QName name)
    {
-      ParticleBinding particle = elements.get(name);
+      ParticleBinding particle = name == null ? null : elements.get(name);
       ElementBinding element = (ElementBinding)(particle == null ? null : particle.getTerm());
       return element;
    }
 
    public ParticleBinding getElementParticle(QName name)
    {
-      return elements.get(name);
+      return name == null ? null : elements.get(name);
    }
 
    public void addElement(ElementBinding element)
    {
-      ParticleBinding particle = new ParticleBinding(element);
-      elements.put(element.getQName(), particle);
+      addElementParticle(new ParticleBinding(element));
    }
 
    public ElementBinding addElement(QName name, TypeBinding type)
@@ -919,6 +920,11 @@ public class SchemaBinding
    void addElementParticle(ParticleBinding particle)
    {
       ElementBinding element = (ElementBinding)particle.getTerm();
-      elements.put(element.getQName(), particle);
+      QName qName = element.getQName();
+      if(qName == null)
+      {
+         throw new JBossXBRuntimeException("Global element must have a name.");
+      }
+      elements.put(qName, particle);
    }
 }
@@ -80,11 +80,16 @@ public class SequenceBinding
    }
 
    public AbstractPosition newPosition(QName qName, Attributes attrs, ParticleBinding seqParticle)
+   {
+      return newPosition(qName, attrs, seqParticle, null);
+   }
+
+   AbstractPosition newPosition(QName qName, Attributes attrs, ParticleBinding seqParticle, PositionStack stack)
    {
       for(int i = 0; i < sequence.size(); ++i)
       {
          ParticleBinding particle = sequence.get(i);
-         AbstractPosition next = particle.getTerm().newPosition(qName, attrs, particle);
+         AbstractPosition next = particle.getTerm().newPosition(qName, attrs, particle, stack);
          if(next != null)
             return new SequencePosition(qName, seqParticle, i, next);
          
@@ -120,10 +125,15 @@ public class SequenceBinding
             log.trace(sb.toString());
          }
 
+         boolean validate = stack.isValidateContent();
+         if(validate && next != null && next.isElement())
+            ContentValidator.checkMinOccurs(next);
+
          for(++pos; pos < sequence.size(); ++pos)
          {
             ParticleBinding particle = sequence.get(pos);
-            next = particle.getTerm().newPosition(qName, atts, particle);
+            releaseNext();
+            next = particle.getTerm().newPosition(qName, atts, particle, stack);
 
             if (next != null)
             {
@@ -133,6 +143,8 @@ public class SequenceBinding
 
             if (particle.isRequired())
             {
+               if(validate)
+                  ContentValidator.checkEmptiable(SequenceBinding.this, sequence, pos);
                nextNotFound();
                return null;
             }
@@ -144,7 +156,8 @@ public class SequenceBinding
             {
                ParticleBinding item = sequence.get(pos);
                TermBinding term = item.getTerm();
-               next = term.newPosition(qName, atts, item);
+               releaseNext();
+               next = term.newPosition(qName, atts, item, stack);
 
                if(next != null)
                {
@@ -167,6 +180,8 @@ public class SequenceBinding
                
                if (particle.isRequired())
                {
+                  // the previous occurrence is complete
+                  pos = sequence.size();
                   nextNotFound();
                   return null;
                }
@@ -180,6 +195,13 @@ public class SequenceBinding
          return null;
       }
       
+      @Override
+      protected void validateContent()
+      {
+         super.validateContent();
+         ContentValidator.checkEmptiable(SequenceBinding.this, sequence, pos + 1);
+      }
+
       @Override
       protected void nextNotFound()
       {
@@ -0,0 +1,608 @@
+/*
+* JBoss, Home of Professional Open Source
+* Copyright 2006, JBoss Inc., and individual contributors as indicated
+* by the @authors tag. See the copyright.txt in the distribution for a
+* full listing of individual contributors.
+*
+* This is free software; you can redistribute it and/or modify it
+* under the terms of the GNU Lesser General Public License as
+* published by the Free Software Foundation; either version 2.1 of
+* the License, or (at your option) any later version.
+*
+* This software is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+* Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public
+* License along with this software; if not, write to the Free
+* Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+* 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+*/
+package org.jboss.xb.binding.sunday.unmarshalling;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import javax.xml.namespace.QName;
+
+import org.jboss.logging.Logger;
+import org.jboss.xb.binding.Constants;
+
+/**
+ * The constraining facets of a simple type compiled for checking lexical values:
+ * patterns are compiled to java.util.regex.Pattern, enumerations to a hash set,
+ * and length, range and digits facets to numbers.
+ * An instance is built once per type binding, see {@link TypeBinding#getFacets()}.
+ *
+ * @version $Revision: 1.1 $
+ */
+public final class SimpleTypeFacets
+{
+   private static final Logger log = Logger.getLogger(SimpleTypeFacets.class);
+
+   public static final String LENGTH = "length";
+   public static final String MIN_LENGTH = "minLength";
+   public static final String MAX_LENGTH = "maxLength";
+   public static final String MIN_INCLUSIVE = "minInclusive";
+   public static final String MAX_INCLUSIVE = "maxInclusive";
+   public static final String MIN_EXCLUSIVE = "minExclusive";
+   public static final String MAX_EXCLUSIVE = "maxExclusive";
+   public static final String TOTAL_DIGITS = "totalDigits";
+   public static final String FRACTION_DIGITS = "fractionDigits";
+
+   private static final int WS_PRESERVE = 0;
+   private static final int WS_REPLACE = 1;
+   private static final int WS_COLLAPSE = 2;
+
+   private static final int LENGTH_NONE = 0;
+   private static final int LENGTH_CHARS = 1;
+   private static final int LENGTH_HEX = 2;
+   private static final int LENGTH_BASE64 = 3;
+   private static final int LENGTH_ITEMS = 4;
+
+   private static final Set<String> STRINGS = new HashSet<String>();
+   private static final Set<String> INTEGERS = new HashSet<String>();
+   static
+   {
+      String[] strings = {"string", "normalizedString", "token", "language", "Name", "NCName", "NMTOKEN", "ID", "IDREF", "ENTITY", "anyURI"};
+      for(String name : strings)
+         STRINGS.add(name);
+      String[] integers = {"integer", "nonPositiveInteger", "negativeInteger", "long", "int", "short", "byte",
+            "nonNegativeInteger", "unsignedLong", "unsignedInt", "unsignedShort", "unsignedByte", "positiveInteger"};
+      for(String name : integers)
+         INTEGERS.add(name);
+   }
+
+   private final Pattern[] patterns;
+   private final String[] patternValues;
+   private final Set<String> enumeration;
+   private final int whitespace;
+
+   private final int lengthKind;
+   private final int minLength;
+   private final int maxLength;
+
+   private final boolean numeric;
+   private final BigDecimal lower;
+   private final boolean lowerInclusive;
+   private final BigDecimal upper;
+   private final boolean upperInclusive;
+   // inclusive bounds of an integer type as longs, checked without BigDecimal when the value fits
+   private final boolean longRange;
+   private final long lowerLong;
+   private final long upperLong;
+   private final int totalDigits;
+   private final int fractionDigits;
+
+   private final boolean empty;
+
+   SimpleTypeFacets(TypeBinding type)
+   {
+      String builtin = getBuiltinName(type);
+      boolean list = type.getItemType() != null;
+
+      if(list)
+         whitespace = WS_COLLAPSE;
+      else if("string".equals(builtin))
+         whitespace = WS_PRESERVE;
+      else if("normalizedString".equals(builtin))
+         whitespace = WS_REPLACE;
+      else
+         whitespace = WS_COLLAPSE;
+
+      List<String> lexicalPatterns = type.getLexicalPattern();
+      if(lexicalPatterns == null)
+      {
+         patterns = null;
+         patternValues = null;
+      }
+      else
+      {
+         List<Pattern> compiled = new ArrayList<Pattern>(lexicalPatterns.size());
+         List<String> values = new ArrayList<String>(lexicalPatterns.size());
+         for(String value : lexicalPatterns)
+         {
+            Pattern pattern = compilePattern(value);
+            if(pattern != null)
+            {
+               compiled.add(pattern);
+               values.add(value);
+            }
+            else
+            {
+               // the facets are compiled once per type, so this is logged once
+               log.warn("Pattern facet '" + value + "' of type " + type.getQName() +
+                  " can't be translated to a Java regular expression and won't be checked");
+            }
+         }
+         patterns = compiled.isEmpty() ? null : compiled.toArray(new Pattern[compiled.size()]);
+         patternValues = patterns == null ? null : values.toArray(new String[values.size()]);
+      }
+
+      List<String> lexicalEnumeration = type.getLexicalEnumeration();
+      enumeration = lexicalEnumeration == null ? null : new HashSet<String>(lexicalEnumeration);
+
+      if(list)
+         lengthKind = LENGTH_ITEMS;
+      else if(builtin == null)
+         lengthKind = LENGTH_NONE;
+      else if(STRINGS.contains(builtin))
+         lengthKind = LENGTH_CHARS;
+      else if("hexBinary".equals(builtin))
+         lengthKind = LENGTH_HEX;
+      else if("base64Binary".equals(builtin))
+         lengthKind = LENGTH_BASE64;
+      else
+         lengthKind = LENGTH_NONE;
+
+      int length = parseInt(type.getLexicalFacet(LENGTH));
+      if(length >= 0)
+      {
+         minLength = length;
+         maxLength = length;
+      }
+      else
+      {
+         minLength = parseInt(type.getLexicalFacet(MIN_LENGTH));
+         maxLength = parseInt(type.getLexicalFacet(MAX_LENGTH));
+      }
+
+      boolean integer = builtin != null && INTEGERS.contains(builtin);
+      numeric = integer || "decimal".equals(builtin);
+      if(numeric)
+      {
+         BigDecimal minExclusive = parseDecimal(type.getLexicalFacet(MIN_EXCLUSIVE));
+         if(minExclusive != null)
+         {
+            lower = minExclusive;
+            lowerInclusive = false;
+         }
+         else
+         {
+            lower = parseDecimal(type.getLexicalFacet(MIN_INCLUSIVE));
+            lowerInclusive = true;
+         }
+
+         BigDecimal maxExclusive = parseDecimal(type.getLexicalFacet(MAX_EXCLUSIVE));
+         if(maxExclusive != null)
+         {
+            upper = maxExclusive;
+            upperInclusive = false;
+         }
+         else
+         {
+            upper = parseDecimal(type.getLexicalFacet(MAX_INCLUSIVE));
+            upperInclusive = true;
+         }
+
+         totalDigits = parseInt(type.getLexicalFacet(TOTAL_DIGITS));
+         fractionDigits = parseInt(type.getLexicalFacet(FRACTION_DIGITS));
+      }
+      else
+      {
+         lower = null;
+         lowerInclusive = true;
+         upper = null;
+         upperInclusive = true;
+         totalDigits = -1;
+         fractionDigits = -1;
+      }
+
+      Long lowerBound = integer ? toInclusiveLong(lower, lowerInclusive, true) : null;
+      Long upperBound = integer ? toInclusiveLong(upper, upperInclusive, false) : null;
+      longRange = integer && (lower == null || lowerBound != null) && (upper == null || upperBound != null);
+      lowerLong = lowerBound == null ? Long.MIN_VALUE : lowerBound.longValue();
+      upperLong = upperBound == null ? Long.MAX_VALUE : upperBound.longValue();
+
+      empty = patterns == null && enumeration == null &&
+         (lengthKind == LENGTH_NONE || minLength < 0 && maxLength < 0) &&
+         lower == null && upper == null && totalDigits < 0 && fractionDigits < 0;
+   }
+
+   /**
+    * @return true if there are no facets to check
+    */
+   public boolean isEmpty()
+   {
+      return empty;
+   }
+
+   /**
+    * Applies the whiteSpace facet of the type to the value.
+    *
+    * @param value  the lexical value
+    * @return the normalized value
+    */
+   public String normalize(String value)
+   {
+      if(whitespace == WS_PRESERVE)
+         return value;
+      if(whitespace == WS_REPLACE)
+         return replace(value);
+      return collapse(value);
+   }
+
+   /**
+    * @param value  the lexical value
+    * @return true if the value satisfies the facets
+    */
+   public boolean isValid(String value)
+   {
+      return validate(value) == null;
+   }
+
+   /**
+    * Checks the value against the facets.
+    *
+    * @param value  the lexical value, it's normalized before the checks
+    * @return null if the value satisfies the facets, otherwise the description of the violation
+    */
+   public String validate(String value)
+   {
+      if(empty)
+         return null;
+
+      String normalized = normalize(value);
+
+      if(enumeration != null && !enumeration.contains(normalized))
+         return "not in the enumeration " + enumeration;
+
+      if(patterns != null)
+      {
+         // patterns from different derivation steps must all be satisfied
+         for(int i = 0; i < patterns.length; ++i)
+         {
+            if(!patterns[i].matcher(normalized).matches())
+               return "does not match pattern " + patternValues[i];
+         }
+      }
+
+      if(lengthKind != LENGTH_NONE && (minLength >= 0 || maxLength >= 0))
+      {
+         int length = getLength(normalized);
+         if(length < minLength)
+            return "is shorter than " + minLength;
+         if(maxLength >= 0 && length > maxLength)
+            return "is longer than " + maxLength;
+      }
+
+      if(numeric)
+         return validateNumber(normalized);
+
+      return null;
+   }
+
+   private String validateNumber(String value)
+   {
+      if(longRange && totalDigits < 0)
+      {
+         try
+         {
+            long l = Long.parseLong(value.length() > 0 && value.charAt(0) == '+' ? value.substring(1) : value);
+            return l < lowerLong || l > upperLong ? "is out of range" : null;
+         }
+         catch(NumberFormatException e)
+         {
+            // doesn't fit in a long, checked as a decimal
+         }
+      }
+
+      if(lower == null && upper == null && totalDigits < 0 && fractionDigits < 0)
+         return null;
+
+      BigDecimal decimal;
+      try
+      {
+         decimal = new BigDecimal(value);
+      }
+      catch(NumberFormatException e)
+      {
+         return "is not a decimal number";
+      }
+
+      if(lower != null)
+      {
+         int c = decimal.compareTo(lower);
+         if(c < 0 || c == 0 && !lowerInclusive)
+            return "is out of range";
+      }
+      if(upper != null)
+      {
+         int c = decimal.compareTo(upper);
+         if(c > 0 || c == 0 && !upperInclusive)
+            return "is out of range";
+      }
+
+      if(totalDigits >= 0 || fractionDigits >= 0)
+      {
+         BigDecimal stripped = decimal.signum() == 0 ? BigDecimal.ZERO : decimal.stripTrailingZeros();
+         if(stripped.scale() < 0)
+            stripped = stripped.setScale(0);
+         if(totalDigits >= 0 && stripped.precision() > totalDigits)
+            return "has more than " + totalDigits + " total digits";
+         if(fractionDigits >= 0 && stripped.scale() > fractionDigits)
+            return "has more than " + fractionDigits + " fraction digits";
+      }
+      return null;
+   }
+
+   private int getLength(String value)
+   {
+      switch(lengthKind)
+      {
+         case LENGTH_CHARS:
+            return value.codePointCount(0, value.length());
+         case LENGTH_HEX:
+            return value.length() / 2;
+         case LENGTH_BASE64:
+         {
+            int chars = 0;
+            int padding = 0;
+            for(int i = 0; i < value.length(); ++i)
+            {
+               char c = value.charAt(i);
+               if(c == '=')
+                  ++padding;
+               else if(c != ' ')
+                  ++chars;
+            }
+            return (chars + padding) / 4 * 3 - padding;
+         }
+         case LENGTH_ITEMS:
+         {
+            if(value.length() == 0)
+               return 0;
+            int items = 1;
+            for(int i = 0; i < value.length(); ++i)
+            {
+               if(value.charAt(i) == ' ')
+                  ++items;
+            }
+            return items;
+         }
+         default:
+            return 0;
+      }
+   }
+
+   /**
+    * Compiles an XSD regular expression.
+    * XSD-only constructs (character class subtraction, the \i and \c name escapes,
+    * Is-prefixed block names) are translated to their Java equivalents and
+    * ^ and $, which are ordinary characters in XSD, are escaped.
+    *
+    * @param xsdPattern  the XSD regular expression
+    * @return the compiled pattern or null if it can't be translated
+    */
+   static Pattern compilePattern(String xsdPattern)
+   {
+      String translated = translatePattern(xsdPattern);
+      if(translated == null)
+         return null;
+      try
+      {
+         return Pattern.compile(translated);
+      }
+      catch(PatternSyntaxException e)
+      {
+         return null;
+      }
+   }
+
+   private static final String NAME_START_CHARS = ":A-Z_a-z\\u00C0-\\u00D6\\u00D8-\\u00F6\\u00F8-\\u02FF\\u0370-\\u037D"
+      + "\\u037F-\\u1FFF\\u200C-\\u200D\\u2070-\\u218F\\u2C00-\\u2FEF\\u3001-\\uD7FF\\uF900-\\uFDCF\\uFDF0-\\uFFFD";
+   private static final String NAME_CHARS = NAME_START_CHARS + "\\-.0-9\\u00B7\\u0300-\\u036F\\u203F-\\u2040";
+
+   static String translatePattern(String xsd)
+   {
+      StringBuilder buf = new StringBuilder(xsd.length() + 16);
+      // nesting of character classes
+      int depth = 0;
+      for(int i = 0; i < xsd.length(); ++i)
+      {
+         char c = xsd.charAt(i);
+         if(c == '\\' && i + 1 < xsd.length())
+         {
+            char e = xsd.charAt(++i);
+            if(e == 'i' || e == 'c')
+            {
+               String chars = e == 'i' ? NAME_START_CHARS : NAME_CHARS;
+               if(depth == 0)
+                  buf.append('[').append(chars).append(']');
+               else
+                  buf.append(chars);
+            }
+            else if(e == 'I' || e == 'C')
+            {
+               if(depth > 0)
+                  return null;
+               buf.append("[^").append(e == 'I' ? NAME_START_CHARS : NAME_CHARS).append(']');
+            }
+            else if((e == 'p' || e == 'P') && xsd.startsWith("{Is", i + 1))
+            {
+               buf.append('\\').append(e).append("{In");
+               i += 3;
+            }
+            else
+            {
+               buf.append('\\').append(e);
+            }
+         }
+         else if(c == '[')
+         {
+            ++depth;
+            buf.append('[');
+         }
+         else if(c == ']' && depth > 0)
+         {
+            --depth;
+            buf.append(']');
+         }
+         else if(c == '-' && depth > 0 && i + 1 < xsd.length() && xsd.charAt(i + 1) == '[')
+         {
+            // character class subtraction [a-z-[aeiou]]
+            ++i;
+            ++depth;
+            if(i + 1 < xsd.length() && xsd.charAt(i + 1) == '^')
+            {
+               ++i;
+               buf.append("&&[");
+            }
+            else
+            {
+               buf.append("&&[^");
+            }
+         }
+         else if(depth == 0 && (c == '^' || c == '$'))
+         {
+            buf.append('\\').append(c);
+         }
+         else if(depth > 0 && c == '&')
+         {
+            buf.append('\\').append(c);
+         }
+         else
+         {
+            buf.append(c);
+         }
+      }
+      return buf.toString();
+   }
+
+   private static String getBuiltinName(TypeBinding type)
+   {
+      while(type != null)
+      {
+         QName name = type.getQName();
+         if(name != null && Constants.NS_XML_SCHEMA.equals(name.getNamespaceURI()))
+            return name.getLocalPart();
+         type = type.getBaseType();
+      }
+      return null;
+   }
+
+   private static int parseInt(String value)
+   {
+      if(value == null)
+         return -1;
+      try
+      {
+         return Integer.parseInt(value.trim());
+      }
+      catch(NumberFormatException e)
+      {
+         return -1;
+      }
+   }
+
+   private static BigDecimal parseDecimal(String value)
+   {
+      if(value == null)
+         return null;
+      try
+      {
+         return new BigDecimal(value.trim());
+      }
+      catch(NumberFormatException e)
+      {
+         return null;
+      }
+   }
+
+   private static Long toInclusiveLong(BigDecimal bound, boolean inclusive, boolean lower)
+   {
+      if(bound == null)
+         return null;
+      BigDecimal rounded = bound.setScale(0, lower ? BigDecimal.ROUND_CEILING : BigDecimal.ROUND_FLOOR);
+      if(!inclusive && rounded.compareTo(bound) == 0)
+         rounded = lower ? rounded.add(BigDecimal.ONE) : rounded.subtract(BigDecimal.ONE);
+      if(rounded.compareTo(BigDecimal.valueOf(Long.MIN_VALUE)) < 0 || rounded.compareTo(BigDecimal.valueOf(Long.MAX_VALUE)) > 0)
+         return null;
+      return Long.valueOf(rounded.longValue());
+   }
+
+   private static String replace(String value)
+   {
+      for(int i = 0; i < value.length(); ++i)
+      {
+         char c = value.charAt(i);
+         if(c == '\t' || c == '\n' || c == '\r')
+         {
+            char[] chars = value.toCharArray();
+            for(int j = i; j < chars.length; ++j)
+            {
+               if(chars[j] == '\t' || chars[j] == '\n' || chars[j] == '\r')
+                  chars[j] = ' ';
+            }
+            return new String(chars);
+         }
+      }
+      return value;
+   }
+
+   private static String collapse(String value)
+   {
+      int length = value.length();
+      boolean collapsed = length == 0 || !isWhitespace(value.charAt(0)) && !isWhitespace(value.charAt(length - 1));
+      for(int i = 1; collapsed && i < length; ++i)
+      {
+         char c = value.charAt(i);
+         if(c != ' ' && isWhitespace(c) || c == ' ' && value.charAt(i - 1) == ' ')
+            collapsed = false;
+      }
+      if(collapsed)
+         return value;
+
+      StringBuilder buf = new StringBuilder(length);
+      boolean space = false;
+      for(int i = 0; i < length; ++i)
+      {
+         char c = value.charAt(i);
+         if(isWhitespace(c))
+         {
+            space = buf.length() > 0;
+         }
+         else
+         {
+            if(space)
+            {
+               buf.append(' ');
+               space = false;
+            }
+            buf.append(c);
+         }
+      }
+      return buf.toString();
+   }
+
+   private static boolean isWhitespace(char c)
+   {
+      return c == ' ' || c == '\t' || c == '\n' || c == '\r';
+   }
+}
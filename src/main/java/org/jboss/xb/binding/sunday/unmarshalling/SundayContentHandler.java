@@ -21,7 +21,9 @@
   */
 package org.jboss.xb.binding.sunday.unmarshalling;
 
+import java.io.ByteArrayOutputStream;
 import java.lang.reflect.Method;
+import java.util.Iterator;
 
 import javax.xml.namespace.QName;
 
@@ -33,9 +35,12 @@ import org.jboss.xb.binding.NamespaceRegistry;
 import org.jboss.xb.binding.Util;
 import org.jboss.xb.binding.introspection.FieldInfo;
 import org.jboss.xb.binding.metadata.PropertyMetaData;
+import org.jboss.xb.binding.parser.DocumentLimits;
 import org.jboss.xb.binding.parser.JBossXBParser;
+import org.jboss.xb.binding.parser.binary.BinaryXmlWriter;
 import org.jboss.xb.binding.resolver.MutableSchemaResolver;
 import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
 
 /**
  * Default ContentHandler
@@ -44,7 +49,7 @@ import org.xml.sax.Attributes;
  * @version <tt>$Revision$</tt>
  */
 public class SundayContentHandler
-   implements JBossXBParser.DtdAwareContentHandler, PositionStack
+   implements JBossXBParser.DtdAwareContentHandler, JBossXBParser.CharSequenceContentHandler, JBossXBParser.SkippingContentHandler, PositionStack
 {
    private static Logger log;
 
@@ -52,6 +57,7 @@ public class SundayContentHandler
 
    private final SchemaBindingResolver schemaResolver;
    private final SchemaBinding schema;
+   private final ParticleBinding rootParticle;
 
    private AbstractPosition head;
    
@@ -63,11 +69,26 @@ public class SundayContentHandler
 
    private UnmarshallingContextImpl ctx;
    private NamespaceRegistry nsRegistry = new NamespaceRegistry();
+   private final CharactersBuffer charactersBuffer = new CharactersBuffer();
+   private boolean validateContent;
+   private int maxBufferedChars = DocumentLimits.UNLIMITED;
+   // the ended element positions that can be reused
+   private ElementPosition[] freePositions = new ElementPosition[16];
+   private int freePositionsCount;
+
+   // the content of the lazy element being captured
+   private ByteArrayOutputStream capturedContent;
+   private BinaryXmlWriter capture;
+   private int captureDepth;
+
+   // whether the content of the element started last is ignored
+   private boolean skipContent;
 
    public SundayContentHandler(SchemaBinding schema)
    {
       this.schema = schema;
       this.schemaResolver = null;
+      this.rootParticle = null;
       AbstractPosition.resetTrace();
    }
 
@@ -75,6 +96,21 @@ public class SundayContentHandler
    {
       this.schemaResolver = schemaResolver;
       this.schema = null;
+      this.rootParticle = null;
+      AbstractPosition.resetTrace();
+   }
+
+   /**
+    * Creates a handler for content starting with the element of the particle
+    * instead of a global element, e.g. the captured content of a lazy element.
+    *
+    * @param rootParticle  the particle of the root element
+    */
+   public SundayContentHandler(ParticleBinding rootParticle)
+   {
+      this.rootParticle = rootParticle;
+      this.schema = rootParticle.getTerm().getSchema();
+      this.schemaResolver = null;
       AbstractPosition.resetTrace();
    }
 
@@ -92,9 +128,53 @@ public class SundayContentHandler
 
    public void characters(char[] ch, int start, int length)
    {
-      if(!head.isElement())
+      if(capture != null)
+      {
+         try
+         {
+            capture.characters(ch, start, length);
+         }
+         catch(SAXException e)
+         {
+            throw new JBossXBRuntimeException("Failed to capture the content of lazy element " + head.getParticle().getTerm().getQName(), e);
+         }
+         checkCapturedSize();
+         return;
+      }
+
+      AbstractPosition position = getCharactersPosition();
+      if(position == null)
          return;
 
+      position.characters(ch, start, length);
+      checkBufferedChars(position);
+   }
+
+   public void characters(CharSequence text)
+   {
+      if(capture != null)
+      {
+         capture.characters(text);
+         checkCapturedSize();
+         return;
+      }
+
+      AbstractPosition position = getCharactersPosition();
+      if(position == null)
+         return;
+
+      position.characters(text);
+      checkBufferedChars(position);
+   }
+
+   /**
+    * @return  the position the characters belong to or null if they should be ignored
+    */
+   private AbstractPosition getCharactersPosition()
+   {
+      if(!head.isElement())
+         return null;
+
       AbstractPosition position = head;
       // if current is ended the characters belong to its parent
       if(position.isEnded())
@@ -103,12 +183,20 @@ public class SundayContentHandler
          while(!position.isElement())
             position = position.getPrevious();
       }
+      return position;
+   }
 
-      position.characters(ch, start, length);
+   private void checkBufferedChars(AbstractPosition position)
+   {
+      if(charactersBuffer.length() > maxBufferedChars)
+         throw DocumentLimits.exceeded(DocumentLimits.MAX_BUFFERED_CHARS, maxBufferedChars, "element " + position.getParticle().getTerm().getQName());
    }
 
    public void endElement(String namespaceURI, String localName, String qName)
    {
+      if(capture != null && !endCapturedElement(namespaceURI, localName, qName))
+         return;
+
       while(head != null)
       {
          if(head.isElement())
@@ -149,6 +237,22 @@ public class SundayContentHandler
                             String qName,
                             Attributes atts)
    {
+      skipContent = false;
+      if(capture != null)
+      {
+         ++captureDepth;
+         try
+         {
+            capture.startElement(namespaceURI, localName, qName, atts);
+         }
+         catch(SAXException e)
+         {
+            throw new JBossXBRuntimeException("Failed to capture the content of lazy element " + head.getParticle().getTerm().getQName(), e);
+         }
+         checkCapturedSize();
+         return;
+      }
+
       QName startName = localName.length() == 0 ? new QName(qName) : new QName(namespaceURI, localName);
       SchemaBinding schemaBinding = schema;
 
@@ -157,7 +261,13 @@ public class SundayContentHandler
       if(head == null)
       {
          ParticleBinding particle = null;
-         if(schemaBinding != null)
+         if(rootParticle != null)
+         {
+            if(!startName.equals(rootParticle.getTerm().getQName()))
+               throw new JBossXBRuntimeException("Expected root element " + rootParticle.getTerm().getQName() + " but got " + startName);
+            particle = rootParticle;
+         }
+         else if(schemaBinding != null)
             particle = schemaBinding.getElementParticle(startName);
          
          if(particle == null && schemaResolver != null)
@@ -190,10 +300,15 @@ public class SundayContentHandler
             throw new JBossXBRuntimeException(sb.toString());
          }
          
-         ElementPosition next = new ElementPosition(startName, particle);
+         charactersBuffer.reset();
+         ElementPosition next = newElementPosition(startName, particle);
          next.setStack(this);
          next.push(atts);
          head = next;
+         if(next.isLazy())
+            startCapture(namespaceURI, localName, qName, atts);
+         else
+            skipContent = ((ElementBinding) next.getParticle().getTerm()).isIgnored();
          return;
       }
 
@@ -204,19 +319,52 @@ public class SundayContentHandler
          {
             next.push(atts);
             head = next;
+            if(next.isLazy())
+               startCapture(namespaceURI, localName, qName, atts);
+            else
+               skipContent = ((ElementBinding) next.getParticle().getTerm()).isIgnored();
             break;
          }
          head = head.getPrevious();
       }
    }
 
+   public boolean isSkipContent()
+   {
+      return skipContent;
+   }
+
    public void startPrefixMapping(String prefix, String uri)
    {
+      if(capture != null)
+      {
+         try
+         {
+            capture.startPrefixMapping(prefix, uri);
+         }
+         catch(SAXException e)
+         {
+            throw new JBossXBRuntimeException("Failed to capture the content of lazy element " + head.getParticle().getTerm().getQName(), e);
+         }
+         return;
+      }
       nsRegistry.addPrefixMapping(prefix, uri);
    }
 
    public void endPrefixMapping(String prefix)
    {
+      if(capture != null)
+      {
+         try
+         {
+            capture.endPrefixMapping(prefix);
+         }
+         catch(SAXException e)
+         {
+            throw new JBossXBRuntimeException("Failed to capture the content of lazy element " + head.getParticle().getTerm().getQName(), e);
+         }
+         return;
+      }
       nsRegistry.removePrefixMapping(prefix);
    }
 
@@ -258,9 +406,77 @@ public class SundayContentHandler
 
    // Private
 
+   /**
+    * Starts capturing the content of the lazy element that has just been started.
+    * The namespace mappings in scope are captured with it.
+    */
+   private void startCapture(String namespaceURI, String localName, String qName, Attributes atts)
+   {
+      capturedContent = new ByteArrayOutputStream();
+      capture = new BinaryXmlWriter(capturedContent, null);
+      captureDepth = 1;
+      try
+      {
+         capture.startDocument();
+         for(Iterator<String> i = nsRegistry.getRegisteredPrefixes(); i.hasNext();)
+         {
+            String prefix = i.next();
+            capture.startPrefixMapping(prefix, nsRegistry.getNamespaceURI(prefix));
+         }
+         capture.startElement(namespaceURI, localName, qName, atts);
+      }
+      catch(SAXException e)
+      {
+         throw new JBossXBRuntimeException("Failed to capture the content of lazy element " + qName, e);
+      }
+      checkCapturedSize();
+   }
+
+   /**
+    * Captures the end of an element. If it's the end of the lazy element,
+    * the capture is completed and the captured content is passed to its position.
+    *
+    * @return  true if the lazy element has ended
+    */
+   private boolean endCapturedElement(String namespaceURI, String localName, String qName)
+   {
+      try
+      {
+         capture.endElement(namespaceURI, localName, qName);
+         if(--captureDepth > 0)
+         {
+            checkCapturedSize();
+            return false;
+         }
+
+         for(Iterator<String> i = nsRegistry.getRegisteredPrefixes(); i.hasNext();)
+            capture.endPrefixMapping(i.next());
+         capture.endDocument();
+      }
+      catch(SAXException e)
+      {
+         throw new JBossXBRuntimeException("Failed to capture the content of lazy element " + qName, e);
+      }
+
+      ((ElementPosition) head).setLazyContent(capturedContent.toByteArray());
+      capture = null;
+      capturedContent = null;
+      return true;
+   }
+
+   /**
+    * The captured content of a lazy element is buffered until the element ends,
+    * so it's limited by maxBufferedChars like the text content, counting bytes.
+    */
+   private void checkCapturedSize()
+   {
+      if((long) capturedContent.size() + capture.getBufferedTextLength() > maxBufferedChars)
+         throw DocumentLimits.exceeded(DocumentLimits.MAX_BUFFERED_CHARS, maxBufferedChars, "lazy element " + head.getParticle().getTerm().getQName());
+   }
+
    private Attributes preprocessAttributes(Attributes attrs)
    {
-      SchemaBindingResolver resolver = schemaResolver == null ? schema.getSchemaResolver() : schemaResolver;
+      SchemaBindingResolver resolver = schemaResolver == null ? (schema == null ? null : schema.getSchemaResolver()) : schemaResolver;
       if(resolver == null || !(resolver instanceof MutableSchemaResolver))
          return attrs;
       
@@ -308,6 +524,73 @@ public class SundayContentHandler
       return nsRegistry;
    }
 
+   public CharactersBuffer getCharactersBuffer()
+   {
+      return charactersBuffer;
+   }
+
+   public boolean isValidateContent()
+   {
+      return validateContent;
+   }
+
+   public ElementPosition newElementPosition(QName qName, ParticleBinding particle)
+   {
+      if(freePositionsCount == 0)
+         return new ElementPosition(qName, particle);
+
+      ElementPosition position = freePositions[--freePositionsCount];
+      freePositions[freePositionsCount] = null;
+      position.reuse(qName, particle);
+      return position;
+   }
+
+   public void releasePositions(AbstractPosition position)
+   {
+      while(position != null)
+      {
+         AbstractPosition next = position.next;
+         if(position.isElement())
+         {
+            ElementPosition element = (ElementPosition) position;
+            element.release();
+            if(freePositionsCount == freePositions.length)
+            {
+               ElementPosition[] tmp = new ElementPosition[freePositions.length << 1];
+               System.arraycopy(freePositions, 0, tmp, 0, freePositionsCount);
+               freePositions = tmp;
+            }
+            freePositions[freePositionsCount++] = element;
+         }
+         position = next;
+      }
+   }
+
+   /**
+    * When the parser is not validating, the content can be validated against the binding:
+    * the minimum occurrence of particles, required attributes and simple type facets
+    * are then checked during unmarshalling.
+    *
+    * @param validateContent  whether to validate the content against the binding
+    */
+   public void setValidateContent(boolean validateContent)
+   {
+      this.validateContent = validateContent;
+   }
+
+   /**
+    * The limits checked by the handler, i.e. the number of characters
+    * of the text content buffered at the same time, which also limits
+    * the size of the captured content of a lazy element.
+    * The rest of the limits are checked by the parser.
+    *
+    * @param limits  the limits or null if the content is not limited
+    */
+   public void setDocumentLimits(DocumentLimits limits)
+   {
+      this.maxBufferedChars = limits == null ? DocumentLimits.UNLIMITED : limits.getMaxBufferedChars();
+   }
+
    // Inner
 
    public static class UnmarshallingContextImpl implements UnmarshallingContext
@@ -226,4 +226,13 @@ public abstract class TermBinding
    }
    
    public abstract AbstractPosition newPosition(QName qName, Attributes attrs, ParticleBinding particle);
+
+   /**
+    * Same as newPosition(qName, attrs, particle) but the element positions
+    * are taken from the stack, if it is not null.
+    */
+   AbstractPosition newPosition(QName qName, Attributes attrs, ParticleBinding particle, PositionStack stack)
+   {
+      return newPosition(qName, attrs, particle);
+   }
 }
@@ -38,6 +38,7 @@ import org.jboss.xb.binding.metadata.MapEntryMetaData;
 import org.jboss.xb.binding.metadata.PropertyMetaData;
 import org.jboss.xb.binding.metadata.ValueMetaData;
 import org.jboss.xb.binding.Constants;
+import org.jboss.xb.binding.JBossXBRuntimeException;
 import org.jboss.xb.binding.Util;
 import org.jboss.xb.binding.sunday.marshalling.TermBeforeMarshallingCallback;
 import org.jboss.xb.binding.sunday.xop.XOPUnmarshaller;
@@ -57,6 +58,7 @@ public class TypeBinding
    /** Map<QName, AttributeBinding>  */
    private Map<QName, AttributeBinding> attrs;
    private AnyAttributeBinding anyAttribute;
+   private volatile CompiledAttributes compiledAttrs;
    private ParticleHandler handler;//todo default handler is now in SundayContentHandler.
    private CharactersHandler charactersHandler;
    private ClassMetaData classMetaData;
@@ -66,6 +68,7 @@ public class TypeBinding
    private SchemaBinding schemaBinding; // todo it's optional for now...
    private TypeBinding baseType;
    private boolean skip;
+   private boolean lazy;
    private CharactersMetaData charMetaData;
    private AddMethodMetaData addMethodMetaData;
    private ValueAdapter valueAdapter = ValueAdapter.NOOP;
@@ -81,11 +84,15 @@ public class TypeBinding
 
    private List<String> patternValues;
    private List<String> enumValues;
+   private Map<String, String> facetValues;
+   private volatile SimpleTypeFacets facets;
    private TypeBinding itemType; // the type is a list type with this item type
    private TypeBinding simpleType;
 
    private XOPUnmarshaller xopUnmarshaller;
    private XOPMarshaller xopMarshaller;
+   // xop:Include particle used when an element of this type is XOP-optimized, built on first use
+   private volatile ParticleBinding xopIncludeParticle;
 
    /** Map<QName, List<ElementInterceptor>>
     * these are local element interceptors that are "added" to the interceptor stack
@@ -220,6 +227,24 @@ public class TypeBinding
       return attrs == null ? null : attrs.get(qName);
    }
 
+   /**
+    * The attributes of the type compiled for lookups by namespace URI and local name.
+    * They are compiled on the first call and recompiled after an attribute is added.
+    *
+    * @return  the compiled attributes
+    */
+   CompiledAttributes getCompiledAttributes()
+   {
+      CompiledAttributes compiled = this.compiledAttrs;
+      if(compiled == null)
+      {
+         Collection<AttributeBinding> attributes = getAttributes();
+         compiled = attributes.isEmpty() ? CompiledAttributes.EMPTY : new CompiledAttributes(attributes);
+         this.compiledAttrs = compiled;
+      }
+      return compiled;
+   }
+
    /**
     * Go through the type attributes to see if there are any with defaults
     * that do not appears in the attrs list.
@@ -233,38 +258,38 @@ public class TypeBinding
       if(this.attrs == null)
          return attrs;
 
-      // Map<QName, AttributeBinding>
-      HashMap<QName, AttributeBinding> attrsNotSeen = new HashMap<QName, AttributeBinding>(this.attrs);
+      CompiledAttributes compiled = getCompiledAttributes();
+      long seen = 0;
+      long[] seenWords = compiled.newSeenWords();
       for(int n = 0; n < attrs.getLength(); n ++)
       {
-         QName name = new QName(attrs.getURI(n), attrs.getLocalName(n));
-         attrsNotSeen.remove(name);
+         int index = compiled.indexOf(attrs.getURI(n), attrs.getLocalName(n));
+         if(index >= 0)
+            seen = CompiledAttributes.markSeen(seen, seenWords, index);
       }
 
-      Attributes expandedAttrs = attrs;
-      if( attrsNotSeen.size() > 0 )
+      AttributesImpl expandedAttrs = null;
+      for(int i = 0; i < compiled.size(); ++i)
       {
-         AttributesImpl tmp = new AttributesImpl(attrs);
-         Iterator<Map.Entry<QName, AttributeBinding>> iter = attrsNotSeen.entrySet().iterator();
-         while( iter.hasNext() )
+         if(CompiledAttributes.isSeen(seen, seenWords, i))
+            continue;
+
+         AttributeBinding binding = compiled.get(i);
+         String constraint = binding.getDefaultConstraint();
+         if( constraint != null )
          {
-            Map.Entry<QName, AttributeBinding> entry = (Map.Entry<QName, AttributeBinding>) iter.next();
-            QName name = entry.getKey();
-            AttributeBinding binding = entry.getValue();
-            String constraint = binding.getDefaultConstraint();
-            if( constraint != null )
-            {
-               // the Javadoc for Attributes.getType(i) says:
-               // "The attribute type is one of the strings
-               // "CDATA", "ID", "IDREF", "IDREFS", "NMTOKEN", "NMTOKENS", "ENTITY", "ENTITIES",
-               // or "NOTATION" (always in upper case)."
-               tmp.addAttribute(name.getNamespaceURI(), name.getLocalPart(), name.toString(), "CDATA", constraint);
-            }
+            if(expandedAttrs == null)
+               expandedAttrs = new AttributesImpl(attrs);
+            QName name = binding.getQName();
+            // the Javadoc for Attributes.getType(i) says:
+            // "The attribute type is one of the strings
+            // "CDATA", "ID", "IDREF", "IDREFS", "NMTOKEN", "NMTOKENS", "ENTITY", "ENTITIES",
+            // or "NOTATION" (always in upper case)."
+            expandedAttrs.addAttribute(name.getNamespaceURI(), name.getLocalPart(), name.toString(), "CDATA", constraint);
          }
-         expandedAttrs = tmp;
       }
 
-      return expandedAttrs;
+      return expandedAttrs == null ? attrs : expandedAttrs;
    }
    
    public AttributeBinding addAttribute(QName name, TypeBinding type, AttributeHandler handler)
@@ -276,6 +301,7 @@ public class TypeBinding
 
    public void addAttribute(AttributeBinding attr)
    {
+      compiledAttrs = null;
       if(attrs == null)
       {
          attrs = Collections.singletonMap(attr.getQName(), attr);
@@ -350,6 +376,8 @@ public class TypeBinding
       ElementBinding el = getElement(qName);
       if(el == null)
          el = addElement(qName, new TypeBinding());
+      else if(el.isLazy())
+         throw new JBossXBRuntimeException("Lazy element " + qName + " can't have interceptors");
       
       if(interceptors == null)
       {
@@ -400,6 +428,7 @@ public class TypeBinding
    public void setBaseType(TypeBinding baseType)
    {
       this.baseType = baseType;
+      this.facets = null;
    }
 
    public boolean isSimple()
@@ -480,6 +509,24 @@ public class TypeBinding
       return skip;
    }
 
+   /**
+    * The content of elements of a lazy type is captured on unmarshalling
+    * and bound only when first requested, see LazyValue.
+    * The elements of a lazy type are checked with ElementBinding.checkLazy
+    * when their particles are bound and interceptors can't be added to them.
+    *
+    * @param lazy  whether the elements of this type are lazy
+    */
+   public void setLazy(boolean lazy)
+   {
+      this.lazy = lazy;
+   }
+
+   public boolean isLazy()
+   {
+      return lazy;
+   }
+
    public CharactersMetaData getCharactersMetaData()
    {
       return charMetaData;
@@ -583,6 +630,7 @@ public class TypeBinding
          }
          patternValues.add(patternValue);
       }
+      facets = null;
    }
 
    public List<String> getLexicalEnumeration()
@@ -604,11 +652,49 @@ public class TypeBinding
          }
          enumValues.add(value);
       }
+      facets = null;
+   }
+
+   /**
+    * @param name  the name of the facet, e.g. {@link SimpleTypeFacets#MAX_LENGTH}
+    * @return  the lexical value of the facet or null if the facet is not defined
+    */
+   public String getLexicalFacet(String name)
+   {
+      return facetValues == null ? null : facetValues.get(name);
+   }
+
+   public void setLexicalFacet(String name, String value)
+   {
+      if(facetValues == null)
+      {
+         facetValues = new HashMap<String, String>();
+      }
+      facetValues.put(name, value);
+      facets = null;
+   }
+
+   /**
+    * The facets of the type compiled for checking lexical values.
+    * They are compiled on the first call and recompiled after the facets change.
+    *
+    * @return  the compiled facets
+    */
+   public SimpleTypeFacets getFacets()
+   {
+      SimpleTypeFacets facets = this.facets;
+      if(facets == null)
+      {
+         facets = new SimpleTypeFacets(this);
+         this.facets = facets;
+      }
+      return facets;
    }
 
    public void setItemType(TypeBinding itemType)
    {
       this.itemType = itemType;
+      this.facets = null;
    }
 
    public TypeBinding getItemType()
@@ -627,6 +713,16 @@ public class TypeBinding
       this.xopUnmarshaller = xopUnmarshaller;
    }
 
+   ParticleBinding getXopIncludeParticle()
+   {
+      return xopIncludeParticle;
+   }
+
+   void setXopIncludeParticle(ParticleBinding xopIncludeParticle)
+   {
+      this.xopIncludeParticle = xopIncludeParticle;
+   }
+
    public XOPMarshaller getXopMarshaller()
    {
       return xopMarshaller == null ?
@@ -100,22 +100,27 @@ public class UnorderedSequenceBinding extends ModelGroupBinding
    }
 
    public AbstractPosition newPosition(QName qName, Attributes attrs, ParticleBinding seqParticle)
+   {
+      return newPosition(qName, attrs, seqParticle, null);
+   }
+
+   AbstractPosition newPosition(QName qName, Attributes attrs, ParticleBinding seqParticle, PositionStack stack)
    {
       ParticleBinding currentParticle = elementParticles.get(qName);
       if (currentParticle != null)
          return new UnorderedSequencePosition(qName, seqParticle,
-               currentParticle.getTerm().newPosition(qName, attrs, currentParticle));
+               currentParticle.getTerm().newPosition(qName, attrs, currentParticle, stack));
 
       for (ParticleBinding particle : groupParticles)
       {
-         AbstractPosition next = particle.getTerm().newPosition(qName, attrs, particle);
+         AbstractPosition next = particle.getTerm().newPosition(qName, attrs, particle, stack);
          if (next != null)
             return new UnorderedSequencePosition(qName, seqParticle, next);
       }
 
       for (ParticleBinding particle : wildcardParticles)
       {
-         AbstractPosition next = particle.getTerm().newPosition(qName, attrs, particle);
+         AbstractPosition next = particle.getTerm().newPosition(qName, attrs, particle, stack);
          if (next != null)
             return new UnorderedSequencePosition(qName, seqParticle, next);
       }
@@ -148,7 +153,8 @@ public class UnorderedSequenceBinding extends ModelGroupBinding
          ParticleBinding element = elementParticles.get(qName);
          if (element != null)
          {
-            next = element.getTerm().newPosition(qName, atts, element);
+            releaseNext();
+            next = element.getTerm().newPosition(qName, atts, element, stack);
             next.previous = this;
             // TODO occurrence here is not used ++occurrence;
             if (trace)
@@ -158,7 +164,8 @@ public class UnorderedSequenceBinding extends ModelGroupBinding
 
          for (ParticleBinding particle : groupParticles)
          {
-            next = particle.getTerm().newPosition(qName, atts, particle);
+            releaseNext();
+            next = particle.getTerm().newPosition(qName, atts, particle, stack);
             if (next != null)
             {
                //++occurrence;
@@ -169,7 +176,8 @@ public class UnorderedSequenceBinding extends ModelGroupBinding
 
          for (ParticleBinding particle : wildcardParticles)
          {
-            next = particle.getTerm().newPosition(qName, atts, particle);
+            releaseNext();
+            next = particle.getTerm().newPosition(qName, atts, particle, stack);
             if (next != null)
             {
                //++occurrence;
@@ -21,12 +21,15 @@
   */
 package org.jboss.xb.binding.sunday.unmarshalling;
 
+import java.util.concurrent.ConcurrentHashMap;
+
 import javax.xml.namespace.QName;
 
 import org.jboss.xb.binding.Constants;
 import org.jboss.xb.binding.JBossXBRuntimeException;
 import org.jboss.xb.binding.ObjectLocalMarshaller;
 import org.jboss.xb.binding.Util;
+import org.jboss.xb.binding.resolver.AbstractMutableSchemaResolver;
 import org.xml.sax.Attributes;
 
 /**
@@ -42,6 +45,9 @@ public class WildcardBinding
    private static final short PC_SKIP = 2;
    private static final short PC_STRICT = 1;
 
+   /** the maximum number of element bindings kept in each of the caches of a wildcard */
+   private static final int MAX_CACHED_ELEMENTS = 256;
+
    private SchemaBindingResolver schemaResolver;
    private short pc = PC_STRICT;
 
@@ -49,6 +55,10 @@ public class WildcardBinding
    private CharactersHandler unresolvedCharactersHandler;
    private ObjectLocalMarshaller unresolvedMarshaller;
 
+   /** particles of the elements resolved with the schema resolver, null particles for the elements the resolver failed to resolve */
+   private final ParticleCache<ResolvedParticle> resolvedParticles = new ParticleCache<ResolvedParticle>();
+   /** particles of the elements that could not be resolved, i.e. skipped or handled by the unresolved element handler */
+   private final ParticleCache<ParticleBinding> unresolvedParticles = new ParticleCache<ParticleBinding>();
 
    public WildcardBinding(SchemaBinding schema)
    {
@@ -63,6 +73,7 @@ public class WildcardBinding
    public void setSchemaResolver(SchemaBindingResolver schemaResolver)
    {
       this.schemaResolver = schemaResolver;
+      clearElementCache();
    }
 
    public short getProcessContents()
@@ -77,6 +88,7 @@ public class WildcardBinding
       {
          throw new JBossXBRuntimeException("Unexpected value for process contents: " + pc);
       }
+      clearElementCache();
    }
 
    public boolean isProcessContentsLax()
@@ -119,6 +131,7 @@ public class WildcardBinding
    public void setUnresolvedElementHandler(ParticleHandler unresolvedElementHandler)
    {
       this.unresolvedElementHandler = unresolvedElementHandler;
+      unresolvedParticles.clear();
    }
 
    public CharactersHandler getUnresolvedCharactersHandler()
@@ -129,6 +142,7 @@ public class WildcardBinding
    public void setUnresolvedCharactersHandler(CharactersHandler unresolvedCharactersHandler)
    {
       this.unresolvedCharactersHandler = unresolvedCharactersHandler;
+      unresolvedParticles.clear();
    }
 
    public ObjectLocalMarshaller getUnresolvedMarshaller()
@@ -141,21 +155,57 @@ public class WildcardBinding
       this.unresolvedMarshaller = marshaller;
    }
    
+   @Override
+   public void setRepeatableHandler(RepeatableParticleHandler repeatableHandler)
+   {
+      super.setRepeatableHandler(repeatableHandler);
+      unresolvedParticles.clear();
+   }
+
+   /**
+    * Clears the cached bindings of the elements matched by this wildcard.
+    * Should be called if the schema resolver was re-configured
+    * to resolve the elements it already resolved differently.
+    */
+   public void clearElementCache()
+   {
+      resolvedParticles.clear();
+      unresolvedParticles.clear();
+   }
+
    public ElementBinding getElement(QName qName, Attributes attrs)
+   {
+      ParticleBinding particle = getElementParticle(qName, attrs);
+      return particle == null ? null : (ElementBinding) particle.getTerm();
+   }
+
+   /**
+    * Looks up the element matched by the wildcard and returns the particle for it.
+    * The results of the schema resolver, including the elements it failed to resolve,
+    * are cached per QName and resolver unless the element specifies its schema location
+    * or the resolver doesn't cache resolved schemas.
+    * Bindings for unresolved elements are always cached.
+    * Each cache is cleared when it reaches MAX_CACHED_ELEMENTS bindings.
+    * 
+    * @param qName  the element name
+    * @param attrs  the element attributes
+    * @return  the particle or null if the element is not found and the wildcard is strict
+    */
+   ParticleBinding getElementParticle(QName qName, Attributes attrs)
    {
       if(pc == PC_SKIP)
       {
-         return getUnresolvedElement(qName, false);
+         return getUnresolvedParticle(qName);
       }
 
-      ElementBinding element = null;
+      ParticleBinding particle = null;
       // first, look into the own schema
       if(schema != null)
       {
-         element = schema.getElement(qName);
+         particle = schema.getElementParticle(qName);
       }
 
-      if(element == null)
+      if(particle == null)
       {
          SchemaBindingResolver resolver = schemaResolver;
          if(resolver == null && schema != null)
@@ -167,25 +217,59 @@ public class WildcardBinding
          {
             // this is wildcard handling
             String schemaLocation = attrs == null ? null : Util.getSchemaLocation(attrs, qName.getNamespaceURI());
-            SchemaBinding schema = resolver.resolve(qName.getNamespaceURI(), qName.getLocalPart(), schemaLocation);
-            if(schema != null)
+            boolean cacheable = schemaLocation == null && isCachingResolver(resolver);
+            ResolvedParticle resolved = cacheable ? resolvedParticles.get(qName) : null;
+            if(resolved != null && resolved.resolver == resolver)
+            {
+               particle = resolved.particle;
+            }
+            else
             {
-               element = schema.getElement(qName);
+               SchemaBinding schema = resolver.resolve(qName.getNamespaceURI(), qName.getLocalPart(), schemaLocation);
+               if(schema != null)
+               {
+                  particle = schema.getElementParticle(qName);
+               }
+               if(cacheable)
+               {
+                  // failures are cached too, so the resolver is not asked again for each occurrence
+                  resolvedParticles.put(qName, new ResolvedParticle(resolver, particle));
+               }
             }
          }
       }
 
-      if(element == null && pc == PC_LAX)
+      if(particle == null && pc == PC_LAX)
       {
-         element = getUnresolvedElement(qName, false);
+         particle = getUnresolvedParticle(qName);
       }
 
-      return element;
+      return particle;
+   }
+
+   private static boolean isCachingResolver(SchemaBindingResolver resolver)
+   {
+      return !(resolver instanceof AbstractMutableSchemaResolver) || ((AbstractMutableSchemaResolver)resolver).isCacheResolvedSchemas();
+   }
+
+   private ParticleBinding getUnresolvedParticle(QName qName)
+   {
+      ParticleBinding particle = unresolvedParticles.get(qName);
+      if(particle == null)
+      {
+         particle = new ParticleBinding(getUnresolvedElement(qName, false));
+         ParticleBinding cached = unresolvedParticles.putIfAbsent(qName, particle);
+         if(cached != null)
+         {
+            particle = cached;
+         }
+      }
+      return particle;
    }
 
    /**
-    * todo: this method is called for each unresolved element TWICE currently
-    * because getElement() is called TWICE. Look into fixing this!
+    * Creates the binding for an element that could not be resolved.
+    * The result is cached by getUnresolvedParticle(), so this is called once per element name.
     *
     * @param qName
     * @return
@@ -211,7 +295,6 @@ public class WildcardBinding
          }
          else
          {
-            // todo this stuff could be cached
             ParticleBinding particle = new ParticleBinding(this);
             SequenceBinding sequence = new SequenceBinding(schema);
             sequence.addParticle(particle);
@@ -222,11 +305,12 @@ public class WildcardBinding
             ElementBinding element = new ElementBinding(schema, qName, type);
             // this is unresolved element we don't care about
             element.setSkip(true);
+            // its content can't be bound either unless some of its descendants can be resolved
+            element.setIgnored(pc == PC_SKIP || schema == null && schemaResolver == null);
             return element;
          }
       }
 
-      // TODO this stuff could be cached
       // the 'this' wildcard could be reused
       // the reason it is overridden is to eliminate its wildcardHandler
       // which is not initialized in the new one
@@ -252,11 +336,15 @@ public class WildcardBinding
 
    public AbstractPosition newPosition(QName qName, Attributes attrs, ParticleBinding wildcardParticle)
    {
-      ElementBinding wildcardContent = getElement(qName, attrs);
-      if(wildcardContent != null)
+      return newPosition(qName, attrs, wildcardParticle, null);
+   }
+
+   AbstractPosition newPosition(QName qName, Attributes attrs, ParticleBinding wildcardParticle, PositionStack stack)
+   {
+      ParticleBinding particle = getElementParticle(qName, attrs);
+      if(particle != null)
       {
-         ParticleBinding particle = new ParticleBinding(wildcardContent);
-         AbstractPosition next = wildcardContent.newPosition(qName, attrs, particle);
+         AbstractPosition next = ((ElementBinding) particle.getTerm()).newPosition(qName, attrs, particle, stack);
          return new WildcardPosition(qName, wildcardParticle, next);
       }
       return null;
@@ -302,6 +390,58 @@ public class WildcardBinding
       return "wildcard processContents=" + processContent;
    }
    
+   /**
+    * A bounded cache of element bindings by element name that can be read concurrently
+    * without locking. When it's full, it's cleared before the next binding is added,
+    * so the bindings still in use are cached again.
+    */
+   private static final class ParticleCache<V>
+   {
+      private final ConcurrentHashMap<QName, V> cache = new ConcurrentHashMap<QName, V>();
+
+      V get(QName qName)
+      {
+         return cache.get(qName);
+      }
+
+      void put(QName qName, V value)
+      {
+         checkSize();
+         cache.put(qName, value);
+      }
+
+      V putIfAbsent(QName qName, V value)
+      {
+         checkSize();
+         return cache.putIfAbsent(qName, value);
+      }
+
+      void clear()
+      {
+         cache.clear();
+      }
+
+      private void checkSize()
+      {
+         if(cache.size() >= MAX_CACHED_ELEMENTS)
+         {
+            cache.clear();
+         }
+      }
+   }
+
+   private static final class ResolvedParticle
+   {
+      final SchemaBindingResolver resolver;
+      final ParticleBinding particle;
+
+      ResolvedParticle(SchemaBindingResolver resolver, ParticleBinding particle)
+      {
+         this.resolver = resolver;
+         this.particle = particle;
+      }
+   }
+
    private final class WildcardPosition extends NonElementPosition
    {
       protected WildcardPosition(QName name, ParticleBinding particle, AbstractPosition next)
@@ -313,11 +453,11 @@ public class WildcardBinding
       {
          if (particle.isOccurrenceAllowed(occurrence + 1))
          {
-            ElementBinding wildcardContent = getElement(name, atts);
-            if (wildcardContent != null)
+            ParticleBinding wildcardParticle = getElementParticle(name, atts);
+            if (wildcardParticle != null)
             {
-               ParticleBinding wildcardParticle = new ParticleBinding(wildcardContent);
-               next = wildcardContent.newPosition(name, atts, wildcardParticle);
+               releaseNext();
+               next = ((ElementBinding) wildcardParticle.getTerm()).newPosition(name, atts, wildcardParticle, stack);
                next.previous = this;
                ++occurrence;
 
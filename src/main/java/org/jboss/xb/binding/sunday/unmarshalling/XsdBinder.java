@@ -25,12 +25,17 @@ import java.io.InputStream;
 import java.io.Reader;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.ListIterator;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import javax.xml.namespace.QName;
 
@@ -54,9 +59,11 @@ import org.apache.xerces.xs.XSWildcard;
 import org.jboss.logging.Logger;
 import org.jboss.xb.binding.Constants;
 import org.jboss.xb.binding.JBossXBRuntimeException;
+import org.jboss.xb.binding.Unmarshaller;
 import org.jboss.xb.binding.Util;
 import org.jboss.xb.binding.resolver.MultiClassSchemaResolver;
 import org.jboss.xb.binding.sunday.unmarshalling.impl.runtime.RtCharactersHandler;
+import org.jboss.xb.binding.sunday.unmarshalling.impl.runtime.RtRepeatableParticleHandler;
 import org.jboss.xb.binding.sunday.xop.XOPIncludeHandler;
 import org.jboss.xb.binding.group.ValueListRepeatableParticleHandler;
 import org.jboss.xb.binding.metadata.AddMethodMetaData;
@@ -79,6 +86,39 @@ public class XsdBinder
 {
    static final Logger log = Logger.getLogger(XsdBinder.class);
 
+   /**
+    * the repeatable handler of elements: collects array-typed properties
+    * into growable arrays and falls back to value lists in other cases
+    */
+   private static final RtRepeatableParticleHandler ELEMENT_REPEATABLE_HANDLER =
+      new RtRepeatableParticleHandler(ValueListRepeatableParticleHandler.INSTANCE);
+
+   /** the length, range and digits facets of simple types recorded in the bindings */
+   private static final short[] BOUND_FACETS =
+   {
+      XSSimpleTypeDefinition.FACET_LENGTH,
+      XSSimpleTypeDefinition.FACET_MINLENGTH,
+      XSSimpleTypeDefinition.FACET_MAXLENGTH,
+      XSSimpleTypeDefinition.FACET_MININCLUSIVE,
+      XSSimpleTypeDefinition.FACET_MAXINCLUSIVE,
+      XSSimpleTypeDefinition.FACET_MINEXCLUSIVE,
+      XSSimpleTypeDefinition.FACET_MAXEXCLUSIVE,
+      XSSimpleTypeDefinition.FACET_TOTALDIGITS,
+      XSSimpleTypeDefinition.FACET_FRACTIONDIGITS
+   };
+   private static final String[] BOUND_FACET_NAMES =
+   {
+      SimpleTypeFacets.LENGTH,
+      SimpleTypeFacets.MIN_LENGTH,
+      SimpleTypeFacets.MAX_LENGTH,
+      SimpleTypeFacets.MIN_INCLUSIVE,
+      SimpleTypeFacets.MAX_INCLUSIVE,
+      SimpleTypeFacets.MIN_EXCLUSIVE,
+      SimpleTypeFacets.MAX_EXCLUSIVE,
+      SimpleTypeFacets.TOTAL_DIGITS,
+      SimpleTypeFacets.FRACTION_DIGITS
+   };
+
    /**
     * Creates a new instance of the binder the user can use to tune
     * configuration before parsing the XSD.
@@ -302,6 +342,8 @@ public class XsdBinder
    private SchemaBindingResolver resolver;
    private boolean simpleContentWithIdAsSimpleType = true;
    private boolean unresolvedContentBoundToDOM = true;
+   private boolean lazyAnnotations;
+   private ExecutorService executor;
    
    // Internal attributes
    
@@ -309,6 +351,8 @@ public class XsdBinder
    private final SchemaBinding schema;
    private SharedElements sharedElements = new SharedElements();
    private final List<Object> typeGroupStack = new ArrayList<Object>();
+   private Unmarshaller annotationUnmarshaller;
+   private final Map<XSAnnotation, XsdAppInfo> appInfos = new IdentityHashMap<XSAnnotation, XsdAppInfo>();
 
    // Ctors
    
@@ -363,6 +407,42 @@ public class XsdBinder
    {
       return this.unresolvedContentBoundToDOM;
    }
+
+   /**
+    * If lazy annotations is true, only the annotations that reference
+    * the JAXB or JBossXB namespaces are unmarshalled, the rest (e.g. documentation)
+    * are skipped without parsing since they can't affect the binding.
+    * 
+    * @param lazyAnnotations  whether to skip annotations that don't contain binding customizations
+    */
+   public void setLazyAnnotations(boolean lazyAnnotations)
+   {
+      this.lazyAnnotations = lazyAnnotations;
+   }
+
+   public boolean isLazyAnnotations()
+   {
+      return lazyAnnotations;
+   }
+
+   /**
+    * If the executor is set, the annotations of the schema components are collected
+    * and unmarshalled in parallel on the executor before the components are bound.
+    * The binding itself is still performed in the calling thread in the order
+    * of the components in the XSModel, so the resulting SchemaBinding is the same
+    * as the one bound without the executor.
+    * 
+    * @param executor  the executor to unmarshal annotations with or null
+    */
+   public void setExecutor(ExecutorService executor)
+   {
+      this.executor = executor;
+   }
+
+   public ExecutorService getExecutor()
+   {
+      return executor;
+   }
    
    public SchemaBinding parse(String xsdUrl)
    {
@@ -404,6 +484,11 @@ public class XsdBinder
    {      
       schema.setSchemaResolver(resolver);
 
+      if(processAnnotations && executor != null)
+      {
+         loadAnnotations(model);
+      }
+
       // read annotations. for now just log the ones that are going to be used
       if (processAnnotations)
       {
@@ -417,8 +502,7 @@ public class XsdBinder
          for(int i = 0; i < annotations.getLength(); ++i)
          {
             XSAnnotation annotation = (XSAnnotation)annotations.item(i);
-            XsdAnnotation an = XsdAnnotation.unmarshal(annotation.getAnnotationString());
-            XsdAppInfo appinfo = an.getAppInfo();
+            XsdAppInfo appinfo = getAppInfo(annotation);
             if(appinfo != null)
             {
                SchemaMetaData schemaBindings = appinfo.getSchemaMetaData();
@@ -561,6 +645,15 @@ public class XsdBinder
          }
       }
 
+      for(int i = 0; i < BOUND_FACETS.length; ++i)
+      {
+         String value = type.getLexicalFacetValue(BOUND_FACETS[i]);
+         if(value != null)
+         {
+            binding.setLexicalFacet(BOUND_FACET_NAMES[i], value);
+         }
+      }
+
       if(type.getItemType() != null)
       {
          TypeBinding itemType = bindSimpleType(type.getItemType());
@@ -595,8 +688,7 @@ public class XsdBinder
             for(int i = 0; i < annotations.getLength(); ++i)
             {
                XSAnnotation an = (XSAnnotation)annotations.item(i);
-               XsdAnnotation xsdAn = XsdAnnotation.unmarshal(an.getAnnotationString());
-               XsdAppInfo appInfo = xsdAn.getAppInfo();
+               XsdAppInfo appInfo = getAppInfo(an);
                if(appInfo != null)
                {
                   ClassMetaData classMetaData = appInfo.getClassMetaData();
@@ -720,8 +812,7 @@ public class XsdBinder
             for(int i = 0; i < annotations.getLength(); ++i)
             {
                XSAnnotation an = (XSAnnotation)annotations.item(i);
-               XsdAnnotation xsdAn = XsdAnnotation.unmarshal(an.getAnnotationString());
-               XsdAppInfo appInfo = xsdAn.getAppInfo();
+               XsdAppInfo appInfo = getAppInfo(an);
                if(appInfo != null)
                {
                   ClassMetaData classMetaData = appInfo.getClassMetaData();
@@ -830,6 +921,13 @@ public class XsdBinder
                      binding.setSkip(skip);
                   }
 
+                  if(appInfo.isLazy())
+                  {
+                     if (trace)
+                        log.trace("complex type " + type.getName() + ": the content of elements of this type is bound on first access");
+                     binding.setLazy(true);
+                  }
+
                   PropertyMetaData propertyMetaData = appInfo.getPropertyMetaData();
                   if(propertyMetaData != null)
                   {
@@ -924,8 +1022,7 @@ public class XsdBinder
                log.trace(attrName + " attribute annotation");
             }
 
-            XsdAnnotation xsdAn = XsdAnnotation.unmarshal(an.getAnnotationString());
-            XsdAppInfo appInfo = xsdAn.getAppInfo();
+            XsdAppInfo appInfo = getAppInfo(an);
             if(appInfo != null)
             {
                PropertyMetaData propertyMetaData = appInfo.getPropertyMetaData();
@@ -1046,7 +1143,13 @@ public class XsdBinder
       }
       
       if(particleBinding != null)
-         particleBinding.getTerm().setRepeatableHandler(ValueListRepeatableParticleHandler.INSTANCE);
+      {
+         TermBinding termBinding = particleBinding.getTerm();
+         if(termBinding.isElement() && ((ElementBinding)termBinding).getInterceptors().isEmpty())
+            termBinding.setRepeatableHandler(ELEMENT_REPEATABLE_HANDLER);
+         else
+            termBinding.setRepeatableHandler(ValueListRepeatableParticleHandler.INSTANCE);
+      }
    }
 
    private ModelGroupBinding bindModelGroup(XSModelGroup modelGroup)
@@ -1143,6 +1246,7 @@ public class XsdBinder
             particle.setMaxOccurs(maxOccurs);
          }
 
+         element.checkLazy(particle, peekType());
          return particle;
       }
 
@@ -1212,6 +1316,9 @@ public class XsdBinder
             customizeTerm(an, element, trace);
          }
       }
+
+      // lazy may be set on the element by the annotations or inherited from the type
+      element.checkLazy(particle, peekType());
       return particle;
    }
 
@@ -1256,10 +1363,90 @@ public class XsdBinder
       binding.addParticle(particleBinding);
    }
 
-   private static void customizeTerm(XSAnnotation an, TermBinding term, boolean trace)
+   private XsdAppInfo getAppInfo(XSAnnotation an)
    {
-      XsdAnnotation xsdAn = XsdAnnotation.unmarshal(an.getAnnotationString());
-      XsdAppInfo appInfo = xsdAn.getAppInfo();
+      XsdAppInfo appInfo = appInfos.get(an);
+      if(appInfo == null && !appInfos.containsKey(an))
+      {
+         String annotation = an.getAnnotationString();
+         if(!lazyAnnotations || XsdAnnotation.isCustomization(annotation))
+         {
+            if(annotationUnmarshaller == null)
+               annotationUnmarshaller = XsdAnnotation.newUnmarshaller();
+            appInfo = XsdAnnotation.unmarshal(annotation, annotationUnmarshaller).getAppInfo();
+         }
+         else if(trace)
+            log.trace("skipped annotation without binding customizations");
+         appInfos.put(an, appInfo);
+      }
+      return appInfo;
+   }
+
+   /**
+    * Collects the annotations of the global components and everything they contain,
+    * partitions them and unmarshals the partitions on the executor.
+    * The results are added to the appinfo cache.
+    */
+   private void loadAnnotations(XSModel model)
+   {
+      AnnotationCollector collector = new AnnotationCollector();
+      collector.collect(model);
+      List<XSAnnotation> annotations = collector.annotations;
+      if(annotations.isEmpty())
+         return;
+
+      int partitions = Math.min(annotations.size(), Runtime.getRuntime().availableProcessors());
+      if(trace)
+         log.trace("unmarshalling " + annotations.size() + " annotations in " + partitions + " partitions");
+
+      List<Future<Map<XSAnnotation, XsdAppInfo>>> results = new ArrayList<Future<Map<XSAnnotation, XsdAppInfo>>>(partitions);
+      int partitionSize = (annotations.size() + partitions - 1) / partitions;
+      for(int i = 0; i < annotations.size(); i += partitionSize)
+      {
+         final List<XSAnnotation> partition = annotations.subList(i, Math.min(i + partitionSize, annotations.size()));
+         results.add(executor.submit(new Callable<Map<XSAnnotation, XsdAppInfo>>()
+         {
+            public Map<XSAnnotation, XsdAppInfo> call() throws Exception
+            {
+               Unmarshaller unmarshaller = XsdAnnotation.newUnmarshaller();
+               Map<XSAnnotation, XsdAppInfo> result = new IdentityHashMap<XSAnnotation, XsdAppInfo>(partition.size());
+               for(XSAnnotation an : partition)
+               {
+                  String annotation = an.getAnnotationString();
+                  XsdAppInfo appInfo = null;
+                  if(!lazyAnnotations || XsdAnnotation.isCustomization(annotation))
+                     appInfo = XsdAnnotation.unmarshal(annotation, unmarshaller).getAppInfo();
+                  result.put(an, appInfo);
+               }
+               return result;
+            }
+         }));
+      }
+
+      for(Future<Map<XSAnnotation, XsdAppInfo>> result : results)
+      {
+         try
+         {
+            appInfos.putAll(result.get());
+         }
+         catch(InterruptedException e)
+         {
+            Thread.currentThread().interrupt();
+            throw new JBossXBRuntimeException("Interrupted while unmarshalling annotations", e);
+         }
+         catch(ExecutionException e)
+         {
+            Throwable cause = e.getCause();
+            if(cause instanceof RuntimeException)
+               throw (RuntimeException)cause;
+            throw new JBossXBRuntimeException("Failed to unmarshal annotations", cause);
+         }
+      }
+   }
+
+   private void customizeTerm(XSAnnotation an, TermBinding term, boolean trace)
+   {
+      XsdAppInfo appInfo = getAppInfo(an);
       if(appInfo != null)
       {
          Boolean skip = null;
@@ -1450,6 +1637,15 @@ public class XsdBinder
             }
             term.setSkip(skipAnnotation);
          }
+
+         if(appInfo.isLazy())
+         {
+            if(!term.isElement())
+               throw new JBossXBRuntimeException("jbxb:lazy is supported only for elements: " + term);
+            if (trace)
+               log.trace("element name=" + ((ElementBinding)term).getQName() + ": the content is bound on first access");
+            ((ElementBinding)term).setLazy(true);
+         }
       }
    }
 
@@ -1524,6 +1720,125 @@ public class XsdBinder
 
    // Inner
 
+   /**
+    * Collects the annotations of the global components of an XSModel
+    * and the components nested in them (attributes, model groups,
+    * local elements and wildcards, anonymous types), each annotation once.
+    */
+   private static final class AnnotationCollector
+   {
+      final List<XSAnnotation> annotations = new ArrayList<XSAnnotation>();
+      private final Map<Object, Object> visited = new IdentityHashMap<Object, Object>();
+
+      void collect(XSModel model)
+      {
+         addAll(model.getAnnotations());
+
+         XSNamedMap groups = model.getComponents(XSConstants.MODEL_GROUP_DEFINITION);
+         for(int i = 0; i < groups.getLength(); ++i)
+         {
+            XSModelGroupDefinition groupDef = (XSModelGroupDefinition)groups.item(i);
+            collect(groupDef.getModelGroup());
+         }
+
+         XSNamedMap types = model.getComponents(XSConstants.TYPE_DEFINITION);
+         for(int i = 0; i < types.getLength(); ++i)
+         {
+            XSTypeDefinition type = (XSTypeDefinition)types.item(i);
+            if(!Constants.NS_XML_SCHEMA.equals(type.getNamespace()))
+               collect(type);
+         }
+
+         XSNamedMap elements = model.getComponents(XSConstants.ELEMENT_DECLARATION);
+         for(int i = 0; i < elements.getLength(); ++i)
+         {
+            collect((XSElementDeclaration)elements.item(i));
+         }
+      }
+
+      private void collect(XSTypeDefinition type)
+      {
+         if(visited.put(type, type) != null)
+            return;
+
+         if(type.getTypeCategory() == XSTypeDefinition.SIMPLE_TYPE)
+         {
+            addAll(((XSSimpleTypeDefinition)type).getAnnotations());
+            return;
+         }
+
+         XSComplexTypeDefinition complexType = (XSComplexTypeDefinition)type;
+         addAll(complexType.getAnnotations());
+
+         XSObjectList attrs = complexType.getAttributeUses();
+         for(int i = 0; i < attrs.getLength(); ++i)
+         {
+            XSAttributeUse attr = (XSAttributeUse)attrs.item(i);
+            add(attr.getAttrDeclaration().getAnnotation());
+         }
+
+         XSParticle particle = complexType.getParticle();
+         if(particle != null)
+            collect(particle);
+      }
+
+      private void collect(XSElementDeclaration element)
+      {
+         if(visited.put(element, element) != null)
+            return;
+
+         add(element.getAnnotation());
+         XSTypeDefinition type = element.getTypeDefinition();
+         // named types are collected as global components
+         if(type.getName() == null)
+            collect(type);
+      }
+
+      private void collect(XSModelGroup group)
+      {
+         if(visited.put(group, group) != null)
+            return;
+
+         add(group.getAnnotation());
+         XSObjectList particles = group.getParticles();
+         for(int i = 0; i < particles.getLength(); ++i)
+            collect((XSParticle)particles.item(i));
+      }
+
+      private void collect(XSParticle particle)
+      {
+         XSTerm term = particle.getTerm();
+         switch(term.getType())
+         {
+            case XSConstants.MODEL_GROUP:
+               collect((XSModelGroup)term);
+               break;
+            case XSConstants.WILDCARD:
+               add(((XSWildcard)term).getAnnotation());
+               break;
+            case XSConstants.ELEMENT_DECLARATION:
+               collect((XSElementDeclaration)term);
+               break;
+            default:
+               throw new IllegalStateException("Unexpected term type: " + term.getType());
+         }
+      }
+
+      private void addAll(XSObjectList list)
+      {
+         if(list == null)
+            return;
+         for(int i = 0; i < list.getLength(); ++i)
+            add((XSAnnotation)list.item(i));
+      }
+
+      private void add(XSAnnotation annotation)
+      {
+         if(annotation != null && visited.put(annotation, annotation) == null)
+            annotations.add(annotation);
+      }
+   }
+
    private static final class SharedElements
    {
       private Map<XSElementDeclaration, TypeBinding> elements = Collections.emptyMap();
@@ -86,7 +86,7 @@ public class RtAttributeHandler
             property = Util.xmlNameToFieldName(attrName.getLocalPart(), binding.getSchema().isIgnoreLowLine());
          }
 
-         RtUtil.set(owner, value, property, null,
+         RtUtil.set(owner, value, property, (String) null,
             binding.getSchema().isIgnoreUnresolvedFieldOrClass(),
             binding.getValueAdapter());
       }
@@ -203,11 +203,11 @@ public class RtCharactersHandler
       else
       {
          String propName = null;
-         String colType = null;
+         PropertyMetaData propertyMetaData = null;
          TypeBinding type = element.getType();
          if (type != null && !type.isSimple()/* && type.hasSimpleContent()*/)
          {
-            PropertyMetaData propertyMetaData = type.getPropertyMetaData();
+            propertyMetaData = type.getPropertyMetaData();
             if (propertyMetaData == null)
             {
                CharactersMetaData charactersMetaData = type.getCharactersMetaData();
@@ -217,7 +217,6 @@ public class RtCharactersHandler
             if (propertyMetaData != null)
             {
                propName = propertyMetaData.getName();
-               colType = propertyMetaData.getCollectionType();
             }
 
             if (propName == null)
@@ -227,11 +226,10 @@ public class RtCharactersHandler
          }
          else
          {
-            PropertyMetaData PropertyMetaData = element.getPropertyMetaData();
-            if (PropertyMetaData != null)
+            propertyMetaData = element.getPropertyMetaData();
+            if (propertyMetaData != null)
             {
-               propName = PropertyMetaData.getName();
-               colType = PropertyMetaData.getCollectionType();
+               propName = propertyMetaData.getName();
             }
 
             if (propName == null)
@@ -240,7 +238,7 @@ public class RtCharactersHandler
             }
          }
 
-         RtUtil.set(owner, value, propName, colType, element.getSchema().isIgnoreUnresolvedFieldOrClass(), element
+         RtUtil.set(owner, value, propName, propertyMetaData, element.getSchema().isIgnoreUnresolvedFieldOrClass(), element
                .getValueAdapter());
       }
    }
@@ -286,11 +286,9 @@ public class RtElementHandler
             }
 
             String propName = null;
-            String colType = null;
             if (propertyMetaData != null)
             {
                propName = propertyMetaData.getName();
-               colType = propertyMetaData.getCollectionType();
             }
 
             if (propName == null)
@@ -305,14 +303,14 @@ public class RtElementHandler
             // TODO with RepeatableParticleHandler.NOOP check for Collection should be commented out
             if(repeatable && !(o instanceof Collection))
             {
-               RtUtil.add(owner, o, propName, colType,
+               RtUtil.add(owner, o, propName, propertyMetaData,
                      term.getSchema().isIgnoreUnresolvedFieldOrClass(),
                      term.getValueAdapter()
                   );               
             }
             else
             {
-               RtUtil.set(owner, o, propName, colType,
+               RtUtil.set(owner, o, propName, propertyMetaData,
                      term.getSchema().isIgnoreUnresolvedFieldOrClass(),
                      term.getValueAdapter());
             }
@@ -0,0 +1,206 @@
+/*
+* JBoss, Home of Professional Open Source
+* Copyright 2006, JBoss Inc., and individual contributors as indicated
+* by the @authors tag. See the copyright.txt in the distribution for a
+* full listing of individual contributors.
+*
+* This is free software; you can redistribute it and/or modify it
+* under the terms of the GNU Lesser General Public License as
+* published by the Free Software Foundation; either version 2.1 of
+* the License, or (at your option) any later version.
+*
+* This software is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+* Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public
+* License along with this software; if not, write to the Free
+* Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+* 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+*/
+package org.jboss.xb.binding.sunday.unmarshalling.impl.runtime;
+
+import java.util.Collection;
+
+import javax.xml.namespace.QName;
+
+import org.jboss.xb.binding.GenericValueContainer;
+import org.jboss.xb.binding.JBossXBRuntimeException;
+import org.jboss.xb.binding.Util;
+import org.jboss.xb.binding.group.ValueList;
+import org.jboss.xb.binding.introspection.FieldInfo;
+import org.jboss.xb.binding.metadata.PropertyMetaData;
+import org.jboss.xb.binding.sunday.unmarshalling.DefaultHandlers;
+import org.jboss.xb.binding.sunday.unmarshalling.ElementBinding;
+import org.jboss.xb.binding.sunday.unmarshalling.ParticleBinding;
+import org.jboss.xb.binding.sunday.unmarshalling.ParticleHandler;
+import org.jboss.xb.binding.sunday.unmarshalling.RepeatableParticleHandler;
+import org.jboss.xb.binding.sunday.unmarshalling.TermBinding;
+import org.jboss.xb.binding.sunday.unmarshalling.ValueAdapter;
+import org.jboss.xb.util.GrowableArray;
+
+/**
+ * A repeatable particle handler for elements bound by RtElementHandler to array-typed properties.
+ * Instead of creating a new array one element longer for every occurrence (RtUtil.add),
+ * the values of the consecutive occurrences are collected into a growable array
+ * held on the element's position and appended to the property once when the
+ * repeatable particle ends. In other cases, including elements with interceptors,
+ * the particle is passed to the fallback handler, if there is one, or not handled.
+ * <p>
+ * XsdBinder installs the handler on the element terms it binds with
+ * ValueListRepeatableParticleHandler as the fallback, which also adds the values
+ * to the parent only when the repeatable particle ends. Note that the property is
+ * updated only when the repeatable particle ends, so while its occurrences are being
+ * unmarshalled (e.g. in handlers or interceptors of the following elements) the parent
+ * doesn't have the values yet. Elements that are the content of a wildcard
+ * are not collected, since RtElementHandler binds them to the property of the wildcard,
+ * they are left to the fallback.
+ * 
+ * @version $Revision: 1.1 $
+ */
+public class RtRepeatableParticleHandler implements RepeatableParticleHandler
+{
+   public static final RtRepeatableParticleHandler INSTANCE = new RtRepeatableParticleHandler();
+
+   private final RepeatableParticleHandler fallback;
+
+   public RtRepeatableParticleHandler()
+   {
+      this(null);
+   }
+
+   /**
+    * @param fallback  the handler of the particles this handler doesn't collect, can be null
+    */
+   public RtRepeatableParticleHandler(RepeatableParticleHandler fallback)
+   {
+      this.fallback = fallback;
+   }
+
+   public Object startRepeatableParticle(Object parent, QName startName, ParticleBinding particle)
+   {
+      Object arrayValue = startArrayValue(parent, startName, particle);
+      if(arrayValue == null && fallback != null)
+         return fallback.startRepeatableParticle(parent, startName, particle);
+      return arrayValue;
+   }
+
+   private ArrayValue startArrayValue(Object parent, QName startName, ParticleBinding particle)
+   {
+      if(parent == null ||
+         parent instanceof Collection ||
+         parent instanceof GenericValueContainer ||
+         parent instanceof ValueList ||
+         parent instanceof MapEntry)
+      {
+         return null;
+      }
+
+      TermBinding term = particle.getTerm();
+      // the content of a wildcard is bound to the wildcard's property by RtElementHandler
+      if(!term.isElement() ||
+         term.isSkip() ||
+         term.isMapEntryKey() ||
+         term.isMapEntryValue() ||
+         term.getAddMethodMetaData() != null ||
+         term.getPutMethodMetaData() != null ||
+         term.getMapEntryMetaData() != null ||
+         term.getBeforeSetParentCallback() != null ||
+         !((ElementBinding)term).getInterceptors().isEmpty() ||
+         !isRuntimeHandler(term.getHandler()))
+      {
+         return null;
+      }
+
+      PropertyMetaData propertyMetaData = term.getPropertyMetaData();
+      String propName = null;
+      if(propertyMetaData != null)
+      {
+         if(propertyMetaData.getCollectionType() != null)
+            return null;
+         propName = propertyMetaData.getName();
+      }
+      if(propName == null)
+         propName = Util.xmlNameToFieldName(startName.getLocalPart(), term.getSchema().isIgnoreLowLine());
+
+      FieldInfo fieldInfo = FieldInfo.getFieldInfo(parent.getClass(), propName, false);
+      if(fieldInfo == null || !fieldInfo.getType().isArray())
+         return null;
+
+      return new ArrayValue(parent, fieldInfo, term.getValueAdapter());
+   }
+
+   public void addTermValue(Object particleValue, Object termValue, QName elementName, ParticleBinding particle,
+         ParticleBinding parentParticle, ParticleHandler handler)
+   {
+      if(!(particleValue instanceof ArrayValue))
+      {
+         fallback.addTermValue(particleValue, termValue, elementName, particle, parentParticle, handler);
+         return;
+      }
+
+      ArrayValue arrayValue = (ArrayValue)particleValue;
+      if(termValue instanceof Collection || !isRuntimeHandler(handler))
+      {
+         // not a value RtElementHandler would append to the array
+         handler.setParent(arrayValue.owner, termValue, elementName, particle, parentParticle);
+         return;
+      }
+
+      arrayValue.add(termValue);
+   }
+
+   public void endRepeatableParticle(Object parent, Object o, QName elementName, ParticleBinding particle,
+         ParticleBinding parentParticle)
+   {
+      if(o instanceof ArrayValue)
+         ((ArrayValue)o).flush();
+      else
+         fallback.endRepeatableParticle(parent, o, elementName, particle, parentParticle);
+   }
+
+   private static boolean isRuntimeHandler(ParticleHandler handler)
+   {
+      if(handler == null)
+         handler = DefaultHandlers.ELEMENT_HANDLER;
+      return handler == RtElementHandler.INSTANCE || handler == DefaultHandlers.SIMPLE_HANDLER;
+   }
+
+   private static class ArrayValue
+   {
+      final Object owner;
+      final FieldInfo fieldInfo;
+      final ValueAdapter valueAdapter;
+      final GrowableArray values;
+
+      ArrayValue(Object owner, FieldInfo fieldInfo, ValueAdapter valueAdapter)
+      {
+         this.owner = owner;
+         this.fieldInfo = fieldInfo;
+         this.valueAdapter = valueAdapter;
+         this.values = new GrowableArray(fieldInfo.getType().getComponentType());
+      }
+
+      void add(Object value)
+      {
+         if(valueAdapter != null)
+            value = valueAdapter.cast(value, fieldInfo.getType());
+
+         try
+         {
+            values.add(value);
+         }
+         catch(IllegalArgumentException e)
+         {
+            throw new JBossXBRuntimeException("Failed to add " + value + " to " + fieldInfo.getName() + " in " + owner.getClass(), e);
+         }
+      }
+
+      void flush()
+      {
+         if(values.size() > 0)
+            fieldInfo.setValue(owner, values.toArray(fieldInfo.getValue(owner)));
+      }
+   }
+}
@@ -32,6 +32,7 @@ import org.jboss.util.Classes;
 import org.jboss.xb.binding.JBossXBRuntimeException;
 import org.jboss.xb.binding.Util;
 import org.jboss.xb.binding.introspection.FieldInfo;
+import org.jboss.xb.binding.metadata.PropertyMetaData;
 import org.jboss.xb.binding.metadata.ValueMetaData;
 import org.jboss.xb.binding.sunday.unmarshalling.ValueAdapter;
 
@@ -51,6 +52,32 @@ public class RtUtil
                           String colType,
                           boolean ignoreNotFoundField,
                           ValueAdapter valueAdapter)
+   {
+      add(o, value, prop, colType, null, ignoreNotFoundField, valueAdapter);
+   }
+
+   /**
+    * Same as {@link #add(Object, Object, String, String, boolean, ValueAdapter)}
+    * except that the collection class is resolved once and cached in the property metadata.
+    */
+   public static void add(Object o,
+                          Object value,
+                          String prop,
+                          PropertyMetaData propertyMetaData,
+                          boolean ignoreNotFoundField,
+                          ValueAdapter valueAdapter)
+   {
+      add(o, value, prop, propertyMetaData == null ? null : propertyMetaData.getCollectionType(),
+            propertyMetaData, ignoreNotFoundField, valueAdapter);
+   }
+
+   private static void add(Object o,
+                           Object value,
+                           String prop,
+                           String colType,
+                           PropertyMetaData propertyMetaData,
+                           boolean ignoreNotFoundField,
+                           ValueAdapter valueAdapter)
    {
       FieldInfo fieldInfo = FieldInfo.getFieldInfo(o.getClass(), prop, !ignoreNotFoundField);
       if(fieldInfo == null)
@@ -86,32 +113,7 @@ public class RtUtil
          Collection<Object> col = (Collection<Object>)fieldInfo.getValue(o);
          if(col == null)
          {
-            if(colType == null)
-            {
-               col = new ArrayList<Object>();
-            }
-            else
-            {
-               Class<?> colCls;
-               try
-               {
-                  colCls = Thread.currentThread().getContextClassLoader().loadClass(colType);
-               }
-               catch(ClassNotFoundException e)
-               {
-                  throw new JBossXBRuntimeException("Failed to load collection type: " + colType);
-               }
-
-               try
-               {
-                  col = (Collection<Object>)colCls.newInstance();
-               }
-               catch(Exception e)
-               {
-                  throw new JBossXBRuntimeException("Failed to create an instance of " + colCls);
-               }
-            }
-
+            col = newCollection(colType, propertyMetaData);
             fieldInfo.setValue(o, col);
          }
 
@@ -144,6 +146,32 @@ public class RtUtil
                           String colType,
                           boolean ignoreNotFoundField,
                           ValueAdapter valueAdapter)
+   {
+      set(o, value, prop, colType, null, ignoreNotFoundField, valueAdapter);
+   }
+
+   /**
+    * Same as {@link #set(Object, Object, String, String, boolean, ValueAdapter)}
+    * except that the collection class is resolved once and cached in the property metadata.
+    */
+   public static void set(Object o,
+                          Object value,
+                          String prop,
+                          PropertyMetaData propertyMetaData,
+                          boolean ignoreNotFoundField,
+                          ValueAdapter valueAdapter)
+   {
+      set(o, value, prop, propertyMetaData == null ? null : propertyMetaData.getCollectionType(),
+            propertyMetaData, ignoreNotFoundField, valueAdapter);
+   }
+
+   private static void set(Object o,
+                           Object value,
+                           String prop,
+                           String colType,
+                           PropertyMetaData propertyMetaData,
+                           boolean ignoreNotFoundField,
+                           ValueAdapter valueAdapter)
    {
       FieldInfo fieldInfo = FieldInfo.getFieldInfo(o.getClass(), prop, !ignoreNotFoundField);
       if(fieldInfo == null)
@@ -164,32 +192,7 @@ public class RtUtil
          Collection<Object> col = (Collection<Object>)fieldInfo.getValue(o);
          if(col == null)
          {
-            if(colType == null)
-            {
-               col = new ArrayList<Object>();
-            }
-            else
-            {
-               Class<?> colCls;
-               try
-               {
-                  colCls = Thread.currentThread().getContextClassLoader().loadClass(colType);
-               }
-               catch(ClassNotFoundException e)
-               {
-                  throw new JBossXBRuntimeException("Failed to load collection type: " + colType);
-               }
-
-               try
-               {
-                  col = (Collection<Object>)colCls.newInstance();
-               }
-               catch(Exception e)
-               {
-                  throw new JBossXBRuntimeException("Failed to create an instance of " + colCls);
-               }
-            }
-
+            col = newCollection(colType, propertyMetaData);
             fieldInfo.setValue(o, col);
          }
 
@@ -263,6 +266,55 @@ public class RtUtil
       }
    }
 
+   /**
+    * Creates a new instance of the collection type specified in the property metadata
+    * or a java.util.ArrayList if the metadata doesn't specify one.
+    * The collection class is resolved with the thread context class loader and cached
+    * in the metadata for that class loader.
+    *
+    * @param propertyMetaData  property metadata, can be null
+    * @return  a new collection instance
+    */
+   public static Collection<Object> newCollection(PropertyMetaData propertyMetaData)
+   {
+      return newCollection(propertyMetaData == null ? null : propertyMetaData.getCollectionType(), propertyMetaData);
+   }
+
+   private static Collection<Object> newCollection(String colType, PropertyMetaData propertyMetaData)
+   {
+      if(colType == null)
+      {
+         return new ArrayList<Object>();
+      }
+
+      ClassLoader cl = Thread.currentThread().getContextClassLoader();
+      Class<?> colCls = propertyMetaData == null ? null : propertyMetaData.getCollectionClass(cl);
+      if(colCls == null)
+      {
+         try
+         {
+            colCls = cl.loadClass(colType);
+         }
+         catch(ClassNotFoundException e)
+         {
+            throw new JBossXBRuntimeException("Failed to load collection type: " + colType);
+         }
+         if(propertyMetaData != null)
+         {
+            propertyMetaData.setCollectionClass(cl, colCls);
+         }
+      }
+
+      try
+      {
+         return (Collection<Object>)colCls.newInstance();
+      }
+      catch(Exception e)
+      {
+         throw new JBossXBRuntimeException("Failed to create an instance of " + colCls);
+      }
+   }
+
    public static Class<?> loadClass(String clsName, boolean failIfNotFound)
    {
       Class<?> cls = null;
@@ -280,7 +332,24 @@ public class RtUtil
       return cls;
    }
 
+   /**
+    * Resolves the unmarshal method specified in the value metadata.
+    * Its class is loaded with the thread context class loader and the resolved
+    * method is cached in the metadata for that class loader.
+    */
    public static Method getUnmarshalMethod(QName qName, ValueMetaData valueMetaData)
+   {
+      ClassLoader cl = Thread.currentThread().getContextClassLoader();
+      Method resolved = valueMetaData.getResolvedUnmarshalMethod(cl);
+      if(resolved == null)
+      {
+         resolved = resolveUnmarshalMethod(qName, valueMetaData);
+         valueMetaData.setResolvedUnmarshalMethod(cl, resolved);
+      }
+      return resolved;
+   }
+
+   private static Method resolveUnmarshalMethod(QName qName, ValueMetaData valueMetaData)
    {
       String unmarshalMethod = valueMetaData.getUnmarshalMethod();
       if(unmarshalMethod == null)
@@ -31,6 +31,7 @@ import org.jboss.xb.binding.JBossXBRuntimeException;
 import org.jboss.xb.binding.sunday.unmarshalling.ElementBinding;
 import org.jboss.xb.binding.sunday.unmarshalling.ParticleBinding;
 import org.jboss.xb.binding.sunday.unmarshalling.ParticleHandler;
+import org.jboss.xb.binding.sunday.unmarshalling.SchemaBinding;
 import org.jboss.xb.binding.sunday.unmarshalling.TypeBinding;
 import org.xml.sax.Attributes;
 
@@ -46,6 +47,8 @@ public class XOPIncludeHandler
    // type that can be XOP-optimized (should actually be the element)
    private final TypeBinding type;
    private XOPUnmarshaller xopUnmarshaller;
+   // if not null, its XOP unmarshaller is looked up at unmarshalling time before the one of the type
+   private SchemaBinding schema;
 
    public XOPIncludeHandler(TypeBinding type)
    {
@@ -58,6 +61,21 @@ public class XOPIncludeHandler
       this.xopUnmarshaller = xopUnmarshaller;
    }
 
+   /**
+    * The handler will use the XOP unmarshaller set on the schema at the moment
+    * xop:Include is unmarshalled and, if that is null, the one of the type.
+    * Unlike the constructor that takes the XOP unmarshaller, this allows to share the handler
+    * across unmarshallings with different XOP unmarshallers.
+    * 
+    * @param type  the XOP-optimizable type
+    * @param schema  the schema
+    */
+   public XOPIncludeHandler(TypeBinding type, SchemaBinding schema)
+   {
+      this.type = type;
+      this.schema = schema;
+   }
+
    public Object startParticle(Object parent,
                                QName elementName,
                                ParticleBinding particle,
@@ -72,7 +90,11 @@ public class XOPIncludeHandler
          );
       }
 
-      XOPUnmarshaller xopUnmarshaller = this.xopUnmarshaller == null ? type.getXopUnmarshaller() : this.xopUnmarshaller;
+      XOPUnmarshaller xopUnmarshaller = this.xopUnmarshaller;
+      if(xopUnmarshaller == null && schema != null)
+         xopUnmarshaller = schema.getXopUnmarshaller();
+      if(xopUnmarshaller == null)
+         xopUnmarshaller = type.getXopUnmarshaller();
       if(xopUnmarshaller == null)
       {
          throw new JBossXBRuntimeException(
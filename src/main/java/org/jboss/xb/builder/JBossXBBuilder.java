@@ -26,6 +26,7 @@ import java.security.PrivilegedAction;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.Executor;
 
 import javax.xml.XMLConstants;
 
@@ -83,6 +84,12 @@ public class JBossXBBuilder
     */
    public static final String REPEATABLE_PARTICLE_HANDLERS = "xb.builder.repeatableParticleHandlers";
 
+   /** system property name to use for initialization
+    * whether the content of bean types is bound the first time the type is used during unmarshalling
+    * instead of eagerly walking the whole class graph when the schema binding is built
+    */
+   public static final String LAZY_TYPES = "xb.builder.lazyTypes";
+
    /** The configuration */
    static Configuration configuration;
    
@@ -102,6 +109,12 @@ public class JBossXBBuilder
    // whether to use repeatable particle handlers for collections
    static boolean repeatableParticleHandlers;
 
+   // whether to bind the content of bean types lazily
+   static boolean lazyTypes;
+
+   // if not null and lazyTypes is true, the lazy types of a built schema are initialized with this executor
+   static Executor warmUpExecutor;
+
    static
    {
       configuration = AccessController.doPrivileged(new PrivilegedAction<PropertyConfiguration>()
@@ -119,6 +132,7 @@ public class JBossXBBuilder
       sequencesRequirePropOrder = getBooleanProperty(JBossXBBuilder.SEQUENCES_REQUIRE_PROP_ORDER, true);
       elementSetParentHandler = getBooleanProperty(JBossXBBuilder.ELEMENT_SET_PARENT_OVERRIDE_HANDLER, true);
       repeatableParticleHandlers = getBooleanProperty(JBossXBBuilder.REPEATABLE_PARTICLE_HANDLERS, true);
+      lazyTypes = getBooleanProperty(JBossXBBuilder.LAZY_TYPES, false);
    }
 
    private static boolean getBooleanProperty(final String propertyName, boolean defaultValue)
@@ -177,6 +191,33 @@ public class JBossXBBuilder
       JBossXBBuilder.repeatableParticleHandlers = repeatableParticleHandlers;
    }
 
+   public static boolean isLazyTypes()
+   {
+      return lazyTypes;
+   }
+   
+   public static void setLazyTypes(boolean lazyTypes)
+   {
+      JBossXBBuilder.lazyTypes = lazyTypes;
+   }
+
+   public static Executor getWarmUpExecutor()
+   {
+      return warmUpExecutor;
+   }
+
+   /**
+    * If lazy types are enabled and the warm-up executor is set, once a schema binding
+    * is built, the binding of the content of its types is submitted to the executor,
+    * so the schema is completed in the background instead of on first use.
+    * 
+    * @param warmUpExecutor the executor or null
+    */
+   public static void setWarmUpExecutor(Executor warmUpExecutor)
+   {
+      JBossXBBuilder.warmUpExecutor = warmUpExecutor;
+   }
+
    /**
     * Create a new schema binding initializer
     * 
@@ -296,7 +337,9 @@ public class JBossXBBuilder
       builder.setSequencesRequirePropOrder(sequencesRequirePropOrder);
       builder.setElementSetParentOverrideHandler(elementSetParentHandler);
       builder.setRepeatableParticleHandlers(repeatableParticleHandlers);
+      builder.setLazyTypes(lazyTypes);
       builder.build(schemaBinding);
+      warmUp(builder);
    }
    
    /**
@@ -333,12 +376,35 @@ public class JBossXBBuilder
          builder.setSequencesRequirePropOrder(sequencesRequirePropOrder);
          builder.setElementSetParentOverrideHandler(elementSetParentHandler);
          builder.setRepeatableParticleHandlers(repeatableParticleHandlers);
+         builder.setLazyTypes(lazyTypes);
          binding = builder.build();
+         warmUp(builder);
          classInfo.setAttachment(SchemaBinding.class.getName(), binding);
       }
       return binding;
    }
 
+   /**
+    * Submits the initialization of the lazy types of the builder
+    * to the warm-up executor if lazy types are enabled and the executor is set.
+    * 
+    * @param builder the builder
+    */
+   private static void warmUp(final JBossXBNoSchemaBuilder builder)
+   {
+      Executor executor = warmUpExecutor;
+      if(!builder.isLazyTypes() || executor == null)
+         return;
+
+      executor.execute(new Runnable()
+      {
+         public void run()
+         {
+            builder.initializeTypes();
+         }
+      });
+   }
+
    /**
     * Initialize the schema binding from the root
     * 
@@ -85,6 +85,7 @@ import org.jboss.xb.annotations.JBossXmlMapKeyAttribute;
 import org.jboss.xb.annotations.JBossXmlMapKeyElement;
 import org.jboss.xb.annotations.JBossXmlMapValueAttribute;
 import org.jboss.xb.annotations.JBossXmlMapValueElement;
+import org.jboss.xb.annotations.JBossXmlLazy;
 import org.jboss.xb.annotations.JBossXmlModelGroup;
 import org.jboss.xb.annotations.JBossXmlNoElements;
 import org.jboss.xb.annotations.JBossXmlNsPrefix;
@@ -108,6 +109,8 @@ import org.jboss.xb.binding.sunday.unmarshalling.ChoiceBinding;
 import org.jboss.xb.binding.sunday.unmarshalling.DefaultElementInterceptor;
 import org.jboss.xb.binding.sunday.unmarshalling.DefaultHandlers;
 import org.jboss.xb.binding.sunday.unmarshalling.ElementBinding;
+import org.jboss.xb.binding.sunday.unmarshalling.ElementInterceptor;
+import org.jboss.xb.binding.sunday.unmarshalling.LazyValue;
 import org.jboss.xb.binding.sunday.unmarshalling.ModelGroupBinding;
 import org.jboss.xb.binding.sunday.unmarshalling.ParticleBinding;
 import org.jboss.xb.binding.sunday.unmarshalling.ParticleHandler;
@@ -148,6 +151,7 @@ import org.jboss.xb.spi.BeanAdapterBuilder;
 import org.jboss.xb.spi.BeanAdapterFactory;
 import org.jboss.xb.spi.DefaultBeanAdapterBuilder;
 import org.w3c.dom.Element;
+import org.xml.sax.Attributes;
 
 /**
  * JBossXBNoSchemaBuilder.
@@ -195,6 +199,10 @@ public class JBossXBNoSchemaBuilder
    private boolean repeatableParticleHandlers;
    // this is repeatableParticleHandlers in a specific context while the one above is global default
    private boolean currentRepeatableHandlers;
+   // whether the content of bean types is bound when the type is first used instead of during build
+   private boolean lazyTypes;
+   /** the lazy types whose content hasn't been bound yet, guarded by this builder */
+   private List<LazyTypeBinding> pendingTypes = Collections.emptyList();
 
    private BeanAccessMode beanAccessMode = BeanAccessMode.STANDARD;
    
@@ -258,6 +266,51 @@ public class JBossXBNoSchemaBuilder
    {
       this.repeatableParticleHandlers = repeatableParticleHandlers;
    }
+
+   public boolean isLazyTypes()
+   {
+      return lazyTypes;
+   }
+
+   /**
+    * If lazy types is true, the attributes, value and model group of bean types
+    * are not bound during build but the first time the type binding is used,
+    * e.g. when an element of the type is unmarshalled. The lazy binding is synchronized on the builder,
+    * so the built schema binding can be shared between threads.
+    * 
+    * @param lazyTypes whether to bind the content of bean types lazily
+    */
+   public void setLazyTypes(boolean lazyTypes)
+   {
+      this.lazyTypes = lazyTypes;
+   }
+
+   /**
+    * Binds the content of all the lazy types that haven't been used yet,
+    * including the ones discovered while binding. Does nothing unless lazy types is true.
+    */
+   public synchronized void initializeTypes()
+   {
+      // the list may grow while the types are initialized
+      for(int i = 0; i < pendingTypes.size(); ++i)
+         pendingTypes.get(i).initialize();
+      pendingTypes = Collections.emptyList();
+   }
+
+   /**
+    * Whether there are lazy types the content of which hasn't been bound yet.
+    * 
+    * @return true if some of the lazy types are still waiting to be initialized
+    */
+   public synchronized boolean hasPendingTypes()
+   {
+      for(int i = 0; i < pendingTypes.size(); ++i)
+      {
+         if(!pendingTypes.get(i).initialized)
+            return true;
+      }
+      return false;
+   }
    
    /**
     * Build the schema
@@ -915,12 +968,12 @@ public class JBossXBNoSchemaBuilder
       if (root)
       {
          QName qName = generateXmlName(typeInfo, XmlNsForm.QUALIFIED, overrideNamespace, overrideName);
-         typeBinding = new TypeBinding(qName, CharactersHandler.NOOP);
+         typeBinding = lazyTypes ? new LazyTypeBinding(qName, CharactersHandler.NOOP) : new TypeBinding(qName, CharactersHandler.NOOP);
          schemaBinding.addType(typeBinding);
       }
       else
       {
-         typeBinding = new TypeBinding();
+         typeBinding = lazyTypes ? new LazyTypeBinding() : new TypeBinding();
       }
       typeBinding.setSchemaBinding(schemaBinding);
 
@@ -948,6 +1001,35 @@ public class JBossXBNoSchemaBuilder
       if (trace)
          log.trace("Created BeanHandler for type=" + beanInfo.getName() + " factory=" + factory);
 
+      if (lazyTypes)
+      {
+         ((LazyTypeBinding) typeBinding).defer(typeInfo, beanInfo, handler, beanAdapterFactory, beanAccessMode, propertyOrder, accessOrder, jbossXmlType, root);
+         if (trace)
+            log.trace("Deferred binding of the content of type=" + typeInfo.getName());
+      }
+      else
+         bindTypeContent(typeInfo, typeBinding, beanInfo, handler, beanAdapterFactory, beanAccessMode, propertyOrder, accessOrder, jbossXmlType, root);
+      return typeBinding;
+   }
+
+   /**
+    * Bind the attributes, the value and the model group of a bean type
+    * 
+    * @param typeInfo the type info
+    * @param typeBinding the type binding
+    * @param beanInfo the bean info
+    * @param handler the bean handler
+    * @param beanAdapterFactory the bean adapter factory
+    * @param beanAccessMode the bean access mode
+    * @param propertyOrder the property order
+    * @param accessOrder the access order
+    * @param jbossXmlType the JBossXmlType annotation or null
+    * @param root whether it is a root type
+    */
+   private void bindTypeContent(ClassInfo typeInfo, TypeBinding typeBinding, BeanInfo beanInfo, BeanHandler handler,
+         BeanAdapterFactory beanAdapterFactory, BeanAccessMode beanAccessMode, String[] propertyOrder,
+         XmlAccessOrder accessOrder, JBossXmlType jbossXmlType, boolean root)
+   {
       // Look through the properties
       JBossXmlNoElements jbossXmlNoElements = typeInfo.getUnderlyingAnnotation(JBossXmlNoElements.class);
       boolean noElements = jbossXmlNoElements != null;
@@ -1391,7 +1473,6 @@ public class JBossXBNoSchemaBuilder
          log.trace("Created type=" + typeInfo.getName() + " typeBinding=" + typeBinding + " rootType=" + root);
 
       this.currentRepeatableHandlers = previousRepeatableHandlers;
-      return typeBinding;
    }
 
    private void assertPropOrderNotRequired(TypeInfo typeInfo, String[] propertyOrder)
@@ -1763,6 +1844,7 @@ public class JBossXBNoSchemaBuilder
          valueAdapter = new XBValueAdapter(xmlTypeAdapter.value(), propertyType.getTypeInfoFactory());
 
       JBossXmlPreserveWhitespace preserveSpace = property.getUnderlyingAnnotation(JBossXmlPreserveWhitespace.class);
+      JBossXmlLazy lazy = property.getUnderlyingAnnotation(JBossXmlLazy.class);
 
       for (int i = 0; i < elements.length; ++i)
       {
@@ -1789,6 +1871,22 @@ public class JBossXBNoSchemaBuilder
                localPropertyType = propertyType.getTypeInfoFactory().getTypeInfo(elementType);
          }
 
+         if (lazy != null)
+         {
+            // the element is bound to the type argument of the LazyValue
+            if (!LazyValue.class.getName().equals(localPropertyType.getName()))
+               throw new JBossXBRuntimeException("@JBossXmlLazy property " + property.getName() + " of " + property.getBeanInfo().getName() +
+                     " must be of type " + LazyValue.class.getName() + " but was " + localPropertyType.getName());
+            TypeInfo[] typeArgs = ((ClassInfo) localPropertyType).getActualTypeArguments();
+            if (typeArgs == null || typeArgs.length != 1)
+               throw new JBossXBRuntimeException("@JBossXmlLazy property " + property.getName() + " of " + property.getBeanInfo().getName() +
+                     " must specify the type argument of " + LazyValue.class.getName());
+            localPropertyType = typeArgs[0];
+            if (localPropertyType.isCollection() || localPropertyType.isMap() || localPropertyType.isArray())
+               throw new JBossXBRuntimeException("@JBossXmlLazy property " + property.getName() + " of " + property.getBeanInfo().getName() +
+                     " is bound to " + localPropertyType.getName() + ": collections, maps and arrays can't be lazy");
+         }
+
          // Determine the name
          QName propertyQName = generateXmlName(property.getName(), elementForm, overrideNamespace, overrideName);
 
@@ -1966,10 +2064,18 @@ public class JBossXBNoSchemaBuilder
                   log.trace("@JBossXmlPreserveWhitespace.preserve=" + preserveSpace.preserve() + " for " + elementBinding.getQName());
             }
 
+            if (lazy != null)
+            {
+               elementBinding.setLazy(true);
+               if (trace)
+                  log.trace("@JBossXmlLazy for " + elementBinding.getQName());
+            }
+
             // Bind it to the model
             particle = new ParticleBinding(elementBinding, 1, 1, isCol);
             if (required == false)
                particle.setMinOccurs(0);
+            elementBinding.checkLazy(particle, null);
 
             targetGroup.addParticle(particle);
          }
@@ -2293,6 +2399,212 @@ public class JBossXBNoSchemaBuilder
       throw new JBossXBRuntimeException(message.toString(), t);
    }
 
+   /**
+    * A type binding for a bean type the content of which is bound the first time
+    * it is accessed.
+    */
+   private class LazyTypeBinding extends TypeBinding
+   {
+      /** Whether the content has been bound */
+      private volatile boolean initialized = true;
+
+      /** Whether the content is being bound, guarded by the builder */
+      private boolean initializing;
+
+      private ClassInfo typeInfo;
+      private BeanInfo beanInfo;
+      private BeanHandler handler;
+      private BeanAdapterFactory beanAdapterFactory;
+      private BeanAccessMode beanAccessMode;
+      private String[] propertyOrder;
+      private XmlAccessOrder accessOrder;
+      private JBossXmlType jbossXmlType;
+      private boolean root;
+      /** The default namespace at the time the binding was deferred */
+      private String namespace;
+
+      LazyTypeBinding()
+      {
+         super();
+      }
+
+      LazyTypeBinding(QName qName, CharactersHandler charactersHandler)
+      {
+         super(qName, charactersHandler);
+      }
+
+      void defer(ClassInfo typeInfo, BeanInfo beanInfo, BeanHandler handler, BeanAdapterFactory beanAdapterFactory,
+            BeanAccessMode beanAccessMode, String[] propertyOrder, XmlAccessOrder accessOrder, JBossXmlType jbossXmlType, boolean root)
+      {
+         this.typeInfo = typeInfo;
+         this.beanInfo = beanInfo;
+         this.handler = handler;
+         this.beanAdapterFactory = beanAdapterFactory;
+         this.beanAccessMode = beanAccessMode;
+         this.propertyOrder = propertyOrder;
+         this.accessOrder = accessOrder;
+         this.jbossXmlType = jbossXmlType;
+         this.root = root;
+         this.namespace = defaultNamespace;
+         initialized = false;
+
+         synchronized (JBossXBNoSchemaBuilder.this)
+         {
+            if (pendingTypes.isEmpty())
+               pendingTypes = new ArrayList<LazyTypeBinding>();
+            pendingTypes.add(this);
+         }
+      }
+
+      void initialize()
+      {
+         if (initialized)
+            return;
+
+         synchronized (JBossXBNoSchemaBuilder.this)
+         {
+            // initializing means it's a recursive call from the binding of this type
+            if (initialized || initializing)
+               return;
+            initializing = true;
+
+            if (trace)
+               log.trace("Binding deferred content of type=" + typeInfo.getName());
+
+            // the content is bound in the namespace context it was deferred in
+            String currentNamespace = defaultNamespace;
+            defaultNamespace = namespace;
+            push(typeInfo);
+            try
+            {
+               bindTypeContent(typeInfo, this, beanInfo, handler, beanAdapterFactory, beanAccessMode, propertyOrder, accessOrder, jbossXmlType, root);
+               pop();
+            }
+            catch (Exception e)
+            {
+               throw rethrowWithLocation(e);
+            }
+            finally
+            {
+               defaultNamespace = currentNamespace;
+               typeInfo = null;
+               beanInfo = null;
+               handler = null;
+               beanAdapterFactory = null;
+               propertyOrder = null;
+               jbossXmlType = null;
+               initializing = false;
+               initialized = true;
+            }
+         }
+      }
+
+      @Override
+      public ElementBinding getElement(QName name)
+      {
+         initialize();
+         return super.getElement(name);
+      }
+
+      @Override
+      public void addParticle(ParticleBinding particle)
+      {
+         initialize();
+         super.addParticle(particle);
+      }
+
+      @Override
+      public AttributeBinding getAttribute(QName qName)
+      {
+         initialize();
+         return super.getAttribute(qName);
+      }
+
+      @Override
+      public Attributes expandWithDefaultAttributes(Attributes attrs)
+      {
+         initialize();
+         return super.expandWithDefaultAttributes(attrs);
+      }
+
+      @Override
+      public Collection<AttributeBinding> getAttributes()
+      {
+         initialize();
+         return super.getAttributes();
+      }
+
+      @Override
+      public TypeBinding getSimpleType()
+      {
+         initialize();
+         return super.getSimpleType();
+      }
+
+      @Override
+      public void setSimpleType(TypeBinding simpleType)
+      {
+         initialize();
+         super.setSimpleType(simpleType);
+      }
+
+      @Override
+      public List<ElementInterceptor> getInterceptors(QName qName)
+      {
+         initialize();
+         return super.getInterceptors(qName);
+      }
+
+      @Override
+      public boolean isSimple()
+      {
+         initialize();
+         return super.isSimple();
+      }
+
+      @Override
+      public boolean isStartElementCreatesObject()
+      {
+         initialize();
+         return super.isStartElementCreatesObject();
+      }
+
+      @Override
+      public WildcardBinding getWildcard()
+      {
+         initialize();
+         return super.getWildcard();
+      }
+
+      @Override
+      public ParticleBinding getParticle()
+      {
+         initialize();
+         return super.getParticle();
+      }
+
+      @Override
+      public void setParticle(ParticleBinding particle)
+      {
+         initialize();
+         super.setParticle(particle);
+      }
+
+      @Override
+      public boolean hasOnlyXmlMimeAttributes()
+      {
+         initialize();
+         return super.hasOnlyXmlMimeAttributes();
+      }
+
+      @Override
+      public AnyAttributeBinding getAnyAttribute()
+      {
+         initialize();
+         return super.getAnyAttribute();
+      }
+   }
+
    /** A location */
    private class Location
    {
@@ -21,7 +21,6 @@
 */
 package org.jboss.xb.builder.runtime;
 
-import java.lang.reflect.Array;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -35,12 +34,15 @@ import org.jboss.xb.binding.sunday.unmarshalling.ParticleHandler;
 import org.jboss.xb.binding.sunday.unmarshalling.RepeatableParticleHandler;
 import org.jboss.xb.binding.sunday.unmarshalling.ValueAdapter;
 import org.jboss.xb.spi.BeanAdapter;
+import org.jboss.xb.util.GrowableArray;
 
 /**
  * This repeatable particle handler is used when repeatable particle handlers are actually disabled.
  * The reason is instead of creating, copying and setting a new array for every new element added,
  * it collects elements that appear one after another in XML and then appends to the current
  * property value.
+ * The elements are collected into a growable array of the component type, which may be
+ * primitive, and appended to the current property value once the particle ends.
  * 
  * @author <a href="alex@jboss.com">Alexey Loubyansky</a>
  * @version $Revision: 1.1 $
@@ -50,12 +52,14 @@ public class AppendingArrayRepeatableHandler implements RepeatableParticleHandle
    private final PropertyInfo propertyInfo;
    private final ArrayInfo arrayInfo;
    private final AbstractPropertyHandler targetHandler;
+   private final Class<?> componentType;
    
    public AppendingArrayRepeatableHandler(AbstractPropertyHandler propertyHandler)
    {
       this.propertyInfo = propertyHandler.getPropertyInfo();
       this.arrayInfo = (ArrayInfo) propertyHandler.getPropertyType();
       this.targetHandler = propertyHandler;
+      this.componentType = arrayInfo.getComponentType().getType();
    }
 
    public void handle(PropertyInfo propertyInfo, TypeInfo propertyType, Object parent, Object child, QName name)
@@ -65,15 +69,46 @@ public class AppendingArrayRepeatableHandler implements RepeatableParticleHandle
    public void addTermValue(Object particleValue, Object termValue, QName elementName, ParticleBinding particle,
          ParticleBinding parentParticle, ParticleHandler handler)
    {
-      ((List<Object>)particleValue).add(termValue);
+      if(particleValue instanceof GrowableArray)
+      {
+         try
+         {
+            ((GrowableArray)particleValue).add(termValue);
+         }
+         catch(IllegalArgumentException e)
+         {
+            throw new RuntimeException("QName " + elementName + " error adding " + termValue + " to array of type " + arrayInfo.getName(), e);
+         }
+      }
+      else
+         ((List<Object>)particleValue).add(termValue);
    }
 
    public void endRepeatableParticle(Object parent, Object o, QName name, ParticleBinding particle,
          ParticleBinding parentParticle)
    {
-      ValueAdapter valueAdapter = particle.getTerm().getValueAdapter();
-      if(valueAdapter != null)
+      GrowableArray elements;
+      if(o instanceof GrowableArray)
+      {
+         elements = (GrowableArray) o;
+      }
+      else
+      {
+         // the value adapter works with the list of the elements
+         ValueAdapter valueAdapter = particle.getTerm().getValueAdapter();
          o = valueAdapter.cast(o, null);
+         List<Object> list = (List<Object>) o;
+         elements = new GrowableArray(componentType, list.size());
+         try
+         {
+            for (int i = 0; i < list.size(); ++i)
+               elements.add(list.get(i));
+         }
+         catch (IllegalArgumentException e)
+         {
+            throw new RuntimeException("Error creating array of type " + arrayInfo.getName() + " from " + list, e);
+         }
+      }
 
       BeanAdapter beanAdapter = (BeanAdapter) parent;
       
@@ -88,44 +123,13 @@ public class AppendingArrayRepeatableHandler implements RepeatableParticleHandle
          throw new RuntimeException("QName " + name + " error getting array property " + propertyInfo.getName() + " for " + BuilderUtil.toDebugString(parent), t);
       }
 
-      List<Object> elements = (List<Object>) o;
-      Object[] arr;
-      if (currentArray == null)
-      {
-         try
-         {
-            arr = (Object[]) arrayInfo.newArrayInstance(elements.size());
-         }
-         catch (Throwable t)
-         {
-            throw new RuntimeException("Error creating array of type " + arrayInfo.getName() + " from " + elements, t);
-         }
-
-         for (int i = 0; i < arr.length; ++i)
-            arr[i] = elements.get(i);
-      }
-      else
-      {
-         int currentLength = Array.getLength(currentArray);
-         try
-         {
-            arr = (Object[]) arrayInfo.newArrayInstance(currentLength + elements.size());
-         }
-         catch (Throwable e)
-         {
-            throw new RuntimeException("Error creating array of type " + arrayInfo.getName() + " from " + elements, e);
-         }
-         
-         System.arraycopy(currentArray, 0, arr, 0, currentLength);
-         for (int i = 0; i < elements.size(); ++i)
-            arr[currentLength + i] = elements.get(i);
-      }
-      
-      targetHandler.doHandle(parent, arr, name);
+      targetHandler.doHandle(parent, elements.toArray(currentArray), name);
    }
 
    public Object startRepeatableParticle(Object parent, QName startName, ParticleBinding particle)
    {
-      return new ArrayList<Object>();
+      if (particle.getTerm().getValueAdapter() != null)
+         return new ArrayList<Object>();
+      return new GrowableArray(componentType);
    }
 }
@@ -0,0 +1,233 @@
+/*
+* JBoss, Home of Professional Open Source
+* Copyright 2006, JBoss Inc., and individual contributors as indicated
+* by the @authors tag. See the copyright.txt in the distribution for a
+* full listing of individual contributors.
+*
+* This is free software; you can redistribute it and/or modify it
+* under the terms of the GNU Lesser General Public License as
+* published by the Free Software Foundation; either version 2.1 of
+* the License, or (at your option) any later version.
+*
+* This software is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+* Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public
+* License along with this software; if not, write to the Free
+* Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+* 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+*/
+package org.jboss.xb.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jboss.xb.binding.JBossXBException;
+import org.jboss.xb.binding.JBossXBRuntimeException;
+
+/**
+ * Per thread instances of a non thread-safe object, like an unmarshaller or
+ * a marshaller, configured with the settings added to this object.
+ * Adding a setting makes the threads re-create their instances on the next acquire.
+ * An instance acquired while the thread's instance is still in use
+ * (e.g. when unmarshalling is re-entered from a handler) is created for that call only.
+ * <p>
+ * A named setting replaces the previous setting with the same name, so calling a setter
+ * repeatedly doesn't grow the list of settings. Each new setting is first applied
+ * to a probe instance, so a setting that can't be applied fails when it is added.
+ *
+ * @param <T> the type of the instances
+ * @version $Revision: 1.1 $
+ */
+public abstract class ConfiguredInstances<T>
+{
+   /**
+    * A setting applied to each new instance.
+    *
+    * @param <T> the type of the instances
+    */
+   public interface Setting<T>
+   {
+      void apply(T instance) throws JBossXBException;
+   }
+
+   /**
+    * A call made with an instance acquired for the current thread.
+    *
+    * @param <T> the type of the instances
+    * @param <R> the type of the result
+    */
+   public interface Call<T, R>
+   {
+      R call(T instance) throws Exception;
+   }
+
+   private static class Holder<T>
+   {
+      T instance;
+      int version;
+      boolean busy;
+   }
+
+   /** the settings by name, guarded by this */
+   private final Map<Object, Setting<T>> settingsByName = new LinkedHashMap<Object, Setting<T>>();
+
+   /** a snapshot of the settings, replaced when a setting is added */
+   private volatile List<Setting<T>> settings = Collections.emptyList();
+
+   private volatile int version;
+
+   /** the instance each new setting is applied to first, guarded by this */
+   private T probe;
+
+   private final ThreadLocal<Holder<T>> holders = new ThreadLocal<Holder<T>>()
+   {
+      protected Holder<T> initialValue()
+      {
+         return new Holder<T>();
+      }
+   };
+
+   /**
+    * @return a new not configured instance
+    * @throws JBossXBException  if the instance could not be created
+    */
+   protected abstract T newInstance() throws JBossXBException;
+
+   /**
+    * Adds a setting the instances are configured with.
+    * The setting doesn't replace any of the settings added before.
+    * The instances created before are discarded.
+    *
+    * @param setting  the setting
+    * @throws JBossXBRuntimeException  if the setting can't be applied
+    */
+   public void addSetting(Setting<T> setting)
+   {
+      addSetting(new Object(), setting);
+   }
+
+   /**
+    * Adds a setting the instances are configured with replacing the setting
+    * added before with the same name. The instances created before are discarded.
+    *
+    * @param name  the name of the setting
+    * @param setting  the setting
+    * @throws JBossXBRuntimeException  if the setting can't be applied
+    */
+   public synchronized void addSetting(Object name, Setting<T> setting)
+   {
+      if(name == null)
+         throw new IllegalArgumentException("Null name");
+      if(setting == null)
+         throw new IllegalArgumentException("Null setting");
+
+      try
+      {
+         if(probe == null)
+            probe = create();
+         setting.apply(probe);
+      }
+      catch(JBossXBException e)
+      {
+         // the probe may be left half configured
+         probe = null;
+         throw new JBossXBRuntimeException("Failed to apply the setting", e);
+      }
+      catch(RuntimeException e)
+      {
+         probe = null;
+         throw e;
+      }
+
+      // moved to the end so it is applied after the settings added before
+      settingsByName.remove(name);
+      settingsByName.put(name, setting);
+      settings = new ArrayList<Setting<T>>(settingsByName.values());
+      ++version;
+   }
+
+   /**
+    * Acquires the instance for the current thread, makes the call with it
+    * and releases the instance. An instance the call failed with is not reused.
+    *
+    * @param <R> the type of the result
+    * @param call  the call
+    * @return  the result of the call
+    * @throws Exception  whatever the call throws or if the instance could not be created
+    */
+   public <R> R call(Call<T, R> call) throws Exception
+   {
+      T instance = acquire();
+      boolean done = false;
+      try
+      {
+         R result = call.call(instance);
+         done = true;
+         return result;
+      }
+      finally
+      {
+         release(instance, done);
+      }
+   }
+
+   /**
+    * Returns the instance for the current thread. The instance must be
+    * released with {@link #release(Object, boolean)} when the call is over.
+    *
+    * @return the instance
+    * @throws JBossXBException  if the instance could not be created or configured
+    */
+   public T acquire() throws JBossXBException
+   {
+      Holder<T> holder = holders.get();
+      if(holder.busy)
+      {
+         return create();
+      }
+
+      int current = version;
+      if(holder.instance == null || holder.version != current)
+      {
+         holder.instance = create();
+         holder.version = current;
+      }
+      holder.busy = true;
+      return holder.instance;
+   }
+
+   /**
+    * Releases an instance acquired by the current thread.
+    *
+    * @param instance  the instance
+    * @param reusable  false if the call failed and the instance should not be reused
+    */
+   public void release(T instance, boolean reusable)
+   {
+      Holder<T> holder = holders.get();
+      if(holder.instance == instance)
+      {
+         holder.busy = false;
+         if(!reusable)
+         {
+            holder.instance = null;
+         }
+      }
+   }
+
+   private T create() throws JBossXBException
+   {
+      T instance = newInstance();
+      for(Setting<T> setting : settings)
+      {
+         setting.apply(instance);
+      }
+      return instance;
+   }
+}
@@ -0,0 +1,362 @@
+/*
+* JBoss, Home of Professional Open Source
+* Copyright 2006, JBoss Inc., and individual contributors as indicated
+* by the @authors tag. See the copyright.txt in the distribution for a
+* full listing of individual contributors.
+*
+* This is free software; you can redistribute it and/or modify it
+* under the terms of the GNU Lesser General Public License as
+* published by the Free Software Foundation; either version 2.1 of
+* the License, or (at your option) any later version.
+*
+* This software is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+* Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public
+* License along with this software; if not, write to the Free
+* Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+* 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+*/
+package org.jboss.xb.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.xml.XMLConstants;
+
+import org.jboss.xb.binding.DocumentLimitExceededException;
+import org.jboss.xb.binding.JBossXBRuntimeException;
+import org.jboss.xb.binding.NamespaceRegistry;
+import org.jboss.xb.binding.parser.DocumentLimits;
+import org.jboss.xb.binding.parser.JBossXBParser;
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.xml.sax.Attributes;
+import org.xml.sax.helpers.AttributesImpl;
+
+/**
+ * Walks a DOM tree delivering its content directly to a JBossXBParser.ContentHandler,
+ * so that DOM nodes can be unmarshalled without serializing and re-parsing them.
+ * <p>
+ * Text is passed to handlers implementing JBossXBParser.CharSequenceContentHandler as it is
+ * and to other handlers as char arrays. When an element is walked, the namespaces declared
+ * on its ancestors are mapped first, so that a fragment of a bigger document
+ * (e.g. the content of a SOAP body) can be unmarshalled. Both namespace aware and
+ * DOM level 1 nodes are supported. The names of the latter are resolved using
+ * the namespace declarations in scope. The children of elements skipped by
+ * a JBossXBParser.SkippingContentHandler are not walked.
+ * <p>
+ * If DocumentLimits are given, the depth, the number of elements and attributes and
+ * the length of the text are checked as the tree is walked, like a parser checks them,
+ * and the counts of the walked tree are added to the counters of the limits.
+ *
+ * @version $Revision: 1.1 $
+ */
+public class DomWalker
+{
+   private static final Attributes NO_ATTRIBUTES = new AttributesImpl();
+
+   private final JBossXBParser.ContentHandler handler;
+   private final JBossXBParser.CharSequenceContentHandler textHandler;
+   private final JBossXBParser.SkippingContentHandler skippingHandler;
+   private final NamespaceRegistry nsRegistry = new NamespaceRegistry();
+
+   private final DocumentLimits limits;
+   private final int maxTextLength;
+   private final int maxDepth;
+   private final int maxElements;
+   private final int maxAttributes;
+   private int depth;
+   private int elements;
+   private long textLength;
+   private long characterCount;
+
+   /**
+    * Delivers the content of the node to the handler.
+    *
+    * @param node  a document, document fragment or element
+    * @param handler  the handler to deliver the content to
+    */
+   public static void walk(Node node, JBossXBParser.ContentHandler handler)
+   {
+      new DomWalker(handler).walk(node);
+   }
+
+   /**
+    * Delivers the content of the node to the handler checking the limits.
+    *
+    * @param node  a document, document fragment or element
+    * @param handler  the handler to deliver the content to
+    * @param limits  the limits or null if the content is not limited
+    */
+   public static void walk(Node node, JBossXBParser.ContentHandler handler, DocumentLimits limits)
+   {
+      new DomWalker(handler, limits).walk(node);
+   }
+
+   public DomWalker(JBossXBParser.ContentHandler handler)
+   {
+      this(handler, null);
+   }
+
+   /**
+    * @param handler  the handler to deliver the content to
+    * @param limits  the limits or null if the content is not limited
+    */
+   public DomWalker(JBossXBParser.ContentHandler handler, DocumentLimits limits)
+   {
+      if(handler == null)
+         throw new IllegalArgumentException("The handler is null");
+      this.handler = handler;
+      this.textHandler = handler instanceof JBossXBParser.CharSequenceContentHandler ?
+            (JBossXBParser.CharSequenceContentHandler) handler : null;
+      this.skippingHandler = handler instanceof JBossXBParser.SkippingContentHandler ?
+            (JBossXBParser.SkippingContentHandler) handler : null;
+      this.limits = limits;
+      this.maxTextLength = limits == null ? DocumentLimits.UNLIMITED : limits.getMaxTextLength();
+      this.maxDepth = limits == null ? DocumentLimits.UNLIMITED : limits.getMaxDepth();
+      this.maxElements = limits == null ? DocumentLimits.UNLIMITED : limits.getMaxElements();
+      this.maxAttributes = limits == null ? DocumentLimits.UNLIMITED : limits.getMaxAttributes();
+   }
+
+   /**
+    * Delivers the content of the node to the handler.
+    *
+    * @param node  a document, document fragment or element
+    */
+   public void walk(Node node)
+   {
+      depth = 0;
+      elements = 0;
+      textLength = 0;
+      characterCount = 0;
+      boolean rejected = false;
+      try
+      {
+         walkNode(node);
+      }
+      catch(DocumentLimitExceededException e)
+      {
+         rejected = true;
+         throw e;
+      }
+      finally
+      {
+         if(limits != null)
+            limits.documentParsed(elements, characterCount, rejected);
+      }
+   }
+
+   private void walkNode(Node node)
+   {
+      switch(node.getNodeType())
+      {
+         case Node.DOCUMENT_NODE:
+            Element root = ((Document) node).getDocumentElement();
+            if(root != null)
+               walkElement(root);
+            break;
+         case Node.DOCUMENT_FRAGMENT_NODE:
+            walkChildren(node);
+            break;
+         case Node.ELEMENT_NODE:
+            Element element = (Element) node;
+            List<String> inherited = declareInheritedNamespaces(element);
+            walkElement(element);
+            for(int i = inherited.size() - 1; i >= 0; --i)
+            {
+               String prefix = inherited.get(i);
+               nsRegistry.removePrefixMapping(prefix);
+               handler.endPrefixMapping(prefix);
+            }
+            break;
+         default:
+            throw new JBossXBRuntimeException("Expected a document, document fragment or element but got " + node);
+      }
+   }
+
+   private List<String> declareInheritedNamespaces(Element element)
+   {
+      List<String> declared = Collections.emptyList();
+      for(Node parent = element.getParentNode(); parent != null && parent.getNodeType() == Node.ELEMENT_NODE; parent = parent.getParentNode())
+      {
+         NamedNodeMap attrs = parent.getAttributes();
+         for(int i = 0; i < attrs.getLength(); ++i)
+         {
+            Attr attr = (Attr) attrs.item(i);
+            String prefix = getDeclaredPrefix(attr);
+            // the nearest declaration wins
+            if(prefix != null && !declared.contains(prefix))
+            {
+               if(declared.isEmpty())
+                  declared = new ArrayList<String>();
+               declared.add(prefix);
+               nsRegistry.addPrefixMapping(prefix, attr.getValue());
+               handler.startPrefixMapping(prefix, attr.getValue());
+            }
+         }
+      }
+      return declared;
+   }
+
+   private void walkElement(Element element)
+   {
+      nsRegistry.pushContext();
+
+      String[] declared = null;
+      int declaredTotal = 0;
+      AttributesImpl attrs = null;
+      NamedNodeMap domAttrs = element.getAttributes();
+      int attrsTotal = domAttrs == null ? 0 : domAttrs.getLength();
+
+      // namespace declarations first since they are in scope for the element and its attributes
+      for(int i = 0; i < attrsTotal; ++i)
+      {
+         Attr attr = (Attr) domAttrs.item(i);
+         String prefix = getDeclaredPrefix(attr);
+         if(prefix != null)
+         {
+            if(declared == null)
+               declared = new String[attrsTotal];
+            declared[declaredTotal++] = prefix;
+            nsRegistry.addPrefixMapping(prefix, attr.getValue());
+            handler.startPrefixMapping(prefix, attr.getValue());
+         }
+      }
+
+      if(declaredTotal < attrsTotal)
+      {
+         attrs = new AttributesImpl();
+         for(int i = 0; i < attrsTotal; ++i)
+         {
+            Attr attr = (Attr) domAttrs.item(i);
+            if(getDeclaredPrefix(attr) == null)
+            {
+               String localName = attr.getLocalName();
+               String ns;
+               if(localName != null)
+               {
+                  ns = attr.getNamespaceURI();
+               }
+               else
+               {
+                  // unprefixed attributes are not in the default namespace
+                  localName = attr.getNodeName();
+                  int colon = localName.indexOf(':');
+                  ns = colon < 0 ? null : nsRegistry.getNamespaceURI(localName.substring(0, colon));
+                  localName = localName.substring(colon + 1);
+               }
+               attrs.addAttribute(ns == null ? "" : ns, localName, attr.getNodeName(), "CDATA", attr.getValue());
+            }
+         }
+      }
+
+      String qName = element.getNodeName();
+      textLength = 0;
+      if(++elements > maxElements)
+         throw DocumentLimits.exceeded(DocumentLimits.MAX_ELEMENTS, maxElements, qName);
+      if(++depth > maxDepth)
+         throw DocumentLimits.exceeded(DocumentLimits.MAX_DEPTH, maxDepth, qName);
+      if(attrsTotal - declaredTotal > maxAttributes)
+         throw DocumentLimits.exceeded(DocumentLimits.MAX_ATTRIBUTES, maxAttributes, qName);
+
+      String localName = element.getLocalName();
+      String ns;
+      if(localName != null)
+      {
+         ns = element.getNamespaceURI();
+      }
+      else
+      {
+         int colon = qName.indexOf(':');
+         ns = nsRegistry.getNamespaceURI(colon < 0 ? "" : qName.substring(0, colon));
+         localName = qName.substring(colon + 1);
+      }
+      if(ns == null)
+         ns = "";
+
+      handler.startElement(ns, localName, qName, attrs == null ? NO_ATTRIBUTES : attrs);
+      if(skippingHandler == null || !skippingHandler.isSkipContent())
+         walkChildren(element);
+      handler.endElement(ns, localName, qName);
+      --depth;
+      textLength = 0;
+
+      for(int i = declaredTotal - 1; i >= 0; --i)
+      {
+         handler.endPrefixMapping(declared[i]);
+      }
+      nsRegistry.popContext();
+   }
+
+   private void walkChildren(Node node)
+   {
+      for(Node child = node.getFirstChild(); child != null; child = child.getNextSibling())
+      {
+         switch(child.getNodeType())
+         {
+            case Node.ELEMENT_NODE:
+               walkElement((Element) child);
+               break;
+            case Node.TEXT_NODE:
+            case Node.CDATA_SECTION_NODE:
+               characters(child.getNodeValue());
+               break;
+            case Node.ENTITY_REFERENCE_NODE:
+               // the replacement content of the entity
+               walkChildren(child);
+               break;
+            case Node.PROCESSING_INSTRUCTION_NODE:
+               handler.processingInstruction(child.getNodeName(), child.getNodeValue());
+               break;
+         }
+      }
+   }
+
+   private void characters(String text)
+   {
+      if(text.length() == 0)
+         return;
+
+      characterCount += text.length();
+      textLength += text.length();
+      if(textLength > maxTextLength)
+         throw DocumentLimits.exceeded(DocumentLimits.MAX_TEXT_LENGTH, maxTextLength, null);
+
+      if(textHandler != null)
+      {
+         textHandler.characters(text);
+      }
+      else
+      {
+         char[] ch = text.toCharArray();
+         handler.characters(ch, 0, ch.length);
+      }
+   }
+
+   /**
+    * @return  the prefix declared by the attribute, an empty string for the default namespace
+    * or null if the attribute is not a namespace declaration
+    */
+   private static String getDeclaredPrefix(Attr attr)
+   {
+      String localName = attr.getLocalName();
+      if(localName != null)
+      {
+         if(!XMLConstants.XMLNS_ATTRIBUTE_NS_URI.equals(attr.getNamespaceURI()))
+            return null;
+         return XMLConstants.XMLNS_ATTRIBUTE.equals(localName) ? "" : localName;
+      }
+
+      String name = attr.getNodeName();
+      if(XMLConstants.XMLNS_ATTRIBUTE.equals(name))
+         return "";
+      return name.startsWith("xmlns:") ? name.substring(6) : null;
+   }
+}
@@ -0,0 +1,127 @@
+/*
+* JBoss, Home of Professional Open Source
+* Copyright 2006, JBoss Inc., and individual contributors as indicated
+* by the @authors tag. See the copyright.txt in the distribution for a
+* full listing of individual contributors.
+*
+* This is free software; you can redistribute it and/or modify it
+* under the terms of the GNU Lesser General Public License as
+* published by the Free Software Foundation; either version 2.1 of
+* the License, or (at your option) any later version.
+*
+* This software is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+* Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public
+* License along with this software; if not, write to the Free
+* Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+* 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+*/
+package org.jboss.xb.util;
+
+import java.lang.reflect.Array;
+import java.util.Arrays;
+
+/**
+ * A growable array of a given component type, which may be primitive.
+ * Values are appended into a buffer the capacity of which doubles when it's full,
+ * so appending N values costs O(N), and the array of the exact length is created
+ * once in the end.
+ * 
+ * @version $Revision: 1.1 $
+ */
+public class GrowableArray
+{
+   private static final int DEFAULT_CAPACITY = 8;
+
+   private final Class<?> componentType;
+   private final boolean primitive;
+   private Object buffer;
+   private int size;
+
+   public GrowableArray(Class<?> componentType)
+   {
+      this(componentType, DEFAULT_CAPACITY);
+   }
+
+   public GrowableArray(Class<?> componentType, int initialCapacity)
+   {
+      if(componentType == null)
+         throw new IllegalArgumentException("Null component type");
+      this.componentType = componentType;
+      this.primitive = componentType.isPrimitive();
+      this.buffer = Array.newInstance(componentType, Math.max(initialCapacity, 1));
+   }
+
+   public Class<?> getComponentType()
+   {
+      return componentType;
+   }
+
+   public int size()
+   {
+      return size;
+   }
+
+   /**
+    * Appends a value. A value for a primitive component type is unwrapped.
+    * 
+    * @param value  the value
+    * @throws IllegalArgumentException  if the value can't be stored in an array of the component type
+    */
+   public void add(Object value)
+   {
+      int capacity = Array.getLength(buffer);
+      if(size == capacity)
+      {
+         Object grown = Array.newInstance(componentType, capacity << 1);
+         System.arraycopy(buffer, 0, grown, 0, size);
+         buffer = grown;
+      }
+
+      if(primitive)
+      {
+         Array.set(buffer, size, value);
+      }
+      else
+      {
+         if(value != null && !componentType.isInstance(value))
+            throw new IllegalArgumentException(value.getClass().getName() + " can't be stored in an array of " + componentType.getName());
+         ((Object[])buffer)[size] = value;
+      }
+      ++size;
+   }
+
+   /**
+    * Creates the array of the component type containing the elements of the head array,
+    * if it's not null, followed by the appended values. The appended values are then
+    * removed from this instance.
+    * 
+    * @param head  the array the values are appended to or null
+    * @return  the array
+    */
+   public Object toArray(Object head)
+   {
+      int headLength = head == null ? 0 : Array.getLength(head);
+      Object result;
+      if(headLength == 0 && size == Array.getLength(buffer))
+      {
+         // the buffer is exactly full, it becomes the result
+         result = buffer;
+         buffer = Array.newInstance(componentType, DEFAULT_CAPACITY);
+      }
+      else
+      {
+         result = Array.newInstance(componentType, headLength + size);
+         if(headLength > 0)
+            System.arraycopy(head, 0, result, 0, headLength);
+         System.arraycopy(buffer, 0, result, headLength, size);
+         if(!primitive)
+            Arrays.fill((Object[])buffer, 0, size, null);
+      }
+      size = 0;
+      return result;
+   }
+}
@@ -23,13 +23,26 @@ package org.jboss.xb.util;
 
 // $Id: $
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
 import org.jboss.logging.Logger;
 import org.jboss.xb.annotations.JBossXmlSchema;
 import org.jboss.xb.binding.FeatureAware;
+import org.jboss.xb.binding.JBossXBException;
 import org.jboss.xb.binding.ObjectModelFactory;
 import org.jboss.xb.binding.Unmarshaller;
 import org.jboss.xb.binding.UnmarshallerFactory;
 import org.jboss.xb.binding.resolver.MutableSchemaResolver;
+import org.jboss.xb.binding.sunday.unmarshalling.SchemaBindingResolver;
 import org.jboss.xb.binding.sunday.unmarshalling.SingletonSchemaResolverFactory;
 import org.xml.sax.InputSource;
 
@@ -60,6 +73,12 @@ public class JBossXBHelper<T> implements FeatureAware
    /** Whether to warn on parser errors or terminate parsing by re-throwing the parsing errors */
    private boolean warnOnParserErrors;
 
+   /** Unmarshallers released after parsing */
+   private final Queue<PooledUnmarshaller> unmarshallers = new ConcurrentLinkedQueue<PooledUnmarshaller>();
+
+   /** The version of the settings, incremented by every setter so that unmarshallers configured before are dropped */
+   private volatile int settingsVersion;
+
    /**
     * Create a new SchemaResolverDeployer.
     *
@@ -76,6 +95,7 @@ public class JBossXBHelper<T> implements FeatureAware
    public void setFeature(String featureName, boolean flag) throws Exception
    {
       factory.setFeature(featureName, flag);
+      settingsChanged();
    }
 
    /**
@@ -96,6 +116,7 @@ public class JBossXBHelper<T> implements FeatureAware
    public void setUseSchemaValidation(boolean useSchemaValidation)
    {
       this.useSchemaValidation = useSchemaValidation;
+      settingsChanged();
    }
 
    /**
@@ -116,6 +137,7 @@ public class JBossXBHelper<T> implements FeatureAware
    public void setUseValidation(boolean useValidation)
    {
       this.useValidation = useValidation;
+      settingsChanged();
    }
 
    /**
@@ -138,6 +160,7 @@ public class JBossXBHelper<T> implements FeatureAware
    public void setWarnOnParserErrors(boolean value)
    {
       this.warnOnParserErrors = value;
+      settingsChanged();
    }
 
    /**
@@ -241,6 +264,21 @@ public class JBossXBHelper<T> implements FeatureAware
     * @throws Exception for any error
     */
    public <U> U parse(Class<U> expectedType, InputSource source) throws Exception
+   {
+      return parse(expectedType, source, getResolver());
+   }
+
+   /**
+    * Parse the file to create metadata instance.
+    *
+    * @param <U> the expect type
+    * @param expectedType the expected type
+    * @param source the source
+    * @param resolver the schema binding resolver
+    * @return new metadata instance
+    * @throws Exception for any error
+    */
+   public <U> U parse(Class<U> expectedType, InputSource source, SchemaBindingResolver resolver) throws Exception
    {
       if (expectedType == null)
          throw new IllegalArgumentException("Null expected type");
@@ -250,11 +288,10 @@ public class JBossXBHelper<T> implements FeatureAware
       boolean trace = log.isTraceEnabled();
       if(trace)
          log.trace("Parsing file: " + source + " for type: " + expectedType);
-      Unmarshaller unmarshaller = factory.newUnmarshaller();
-      unmarshaller.setSchemaValidation(isUseSchemaValidation());
-      unmarshaller.setValidation(isUseValidation());
-      unmarshaller.setWarnOnParserErrors(isWarnOnParserErrors());
-      Object parsed = unmarshaller.unmarshal(source, getResolver());
+      PooledUnmarshaller pooled = borrowUnmarshaller();
+      Object parsed = pooled.unmarshaller.unmarshal(source, resolver);
+      // an unmarshaller that failed may be left in an inconsistent state
+      releaseUnmarshaller(pooled);
       if (parsed == null)
          throw new Exception("Failed to resolve Java binding for " + source + " (check the SchemaBinding resolver configuration)");
 
@@ -297,11 +334,10 @@ public class JBossXBHelper<T> implements FeatureAware
       if(trace)
          log.trace("Parsing source: " + source + " for deploymentType: " + expectedType);
 
-      Unmarshaller unmarshaller = factory.newUnmarshaller();
-      unmarshaller.setSchemaValidation(isUseSchemaValidation());
-      unmarshaller.setValidation(isUseValidation());
-      unmarshaller.setWarnOnParserErrors(isWarnOnParserErrors());
-      Object parsed = unmarshaller.unmarshal(source, omf, root);
+      PooledUnmarshaller pooled = borrowUnmarshaller();
+      Object parsed = pooled.unmarshaller.unmarshal(source, omf, root);
+      // an unmarshaller that failed may be left in an inconsistent state
+      releaseUnmarshaller(pooled);
       if (parsed == null)
          throw new Exception("Failed to resolve Java binding for " + source);
 
@@ -309,4 +345,153 @@ public class JBossXBHelper<T> implements FeatureAware
          log.trace("Parsed file: " + source + " to: "+parsed);
       return expectedType.cast(parsed);
    }
-}
\ No newline at end of file
+
+   /**
+    * Parse the sources concurrently.
+    *
+    * @param sources the sources to parse
+    * @param executor the executor to parse the sources on
+    * @return the completed parses, one per source in the iteration order of the sources
+    * @throws InterruptedException if interrupted while waiting for the parses to complete
+    */
+   public List<Future<T>> parse(Collection<InputSource> sources, Executor executor) throws InterruptedException
+   {
+      return parse(output, sources, getResolver(), executor);
+   }
+
+   /**
+    * Parse the sources concurrently.
+    * 
+    * Each source is parsed by a separate task submitted to the executor, with the
+    * thread context classloader of the caller. The unmarshallers are pooled and
+    * the resolver is shared by all the tasks, so it has to be thread-safe.
+    * This method returns when all the tasks have completed, a failed parse is reported
+    * by its future throwing an ExecutionException.
+    *
+    * @param <U> the expect type
+    * @param expectedType the expected type
+    * @param sources the sources to parse
+    * @param resolver the schema binding resolver
+    * @param executor the executor to parse the sources on
+    * @return the completed parses, one per source in the iteration order of the sources
+    * @throws InterruptedException if interrupted while waiting for the parses to complete
+    */
+   public <U> List<Future<U>> parse(final Class<U> expectedType, Collection<InputSource> sources,
+         final SchemaBindingResolver resolver, Executor executor) throws InterruptedException
+   {
+      if (expectedType == null)
+         throw new IllegalArgumentException("Null expected type");
+      if (sources == null)
+         throw new IllegalArgumentException("Null sources");
+      if (executor == null)
+         throw new IllegalArgumentException("Null executor");
+
+      final ClassLoader cl = Thread.currentThread().getContextClassLoader();
+      List<Future<U>> results = new ArrayList<Future<U>>(sources.size());
+      for (final InputSource source : sources)
+      {
+         FutureTask<U> task = new FutureTask<U>(new Callable<U>()
+         {
+            public U call() throws Exception
+            {
+               Thread thread = Thread.currentThread();
+               ClassLoader previous = thread.getContextClassLoader();
+               thread.setContextClassLoader(cl);
+               try
+               {
+                  return parse(expectedType, source, resolver);
+               }
+               finally
+               {
+                  thread.setContextClassLoader(previous);
+               }
+            }
+         });
+         results.add(task);
+         executor.execute(task);
+      }
+
+      try
+      {
+         for (Future<U> result : results)
+         {
+            try
+            {
+               result.get();
+            }
+            catch (ExecutionException ignored)
+            {
+               // reported through the future
+            }
+         }
+      }
+      catch (InterruptedException e)
+      {
+         for (Future<U> result : results)
+            result.cancel(true);
+         throw e;
+      }
+      return results;
+   }
+
+   /**
+    * Drops the pooled unmarshallers and the ones being used
+    * when they are released, since they were configured with the previous settings.
+    */
+   private void settingsChanged()
+   {
+      ++settingsVersion;
+      unmarshallers.clear();
+   }
+
+   /**
+    * Returns an unmarshaller configured with the current settings.
+    * The unmarshaller is offered back to the pool after a successful parse.
+    *
+    * @return the unmarshaller
+    * @throws JBossXBException for any error
+    */
+   private PooledUnmarshaller borrowUnmarshaller() throws JBossXBException
+   {
+      int version = settingsVersion;
+      PooledUnmarshaller pooled = unmarshallers.poll();
+      while (pooled != null && pooled.version != version)
+         pooled = unmarshallers.poll();
+
+      if (pooled == null)
+      {
+         Unmarshaller unmarshaller = factory.newUnmarshaller();
+         unmarshaller.setSchemaValidation(isUseSchemaValidation());
+         unmarshaller.setValidation(isUseValidation());
+         unmarshaller.setWarnOnParserErrors(isWarnOnParserErrors());
+         pooled = new PooledUnmarshaller(unmarshaller, version);
+      }
+      return pooled;
+   }
+
+   /**
+    * Offers the unmarshaller back to the pool unless the settings changed since it was created.
+    *
+    * @param pooled the unmarshaller
+    */
+   private void releaseUnmarshaller(PooledUnmarshaller pooled)
+   {
+      if (pooled.version == settingsVersion)
+         unmarshallers.offer(pooled);
+   }
+
+   /**
+    * An unmarshaller with the version of the settings it was configured with.
+    */
+   private static class PooledUnmarshaller
+   {
+      final Unmarshaller unmarshaller;
+      final int version;
+
+      PooledUnmarshaller(Unmarshaller unmarshaller, int version)
+      {
+         this.unmarshaller = unmarshaller;
+         this.version = version;
+      }
+   }
+}
@@ -0,0 +1,103 @@
+/*
+* JBoss, Home of Professional Open Source
+* Copyright 2006, JBoss Inc., and individual contributors as indicated
+* by the @authors tag. See the copyright.txt in the distribution for a
+* full listing of individual contributors.
+*
+* This is free software; you can redistribute it and/or modify it
+* under the terms of the GNU Lesser General Public License as
+* published by the Free Software Foundation; either version 2.1 of
+* the License, or (at your option) any later version.
+*
+* This software is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+* Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public
+* License along with this software; if not, write to the Free
+* Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+* 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+*/
+package org.jboss.xb.util;
+
+import javax.xml.XMLConstants;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.Text;
+import org.xml.sax.Attributes;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * SAX content handler that appends the content it receives to a DOM node,
+ * i.e. the reverse of Dom2Sax. Namespace declarations are expected
+ * as xmlns attributes, the way the marshallers produce them.
+ *
+ * @version $Revision: 1.1 $
+ */
+public class Sax2Dom extends DefaultHandler
+{
+   private final Document doc;
+   private Node current;
+
+   /**
+    * @param parent  the document or element to append the content to
+    */
+   public Sax2Dom(Node parent)
+   {
+      if(parent.getNodeType() == Node.DOCUMENT_NODE)
+         doc = (Document) parent;
+      else if(parent.getNodeType() == Node.ELEMENT_NODE || parent.getNodeType() == Node.DOCUMENT_FRAGMENT_NODE)
+         doc = parent.getOwnerDocument();
+      else
+         throw new IllegalArgumentException("Expected a document, document fragment or element but got " + parent);
+      current = parent;
+   }
+
+   public void startElement(String uri, String localName, String qName, Attributes attrs)
+   {
+      Element element = doc.createElementNS(uri == null || uri.length() == 0 ? null : uri, qName);
+      for(int i = 0; i < attrs.getLength(); ++i)
+      {
+         String attrQName = attrs.getQName(i);
+         if(attrQName == null || attrQName.length() == 0)
+            attrQName = attrs.getLocalName(i);
+
+         String attrNs;
+         if(XMLConstants.XMLNS_ATTRIBUTE.equals(attrQName) || attrQName.startsWith("xmlns:"))
+         {
+            attrNs = XMLConstants.XMLNS_ATTRIBUTE_NS_URI;
+         }
+         else
+         {
+            attrNs = attrs.getURI(i);
+            if(attrNs != null && attrNs.length() == 0)
+               attrNs = null;
+         }
+         element.setAttributeNS(attrNs, attrQName, attrs.getValue(i));
+      }
+      current.appendChild(element);
+      current = element;
+   }
+
+   public void endElement(String uri, String localName, String qName)
+   {
+      current = current.getParentNode();
+   }
+
+   public void characters(char[] ch, int start, int length)
+   {
+      Node last = current.getLastChild();
+      if(last != null && last.getNodeType() == Node.TEXT_NODE)
+         ((Text) last).appendData(new String(ch, start, length));
+      else
+         current.appendChild(doc.createTextNode(new String(ch, start, length)));
+   }
+
+   public void processingInstruction(String target, String data)
+   {
+      current.appendChild(doc.createProcessingInstruction(target, data));
+   }
+}
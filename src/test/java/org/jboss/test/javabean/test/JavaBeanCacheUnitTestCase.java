@@ -0,0 +1,155 @@
+/*
+* JBoss, Home of Professional Open Source
+* Copyright 2006, JBoss Inc., and individual contributors as indicated
+* by the @authors tag. See the copyright.txt in the distribution for a
+* full listing of individual contributors.
+*
+* This is free software; you can redistribute it and/or modify it
+* under the terms of the GNU Lesser General Public License as
+* published by the Free Software Foundation; either version 2.1 of
+* the License, or (at your option) any later version.
+*
+* This software is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+* Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public
+* License along with this software; if not, write to the Free
+* Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+* 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+*/
+package org.jboss.test.javabean.test;
+
+import java.lang.ref.WeakReference;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.Test;
+
+import org.jboss.beans.info.spi.BeanInfo;
+import org.jboss.javabean.plugins.jaxb.JavaBeanCache;
+import org.jboss.reflect.spi.TypeInfo;
+import org.jboss.test.javabean.support.TestProperty;
+
+/**
+ * JavaBeanCacheUnitTestCase.
+ *
+ * @version $Revision: 1.1 $
+ */
+public class JavaBeanCacheUnitTestCase extends AbstractJavaBeanTest
+{
+   public static Test suite()
+   {
+      return suite(JavaBeanCacheUnitTestCase.class);
+   }
+
+   public JavaBeanCacheUnitTestCase(String name)
+   {
+      super(name);
+   }
+
+   public void testCacheIsPerClassLoader() throws Exception
+   {
+      ClassLoader cl = getClass().getClassLoader();
+      JavaBeanCache cache = JavaBeanCache.getInstance(cl);
+      assertSame(cache, JavaBeanCache.getInstance(cl));
+      assertSame(cache.getBeanInfo(TestProperty.class.getName()), cache.getBeanInfo(TestProperty.class.getName()));
+   }
+
+   public void testCacheSurvivesGc() throws Exception
+   {
+      ClassLoader cl = new URLClassLoader(new URL[0], getClass().getClassLoader());
+      JavaBeanCache cache = JavaBeanCache.getInstance(cl);
+      int hash = System.identityHashCode(cache);
+      cache = null;
+
+      for(int i = 0; i < 3; ++i)
+      {
+         System.gc();
+         Thread.sleep(10);
+      }
+      assertEquals(hash, System.identityHashCode(JavaBeanCache.getInstance(cl)));
+   }
+
+   public void testCacheDoesNotKeepClassLoader() throws Exception
+   {
+      ClassLoader cl = new URLClassLoader(new URL[0], getClass().getClassLoader());
+      JavaBeanCache.getInstance(cl).getBeanInfo(TestProperty.class.getName());
+      WeakReference<ClassLoader> ref = new WeakReference<ClassLoader>(cl);
+      cl = null;
+
+      // the cache is softly reachable, it's cleared before an OutOfMemoryError is thrown
+      exhaustMemory();
+      for(int i = 0; i < 10 && ref.get() != null; ++i)
+      {
+         System.gc();
+         Thread.sleep(10);
+      }
+      assertNull(ref.get());
+   }
+
+   public void testPropertySettersAreCached() throws Throwable
+   {
+      JavaBeanCache cache = JavaBeanCache.getInstance(getClass().getClassLoader());
+      BeanInfo beanInfo = cache.getBeanInfo(TestProperty.class.getName());
+      JavaBeanCache.PropertySetter setter = cache.getPropertySetter(beanInfo, "aLong", null);
+      assertSame(setter, cache.getPropertySetter(beanInfo, "aLong", null));
+      assertNotSame(setter, cache.getPropertySetter(beanInfo, "aLong", Long.class.getName()));
+
+      TestProperty bean = new TestProperty();
+      setter.set(bean, "12345");
+      assertEquals(new Long(12345), bean.getALong());
+      assertSame(bean.getALong(), cache.convertValue(setter.getTypeInfo(), "12345"));
+   }
+
+   public void testImmutableConversionsAreShared() throws Throwable
+   {
+      JavaBeanCache cache = JavaBeanCache.getInstance(getClass().getClassLoader());
+      TypeInfo type = cache.getTypeInfo(Long.class.getName());
+      Object value = cache.convertValue(type, "123456789");
+      assertEquals(new Long(123456789), value);
+      assertSame(value, cache.convertValue(type, "123456789"));
+   }
+
+   public void testMutableConversionsAreNotShared() throws Throwable
+   {
+      JavaBeanCache cache = JavaBeanCache.getInstance(getClass().getClassLoader());
+      TypeInfo type = cache.getTypeInfo(URL.class.getName());
+      Object value = cache.convertValue(type, "http://www.jboss.org");
+      assertEquals(new URL("http://www.jboss.org"), value);
+      assertNotSame(value, cache.convertValue(type, "http://www.jboss.org"));
+   }
+
+   public void testCachedBeansAreDistinct() throws Exception
+   {
+      TestProperty first = unmarshalJavaBean(TestProperty.class);
+      TestProperty second = unmarshalJavaBean(TestProperty.class);
+      assertNotSame(first, second);
+      assertEquals(first.getALong(), second.getALong());
+   }
+
+   private static void exhaustMemory()
+   {
+      List<long[]> blocks = new ArrayList<long[]>();
+      try
+      {
+         while(true)
+         {
+            blocks.add(new long[1024 * 1024]);
+         }
+      }
+      catch(OutOfMemoryError e)
+      {
+         blocks = null;
+      }
+   }
+
+   protected void tearDown() throws Exception
+   {
+      JavaBeanCache.flushCache();
+      super.tearDown();
+   }
+}
@@ -53,6 +53,7 @@ public class JavaBeanTestSuite extends TestSuite
       suite.addTest(ParameterInstantiateUnitTestCase.suite());
       suite.addTest(PropertyUnitTestCase.suite());
       suite.addTest(PropertyWildcardUnitTestCase.suite());
+      suite.addTest(JavaBeanCacheUnitTestCase.suite());
 
       return suite;
    }
@@ -0,0 +1,115 @@
+/*
+* JBoss, Home of Professional Open Source
+* Copyright 2009, JBoss Inc., and individual contributors as indicated
+* by the @authors tag. See the copyright.txt in the distribution for a
+* full listing of individual contributors.
+*
+* This is free software; you can redistribute it and/or modify it
+* under the terms of the GNU Lesser General Public License as
+* published by the Free Software Foundation; either version 2.1 of
+* the License, or (at your option) any later version.
+*
+* This software is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+* Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public
+* License along with this software; if not, write to the Free
+* Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+* 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+*/
+package org.jboss.test.xb.builder.batch.test;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import junit.framework.TestCase;
+
+import org.jboss.test.xb.builder.TestSchemaResolver;
+import org.jboss.test.xb.builder.batch.support.Descriptor;
+import org.jboss.xb.builder.JBossXBBuilder;
+import org.jboss.xb.util.JBossXBHelper;
+import org.xml.sax.InputSource;
+
+/**
+ * Parses several descriptors concurrently with JBossXBHelper.
+ * 
+ * @version $Revision: 1.1 $
+ */
+public class BatchParseUnitTestCase extends TestCase
+{
+   private static final int DOCUMENTS = 20;
+
+   private ExecutorService executor;
+   private TestSchemaResolver resolver;
+   private JBossXBHelper<Descriptor> helper;
+
+   public BatchParseUnitTestCase(String name)
+   {
+      super(name);
+   }
+
+   protected void setUp() throws Exception
+   {
+      super.setUp();
+      executor = Executors.newFixedThreadPool(4);
+      resolver = new TestSchemaResolver();
+      resolver.addSchemaBinding(JBossXBBuilder.build(Descriptor.class));
+      helper = new JBossXBHelper<Descriptor>(Descriptor.class);
+      helper.setUseSchemaValidation(false);
+      helper.setUseValidation(false);
+   }
+
+   protected void tearDown() throws Exception
+   {
+      executor.shutdownNow();
+      super.tearDown();
+   }
+
+   public void testResultsAreInSourceOrder() throws Exception
+   {
+      List<InputSource> sources = new ArrayList<InputSource>();
+      for(int i = 0; i < DOCUMENTS; ++i)
+         sources.add(source("<descriptor name='d" + i + "'/>"));
+
+      List<Future<Descriptor>> results = helper.parse(Descriptor.class, sources, resolver, executor);
+      assertEquals(DOCUMENTS, results.size());
+      for(int i = 0; i < DOCUMENTS; ++i)
+      {
+         Future<Descriptor> result = results.get(i);
+         assertTrue(result.isDone());
+         assertEquals("d" + i, result.get().getName());
+      }
+   }
+
+   public void testFailuresAreReportedPerSource() throws Exception
+   {
+      List<InputSource> sources = new ArrayList<InputSource>();
+      sources.add(source("<descriptor name='first'/>"));
+      sources.add(source("<descriptor name='broken'>"));
+      sources.add(source("<descriptor name='last'/>"));
+
+      List<Future<Descriptor>> results = helper.parse(Descriptor.class, sources, resolver, executor);
+      assertEquals("first", results.get(0).get().getName());
+      try
+      {
+         results.get(1).get();
+         fail("malformed document must fail");
+      }
+      catch(ExecutionException expected)
+      {
+      }
+      assertEquals("last", results.get(2).get().getName());
+   }
+
+   private static InputSource source(String xml)
+   {
+      return new InputSource(new StringReader(xml));
+   }
+}
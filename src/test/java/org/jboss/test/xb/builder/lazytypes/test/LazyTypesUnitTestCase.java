@@ -0,0 +1,152 @@
+/*
+* JBoss, Home of Professional Open Source
+* Copyright 2009, JBoss Inc., and individual contributors as indicated
+* by the @authors tag. See the copyright.txt in the distribution for a
+* full listing of individual contributors.
+*
+* This is free software; you can redistribute it and/or modify it
+* under the terms of the GNU Lesser General Public License as
+* published by the Free Software Foundation; either version 2.1 of
+* the License, or (at your option) any later version.
+*
+* This software is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+* Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public
+* License along with this software; if not, write to the Free
+* Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+* 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+*/
+package org.jboss.test.xb.builder.lazytypes.test;
+
+import java.util.concurrent.Executor;
+
+import javax.xml.namespace.QName;
+
+import org.jboss.config.plugins.property.PropertyConfiguration;
+import org.jboss.test.xb.builder.AbstractBuilderTest;
+import org.jboss.test.xb.builder.lazytypes.support.Child;
+import org.jboss.test.xb.builder.lazytypes.support.Root;
+import org.jboss.test.xb.builder.object.element.jbossxmlnsprefix.support.ComponentQNameTrueComponentContentTrue;
+import org.jboss.xb.binding.sunday.unmarshalling.ElementBinding;
+import org.jboss.xb.binding.sunday.unmarshalling.ModelGroupBinding;
+import org.jboss.xb.binding.sunday.unmarshalling.ParticleBinding;
+import org.jboss.xb.binding.sunday.unmarshalling.SchemaBinding;
+import org.jboss.xb.binding.sunday.unmarshalling.TypeBinding;
+import org.jboss.xb.builder.JBossXBBuilder;
+import org.jboss.xb.builder.JBossXBNoSchemaBuilder;
+
+/**
+ * A LazyTypesUnitTestCase.
+ * 
+ * @version $Revision: 1.1 $
+ */
+public class LazyTypesUnitTestCase extends AbstractBuilderTest
+{
+   private boolean lazyTypes;
+   private Executor warmUpExecutor;
+
+   public LazyTypesUnitTestCase(String name)
+   {
+      super(name);
+   }
+
+   protected void setUp() throws Exception
+   {
+      super.setUp();
+      lazyTypes = JBossXBBuilder.isLazyTypes();
+      warmUpExecutor = JBossXBBuilder.getWarmUpExecutor();
+      JBossXBBuilder.setLazyTypes(true);
+   }
+
+   protected void tearDown() throws Exception
+   {
+      JBossXBBuilder.setLazyTypes(lazyTypes);
+      JBossXBBuilder.setWarmUpExecutor(warmUpExecutor);
+      super.tearDown();
+   }
+
+   public void testUnmarshalling() throws Exception
+   {
+      Root root = unmarshalObject(Root.class);
+      assertRoot(root);
+   }
+
+   public void testDeferredBinding() throws Exception
+   {
+      JBossXBNoSchemaBuilder builder = new JBossXBNoSchemaBuilder(new PropertyConfiguration().getClassInfo(Root.class));
+      builder.setLazyTypes(true);
+      SchemaBinding schema = builder.build();
+      assertTrue(builder.hasPendingTypes());
+
+      // the content of the root type is bound on first access
+      ElementBinding element = schema.getElement(new QName("root"));
+      assertNotNull(element);
+      assertNotNull(element.getType().getElement(new QName("child")));
+      assertTrue(builder.hasPendingTypes());
+
+      builder.initializeTypes();
+      assertFalse(builder.hasPendingTypes());
+   }
+
+   public void testDeferredBindingKeepsNamespace() throws Exception
+   {
+      SchemaBinding schema = JBossXBBuilder.build(ComponentQNameTrueComponentContentTrue.class, true);
+      ElementBinding e = schema.getElement(new QName("ns.root", "root"));
+      assertNotNull(e);
+      ModelGroupBinding group = (ModelGroupBinding) e.getType().getParticle().getTerm();
+      ParticleBinding particle = group.getParticles().iterator().next();
+
+      // child
+      e = (ElementBinding) particle.getTerm();
+      assertEquals(new QName("ns.child", "child"), e.getQName());
+      group = (ModelGroupBinding) e.getType().getParticle().getTerm();
+      particle = group.getParticles().iterator().next();
+
+      // child/name is bound after the build when the default namespace is the root's again
+      e = (ElementBinding) particle.getTerm();
+      assertEquals(new QName("ns.child", "name"), e.getQName());
+   }
+
+   public void testWarmUp() throws Exception
+   {
+      final int[] executed = new int[1];
+      JBossXBBuilder.setWarmUpExecutor(new Executor()
+      {
+         public void execute(Runnable command)
+         {
+            ++executed[0];
+            command.run();
+         }
+      });
+
+      SchemaBinding schema = JBossXBBuilder.build(Root.class, true);
+      assertEquals(1, executed[0]);
+
+      ElementBinding element = schema.getElement(new QName("root"));
+      assertNotNull(element);
+      TypeBinding type = element.getType();
+      assertNotNull(type.getParticle());
+      assertNotNull(type.getElement(new QName("child")));
+
+      Root root = unmarshalObject(Root.class);
+      assertRoot(root);
+   }
+
+   private void assertRoot(Root root)
+   {
+      assertNotNull(root);
+      assertEquals("root", root.getName());
+      Child[] children = root.getChildren();
+      assertNotNull(children);
+      assertEquals(2, children.length);
+      assertEquals("child1", children[0].getId());
+      assertNotNull(children[0].getNested());
+      assertEquals("nested1", children[0].getNested().getId());
+      assertNull(children[0].getNested().getNested());
+      assertEquals("child2", children[1].getId());
+      assertNull(children[1].getNested());
+   }
+}
@@ -21,6 +21,9 @@
   */
 package org.jboss.test.xml;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 import org.jboss.test.xml.book.Book;
 import org.jboss.test.BaseTestCase;
 import org.jboss.xb.binding.Unmarshaller;
@@ -58,6 +61,39 @@ public class AnnotationsUnitTestCase
       assertEquals(Book.getInstance(), book);
    }
 
+   public void testLazyAnnotations() throws Exception
+   {
+      String url = getPath("xml/book/annotated_books.xsd");
+      XsdBinder binder = XsdBinder.newInstance();
+      binder.setLazyAnnotations(true);
+      SchemaBinding schemaBinding = binder.parse(url);
+
+      Unmarshaller unmarshaller = UnmarshallerFactory.newInstance().newUnmarshaller();
+      Book book = (Book)unmarshaller.unmarshal(getPath("xml/book/book-xs.xml"), schemaBinding);
+      assertEquals(Book.getInstance(), book);
+   }
+
+   public void testParallelAnnotations() throws Exception
+   {
+      String url = getPath("xml/book/annotated_books.xsd");
+      ExecutorService executor = Executors.newFixedThreadPool(2);
+      SchemaBinding schemaBinding;
+      try
+      {
+         XsdBinder binder = XsdBinder.newInstance();
+         binder.setExecutor(executor);
+         schemaBinding = binder.parse(url);
+      }
+      finally
+      {
+         executor.shutdown();
+      }
+
+      Unmarshaller unmarshaller = UnmarshallerFactory.newInstance().newUnmarshaller();
+      Book book = (Book)unmarshaller.unmarshal(getPath("xml/book/book-xs.xml"), schemaBinding);
+      assertEquals(Book.getInstance(), book);
+   }
+
    // Private
 
    public String getPath(String path)
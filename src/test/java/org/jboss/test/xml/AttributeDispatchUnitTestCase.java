@@ -0,0 +1,152 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2007, Red Hat Middleware LLC, and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.xml;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.namespace.QName;
+
+import junit.framework.TestCase;
+
+import org.jboss.xb.binding.Constants;
+import org.jboss.xb.binding.sunday.unmarshalling.AttributeBinding;
+import org.jboss.xb.binding.sunday.unmarshalling.AttributeHandler;
+import org.jboss.xb.binding.sunday.unmarshalling.AttributesHandler;
+import org.jboss.xb.binding.sunday.unmarshalling.RegisteredAttributesHandler;
+import org.jboss.xb.binding.sunday.unmarshalling.TypeBinding;
+import org.xml.sax.Attributes;
+import org.xml.sax.helpers.AttributesImpl;
+
+/**
+ * Tests dispatching of attributes to their bindings, including types
+ * with more attributes than fit into a single bitmask word.
+ *
+ * @version $Revision: 1.1 $
+ */
+public class AttributeDispatchUnitTestCase
+   extends TestCase
+{
+   private static final String NS = "urn:jboss:xb:test:attribute-dispatch";
+   private static final QName ELEMENT = new QName(NS, "e");
+
+   private static final AttributeHandler RECORDING_HANDLER = new AttributeHandler()
+   {
+      public Object unmarshal(QName elemName, QName attrName, AttributeBinding binding, NamespaceContext nsCtx, String value)
+      {
+         return value;
+      }
+
+      @SuppressWarnings("unchecked")
+      public void attribute(QName elemName, QName attrName, AttributeBinding binding, Object owner, Object value)
+      {
+         assertSame(binding.getQName(), attrName);
+         ((Map<QName, Object>)owner).put(attrName, value);
+      }
+   };
+
+   private TypeBinding type;
+   private RegisteredAttributesHandler registered;
+
+   public AttributeDispatchUnitTestCase(String name)
+   {
+      super(name);
+   }
+
+   protected void setUp() throws Exception
+   {
+      super.setUp();
+
+      TypeBinding stringType = new TypeBinding(Constants.QNAME_STRING);
+      type = new TypeBinding(new QName(NS, "t"));
+      registered = new RegisteredAttributesHandler();
+      for(int i = 0; i < 70; ++i)
+      {
+         AttributeBinding attr = new AttributeBinding(null, new QName("a" + i), stringType, RECORDING_HANDLER);
+         if(i == 3 || i == 65)
+         {
+            attr.setDefaultConstraint("default" + i);
+         }
+         type.addAttribute(attr);
+         registered.addAttribute(attr);
+      }
+      AttributeBinding attr = new AttributeBinding(null, new QName(NS, "a1"), stringType, RECORDING_HANDLER);
+      type.addAttribute(attr);
+      registered.addAttribute(attr);
+   }
+
+   public void testAttributesHandler() throws Exception
+   {
+      Map<QName, Object> owner = new HashMap<QName, Object>();
+      AttributesHandler.INSTANCE.attributes(owner, ELEMENT, type, type.expandWithDefaultAttributes(newAttributes()), null);
+      assertDispatched(owner);
+   }
+
+   public void testRegisteredAttributesHandler() throws Exception
+   {
+      Map<QName, Object> owner = new HashMap<QName, Object>();
+      registered.attributes(owner, ELEMENT, type, newAttributes(), null);
+      assertDispatched(owner);
+   }
+
+   public void testNoDefaultsToExpand() throws Exception
+   {
+      AttributesImpl attrs = newAttributes();
+      attrs.addAttribute("", "a3", "a3", "CDATA", "v3");
+      attrs.addAttribute("", "a65", "a65", "CDATA", "v65");
+      assertSame(attrs, type.expandWithDefaultAttributes(attrs));
+   }
+
+   public void testAttributeAddedAfterLookup() throws Exception
+   {
+      Map<QName, Object> owner = new HashMap<QName, Object>();
+      AttributesImpl attrs = newAttributes();
+      attrs.addAttribute("", "late", "late", "CDATA", "vlate");
+      AttributesHandler.INSTANCE.attributes(owner, ELEMENT, type, attrs, null);
+      assertNull(owner.get(new QName("late")));
+
+      type.addAttribute(new AttributeBinding(null, new QName("late"), new TypeBinding(Constants.QNAME_STRING), RECORDING_HANDLER));
+      AttributesHandler.INSTANCE.attributes(owner, ELEMENT, type, attrs, null);
+      assertEquals("vlate", owner.get(new QName("late")));
+   }
+
+   private static AttributesImpl newAttributes()
+   {
+      AttributesImpl attrs = new AttributesImpl();
+      attrs.addAttribute("", "a1", "a1", "CDATA", "v1");
+      attrs.addAttribute(NS, "a1", "p:a1", "CDATA", "ns1");
+      attrs.addAttribute("", "a66", "a66", "CDATA", "v66");
+      attrs.addAttribute("", "unbound", "unbound", "CDATA", "x");
+      return attrs;
+   }
+
+   private static void assertDispatched(Map<QName, Object> owner)
+   {
+      assertEquals(5, owner.size());
+      assertEquals("v1", owner.get(new QName("a1")));
+      assertEquals("ns1", owner.get(new QName(NS, "a1")));
+      assertEquals("v66", owner.get(new QName("a66")));
+      assertEquals("default3", owner.get(new QName("a3")));
+      assertEquals("default65", owner.get(new QName("a65")));
+   }
+}
@@ -0,0 +1,254 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2007, Red Hat Middleware LLC, and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.xml;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+
+import javax.xml.namespace.QName;
+
+import junit.framework.TestSuite;
+
+import org.jboss.xb.binding.DocumentLimitExceededException;
+import org.jboss.xb.binding.JBossXBException;
+import org.jboss.xb.binding.UnmarshallerImpl;
+import org.jboss.xb.binding.metadata.ClassMetaData;
+import org.jboss.xb.binding.parser.DocumentLimits;
+import org.jboss.xb.binding.parser.binary.BinaryJBossXBParser;
+import org.jboss.xb.binding.parser.binary.BinaryXmlWriter;
+import org.jboss.xb.binding.sunday.marshalling.MarshallerImpl;
+import org.jboss.xb.binding.sunday.unmarshalling.ElementBinding;
+import org.jboss.xb.binding.sunday.unmarshalling.SchemaBinding;
+import org.jboss.xb.binding.sunday.unmarshalling.XsdBinder;
+
+/**
+ * Marshalling into and unmarshalling from the binary XML encoding.
+ * 
+ * @version $Revision: 1.1 $
+ */
+public class BinaryXmlUnitTestCase extends AbstractJBossXBTest
+{
+   private static final String NS = "http://www.jboss.org/test/xml/binary";
+
+   private static final String XSD =
+      "<?xml version='1.0' encoding='UTF-8'?>" +
+      "<xsd:schema xmlns:xsd='http://www.w3.org/2001/XMLSchema'" +
+      " targetNamespace='" + NS + "'" +
+      " xmlns='" + NS + "'" +
+      " elementFormDefault='qualified'" +
+      " version='1.0'>" +
+      " <xsd:element name='root'>" +
+      "  <xsd:complexType>" +
+      "   <xsd:sequence>" +
+      "    <xsd:element name='number' type='xsd:int' maxOccurs='unbounded'/>" +
+      "    <xsd:element name='total' type='xsd:long'/>" +
+      "    <xsd:element name='ratio' type='xsd:double'/>" +
+      "    <xsd:element name='flag' type='xsd:boolean'/>" +
+      "    <xsd:element name='text' type='xsd:string'/>" +
+      "    <xsd:element name='type' type='xsd:QName'/>" +
+      "   </xsd:sequence>" +
+      "   <xsd:attribute name='id' type='xsd:int'/>" +
+      "  </xsd:complexType>" +
+      " </xsd:element>" +
+      "</xsd:schema>";
+
+   public static final TestSuite suite()
+   {
+      return new TestSuite(BinaryXmlUnitTestCase.class);
+   }
+
+   public BinaryXmlUnitTestCase(String name)
+   {
+      super(name);
+   }
+
+   public void testRoundTrip() throws Exception
+   {
+      SchemaBinding schema = bind();
+      Root root = (Root) new UnmarshallerImpl(new BinaryJBossXBParser()).unmarshal(
+            new ByteArrayInputStream(marshal(newRoot(), schema)), schema);
+      assertRoot(root);
+   }
+
+   public void testRoundTripWithoutSchemaTypes() throws Exception
+   {
+      SchemaBinding schema = bind();
+      ByteArrayOutputStream os = new ByteArrayOutputStream();
+      new MarshallerImpl().marshal(schema, null, newRoot(), new BinaryXmlWriter(os, null));
+
+      Root root = (Root) new UnmarshallerImpl(new BinaryJBossXBParser()).unmarshal(
+            new ByteArrayInputStream(os.toByteArray()), schema);
+      assertRoot(root);
+      assertTrue(os.size() > marshal(newRoot(), schema).length);
+   }
+
+   public void testDocumentLimits() throws Exception
+   {
+      SchemaBinding schema = bind();
+      byte[] bytes = marshal(newRoot(), schema);
+
+      DocumentLimits limits = new DocumentLimits();
+      limits.setMaxDepth(1);
+      UnmarshallerImpl unmarshaller = new UnmarshallerImpl(new BinaryJBossXBParser());
+      unmarshaller.setDocumentLimits(limits);
+      try
+      {
+         unmarshaller.unmarshal(new ByteArrayInputStream(bytes), schema);
+         fail("maxDepth is exceeded");
+      }
+      catch(JBossXBException e)
+      {
+         assertTrue(e.getCause() instanceof DocumentLimitExceededException);
+      }
+      assertEquals(1, limits.getRejectedDocumentCount());
+   }
+
+   public void testDeclaredStringLength() throws Exception
+   {
+      SchemaBinding schema = bind();
+      // the header and a processing instruction whose target declares Integer.MAX_VALUE - 1 characters
+      ByteArrayOutputStream os = new ByteArrayOutputStream();
+      os.write("JBXB".getBytes("UTF-8"));
+      os.write(1);
+      os.write(6);
+      writeInt(os, Integer.MAX_VALUE);
+      os.write('a');
+      byte[] bytes = os.toByteArray();
+
+      DocumentLimits limits = new DocumentLimits();
+      limits.setMaxTextLength(1000);
+      UnmarshallerImpl unmarshaller = new UnmarshallerImpl(new BinaryJBossXBParser());
+      unmarshaller.setDocumentLimits(limits);
+      try
+      {
+         unmarshaller.unmarshal(new ByteArrayInputStream(bytes), schema);
+         fail("maxTextLength is exceeded");
+      }
+      catch(JBossXBException e)
+      {
+         assertTrue(e.getCause() instanceof DocumentLimitExceededException);
+      }
+
+      // without limits the string is not allocated before its characters are read
+      unmarshaller = new UnmarshallerImpl(new BinaryJBossXBParser());
+      try
+      {
+         unmarshaller.unmarshal(new ByteArrayInputStream(bytes), schema);
+         fail("the stream ends before the declared length");
+      }
+      catch(JBossXBException e)
+      {
+      }
+   }
+
+   public void testNotBinary() throws Exception
+   {
+      SchemaBinding schema = bind();
+      UnmarshallerImpl unmarshaller = new UnmarshallerImpl(new BinaryJBossXBParser());
+      try
+      {
+         unmarshaller.unmarshal(new ByteArrayInputStream("<root/>".getBytes("UTF-8")), schema);
+         fail("not a binary XML document");
+      }
+      catch(JBossXBException e)
+      {
+      }
+
+      try
+      {
+         unmarshaller.unmarshal(new StringReader("<root/>"), schema);
+         fail("binary XML can't be read from a character stream");
+      }
+      catch(JBossXBException e)
+      {
+      }
+   }
+
+   private static void writeInt(ByteArrayOutputStream os, int value)
+   {
+      while((value & ~0x7F) != 0)
+      {
+         os.write((value & 0x7F) | 0x80);
+         value >>>= 7;
+      }
+      os.write(value);
+   }
+
+   private static byte[] marshal(Root root, SchemaBinding schema) throws Exception
+   {
+      ByteArrayOutputStream os = new ByteArrayOutputStream();
+      new MarshallerImpl().marshal(schema, null, root, new BinaryXmlWriter(os, schema));
+      return os.toByteArray();
+   }
+
+   private static SchemaBinding bind()
+   {
+      SchemaBinding schema = XsdBinder.bind(new StringReader(XSD), null);
+      ElementBinding root = schema.getElement(new QName(NS, "root"));
+      ClassMetaData classMetaData = new ClassMetaData();
+      classMetaData.setImpl(Root.class.getName());
+      root.setClassMetaData(classMetaData);
+      return schema;
+   }
+
+   private static Root newRoot()
+   {
+      Root root = new Root();
+      root.id = 7;
+      root.number = new int[]{0, -1, Integer.MAX_VALUE, Integer.MIN_VALUE};
+      root.total = Long.MIN_VALUE;
+      root.ratio = 0.1;
+      root.flag = true;
+      root.text = "a < b & \"c\"";
+      root.type = new QName("urn:q", "name");
+      return root;
+   }
+
+   private static void assertRoot(Root root)
+   {
+      assertNotNull(root);
+      assertEquals(7, root.id);
+      assertNotNull(root.number);
+      assertEquals(4, root.number.length);
+      assertEquals(0, root.number[0]);
+      assertEquals(-1, root.number[1]);
+      assertEquals(Integer.MAX_VALUE, root.number[2]);
+      assertEquals(Integer.MIN_VALUE, root.number[3]);
+      assertEquals(Long.MIN_VALUE, root.total);
+      assertEquals(0.1, root.ratio, 0);
+      assertTrue(root.flag);
+      assertEquals("a < b & \"c\"", root.text);
+      assertEquals(new QName("urn:q", "name"), root.type);
+   }
+
+   public static class Root
+   {
+      public int id;
+      public int[] number;
+      public long total;
+      public double ratio;
+      public boolean flag;
+      public String text;
+      public QName type;
+   }
+}
@@ -0,0 +1,98 @@
+/*
+  * JBoss, Home of Professional Open Source
+  * Copyright 2005, JBoss Inc., and individual contributors as indicated
+  * by the @authors tag. See the copyright.txt in the distribution for a
+  * full listing of individual contributors.
+  *
+  * This is free software; you can redistribute it and/or modify it
+  * under the terms of the GNU Lesser General Public License as
+  * published by the Free Software Foundation; either version 2.1 of
+  * the License, or (at your option) any later version.
+  *
+  * This software is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+  * Lesser General Public License for more details.
+  *
+  * You should have received a copy of the GNU Lesser General Public
+  * License along with this software; if not, write to the Free
+  * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+  * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+  */
+package org.jboss.test.xml;
+
+import junit.framework.TestCase;
+
+import org.jboss.xb.binding.sunday.unmarshalling.CharactersBuffer;
+
+/**
+ * A CharactersBufferUnitTestCase.
+ * 
+ * @version $Revision: 1.1 $
+ */
+public class CharactersBufferUnitTestCase extends TestCase
+{
+   public CharactersBufferUnitTestCase(String name)
+   {
+      super(name);
+   }
+
+   public void testClassify()
+   {
+      assertEquals(CharactersBuffer.WHITESPACE, classify(""));
+      assertEquals(CharactersBuffer.WHITESPACE, classify(" \t\r "));
+      assertEquals(CharactersBuffer.INDENTATION, classify("\n   "));
+      assertEquals(CharactersBuffer.INDENTATION, classify("  \r\n\t\t"));
+      assertEquals(CharactersBuffer.TEXT, classify("\n  a"));
+      assertEquals(CharactersBuffer.TEXT, classify("\u00a0"));
+      assertEquals(CharactersBuffer.WHITESPACE, classify("\u2028\u001c"));
+
+      char[] ch = "abc \n def".toCharArray();
+      assertEquals(CharactersBuffer.INDENTATION, CharactersBuffer.classify(ch, 3, 3));
+      assertEquals(CharactersBuffer.TEXT, CharactersBuffer.classify(ch, 2, 3));
+   }
+
+   public void testNestedContent()
+   {
+      CharactersBuffer buffer = new CharactersBuffer();
+      append(buffer, "parent ");
+      int childStart = buffer.length();
+      append(buffer, "  child  ");
+      assertEquals("child", buffer.toString(childStart, true));
+      assertEquals("  child  ", buffer.toString(childStart, false));
+      buffer.setLength(childStart);
+      append(buffer, "text");
+      assertEquals("parent text", buffer.toString(0, false));
+      assertEquals("parent text", buffer.toString());
+      assertEquals("text", buffer.subSequence(7, 11));
+   }
+
+   public void testGrowth()
+   {
+      CharactersBuffer buffer = new CharactersBuffer();
+      StringBuffer expected = new StringBuffer();
+      for(int i = 0; i < 10000; ++i)
+      {
+         String s = Integer.toString(i);
+         append(buffer, s);
+         expected.append(s);
+      }
+      assertEquals(expected.toString(), buffer.toString());
+
+      buffer.reset();
+      assertEquals(0, buffer.length());
+      append(buffer, " x ");
+      assertEquals("x", buffer.toString(0, true));
+      assertEquals("x ", buffer.toString(1, false));
+   }
+
+   private static int classify(String s)
+   {
+      return CharactersBuffer.classify(s.toCharArray(), 0, s.length());
+   }
+
+   private static void append(CharactersBuffer buffer, String s)
+   {
+      buffer.append(s.toCharArray(), 0, s.length());
+   }
+}
@@ -0,0 +1,61 @@
+/*
+  * JBoss, Home of Professional Open Source
+  * Copyright 2005, JBoss Inc., and individual contributors as indicated
+  * by the @authors tag. See the copyright.txt in the distribution for a
+  * full listing of individual contributors.
+  *
+  * This is free software; you can redistribute it and/or modify it
+  * under the terms of the GNU Lesser General Public License as
+  * published by the Free Software Foundation; either version 2.1 of
+  * the License, or (at your option) any later version.
+  *
+  * This software is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+  * Lesser General Public License for more details.
+  *
+  * You should have received a copy of the GNU Lesser General Public
+  * License along with this software; if not, write to the Free
+  * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+  * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+  */
+package org.jboss.test.xml;
+
+import junit.framework.TestCase;
+
+import org.jboss.xb.binding.AbstractMarshaller.ClassMappingSchemaCache;
+import org.jboss.xb.binding.sunday.unmarshalling.DefaultSchemaResolver;
+
+/**
+ * A ClassMappingSchemaCacheUnitTestCase.
+ * 
+ * @version $Revision: 1.1 $
+ */
+public class ClassMappingSchemaCacheUnitTestCase extends TestCase
+{
+   public ClassMappingSchemaCacheUnitTestCase(String name)
+   {
+      super(name);
+   }
+
+   public void testKeyedByUrlAndResolver()
+   {
+      ClassMappingSchemaCache<Object> cache = new ClassMappingSchemaCache<Object>();
+      DefaultSchemaResolver resolver = new DefaultSchemaResolver();
+      Object schema = new Object();
+      Object resolvedSchema = new Object();
+
+      assertNull(cache.get("a.xsd", null));
+      cache.put("a.xsd", null, schema);
+      cache.put("a.xsd", resolver, resolvedSchema);
+
+      assertSame(schema, cache.get("a.xsd", null));
+      assertSame(resolvedSchema, cache.get("a.xsd", resolver));
+      assertNull(cache.get("b.xsd", null));
+      assertNull(cache.get("a.xsd", new DefaultSchemaResolver()));
+
+      cache.clear();
+      assertNull(cache.get("a.xsd", null));
+      assertNull(cache.get("a.xsd", resolver));
+   }
+}
@@ -21,6 +21,8 @@
   */
 package org.jboss.test.xml;
 
+import java.net.URL;
+import java.net.URLClassLoader;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -119,6 +121,46 @@ public class CollectionOverridePropertyUnitTestCase extends AbstractJBossXBTest
       assertEquals("two", ((Child) list.get(1)).getValue());
    }
 
+   public void testWithCollectionType() throws Exception
+   {
+      SchemaBinding schema = bind("CollectionOverrideProperty.xsd");
+      schema.setIgnoreUnresolvedFieldOrClass(false);
+
+      ClassMetaData classMetaData = new ClassMetaData();
+      classMetaData.setImpl(Parent.class.getName());
+      TypeBinding type = schema.getType(new QName(NS, "parent-type"));
+      assertNotNull(type);
+      type.setClassMetaData(classMetaData);
+
+      PropertyMetaData prop = new PropertyMetaData();
+      prop.setName("list");
+      prop.setCollectionType(LinkedList.class.getName());
+      type.getElement(new QName(NS, "child")).setPropertyMetaData(prop);
+      ClassLoader cl = Thread.currentThread().getContextClassLoader();
+      assertNull(prop.getCollectionClass(cl));
+
+      classMetaData = new ClassMetaData();
+      classMetaData.setImpl(Child.class.getName());
+      type = schema.getType(new QName(NS, "child-type"));
+      assertNotNull(type);
+      type.setClassMetaData(classMetaData);
+
+      for(int i = 0; i < 2; ++i)
+      {
+         Parent parent = (Parent) unmarshal("CollectionOverrideProperty.xml", schema, Parent.class);
+         List<Object> list = parent.list;
+         assertTrue(list instanceof LinkedList);
+         assertEquals("one", ((Child) list.get(0)).getValue());
+         assertEquals("two", ((Child) list.get(1)).getValue());
+         assertEquals(LinkedList.class, prop.getCollectionClass(cl));
+      }
+      // the class is resolved again with another class loader
+      assertNull(prop.getCollectionClass(new URLClassLoader(new URL[0], cl)));
+
+      prop.setCollectionType(LinkedList.class.getName());
+      assertNull(prop.getCollectionClass(cl));
+   }
+
    public static class Parent
    {
       private List<Object> list;
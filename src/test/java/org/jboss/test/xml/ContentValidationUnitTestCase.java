@@ -0,0 +1,190 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2007, Red Hat Middleware LLC, and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.xml;
+
+import java.io.StringReader;
+import java.util.List;
+
+import javax.xml.namespace.QName;
+
+import junit.framework.TestSuite;
+
+import org.jboss.xb.binding.JBossXBException;
+import org.jboss.xb.binding.Unmarshaller;
+import org.jboss.xb.binding.UnmarshallerFactory;
+import org.jboss.xb.binding.metadata.ClassMetaData;
+import org.jboss.xb.binding.sunday.unmarshalling.SchemaBinding;
+import org.jboss.xb.binding.sunday.unmarshalling.XsdBinder;
+
+/**
+ * Validation of the content against the binding with a non-validating parser.
+ * 
+ * @version $Revision: 1.1 $
+ */
+public class ContentValidationUnitTestCase extends AbstractJBossXBTest
+{
+   private static final String NS = "http://www.jboss.org/test/xml/contentvalidation";
+
+   private static final String XSD =
+      "<?xml version='1.0' encoding='UTF-8'?>" +
+      "<xsd:schema xmlns:xsd='http://www.w3.org/2001/XMLSchema'" +
+      " targetNamespace='" + NS + "'" +
+      " xmlns='" + NS + "'" +
+      " elementFormDefault='qualified'" +
+      " version='1.0'>" +
+      " <xsd:element name='top'>" +
+      "  <xsd:complexType>" +
+      "   <xsd:sequence>" +
+      "    <xsd:element name='a' type='lowercase'/>" +
+      "    <xsd:element name='b' type='xsd:string' minOccurs='2' maxOccurs='3'/>" +
+      "    <xsd:element name='c' type='short' minOccurs='0'/>" +
+      "   </xsd:sequence>" +
+      "   <xsd:attribute name='id' type='xsd:string' use='required'/>" +
+      "   <xsd:attribute name='kind' type='kind'/>" +
+      "   <xsd:attribute name='size' type='size'/>" +
+      "  </xsd:complexType>" +
+      " </xsd:element>" +
+      " <xsd:simpleType name='lowercase'>" +
+      "  <xsd:restriction base='xsd:string'>" +
+      "   <xsd:pattern value='[a-z]+'/>" +
+      "  </xsd:restriction>" +
+      " </xsd:simpleType>" +
+      " <xsd:simpleType name='kind'>" +
+      "  <xsd:restriction base='xsd:string'>" +
+      "   <xsd:enumeration value='first'/>" +
+      "   <xsd:enumeration value='second'/>" +
+      "  </xsd:restriction>" +
+      " </xsd:simpleType>" +
+      " <xsd:simpleType name='short'>" +
+      "  <xsd:restriction base='xsd:string'>" +
+      "   <xsd:maxLength value='3'/>" +
+      "  </xsd:restriction>" +
+      " </xsd:simpleType>" +
+      " <xsd:simpleType name='size'>" +
+      "  <xsd:restriction base='xsd:int'>" +
+      "   <xsd:minInclusive value='1'/>" +
+      "   <xsd:maxExclusive value='10'/>" +
+      "  </xsd:restriction>" +
+      " </xsd:simpleType>" +
+      "</xsd:schema>";
+
+   public static final TestSuite suite()
+   {
+      return new TestSuite(ContentValidationUnitTestCase.class);
+   }
+
+   public ContentValidationUnitTestCase(String name)
+   {
+      super(name);
+   }
+
+   public void testValidContent() throws Exception
+   {
+      Top top = (Top) unmarshal(true, "<top xmlns='" + NS + "' id='1' kind='first'><a>abc</a><b>1</b><b>2</b></top>");
+      assertEquals("1", top.id);
+      assertEquals("abc", top.a);
+      assertEquals(2, top.b.size());
+   }
+
+   public void testMinOccurs() throws Exception
+   {
+      String xml = "<top xmlns='" + NS + "' id='1'><a>abc</a><b>1</b><c>c</c></top>";
+      // the binding itself accepts it
+      Top top = (Top) unmarshal(false, xml);
+      assertEquals(1, top.b.size());
+      assertInvalid(xml);
+   }
+
+   public void testMissingRequiredTrailingElement() throws Exception
+   {
+      assertInvalid("<top xmlns='" + NS + "' id='1'><a>abc</a></top>");
+   }
+
+   public void testEmptyContent() throws Exception
+   {
+      assertInvalid("<top xmlns='" + NS + "' id='1'/>");
+   }
+
+   public void testRequiredAttribute() throws Exception
+   {
+      assertInvalid("<top xmlns='" + NS + "'><a>abc</a><b>1</b><b>2</b></top>");
+   }
+
+   public void testPattern() throws Exception
+   {
+      assertInvalid("<top xmlns='" + NS + "' id='1'><a>ABC</a><b>1</b><b>2</b></top>");
+   }
+
+   public void testEnumeration() throws Exception
+   {
+      assertInvalid("<top xmlns='" + NS + "' id='1' kind='third'><a>abc</a><b>1</b><b>2</b></top>");
+   }
+
+   public void testLength() throws Exception
+   {
+      Top top = (Top) unmarshal(true, "<top xmlns='" + NS + "' id='1'><a>abc</a><b>1</b><b>2</b><c>xyz</c></top>");
+      assertEquals("xyz", top.c);
+      assertInvalid("<top xmlns='" + NS + "' id='1'><a>abc</a><b>1</b><b>2</b><c>wxyz</c></top>");
+   }
+
+   public void testRange() throws Exception
+   {
+      Top top = (Top) unmarshal(true, "<top xmlns='" + NS + "' id='1' size='9'><a>abc</a><b>1</b><b>2</b></top>");
+      assertEquals(Integer.valueOf(9), top.size);
+      assertInvalid("<top xmlns='" + NS + "' id='1' size='10'><a>abc</a><b>1</b><b>2</b></top>");
+      assertInvalid("<top xmlns='" + NS + "' id='1' size='0'><a>abc</a><b>1</b><b>2</b></top>");
+   }
+
+   private void assertInvalid(String xml) throws Exception
+   {
+      try
+      {
+         unmarshal(true, xml);
+         fail("Content validation should have failed for " + xml);
+      }
+      catch(JBossXBException e)
+      {
+      }
+   }
+
+   private Object unmarshal(boolean validateContent, String xml) throws Exception
+   {
+      SchemaBinding schema = XsdBinder.bind(new StringReader(XSD), null);
+      ClassMetaData classMetaData = new ClassMetaData();
+      classMetaData.setImpl(Top.class.getName());
+      schema.getElement(new QName(NS, "top")).setClassMetaData(classMetaData);
+
+      Unmarshaller unmarshaller = UnmarshallerFactory.newInstance().newUnmarshaller();
+      unmarshaller.setFeature(Unmarshaller.CONTENT_VALIDATION, validateContent);
+      return unmarshaller.unmarshal(new StringReader(xml), schema);
+   }
+
+   public static class Top
+   {
+      public String id;
+      public String kind;
+      public Integer size;
+      public String a;
+      public List<String> b;
+      public String c;
+   }
+}
@@ -0,0 +1,236 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2007, Red Hat Middleware LLC, and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.xml;
+
+import java.io.StringReader;
+import java.util.List;
+
+import javax.xml.namespace.QName;
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import junit.framework.TestSuite;
+
+import org.jboss.xb.binding.DocumentLimitExceededException;
+import org.jboss.xb.binding.JBossXBException;
+import org.jboss.xb.binding.Unmarshaller;
+import org.jboss.xb.binding.UnmarshallerFactory;
+import org.jboss.xb.binding.metadata.ClassMetaData;
+import org.jboss.xb.binding.parser.DocumentLimits;
+import org.jboss.xb.binding.sunday.unmarshalling.SchemaBinding;
+import org.jboss.xb.binding.sunday.unmarshalling.XsdBinder;
+import org.w3c.dom.Document;
+import org.xml.sax.InputSource;
+
+/**
+ * Limits on the size of unmarshalled documents.
+ * 
+ * @version $Revision: 1.1 $
+ */
+public class DocumentLimitsUnitTestCase extends AbstractJBossXBTest
+{
+   private static final String NS = "http://www.jboss.org/test/xml/documentlimits";
+
+   private static final String XSD =
+      "<?xml version='1.0' encoding='UTF-8'?>" +
+      "<xsd:schema xmlns:xsd='http://www.w3.org/2001/XMLSchema'" +
+      " targetNamespace='" + NS + "'" +
+      " xmlns='" + NS + "'" +
+      " elementFormDefault='qualified'" +
+      " version='1.0'>" +
+      " <xsd:element name='root'>" +
+      "  <xsd:complexType>" +
+      "   <xsd:sequence>" +
+      "    <xsd:element name='item' type='xsd:string' maxOccurs='unbounded'/>" +
+      "   </xsd:sequence>" +
+      "   <xsd:attribute name='a' type='xsd:string'/>" +
+      "   <xsd:attribute name='b' type='xsd:string'/>" +
+      "  </xsd:complexType>" +
+      " </xsd:element>" +
+      "</xsd:schema>";
+
+   private static final String XML = "<root xmlns='" + NS + "' a='1' b='2'><item>0123456789</item><item>x</item></root>";
+
+   public static final TestSuite suite()
+   {
+      return new TestSuite(DocumentLimitsUnitTestCase.class);
+   }
+
+   public DocumentLimitsUnitTestCase(String name)
+   {
+      super(name);
+   }
+
+   public void testWithinLimits() throws Exception
+   {
+      DocumentLimits limits = new DocumentLimits();
+      limits.setMaxElements(3);
+      limits.setMaxDepth(2);
+      limits.setMaxAttributes(2);
+      limits.setMaxTextLength(10);
+      limits.setMaxBufferedChars(10);
+
+      Root root = (Root) unmarshal(limits, XML);
+      assertEquals("1", root.a);
+      assertEquals(2, root.item.size());
+      assertEquals("0123456789", root.item.get(0));
+
+      assertEquals(1, limits.getDocumentCount());
+      assertEquals(3, limits.getElementCount());
+      assertEquals(11, limits.getCharacterCount());
+      assertEquals(0, limits.getRejectedDocumentCount());
+   }
+
+   public void testMaxElements() throws Exception
+   {
+      DocumentLimits limits = new DocumentLimits();
+      limits.setMaxElements(2);
+      assertExceeded(limits, DocumentLimits.MAX_ELEMENTS);
+   }
+
+   public void testMaxDepth() throws Exception
+   {
+      DocumentLimits limits = new DocumentLimits();
+      limits.setMaxDepth(1);
+      assertExceeded(limits, DocumentLimits.MAX_DEPTH);
+   }
+
+   public void testMaxAttributes() throws Exception
+   {
+      DocumentLimits limits = new DocumentLimits();
+      limits.setMaxAttributes(1);
+      assertExceeded(limits, DocumentLimits.MAX_ATTRIBUTES);
+   }
+
+   public void testMaxTextLength() throws Exception
+   {
+      DocumentLimits limits = new DocumentLimits();
+      limits.setMaxTextLength(9);
+      assertExceeded(limits, DocumentLimits.MAX_TEXT_LENGTH);
+   }
+
+   public void testMaxBufferedChars() throws Exception
+   {
+      DocumentLimits limits = new DocumentLimits();
+      limits.setMaxBufferedChars(9);
+      assertExceeded(limits, DocumentLimits.MAX_BUFFERED_CHARS);
+   }
+
+   public void testDomWithinLimits() throws Exception
+   {
+      DocumentLimits limits = new DocumentLimits();
+      limits.setMaxElements(3);
+      limits.setMaxDepth(2);
+      limits.setMaxAttributes(2);
+      limits.setMaxTextLength(10);
+
+      Root root = (Root) unmarshal(limits, XML, true);
+      assertEquals(2, root.item.size());
+
+      assertEquals(1, limits.getDocumentCount());
+      assertEquals(3, limits.getElementCount());
+      assertEquals(11, limits.getCharacterCount());
+      assertEquals(0, limits.getRejectedDocumentCount());
+   }
+
+   public void testDomMaxElements() throws Exception
+   {
+      DocumentLimits limits = new DocumentLimits();
+      limits.setMaxElements(2);
+      assertExceeded(limits, DocumentLimits.MAX_ELEMENTS, true);
+   }
+
+   public void testDomMaxDepth() throws Exception
+   {
+      DocumentLimits limits = new DocumentLimits();
+      limits.setMaxDepth(1);
+      assertExceeded(limits, DocumentLimits.MAX_DEPTH, true);
+   }
+
+   public void testDomMaxAttributes() throws Exception
+   {
+      DocumentLimits limits = new DocumentLimits();
+      limits.setMaxAttributes(1);
+      assertExceeded(limits, DocumentLimits.MAX_ATTRIBUTES, true);
+   }
+
+   public void testDomMaxTextLength() throws Exception
+   {
+      DocumentLimits limits = new DocumentLimits();
+      limits.setMaxTextLength(9);
+      assertExceeded(limits, DocumentLimits.MAX_TEXT_LENGTH, true);
+   }
+
+   private void assertExceeded(DocumentLimits limits, String limit) throws Exception
+   {
+      assertExceeded(limits, limit, false);
+   }
+
+   private void assertExceeded(DocumentLimits limits, String limit, boolean dom) throws Exception
+   {
+      try
+      {
+         unmarshal(limits, XML, dom);
+         fail(limit + " should have been exceeded");
+      }
+      catch(JBossXBException e)
+      {
+         Throwable cause = e;
+         while(cause != null && !(cause instanceof DocumentLimitExceededException))
+            cause = cause.getCause();
+         assertNotNull("DocumentLimitExceededException expected: " + e, cause);
+         assertEquals(limit, ((DocumentLimitExceededException)cause).getLimit());
+      }
+      assertEquals(1, limits.getDocumentCount());
+      assertEquals(1, limits.getRejectedDocumentCount());
+   }
+
+   private Object unmarshal(DocumentLimits limits, String xml) throws Exception
+   {
+      return unmarshal(limits, xml, false);
+   }
+
+   private Object unmarshal(DocumentLimits limits, String xml, boolean dom) throws Exception
+   {
+      SchemaBinding schema = XsdBinder.bind(new StringReader(XSD), null);
+      ClassMetaData classMetaData = new ClassMetaData();
+      classMetaData.setImpl(Root.class.getName());
+      schema.getElement(new QName(NS, "root")).setClassMetaData(classMetaData);
+
+      UnmarshallerFactory factory = UnmarshallerFactory.newInstance();
+      factory.setDocumentLimits(limits);
+      Unmarshaller unmarshaller = factory.newUnmarshaller();
+      if(!dom)
+         return unmarshaller.unmarshal(new StringReader(xml), schema);
+
+      DocumentBuilderFactory domFactory = DocumentBuilderFactory.newInstance();
+      domFactory.setNamespaceAware(true);
+      Document document = domFactory.newDocumentBuilder().parse(new InputSource(new StringReader(xml)));
+      return unmarshaller.unmarshal(document, schema);
+   }
+
+   public static class Root
+   {
+      public String a;
+      public String b;
+      public List<String> item;
+   }
+}
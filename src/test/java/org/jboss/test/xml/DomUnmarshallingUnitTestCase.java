@@ -0,0 +1,169 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2007, Red Hat Middleware LLC, and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.xml;
+
+import java.io.StringReader;
+
+import javax.xml.namespace.QName;
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import junit.framework.TestSuite;
+
+import org.jboss.xb.binding.Unmarshaller;
+import org.jboss.xb.binding.UnmarshallerFactory;
+import org.jboss.xb.binding.metadata.ClassMetaData;
+import org.jboss.xb.binding.sunday.marshalling.MarshallerImpl;
+import org.jboss.xb.binding.sunday.unmarshalling.ElementBinding;
+import org.jboss.xb.binding.sunday.unmarshalling.SchemaBinding;
+import org.jboss.xb.binding.sunday.unmarshalling.XsdBinder;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.xml.sax.InputSource;
+
+/**
+ * Unmarshalling of DOM nodes and marshalling into DOM nodes.
+ * 
+ * @version $Revision: 1.1 $
+ */
+public class DomUnmarshallingUnitTestCase extends AbstractJBossXBTest
+{
+   private static final String NS = "http://www.jboss.org/test/xml/dom";
+
+   private static final String XSD =
+      "<?xml version='1.0' encoding='UTF-8'?>" +
+      "<xsd:schema xmlns:xsd='http://www.w3.org/2001/XMLSchema'" +
+      " targetNamespace='" + NS + "'" +
+      " xmlns='" + NS + "'" +
+      " elementFormDefault='qualified'" +
+      " version='1.0'>" +
+      " <xsd:element name='root'>" +
+      "  <xsd:complexType>" +
+      "   <xsd:sequence>" +
+      "    <xsd:element name='item' type='xsd:string' maxOccurs='unbounded'/>" +
+      "    <xsd:element name='type' type='xsd:QName'/>" +
+      "   </xsd:sequence>" +
+      "   <xsd:attribute name='id' type='xsd:string'/>" +
+      "  </xsd:complexType>" +
+      " </xsd:element>" +
+      "</xsd:schema>";
+
+   // the namespaces are declared outside the unmarshalled fragment
+   private static final String XML =
+      "<env xmlns:t='" + NS + "' xmlns:q='urn:q'>" +
+      "<body>" +
+      "<t:root id='1'>" +
+      "<t:item>a</t:item>" +
+      "<t:item>b&amp;<![CDATA[c]]></t:item>" +
+      "<t:type>q:name</t:type>" +
+      "</t:root>" +
+      "</body>" +
+      "</env>";
+
+   public static final TestSuite suite()
+   {
+      return new TestSuite(DomUnmarshallingUnitTestCase.class);
+   }
+
+   public DomUnmarshallingUnitTestCase(String name)
+   {
+      super(name);
+   }
+
+   public void testNamespaceAwareElement() throws Exception
+   {
+      Element root = getRootElement(parse(XML, true));
+      assertRoot((Root) newUnmarshaller().unmarshal(root, bind()));
+   }
+
+   public void testLevel1Element() throws Exception
+   {
+      Element root = getRootElement(parse(XML, false));
+      assertNull(root.getLocalName());
+      assertRoot((Root) newUnmarshaller().unmarshal(root, bind()));
+   }
+
+   public void testMarshalToDocument() throws Exception
+   {
+      Root root = new Root();
+      root.id = "1";
+      root.item = new String[]{"a", "b&c"};
+      root.type = new QName("urn:q", "name");
+
+      SchemaBinding schema = bind();
+      Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+      new MarshallerImpl().marshal(schema, null, root, doc);
+
+      Element element = doc.getDocumentElement();
+      assertNotNull(element);
+      assertEquals(NS, element.getNamespaceURI());
+      assertEquals("root", element.getLocalName());
+      assertEquals("1", element.getAttribute("id"));
+
+      assertRoot((Root) newUnmarshaller().unmarshal(doc, schema));
+   }
+
+   private static Document parse(String xml, boolean namespaceAware) throws Exception
+   {
+      DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+      factory.setNamespaceAware(namespaceAware);
+      return factory.newDocumentBuilder().parse(new InputSource(new StringReader(xml)));
+   }
+
+   private static Element getRootElement(Document doc)
+   {
+      Element body = (Element) doc.getDocumentElement().getFirstChild();
+      return (Element) body.getFirstChild();
+   }
+
+   private static SchemaBinding bind()
+   {
+      SchemaBinding schema = XsdBinder.bind(new StringReader(XSD), null);
+      ElementBinding root = schema.getElement(new QName(NS, "root"));
+      ClassMetaData classMetaData = new ClassMetaData();
+      classMetaData.setImpl(Root.class.getName());
+      root.setClassMetaData(classMetaData);
+      return schema;
+   }
+
+   private static Unmarshaller newUnmarshaller() throws Exception
+   {
+      return UnmarshallerFactory.newInstance().newUnmarshaller();
+   }
+
+   private static void assertRoot(Root root)
+   {
+      assertNotNull(root);
+      assertEquals("1", root.id);
+      assertNotNull(root.item);
+      assertEquals(2, root.item.length);
+      assertEquals("a", root.item[0]);
+      assertEquals("b&c", root.item[1]);
+      assertEquals(new QName("urn:q", "name"), root.type);
+   }
+
+   public static class Root
+   {
+      public String id;
+      public String[] item;
+      public QName type;
+   }
+}
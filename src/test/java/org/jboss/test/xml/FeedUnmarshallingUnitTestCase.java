@@ -0,0 +1,247 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2007, Red Hat Middleware LLC, and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.xml;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import javax.xml.namespace.QName;
+
+import junit.framework.TestSuite;
+
+import org.jboss.xb.binding.DocumentLimitExceededException;
+import org.jboss.xb.binding.FeedUnmarshaller;
+import org.jboss.xb.binding.JBossXBException;
+import org.jboss.xb.binding.UnmarshallerImpl;
+import org.jboss.xb.binding.metadata.ClassMetaData;
+import org.jboss.xb.binding.parser.DocumentLimits;
+import org.jboss.xb.binding.parser.binary.BinaryJBossXBParser;
+import org.jboss.xb.binding.parser.binary.BinaryXmlWriter;
+import org.jboss.xb.binding.sunday.marshalling.MarshallerImpl;
+import org.jboss.xb.binding.sunday.unmarshalling.ElementBinding;
+import org.jboss.xb.binding.sunday.unmarshalling.SchemaBinding;
+import org.jboss.xb.binding.sunday.unmarshalling.XsdBinder;
+
+/**
+ * Unmarshalling of documents fed in chunks.
+ * 
+ * @version $Revision: 1.1 $
+ */
+public class FeedUnmarshallingUnitTestCase extends AbstractJBossXBTest
+{
+   private static final String NS = "http://www.jboss.org/test/xml/feed";
+
+   private static final String XSD =
+      "<?xml version='1.0' encoding='UTF-8'?>" +
+      "<xsd:schema xmlns:xsd='http://www.w3.org/2001/XMLSchema'" +
+      " targetNamespace='" + NS + "'" +
+      " xmlns='" + NS + "'" +
+      " elementFormDefault='qualified'" +
+      " version='1.0'>" +
+      " <xsd:element name='root'>" +
+      "  <xsd:complexType>" +
+      "   <xsd:sequence>" +
+      "    <xsd:element name='item' type='xsd:string' maxOccurs='unbounded'/>" +
+      "    <xsd:element name='count' type='xsd:int'/>" +
+      "   </xsd:sequence>" +
+      "  </xsd:complexType>" +
+      " </xsd:element>" +
+      "</xsd:schema>";
+
+   private static final String XML =
+      "<root xmlns='" + NS + "'>" +
+      "<item>a</item>" +
+      "<item>b&amp;c</item>" +
+      "<count>2</count>" +
+      "</root>";
+
+   public static final TestSuite suite()
+   {
+      return new TestSuite(FeedUnmarshallingUnitTestCase.class);
+   }
+
+   public FeedUnmarshallingUnitTestCase(String name)
+   {
+      super(name);
+   }
+
+   public void testBinaryFeed() throws Exception
+   {
+      SchemaBinding schema = bind();
+      byte[] bytes = marshalBinary(schema);
+
+      FeedUnmarshaller feed = new UnmarshallerImpl(new BinaryJBossXBParser()).newFeed(schema);
+      ResultCallback callback = new ResultCallback();
+      feed.setCallback(callback);
+      Future<Object> result = feed.getResult();
+      for(int i = 0; i < bytes.length; ++i)
+      {
+         assertFalse(result.isDone());
+         feed.feed(bytes, i, 1);
+      }
+
+      // completed as soon as the end of the document has been fed
+      assertTrue(result.isDone());
+      assertRoot((Root) result.get());
+      assertRoot((Root) callback.root);
+      assertNull(callback.error);
+      feed.end();
+   }
+
+   public void testTextFeed() throws Exception
+   {
+      SchemaBinding schema = bind();
+      byte[] bytes = XML.getBytes("UTF-8");
+
+      FeedUnmarshaller feed = new UnmarshallerImpl().newFeed(schema);
+      int half = bytes.length / 2;
+      feed.feed(ByteBuffer.wrap(bytes, 0, half));
+      feed.feed(ByteBuffer.wrap(bytes, half, bytes.length - half));
+      assertFalse(feed.getResult().isDone());
+
+      // the chunks are parsed when the feed is ended
+      feed.end();
+      assertTrue(feed.getResult().isDone());
+      ResultCallback callback = new ResultCallback();
+      feed.setCallback(callback);
+      assertRoot((Root) callback.root);
+      assertRoot((Root) feed.getResult().get());
+   }
+
+   public void testTextFeedLimit() throws Exception
+   {
+      SchemaBinding schema = bind();
+      byte[] bytes = XML.getBytes("UTF-8");
+
+      DocumentLimits limits = new DocumentLimits();
+      limits.setMaxBufferedBytes(bytes.length - 1);
+      UnmarshallerImpl unmarshaller = new UnmarshallerImpl();
+      unmarshaller.setDocumentLimits(limits);
+      FeedUnmarshaller feed = unmarshaller.newFeed(schema);
+      ResultCallback callback = new ResultCallback();
+      feed.setCallback(callback);
+      int half = bytes.length / 2;
+      feed.feed(bytes, 0, half);
+      assertFalse(feed.getResult().isDone());
+
+      // the chunk exceeding the limit fails the feed before the document is parsed
+      feed.feed(bytes, half, bytes.length - half);
+      assertTrue(feed.getResult().isDone());
+      assertNotNull(callback.error);
+      assertTrue(callback.error.getCause() instanceof DocumentLimitExceededException);
+      assertEquals(1, limits.getRejectedDocumentCount());
+      feed.end();
+
+      // the same document within the limit
+      limits.setMaxBufferedBytes(bytes.length);
+      feed = unmarshaller.newFeed(schema);
+      feed.feed(bytes, 0, half);
+      feed.feed(bytes, half, bytes.length - half);
+      feed.end();
+      assertRoot((Root) feed.getResult().get());
+   }
+
+   public void testIncompleteFeed() throws Exception
+   {
+      SchemaBinding schema = bind();
+      byte[] bytes = marshalBinary(schema);
+
+      UnmarshallerImpl unmarshaller = new UnmarshallerImpl(new BinaryJBossXBParser());
+      FeedUnmarshaller feed = unmarshaller.newFeed(schema);
+      ResultCallback callback = new ResultCallback();
+      feed.setCallback(callback);
+      feed.feed(bytes, 0, bytes.length - 1);
+      feed.end();
+
+      assertNotNull(callback.error);
+      try
+      {
+         feed.getResult().get();
+         fail("the document is incomplete");
+      }
+      catch(ExecutionException e)
+      {
+         assertTrue(e.getCause() instanceof JBossXBException);
+      }
+
+      // the parser can be used again
+      feed = unmarshaller.newFeed(schema);
+      feed.feed(bytes, 0, bytes.length);
+      assertRoot((Root) feed.getResult().get());
+   }
+
+   private static byte[] marshalBinary(SchemaBinding schema) throws Exception
+   {
+      Root root = new Root();
+      root.item = new String[]{"a", "b&c"};
+      root.count = 2;
+
+      ByteArrayOutputStream os = new ByteArrayOutputStream();
+      new MarshallerImpl().marshal(schema, null, root, new BinaryXmlWriter(os, schema));
+      return os.toByteArray();
+   }
+
+   private static SchemaBinding bind()
+   {
+      SchemaBinding schema = XsdBinder.bind(new StringReader(XSD), null);
+      ElementBinding root = schema.getElement(new QName(NS, "root"));
+      ClassMetaData classMetaData = new ClassMetaData();
+      classMetaData.setImpl(Root.class.getName());
+      root.setClassMetaData(classMetaData);
+      return schema;
+   }
+
+   private static void assertRoot(Root root)
+   {
+      assertNotNull(root);
+      assertNotNull(root.item);
+      assertEquals(2, root.item.length);
+      assertEquals("a", root.item[0]);
+      assertEquals("b&c", root.item[1]);
+      assertEquals(2, root.count);
+   }
+
+   private static class ResultCallback implements FeedUnmarshaller.Callback
+   {
+      Object root;
+      JBossXBException error;
+
+      public void unmarshalled(Object root)
+      {
+         this.root = root;
+      }
+
+      public void failed(JBossXBException e)
+      {
+         this.error = e;
+      }
+   }
+
+   public static class Root
+   {
+      public String[] item;
+      public int count;
+   }
+}
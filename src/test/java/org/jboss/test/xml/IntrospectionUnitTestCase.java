@@ -24,6 +24,10 @@ package org.jboss.test.xml;
 import java.beans.PropertyDescriptor;
 import java.beans.SimpleBeanInfo;
 import java.beans.IntrospectionException;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.WeakReference;
 
 import org.jboss.xb.binding.introspection.ClassInfo;
 import org.jboss.xb.binding.introspection.ClassInfos;
@@ -113,6 +117,120 @@ public class IntrospectionUnitTestCase
       assertEquals("val2", a.readField3());
    }
 
+   public void testClassInfoCached() throws Exception
+   {
+      ClassInfo classInfo = ClassInfos.getClassInfo(A.class);
+      System.gc();
+      assertSame(classInfo, ClassInfos.getClassInfo(A.class));
+      assertSame(classInfo, ClassInfos.getClassInfo(A.class.getName(), true));
+      assertSame(classInfo.getFieldInfo("field1", true), ClassInfos.getClassInfo(A.class).getFieldInfo("field1", true));
+
+      ClassInfos.flushCache(A.class);
+      assertNotSame(classInfo, ClassInfos.getClassInfo(A.class));
+   }
+
+   public void testDisabledCache() throws Exception
+   {
+      ClassInfos.disableCache();
+      try
+      {
+         assertFalse(ClassInfos.isCacheEnabled());
+         assertNotSame(ClassInfos.getClassInfo(A.class), ClassInfos.getClassInfo(A.class));
+      }
+      finally
+      {
+         ClassInfos.enableCache();
+      }
+      assertTrue(ClassInfos.isCacheEnabled());
+      assertSame(ClassInfos.getClassInfo(A.class), ClassInfos.getClassInfo(A.class));
+   }
+
+   public void testClassLoaderNotKeptReachable() throws Exception
+   {
+      ClassLoader cl = new DefiningClassLoader(getClass().getClassLoader(), A.class.getName());
+      Class<?> cls = cl.loadClass(A.class.getName());
+      assertNotSame(A.class, cls);
+      assertSame(cls, ClassInfos.getClassInfo(cls).getType());
+      assertTrue(ClassInfos.getClassInfo(cls).getFieldInfo("field1", true).isWritable());
+
+      WeakReference<ClassLoader> ref = new WeakReference<ClassLoader>(cl);
+      cl = null;
+      cls = null;
+      for(int i = 0; i < 10 && ref.get() != null; ++i)
+      {
+         System.gc();
+         Thread.sleep(10);
+      }
+      assertNull(ref.get());
+   }
+
+   public void testClassInfoOfOtherLoaderSurvivesGc() throws Exception
+   {
+      ClassLoader cl = new DefiningClassLoader(getClass().getClassLoader(), A.class.getName());
+      Class<?> cls = cl.loadClass(A.class.getName());
+      ClassInfo classInfo = ClassInfos.getClassInfo(cls);
+      FieldInfo fieldInfo = classInfo.getFieldInfo("field1", true);
+      assertTrue(fieldInfo.isWritable());
+
+      for(int i = 0; i < 3; ++i)
+      {
+         System.gc();
+         Thread.sleep(10);
+      }
+
+      // the class is still in use, so its ClassInfo is still cached
+      assertSame(classInfo, ClassInfos.getClassInfo(cls));
+      assertSame(fieldInfo, classInfo.getFieldInfo("field1", true));
+      assertSame(cls, classInfo.getType());
+
+      // the collected methods are looked up again
+      Object a = cls.newInstance();
+      fieldInfo.setValue(a, "value");
+      assertEquals("value", fieldInfo.getValue(a));
+   }
+
+   /**
+    * Defines the class with the given name itself instead of delegating to the parent.
+    */
+   private static class DefiningClassLoader extends ClassLoader
+   {
+      private final String className;
+
+      DefiningClassLoader(ClassLoader parent, String className)
+      {
+         super(parent);
+         this.className = className;
+      }
+
+      protected synchronized Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException
+      {
+         if(!className.equals(name))
+            return super.loadClass(name, resolve);
+
+         Class<?> cls = findLoadedClass(name);
+         if(cls != null)
+            return cls;
+
+         InputStream is = getParent().getResourceAsStream(name.replace('.', '/') + ".class");
+         if(is == null)
+            throw new ClassNotFoundException(name);
+         try
+         {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buf = new byte[1024];
+            int read;
+            while((read = is.read(buf)) > 0)
+               bytes.write(buf, 0, read);
+            is.close();
+            return defineClass(name, bytes.toByteArray(), 0, bytes.size());
+         }
+         catch(IOException e)
+         {
+            throw new ClassNotFoundException(name, e);
+         }
+      }
+   }
+
    public static class A
    {
       private String field1;
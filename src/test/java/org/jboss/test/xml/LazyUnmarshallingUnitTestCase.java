@@ -0,0 +1,343 @@
+/*
+  * JBoss, Home of Professional Open Source
+  * Copyright 2005, JBoss Inc., and individual contributors as indicated
+  * by the @authors tag. See the copyright.txt in the distribution for a
+  * full listing of individual contributors.
+  *
+  * This is free software; you can redistribute it and/or modify it
+  * under the terms of the GNU Lesser General Public License as
+  * published by the Free Software Foundation; either version 2.1 of
+  * the License, or (at your option) any later version.
+  *
+  * This software is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+  * Lesser General Public License for more details.
+  *
+  * You should have received a copy of the GNU Lesser General Public
+  * License along with this software; if not, write to the Free
+  * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+  * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+  */
+package org.jboss.test.xml;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.xml.namespace.QName;
+
+import junit.framework.TestSuite;
+
+import org.jboss.xb.binding.Constants;
+import org.jboss.xb.binding.DocumentLimitExceededException;
+import org.jboss.xb.binding.JBossXBException;
+import org.jboss.xb.binding.JBossXBRuntimeException;
+import org.jboss.xb.binding.Unmarshaller;
+import org.jboss.xb.binding.UnmarshallerFactory;
+import org.jboss.xb.binding.metadata.ClassMetaData;
+import org.jboss.xb.binding.parser.DocumentLimits;
+import org.jboss.xb.binding.sunday.marshalling.MarshallerImpl;
+import org.jboss.xb.binding.sunday.unmarshalling.DefaultElementInterceptor;
+import org.jboss.xb.binding.sunday.unmarshalling.ElementBinding;
+import org.jboss.xb.binding.sunday.unmarshalling.LazyValue;
+import org.jboss.xb.binding.sunday.unmarshalling.ModelGroupBinding;
+import org.jboss.xb.binding.sunday.unmarshalling.ParticleBinding;
+import org.jboss.xb.binding.sunday.unmarshalling.SchemaBinding;
+import org.jboss.xb.binding.sunday.unmarshalling.TypeBinding;
+import org.jboss.xb.binding.sunday.unmarshalling.XsdBinder;
+
+/**
+ * Lazy elements whose content is bound on first access.
+ * 
+ * @version $Revision: 1.1 $
+ */
+public class LazyUnmarshallingUnitTestCase extends AbstractJBossXBTest
+{
+   private static final String NS = "http://www.jboss.org/test/xml/lazy";
+
+   private static final String XSD =
+      "<?xml version='1.0' encoding='UTF-8'?>" +
+      "<xsd:schema xmlns:xsd='http://www.w3.org/2001/XMLSchema'" +
+      " targetNamespace='" + NS + "'" +
+      " xmlns='" + NS + "'" +
+      " xmlns:jbxb='" + Constants.NS_JBXB + "'" +
+      " elementFormDefault='qualified'" +
+      " version='1.0'>" +
+      " <xsd:element name='root'>" +
+      "  <xsd:complexType>" +
+      "   <xsd:sequence>" +
+      "    <xsd:element name='id' type='xsd:string'/>" +
+      "    <xsd:element name='details' type='Details'>" +
+      "     <xsd:annotation>" +
+      "      <xsd:appinfo>" +
+      "       <jbxb:lazy/>" +
+      "      </xsd:appinfo>" +
+      "     </xsd:annotation>" +
+      "    </xsd:element>" +
+      "    <xsd:element name='tail' type='xsd:string'/>" +
+      "   </xsd:sequence>" +
+      "  </xsd:complexType>" +
+      " </xsd:element>" +
+      " <xsd:complexType name='Details'>" +
+      "  <xsd:annotation>" +
+      "   <xsd:appinfo>" +
+      "    <jbxb:class impl='" + Details.class.getName() + "'/>" +
+      "   </xsd:appinfo>" +
+      "  </xsd:annotation>" +
+      "  <xsd:sequence>" +
+      "   <xsd:element name='name' type='lowercase'/>" +
+      "   <xsd:element name='ref' type='xsd:QName'/>" +
+      "  </xsd:sequence>" +
+      " </xsd:complexType>" +
+      " <xsd:simpleType name='lowercase'>" +
+      "  <xsd:restriction base='xsd:string'>" +
+      "   <xsd:pattern value='[a-z]+'/>" +
+      "  </xsd:restriction>" +
+      " </xsd:simpleType>" +
+      "</xsd:schema>";
+
+   public static final TestSuite suite()
+   {
+      return new TestSuite(LazyUnmarshallingUnitTestCase.class);
+   }
+
+   public LazyUnmarshallingUnitTestCase(String name)
+   {
+      super(name);
+   }
+
+   public void testLazyElement() throws Exception
+   {
+      SchemaBinding schema = bind();
+      TypeBinding rootType = schema.getElement(new QName(NS, "root")).getType();
+      assertTrue(rootType.getElement(new QName(NS, "details")).isLazy());
+      assertFalse(rootType.getElement(new QName(NS, "tail")).isLazy());
+
+      Root root = (Root) unmarshal(schema, false, xml("abc"));
+      assertEquals("1", root.id);
+      // the document is unmarshalled to the end
+      assertEquals("end", root.tail);
+
+      LazyValue<Details> details = root.details;
+      assertNotNull(details);
+      assertFalse(details.isBound());
+      assertTrue(details.getContentSize() > 0);
+
+      Details value = details.getValue();
+      assertTrue(details.isBound());
+      assertEquals(0, details.getContentSize());
+      assertDetails(value);
+      assertSame(value, details.getValue());
+   }
+
+   public void testDeferredValidation() throws Exception
+   {
+      Root root = (Root) unmarshal(bind(), true, xml("ABC"));
+      assertEquals("end", root.tail);
+      try
+      {
+         root.details.getValue();
+         fail("the content of the lazy element is invalid");
+      }
+      catch(JBossXBRuntimeException e)
+      {
+      }
+   }
+
+   public void testMarshalLazyValue() throws Exception
+   {
+      SchemaBinding schema = bind();
+      Details details = new Details();
+      details.name = "abc";
+      details.ref = new QName("urn:p", "x");
+      Root root = new Root();
+      root.id = "1";
+      root.details = new LazyValue<Details>(details);
+      root.tail = "end";
+
+      StringWriter writer = new StringWriter();
+      new MarshallerImpl().marshal(schema, null, root, writer);
+
+      root = (Root) unmarshal(schema, false, writer.toString());
+      assertFalse(root.details.isBound());
+      assertDetails(root.details.getValue());
+   }
+
+   public void testClassLoaderOfUnmarshalling() throws Exception
+   {
+      SchemaBinding schema = bind();
+      ClassLoader cl = Thread.currentThread().getContextClassLoader();
+      RecordingClassLoader recording = new RecordingClassLoader(cl);
+      Root root;
+      Thread.currentThread().setContextClassLoader(recording);
+      try
+      {
+         root = (Root) unmarshal(schema, false, xml("abc"));
+      }
+      finally
+      {
+         Thread.currentThread().setContextClassLoader(cl);
+      }
+      assertFalse(recording.loaded.contains(Details.class.getName()));
+
+      // bound with the class loader of the unmarshalling
+      assertDetails(root.details.getValue());
+      assertTrue(recording.loaded.contains(Details.class.getName()));
+      assertSame(cl, Thread.currentThread().getContextClassLoader());
+   }
+
+   public void testCapturedContentLimit() throws Exception
+   {
+      DocumentLimits limits = new DocumentLimits();
+      limits.setMaxBufferedChars(30);
+      Unmarshaller unmarshaller = UnmarshallerFactory.newInstance().newUnmarshaller();
+      unmarshaller.setDocumentLimits(limits);
+      try
+      {
+         unmarshaller.unmarshal(new StringReader(xml("abc")), bind());
+         fail("the captured content exceeds maxBufferedChars");
+      }
+      catch(JBossXBException e)
+      {
+         Throwable cause = e;
+         while(cause != null && !(cause instanceof DocumentLimitExceededException))
+            cause = cause.getCause();
+         assertNotNull(cause);
+      }
+   }
+
+   public void testInterceptorsRejected() throws Exception
+   {
+      SchemaBinding schema = bind();
+      TypeBinding rootType = schema.getElement(new QName(NS, "root")).getType();
+      ElementBinding details = rootType.getElement(new QName(NS, "details"));
+      try
+      {
+         details.pushInterceptor(DefaultElementInterceptor.INSTANCE);
+         fail("a lazy element can't have interceptors");
+      }
+      catch(JBossXBRuntimeException e)
+      {
+      }
+
+      try
+      {
+         rootType.pushInterceptor(details.getQName(), DefaultElementInterceptor.INSTANCE);
+         fail("a lazy element can't have interceptors");
+      }
+      catch(JBossXBRuntimeException e)
+      {
+      }
+
+      ElementBinding id = rootType.getElement(new QName(NS, "id"));
+      id.pushInterceptor(DefaultElementInterceptor.INSTANCE);
+      try
+      {
+         id.setLazy(true);
+         fail("an element with interceptors can't be lazy");
+      }
+      catch(JBossXBRuntimeException e)
+      {
+      }
+   }
+
+   public void testRepeatableRejectedWhenBound() throws Exception
+   {
+      String xsd = XSD.replace("<xsd:element name='details' type='Details'>",
+            "<xsd:element name='details' type='Details' maxOccurs='unbounded'>");
+      try
+      {
+         XsdBinder.bind(new StringReader(xsd), null);
+         fail("a lazy element can't be repeatable");
+      }
+      catch(JBossXBRuntimeException e)
+      {
+      }
+   }
+
+   public void testRepeatableRejected() throws Exception
+   {
+      // made repeatable after the schema is bound
+      SchemaBinding schema = bind();
+      TypeBinding rootType = schema.getElement(new QName(NS, "root")).getType();
+      ElementBinding details = rootType.getElement(new QName(NS, "details"));
+      for(ParticleBinding particle : ((ModelGroupBinding) rootType.getParticle().getTerm()).getParticles())
+      {
+         if(particle.getTerm() == details)
+            particle.setMaxOccursUnbounded(true);
+      }
+      try
+      {
+         unmarshal(schema, false, xml("abc"));
+         fail("a lazy element can't be repeatable");
+      }
+      catch(JBossXBException e)
+      {
+      }
+   }
+
+   private static String xml(String name)
+   {
+      // the prefix of the QName value is declared outside the lazy element
+      return "<root xmlns='" + NS + "' xmlns:p='urn:p'>" +
+         "<id>1</id>" +
+         "<details><name>" + name + "</name><ref>p:x</ref></details>" +
+         "<tail>end</tail>" +
+         "</root>";
+   }
+
+   private static SchemaBinding bind()
+   {
+      SchemaBinding schema = XsdBinder.bind(new StringReader(XSD), null);
+      ElementBinding root = schema.getElement(new QName(NS, "root"));
+      ClassMetaData classMetaData = new ClassMetaData();
+      classMetaData.setImpl(Root.class.getName());
+      root.setClassMetaData(classMetaData);
+      return schema;
+   }
+
+   private static Object unmarshal(SchemaBinding schema, boolean validateContent, String xml) throws Exception
+   {
+      Unmarshaller unmarshaller = UnmarshallerFactory.newInstance().newUnmarshaller();
+      unmarshaller.setFeature(Unmarshaller.CONTENT_VALIDATION, validateContent);
+      return unmarshaller.unmarshal(new StringReader(xml), schema);
+   }
+
+   private static void assertDetails(Details details)
+   {
+      assertNotNull(details);
+      assertEquals("abc", details.name);
+      assertEquals(new QName("urn:p", "x"), details.ref);
+   }
+
+   private static class RecordingClassLoader extends ClassLoader
+   {
+      final Set<String> loaded = new HashSet<String>();
+
+      RecordingClassLoader(ClassLoader parent)
+      {
+         super(parent);
+      }
+
+      protected synchronized Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException
+      {
+         loaded.add(name);
+         return super.loadClass(name, resolve);
+      }
+   }
+
+   public static class Root
+   {
+      public String id;
+      public LazyValue<Details> details;
+      public String tail;
+   }
+
+   public static class Details
+   {
+      public String name;
+      public QName ref;
+   }
+}
@@ -93,5 +93,101 @@ public class NamespaceRegistryUnitTestCase
       {
          assertEquals(uri[i], ctx.getNamespaceURI(prefix[i]));
       }
+      assertEquals(3, ctx.size());
+
+      ctx.unregisterURI(uri[0]);
+      assertNull(ctx.getNamespaceURI(newPrefix));
+      assertNull(ctx.getNamespaceURI(prefix[0]));
+      assertFalse(ctx.isRegistered(uri[0]));
+      assertEquals(2, ctx.size());
+   }
+
+   public void testSameMapping()
+   {
+      ctx.addPrefixMapping(prefix[0], uri[0]);
+      ctx.removePrefixMapping(prefix[0]);
+      assertEquals(uri[0], ctx.getNamespaceURI(prefix[0]));
+      assertEquals(prefix[0], ctx.getPrefix(uri[0]));
+      assertEquals(3, ctx.size());
+
+      ctx.removePrefixMapping(prefix[0]);
+      assertNull(ctx.getNamespaceURI(prefix[0]));
+      assertNull(ctx.getPrefix(uri[0]));
+   }
+
+   public void testNestedSameMapping()
+   {
+      String u1 = "http://jboss.org/u1";
+      String u2 = "http://jboss.org/u2";
+
+      // <outer xmlns:a="u1"><middle xmlns:a="u2"><inner xmlns:a="u2"/></middle></outer>
+      ctx.addPrefixMapping("a", u1);
+      ctx.addPrefixMapping("a", u2);
+      ctx.addPrefixMapping("a", u2);
+      assertEquals(u2, ctx.getNamespaceURI("a"));
+
+      // end of inner
+      ctx.removePrefixMapping("a");
+      assertEquals(u2, ctx.getNamespaceURI("a"));
+      assertEquals("a", ctx.getPrefix(u2));
+
+      // end of middle
+      ctx.removePrefixMapping("a");
+      assertEquals(u1, ctx.getNamespaceURI("a"));
+      assertNull(ctx.getPrefix(u2));
+
+      // end of outer
+      ctx.removePrefixMapping("a");
+      assertNull(ctx.getNamespaceURI("a"));
+      assertNull(ctx.getPrefix(u1));
+      testBasic();
+   }
+
+   public void testContexts()
+   {
+      ctx.pushContext();
+      ctx.addPrefixMapping(prefix[0], "http://jboss.org/new_uri_1");
+      ctx.addPrefixMapping("p4", uri[1]);
+
+      ctx.pushContext();
+      ctx.addPrefixMapping("p5", "http://jboss.org/new_uri_2");
+      ctx.removePrefixMapping(prefix[2]);
+      assertNull(ctx.getNamespaceURI(prefix[2]));
+      assertEquals("p5", ctx.getPrefix("http://jboss.org/new_uri_2"));
+
+      ctx.popContext();
+      assertNull(ctx.getNamespaceURI("p5"));
+      assertEquals("http://jboss.org/new_uri_1", ctx.getNamespaceURI(prefix[0]));
+      assertEquals("p4", ctx.getPrefix(uri[1]));
+
+      ctx.popContext();
+      assertEquals(uri[0], ctx.getNamespaceURI(prefix[0]));
+      assertEquals(prefix[1], ctx.getPrefix(uri[1]));
+      assertNull(ctx.getNamespaceURI("p4"));
+      assertEquals(2, ctx.size());
+
+      try
+      {
+         ctx.popContext();
+         fail("popContext() without pushContext() must fail");
+      }
+      catch(IllegalStateException e)
+      {
+      }
+   }
+
+   public void testManyMappings()
+   {
+      for(int i = 0; i < 100; ++i)
+      {
+         ctx.addPrefixMapping("p", "http://jboss.org/uri_" + i);
+      }
+      for(int i = 99; i >= 0; --i)
+      {
+         assertEquals("http://jboss.org/uri_" + i, ctx.getNamespaceURI("p"));
+         ctx.removePrefixMapping("p");
+      }
+      assertNull(ctx.getNamespaceURI("p"));
+      testBasic();
    }
 }
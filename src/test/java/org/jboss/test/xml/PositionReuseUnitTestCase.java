@@ -0,0 +1,93 @@
+/*
+  * JBoss, Home of Professional Open Source
+  * Copyright 2005, JBoss Inc., and individual contributors as indicated
+  * by the @authors tag. See the copyright.txt in the distribution for a
+  * full listing of individual contributors.
+  *
+  * This is free software; you can redistribute it and/or modify it
+  * under the terms of the GNU Lesser General Public License as
+  * published by the Free Software Foundation; either version 2.1 of
+  * the License, or (at your option) any later version.
+  *
+  * This software is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+  * Lesser General Public License for more details.
+  *
+  * You should have received a copy of the GNU Lesser General Public
+  * License along with this software; if not, write to the Free
+  * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+  * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+  */
+package org.jboss.test.xml;
+
+import javax.xml.namespace.QName;
+
+import junit.framework.TestCase;
+
+import org.jboss.xb.binding.sunday.unmarshalling.ElementBinding;
+import org.jboss.xb.binding.sunday.unmarshalling.ElementPosition;
+import org.jboss.xb.binding.sunday.unmarshalling.ParticleBinding;
+import org.jboss.xb.binding.sunday.unmarshalling.SchemaBinding;
+import org.jboss.xb.binding.sunday.unmarshalling.SundayContentHandler;
+import org.jboss.xb.binding.sunday.unmarshalling.TypeBinding;
+
+/**
+ * A PositionReuseUnitTestCase.
+ * 
+ * @version $Revision: 1.1 $
+ */
+public class PositionReuseUnitTestCase extends TestCase
+{
+   private static final QName A = new QName("urn:test", "a");
+   private static final QName B = new QName("urn:test", "b");
+
+   public PositionReuseUnitTestCase(String name)
+   {
+      super(name);
+   }
+
+   public void testReleasedPositionIsReused()
+   {
+      SchemaBinding schema = new SchemaBinding();
+      ParticleBinding a = new ParticleBinding(new ElementBinding(schema, A, new TypeBinding()));
+      ParticleBinding b = new ParticleBinding(new ElementBinding(schema, B, new TypeBinding()), 0, 1, true);
+      SundayContentHandler handler = new SundayContentHandler(schema);
+
+      ElementPosition first = handler.newElementPosition(A, a);
+      first.setStack(handler);
+      assertSame(a, first.getParticle());
+      handler.releasePositions(first);
+
+      ElementPosition second = handler.newElementPosition(B, b);
+      assertSame(first, second);
+      assertSame(b, second.getParticle());
+      assertNull(second.getValue());
+      assertNull(second.getPrevious());
+      assertNull(second.getText());
+      assertFalse(second.isEnded());
+
+      // the free list is empty now
+      assertNotSame(second, handler.newElementPosition(A, a));
+   }
+
+   public void testReleaseChain()
+   {
+      SchemaBinding schema = new SchemaBinding();
+      ParticleBinding a = new ParticleBinding(new ElementBinding(schema, A, new TypeBinding()));
+      SundayContentHandler handler = new SundayContentHandler(schema);
+
+      ElementPosition[] released = new ElementPosition[20];
+      for(int i = 0; i < released.length; ++i)
+      {
+         released[i] = handler.newElementPosition(A, a);
+         released[i].setStack(handler);
+      }
+      for(int i = 0; i < released.length; ++i)
+         handler.releasePositions(released[i]);
+
+      // the free list is LIFO
+      for(int i = released.length - 1; i >= 0; --i)
+         assertSame(released[i], handler.newElementPosition(A, a));
+   }
+}
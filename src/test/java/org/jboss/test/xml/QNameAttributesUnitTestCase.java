@@ -83,6 +83,43 @@ public class QNameAttributesUnitTestCase
       "  <arr xmlns:ns4='http://ns4'>ns4:local4</arr>" +
       "</ut>";
 
+   private static final String SIBLINGS_XSD =
+      "<xsd:schema xmlns:xsd='http://www.w3.org/2001/XMLSchema'" +
+      "   targetNamespace='http://www.jboss.org/test/xml/qnameattr'" +
+      "   xmlns='http://www.jboss.org/test/xml/qnameattr'" +
+      "   xmlns:jbxb='" +
+      Constants.NS_JBXB +
+      "'" +
+      "   elementFormDefault='qualified' version='1.0'>" +
+      "   <xsd:complexType name='UserType'>" +
+      "     <xsd:annotation>" +
+      "      <xsd:appinfo>" +
+      "       <jbxb:class impl='" +
+      UserType.class.getName() +
+      "'/>" +
+      "      </xsd:appinfo>" +
+      "     </xsd:annotation>" +
+      "     <xsd:sequence>" +
+      "        <xsd:element name='arr' type='xsd:QName' minOccurs='0' maxOccurs='unbounded'/>" +
+      "     </xsd:sequence>" +
+      "     <xsd:attribute name='qname' type='xsd:QName'/>" +
+      "   </xsd:complexType>" +
+      "   <xsd:element name='holder'>" +
+      "     <xsd:complexType>" +
+      "       <xsd:annotation>" +
+      "        <xsd:appinfo>" +
+      "         <jbxb:class impl='" +
+      Holder.class.getName() +
+      "'/>" +
+      "        </xsd:appinfo>" +
+      "       </xsd:annotation>" +
+      "       <xsd:sequence>" +
+      "          <xsd:element name='ut' type='UserType' maxOccurs='unbounded'/>" +
+      "       </xsd:sequence>" +
+      "     </xsd:complexType>" +
+      "   </xsd:element>" +
+      "</xsd:schema>";
+
    private static final MappingObjectModelProvider OM_PROVIDER = new MappingObjectModelProvider();
 
    public QNameAttributesUnitTestCase(String name)
@@ -149,8 +186,54 @@ public class QNameAttributesUnitTestCase
       assertMarshallingArray(new MarshallerImpl());
    }
 
+   public void testUndeclaredNamespaceInSiblingsXerces() throws Exception
+   {
+      assertUndeclaredNamespaceInSiblings(new XercesXsMarshaller());
+   }
+
+   public void testUndeclaredNamespaceInSiblingsSunday() throws Exception
+   {
+      assertUndeclaredNamespaceInSiblings(new MarshallerImpl());
+   }
+
    // Private
 
+   /**
+    * The namespace of the QName values is declared on each of the sibling elements,
+    * a declaration must not outlive the element it is declared on.
+    */
+   private void assertUndeclaredNamespaceInSiblings(AbstractMarshaller marshaller) throws Exception
+   {
+      Holder holder = new Holder();
+      holder.ut = new UserType[2];
+      for(int i = 0; i < holder.ut.length; ++i)
+      {
+         UserType ut = new UserType();
+         ut.qname = new QName("http://ns1", "local");
+         ut.arr = new QName[]{new QName("http://ns1", "local")};
+         holder.ut[i] = ut;
+      }
+
+      StringWriter writer = new StringWriter();
+      marshaller.addRootElement("http://www.jboss.org/test/xml/qnameattr", "", "holder");
+      marshaller.marshal(new StringReader(SIBLINGS_XSD), OM_PROVIDER, holder, writer);
+
+      SchemaBinding schema = XsdBinder.bind(new StringReader(SIBLINGS_XSD), null);
+      Unmarshaller unmarshaller = UnmarshallerFactory.newInstance().newUnmarshaller();
+      Object o = unmarshaller.unmarshal(new StringReader(writer.toString()), schema);
+      assertTrue(writer.toString(), o instanceof Holder);
+      Holder result = (Holder)o;
+      assertNotNull(result.ut);
+      assertEquals(2, result.ut.length);
+      for(int i = 0; i < result.ut.length; ++i)
+      {
+         assertEquals(writer.toString(), new QName("http://ns1", "local"), result.ut[i].qname);
+         assertNotNull(result.ut[i].arr);
+         assertEquals(1, result.ut[i].arr.length);
+         assertEquals(writer.toString(), new QName("http://ns1", "local"), result.ut[i].arr[0]);
+      }
+   }
+
    private void assertMarshallingArray(AbstractMarshaller marshaller)
       throws IOException, SAXException, ParserConfigurationException
    {
@@ -180,6 +263,11 @@ public class QNameAttributesUnitTestCase
       assertXmlEqual(XML, writer.getBuffer().toString());
    }
 
+   public static final class Holder
+   {
+      public UserType[] ut;
+   }
+
    public static final class UserType
    {
       public QName qname;
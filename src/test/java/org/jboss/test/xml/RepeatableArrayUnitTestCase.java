@@ -0,0 +1,196 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2007, Red Hat Middleware LLC, and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.xml;
+
+import java.io.StringReader;
+
+import javax.xml.namespace.QName;
+
+import junit.framework.TestSuite;
+
+import org.jboss.xb.binding.Unmarshaller;
+import org.jboss.xb.binding.UnmarshallerFactory;
+import org.jboss.xb.binding.metadata.ClassMetaData;
+import org.jboss.xb.binding.sunday.unmarshalling.DefaultHandlers;
+import org.jboss.xb.binding.sunday.unmarshalling.ElementBinding;
+import org.jboss.xb.binding.sunday.unmarshalling.ModelGroupBinding;
+import org.jboss.xb.binding.sunday.unmarshalling.ParticleBinding;
+import org.jboss.xb.binding.sunday.unmarshalling.SchemaBinding;
+import org.jboss.xb.binding.sunday.unmarshalling.XsdBinder;
+import org.jboss.xb.binding.sunday.unmarshalling.impl.runtime.RtRepeatableParticleHandler;
+import org.jboss.xb.util.GrowableArray;
+
+/**
+ * Repeatable elements collected into array properties, including arrays of primitives.
+ * 
+ * @version $Revision: 1.1 $
+ */
+public class RepeatableArrayUnitTestCase extends AbstractJBossXBTest
+{
+   private static final String NS = "http://www.jboss.org/test/xml/repeatablearray";
+
+   private static final String XSD =
+      "<?xml version='1.0' encoding='UTF-8'?>" +
+      "<xsd:schema xmlns:xsd='http://www.w3.org/2001/XMLSchema'" +
+      " targetNamespace='" + NS + "'" +
+      " xmlns='" + NS + "'" +
+      " elementFormDefault='qualified'" +
+      " version='1.0'>" +
+      " <xsd:element name='root'>" +
+      "  <xsd:complexType>" +
+      "   <xsd:sequence maxOccurs='unbounded'>" +
+      "    <xsd:element name='item' type='xsd:int' maxOccurs='unbounded'/>" +
+      "    <xsd:element name='name' type='xsd:string' minOccurs='0' maxOccurs='unbounded'/>" +
+      "   </xsd:sequence>" +
+      "  </xsd:complexType>" +
+      " </xsd:element>" +
+      "</xsd:schema>";
+
+   public static final TestSuite suite()
+   {
+      return new TestSuite(RepeatableArrayUnitTestCase.class);
+   }
+
+   public RepeatableArrayUnitTestCase(String name)
+   {
+      super(name);
+   }
+
+   public void testGrowableArray() throws Exception
+   {
+      GrowableArray ints = new GrowableArray(int.class, 1);
+      for(int i = 0; i < 100; ++i)
+         ints.add(Integer.valueOf(i));
+      assertEquals(100, ints.size());
+
+      int[] result = (int[]) ints.toArray(new int[]{-2, -1});
+      assertEquals(102, result.length);
+      assertEquals(-2, result[0]);
+      assertEquals(99, result[101]);
+      assertEquals(0, ints.size());
+
+      GrowableArray strings = new GrowableArray(String.class);
+      strings.add("a");
+      strings.add(null);
+      String[] strs = (String[]) strings.toArray(null);
+      assertEquals(2, strs.length);
+      assertEquals("a", strs[0]);
+      assertNull(strs[1]);
+
+      try
+      {
+         strings.add(Integer.valueOf(1));
+         fail("Integer can't be stored in String[]");
+      }
+      catch(IllegalArgumentException e)
+      {
+      }
+   }
+
+   public void testRuntimeRepeatableHandler() throws Exception
+   {
+      SchemaBinding schema = XsdBinder.bind(new StringReader(XSD), null);
+      ElementBinding root = schema.getElement(new QName(NS, "root"));
+      ClassMetaData classMetaData = new ClassMetaData();
+      classMetaData.setImpl(Root.class.getName());
+      root.setClassMetaData(classMetaData);
+
+      // the repeatable handlers set by the XsdBinder are replaced
+      ParticleBinding sequence = root.getType().getParticle();
+      sequence.getTerm().setRepeatableHandler(DefaultHandlers.REPEATABLE_HANDLER);
+      for(ParticleBinding particle : ((ModelGroupBinding) sequence.getTerm()).getParticles())
+         particle.getTerm().setRepeatableHandler(RtRepeatableParticleHandler.INSTANCE);
+
+      StringBuilder xml = new StringBuilder();
+      xml.append("<root xmlns='").append(NS).append("'>");
+      for(int i = 0; i < 1000; ++i)
+         xml.append("<item>").append(i).append("</item>");
+      xml.append("<name>a</name><name>b</name><item>1000</item></root>");
+
+      Unmarshaller unmarshaller = UnmarshallerFactory.newInstance().newUnmarshaller();
+      Root result = (Root) unmarshaller.unmarshal(new StringReader(xml.toString()), schema);
+
+      assertNotNull(result.item);
+      assertEquals(1001, result.item.length);
+      for(int i = 0; i < result.item.length; ++i)
+         assertEquals(i, result.item[i]);
+
+      assertNotNull(result.name);
+      assertEquals(2, result.name.length);
+      assertEquals("a", result.name[0]);
+      assertEquals("b", result.name[1]);
+   }
+
+   public void testBoundElementsCollectArrays() throws Exception
+   {
+      String xsd =
+         "<?xml version='1.0' encoding='UTF-8'?>" +
+         "<xsd:schema xmlns:xsd='http://www.w3.org/2001/XMLSchema'" +
+         " targetNamespace='" + NS + "'" +
+         " elementFormDefault='qualified'" +
+         " version='1.0'>" +
+         " <xsd:element name='root'>" +
+         "  <xsd:complexType>" +
+         "   <xsd:sequence>" +
+         "    <xsd:element name='item' type='xsd:int' maxOccurs='unbounded'/>" +
+         "    <xsd:element name='name' type='xsd:string' minOccurs='0' maxOccurs='unbounded'/>" +
+         "   </xsd:sequence>" +
+         "  </xsd:complexType>" +
+         " </xsd:element>" +
+         "</xsd:schema>";
+      SchemaBinding schema = XsdBinder.bind(new StringReader(xsd), null);
+      ElementBinding root = schema.getElement(new QName(NS, "root"));
+      ClassMetaData classMetaData = new ClassMetaData();
+      classMetaData.setImpl(Root.class.getName());
+      root.setClassMetaData(classMetaData);
+
+      // installed by the XsdBinder on the element terms
+      ParticleBinding sequence = root.getType().getParticle();
+      for(ParticleBinding particle : ((ModelGroupBinding) sequence.getTerm()).getParticles())
+         assertTrue(particle.getTerm().getRepeatableHandler() instanceof RtRepeatableParticleHandler);
+
+      StringBuilder xml = new StringBuilder();
+      xml.append("<root xmlns='").append(NS).append("'>");
+      for(int i = 0; i < 1000; ++i)
+         xml.append("<item>").append(i).append("</item>");
+      xml.append("<name>a</name><name>b</name></root>");
+
+      Unmarshaller unmarshaller = UnmarshallerFactory.newInstance().newUnmarshaller();
+      Root result = (Root) unmarshaller.unmarshal(new StringReader(xml.toString()), schema);
+
+      assertNotNull(result.item);
+      assertEquals(1000, result.item.length);
+      for(int i = 0; i < result.item.length; ++i)
+         assertEquals(i, result.item[i]);
+
+      assertNotNull(result.name);
+      assertEquals(2, result.name.length);
+      assertEquals("a", result.name[0]);
+      assertEquals("b", result.name[1]);
+   }
+
+   public static class Root
+   {
+      public int[] item;
+      public String[] name;
+   }
+}
@@ -0,0 +1,94 @@
+/*
+  * JBoss, Home of Professional Open Source
+  * Copyright 2005, JBoss Inc., and individual contributors as indicated
+  * by the @authors tag. See the copyright.txt in the distribution for a
+  * full listing of individual contributors.
+  *
+  * This is free software; you can redistribute it and/or modify it
+  * under the terms of the GNU Lesser General Public License as
+  * published by the Free Software Foundation; either version 2.1 of
+  * the License, or (at your option) any later version.
+  *
+  * This software is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+  * Lesser General Public License for more details.
+  *
+  * You should have received a copy of the GNU Lesser General Public
+  * License along with this software; if not, write to the Free
+  * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+  * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+  */
+package org.jboss.test.xml;
+
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+
+import javax.xml.namespace.QName;
+
+import junit.framework.TestSuite;
+
+import org.jboss.xb.binding.metadata.ValueMetaData;
+import org.jboss.xb.binding.sunday.unmarshalling.impl.runtime.RtUtil;
+
+/**
+ * The unmarshal methods resolved by RtUtil and cached in the value metadata.
+ * 
+ * @version $Revision: 1.1 $
+ */
+public class RtUtilUnitTestCase extends AbstractJBossXBTest
+{
+   private static final QName NAME = new QName("http://www.jboss.org/test/xml/rtutil", "value");
+
+   public static final TestSuite suite()
+   {
+      return new TestSuite(RtUtilUnitTestCase.class);
+   }
+
+   public RtUtilUnitTestCase(String name)
+   {
+      super(name);
+   }
+
+   public void testUnmarshalMethodCached() throws Exception
+   {
+      ValueMetaData valueMetaData = new ValueMetaData();
+      valueMetaData.setUnmarshalMethod(Parser.class.getName() + ".parse");
+      ClassLoader cl = Thread.currentThread().getContextClassLoader();
+      assertNull(valueMetaData.getResolvedUnmarshalMethod(cl));
+
+      Method method = RtUtil.getUnmarshalMethod(NAME, valueMetaData);
+      assertEquals(Parser.class.getMethod("parse", new Class[]{String.class}), method);
+      assertSame(method, valueMetaData.getResolvedUnmarshalMethod(cl));
+      assertSame(method, RtUtil.getUnmarshalMethod(NAME, valueMetaData));
+      assertEquals(Integer.valueOf(5), method.invoke(null, new Object[]{"5"}));
+
+      // resolved again when the thread context class loader is different
+      ClassLoader other = new URLClassLoader(new URL[0], cl);
+      assertNull(valueMetaData.getResolvedUnmarshalMethod(other));
+      Thread.currentThread().setContextClassLoader(other);
+      try
+      {
+         Method otherMethod = RtUtil.getUnmarshalMethod(NAME, valueMetaData);
+         assertEquals(method, otherMethod);
+         assertSame(otherMethod, valueMetaData.getResolvedUnmarshalMethod(other));
+         assertNull(valueMetaData.getResolvedUnmarshalMethod(cl));
+      }
+      finally
+      {
+         Thread.currentThread().setContextClassLoader(cl);
+      }
+
+      valueMetaData.setUnmarshalMethod(Parser.class.getName() + ".parse");
+      assertNull(valueMetaData.getResolvedUnmarshalMethod(cl));
+   }
+
+   public static class Parser
+   {
+      public static Integer parse(String value)
+      {
+         return Integer.valueOf(value);
+      }
+   }
+}
@@ -21,6 +21,8 @@
   */
 package org.jboss.test.xml;
 
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -42,6 +44,8 @@ import org.jboss.test.xml.book.BookGenericObjectModelProvider;
 import org.jboss.test.xml.book.BookObjectFactory;
 import org.jboss.test.xml.book.BookObjectProvider;
 import org.jboss.xb.binding.AbstractMarshaller;
+import org.jboss.xb.binding.Content;
+import org.jboss.xb.binding.ContentWriter;
 import org.jboss.xb.binding.DtdMarshaller;
 import org.jboss.xb.binding.GenericObjectModelFactory;
 import org.jboss.xb.binding.JBossXBException;
@@ -53,6 +57,7 @@ import org.jboss.xb.binding.TypeBinding;
 import org.jboss.xb.binding.Unmarshaller;
 import org.jboss.xb.binding.UnmarshallerFactory;
 import org.jboss.xb.binding.XercesXsMarshaller;
+import org.xml.sax.Attributes;
 import org.xml.sax.EntityResolver;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
@@ -258,8 +263,126 @@ public class SimpleTestCase
       checkMarshalledBook(xml, book);
    }
 
+   public void testMarshallBookDtdCache() throws Exception
+   {
+      // the DTD is copied to a file that can be removed
+      File dtdFile = File.createTempFile("books", ".dtd");
+      InputStream is = getResource("/xml/book/books.dtd").openStream();
+      FileOutputStream os = new FileOutputStream(dtdFile);
+      try
+      {
+         byte[] bytes = new byte[1024];
+         for(int read = is.read(bytes); read > 0; read = is.read(bytes))
+         {
+            os.write(bytes, 0, read);
+         }
+      }
+      finally
+      {
+         os.close();
+         is.close();
+      }
+      String dtdUri = dtdFile.toURI().toURL().toString();
+
+      Book book = createBook();
+      DtdMarshaller.clearDtdCache();
+      try
+      {
+         String xml = marshalBookDtd(dtdUri, book);
+         checkMarshalledBook(xml, book);
+
+         // the DTD parsed by the first marshaller is reused and not read again
+         assertTrue(dtdFile.delete());
+         assertEquals(xml, marshalBookDtd(dtdUri, book));
+
+         DtdMarshaller.clearDtdCache();
+         try
+         {
+            marshalBookDtd(dtdUri, book);
+            fail("The removed DTD is read again after the cache is cleared");
+         }
+         catch(IllegalStateException e)
+         {
+            // expected
+         }
+      }
+      finally
+      {
+         dtdFile.delete();
+         DtdMarshaller.clearDtdCache();
+      }
+   }
+
+   public void testMarshallBookDtdStreamedContent() throws Exception
+   {
+      Book book = createBook();
+      DtdMarshaller marshaller = newBookDtdMarshaller();
+      marshaller.setProperty(Marshaller.PROP_OUTPUT_INDENTATION, "false");
+
+      StringWriter xmlOutput = new StringWriter();
+      Reader dtdReader = new InputStreamReader(getResource("/xml/book/books.dtd").openStream());
+      marshaller.marshal(dtdReader, new BookObjectProvider(), book, xmlOutput);
+      dtdReader.close();
+
+      String xml = xmlOutput.getBuffer().toString();
+      String streamed = xml.substring(xml.indexOf('>', xml.indexOf("<!DOCTYPE")) + 1).trim();
+
+      // the same content collected in a Content and written afterwards, the way it was done before streaming
+      final Content content = new Content();
+      SAXParserFactory.newInstance().newSAXParser().parse(new InputSource(new StringReader(streamed)), new DefaultHandler()
+      {
+         public void startElement(String uri, String localName, String qName, Attributes attrs)
+         {
+            content.startElement(uri, localName, qName, attrs);
+         }
+
+         public void endElement(String uri, String localName, String qName)
+         {
+            content.endElement(uri, localName, qName);
+         }
+
+         public void characters(char[] ch, int start, int length)
+         {
+            content.characters(ch, start, length);
+         }
+      });
+      StringWriter buffered = new StringWriter();
+      content.handleContent(new ContentWriter(buffered, false));
+
+      assertEquals(buffered.toString(), streamed);
+      checkMarshalledBook(xml, book);
+   }
+
    // Private
 
+   private static DtdMarshaller newBookDtdMarshaller()
+   {
+      DtdMarshaller marshaller = new DtdMarshaller();
+      marshaller.addBinding("since", new TypeBinding()
+      {
+         public Object unmarshal(String value)
+         {
+            throw new UnsupportedOperationException("unmarshal is not implemented.");
+         }
+
+         public String marshal(Object value)
+         {
+            return SimpleTypeBindings.marshalDate((Calendar)value);
+         }
+      }
+      );
+      marshaller.mapPublicIdToSystemId("-//DTD Books//EN", "resources/xml/book/books.dtd");
+      return marshaller;
+   }
+
+   private String marshalBookDtd(String dtdUri, Book book) throws Exception
+   {
+      DtdMarshaller marshaller = newBookDtdMarshaller();
+      StringWriter xmlOutput = new StringWriter();
+      marshaller.marshal(dtdUri, new BookObjectProvider(), book, xmlOutput);
+      return xmlOutput.getBuffer().toString();
+   }
+
    private void marshallingTest()
       throws Exception
    {
@@ -0,0 +1,145 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2007, Red Hat Middleware LLC, and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.xml;
+
+import javax.xml.namespace.QName;
+
+import junit.framework.TestSuite;
+
+import org.jboss.xb.binding.Constants;
+import org.jboss.xb.binding.sunday.unmarshalling.SimpleTypeFacets;
+import org.jboss.xb.binding.sunday.unmarshalling.TypeBinding;
+
+/**
+ * Checks of lexical values against the compiled facets of simple types.
+ * 
+ * @version $Revision: 1.1 $
+ */
+public class SimpleTypeFacetsUnitTestCase extends AbstractJBossXBTest
+{
+   private static final String NS = "http://www.jboss.org/test/xml/facets";
+
+   public static final TestSuite suite()
+   {
+      return new TestSuite(SimpleTypeFacetsUnitTestCase.class);
+   }
+
+   public SimpleTypeFacetsUnitTestCase(String name)
+   {
+      super(name);
+   }
+
+   public void testNoFacets() throws Exception
+   {
+      SimpleTypeFacets facets = derive(Constants.QNAME_STRING).getFacets();
+      assertTrue(facets.isEmpty());
+      assertTrue(facets.isValid(" anything "));
+   }
+
+   public void testPatterns() throws Exception
+   {
+      TypeBinding type = derive(Constants.QNAME_STRING);
+      type.addLexicalPattern("[a-z-[aeiou]]+");
+      type.addLexicalPattern("\\i\\c*");
+      SimpleTypeFacets facets = type.getFacets();
+      assertTrue(facets.isValid("xyz"));
+      // consonants only
+      assertFalse(facets.isValid("abc"));
+      // whitespace is preserved for strings
+      assertFalse(facets.isValid(" xyz"));
+
+      type = derive(Constants.QNAME_STRING);
+      type.addLexicalPattern("a$b");
+      assertTrue(type.getFacets().isValid("a$b"));
+   }
+
+   public void testEnumeration() throws Exception
+   {
+      TypeBinding type = derive(Constants.QNAME_TOKEN);
+      type.addEnumValue("first");
+      type.addEnumValue("second");
+      SimpleTypeFacets facets = type.getFacets();
+      // whitespace is collapsed for tokens
+      assertTrue(facets.isValid(" first "));
+      assertTrue(facets.isValid("second"));
+      assertFalse(facets.isValid("third"));
+   }
+
+   public void testLength() throws Exception
+   {
+      TypeBinding type = derive(Constants.QNAME_STRING);
+      type.setLexicalFacet(SimpleTypeFacets.MIN_LENGTH, "2");
+      type.setLexicalFacet(SimpleTypeFacets.MAX_LENGTH, "3");
+      SimpleTypeFacets facets = type.getFacets();
+      assertFalse(facets.isValid("a"));
+      assertTrue(facets.isValid("ab"));
+      assertTrue(facets.isValid("abc"));
+      assertFalse(facets.isValid("abcd"));
+
+      type = derive(Constants.QNAME_BASE64BINARY);
+      type.setLexicalFacet(SimpleTypeFacets.LENGTH, "2");
+      facets = type.getFacets();
+      assertTrue(facets.isValid("AAA="));
+      assertFalse(facets.isValid("AAAA"));
+   }
+
+   public void testIntegerRange() throws Exception
+   {
+      TypeBinding type = derive(Constants.QNAME_INT);
+      type.setLexicalFacet(SimpleTypeFacets.MIN_INCLUSIVE, "-5");
+      type.setLexicalFacet(SimpleTypeFacets.MAX_EXCLUSIVE, "10");
+      SimpleTypeFacets facets = type.getFacets();
+      assertTrue(facets.isValid("-5"));
+      assertTrue(facets.isValid("+9"));
+      assertFalse(facets.isValid("-6"));
+      assertFalse(facets.isValid("10"));
+      assertFalse(facets.isValid("99999999999999999999"));
+      assertFalse(facets.isValid("ten"));
+   }
+
+   public void testDecimalDigits() throws Exception
+   {
+      TypeBinding type = derive(Constants.QNAME_DECIMAL);
+      type.setLexicalFacet(SimpleTypeFacets.MIN_EXCLUSIVE, "0");
+      type.setLexicalFacet(SimpleTypeFacets.TOTAL_DIGITS, "4");
+      type.setLexicalFacet(SimpleTypeFacets.FRACTION_DIGITS, "2");
+      SimpleTypeFacets facets = type.getFacets();
+      assertTrue(facets.isValid("12.34"));
+      assertTrue(facets.isValid("10.00"));
+      assertFalse(facets.isValid("0"));
+      assertFalse(facets.isValid("123.45"));
+      assertFalse(facets.isValid("1.234"));
+   }
+
+   public void testRecompiledAfterChange() throws Exception
+   {
+      TypeBinding type = derive(Constants.QNAME_STRING);
+      assertTrue(type.getFacets().isValid("abc"));
+      type.setLexicalFacet(SimpleTypeFacets.MAX_LENGTH, "2");
+      assertFalse(type.getFacets().isValid("abc"));
+   }
+
+   private static TypeBinding derive(QName builtin)
+   {
+      return new TypeBinding(new QName(NS, "derived"), new TypeBinding(builtin));
+   }
+}
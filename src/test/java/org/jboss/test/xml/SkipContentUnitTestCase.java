@@ -0,0 +1,233 @@
+/*
+  * JBoss, Home of Professional Open Source
+  * Copyright 2005, JBoss Inc., and individual contributors as indicated
+  * by the @authors tag. See the copyright.txt in the distribution for a
+  * full listing of individual contributors.
+  *
+  * This is free software; you can redistribute it and/or modify it
+  * under the terms of the GNU Lesser General Public License as
+  * published by the Free Software Foundation; either version 2.1 of
+  * the License, or (at your option) any later version.
+  *
+  * This software is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+  * Lesser General Public License for more details.
+  *
+  * You should have received a copy of the GNU Lesser General Public
+  * License along with this software; if not, write to the Free
+  * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+  * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+  */
+package org.jboss.test.xml;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.xml.namespace.QName;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.SAXParserFactory;
+
+import junit.framework.TestSuite;
+
+import org.jboss.xb.binding.Unmarshaller;
+import org.jboss.xb.binding.UnmarshallerFactory;
+import org.jboss.xb.binding.metadata.ClassMetaData;
+import org.jboss.xb.binding.parser.JBossXBParser;
+import org.jboss.xb.binding.parser.binary.BinaryJBossXBParser;
+import org.jboss.xb.binding.parser.binary.BinaryXmlWriter;
+import org.jboss.xb.binding.parser.sax.SaxJBossXBParser;
+import org.jboss.xb.binding.sunday.unmarshalling.SchemaBinding;
+import org.jboss.xb.binding.sunday.unmarshalling.XsdBinder;
+import org.jboss.xb.util.DomWalker;
+import org.w3c.dom.Document;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+
+/**
+ * Fast-forwarding through the content of elements the handler ignores.
+ * 
+ * @version $Revision: 1.1 $
+ */
+public class SkipContentUnitTestCase extends AbstractJBossXBTest
+{
+   private static final String NS = "http://www.jboss.org/test/xml/skipcontent";
+
+   private static final String XSD =
+      "<?xml version='1.0' encoding='UTF-8'?>" +
+      "<xsd:schema xmlns:xsd='http://www.w3.org/2001/XMLSchema'" +
+      " targetNamespace='" + NS + "'" +
+      " xmlns='" + NS + "'" +
+      " elementFormDefault='qualified'" +
+      " version='1.0'>" +
+      " <xsd:element name='root'>" +
+      "  <xsd:complexType>" +
+      "   <xsd:sequence>" +
+      "    <xsd:element name='a' type='xsd:string'/>" +
+      "    <xsd:any namespace='##other' processContents='skip' minOccurs='0' maxOccurs='unbounded'/>" +
+      "    <xsd:element name='b' type='xsd:string'/>" +
+      "   </xsd:sequence>" +
+      "  </xsd:complexType>" +
+      " </xsd:element>" +
+      "</xsd:schema>";
+
+   private static final String XML =
+      "<root xmlns='" + NS + "'>" +
+      "<a>1</a>" +
+      "<x:ext xmlns:x='urn:ext' x:attr='v'>" +
+      "<x:inner>text<x:deep/></x:inner>" +
+      "<y:other xmlns:y='urn:y'/>" +
+      "<?target data?>" +
+      "</x:ext>" +
+      "<b>2</b>" +
+      "</root>";
+
+   private static final List<String> EVENTS = Arrays.asList(new String[]{
+      "startPrefixMapping ", "startElement root", "startElement a", "endElement a",
+      "startPrefixMapping x", "startElement ext", "endElement ext", "endPrefixMapping x",
+      "startElement b", "endElement b", "endElement root", "endPrefixMapping "
+   });
+
+   public static final TestSuite suite()
+   {
+      return new TestSuite(SkipContentUnitTestCase.class);
+   }
+
+   public SkipContentUnitTestCase(String name)
+   {
+      super(name);
+   }
+
+   public void testUnmarshal() throws Exception
+   {
+      assertRoot(unmarshal(false));
+   }
+
+   public void testUnmarshalValidatingContent() throws Exception
+   {
+      // the skipped content doesn't make the content of ext incomplete
+      assertRoot(unmarshal(true));
+   }
+
+   public void testSaxParser() throws Exception
+   {
+      RecordingHandler handler = new RecordingHandler("ext");
+      new SaxJBossXBParser().parse(new StringReader(XML), handler);
+      handler.assertEvents();
+   }
+
+   public void testBinaryParser() throws Exception
+   {
+      ByteArrayOutputStream os = new ByteArrayOutputStream();
+      SAXParserFactory factory = SAXParserFactory.newInstance();
+      factory.setNamespaceAware(true);
+      XMLReader reader = factory.newSAXParser().getXMLReader();
+      reader.setContentHandler(new BinaryXmlWriter(os, null));
+      reader.parse(new InputSource(new StringReader(XML)));
+
+      RecordingHandler handler = new RecordingHandler("ext");
+      new BinaryJBossXBParser().parse(new ByteArrayInputStream(os.toByteArray()), handler);
+      handler.assertEvents();
+   }
+
+   public void testDomWalker() throws Exception
+   {
+      DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+      factory.setNamespaceAware(true);
+      Document doc = factory.newDocumentBuilder().parse(new InputSource(new StringReader(XML)));
+
+      RecordingHandler handler = new RecordingHandler("ext");
+      DomWalker.walk(doc, handler);
+      handler.assertEvents();
+   }
+
+   private static Root unmarshal(boolean validateContent) throws Exception
+   {
+      SchemaBinding schema = XsdBinder.bind(new StringReader(XSD), null);
+      ClassMetaData classMetaData = new ClassMetaData();
+      classMetaData.setImpl(Root.class.getName());
+      schema.getElement(new QName(NS, "root")).setClassMetaData(classMetaData);
+
+      Unmarshaller unmarshaller = UnmarshallerFactory.newInstance().newUnmarshaller();
+      unmarshaller.setFeature(Unmarshaller.CONTENT_VALIDATION, validateContent);
+      return (Root) unmarshaller.unmarshal(new StringReader(XML), schema);
+   }
+
+   private static void assertRoot(Root root)
+   {
+      assertNotNull(root);
+      assertEquals("1", root.a);
+      assertEquals("2", root.b);
+   }
+
+   private static class RecordingHandler implements JBossXBParser.SkippingContentHandler
+   {
+      private final String skippedName;
+      private final List<String> events = new ArrayList<String>();
+      private final StringBuilder text = new StringBuilder();
+      private boolean skipContent;
+
+      RecordingHandler(String skippedName)
+      {
+         this.skippedName = skippedName;
+      }
+
+      void assertEvents()
+      {
+         assertEquals(EVENTS, events);
+         assertEquals("12", text.toString());
+      }
+
+      public boolean isSkipContent()
+      {
+         return skipContent;
+      }
+
+      public void startElement(String namespaceURI, String localName, String qName, Attributes atts)
+      {
+         events.add("startElement " + localName);
+         skipContent = skippedName.equals(localName);
+      }
+
+      public void endElement(String namespaceURI, String localName, String qName)
+      {
+         events.add("endElement " + localName);
+      }
+
+      public void characters(char[] ch, int start, int length)
+      {
+         text.append(ch, start, length);
+      }
+
+      public void startPrefixMapping(String prefix, String uri)
+      {
+         events.add("startPrefixMapping " + prefix);
+      }
+
+      public void endPrefixMapping(String prefix)
+      {
+         events.add("endPrefixMapping " + prefix);
+      }
+
+      public void processingInstruction(String target, String data)
+      {
+         events.add("processingInstruction " + target);
+      }
+
+      public Object getRoot()
+      {
+         return null;
+      }
+   }
+
+   public static class Root
+   {
+      public String a;
+      public String b;
+   }
+}
@@ -0,0 +1,300 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2007, Red Hat Middleware LLC, and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.xml;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.xml.namespace.QName;
+
+import junit.framework.TestSuite;
+
+import org.jboss.xb.binding.JBossXBException;
+import org.jboss.xb.binding.JBossXBRuntimeException;
+import org.jboss.xb.binding.ThreadSafeUnmarshaller;
+import org.jboss.xb.binding.metadata.ClassMetaData;
+import org.jboss.xb.binding.sunday.marshalling.ThreadSafeMarshaller;
+import org.jboss.xb.binding.sunday.unmarshalling.SchemaBinding;
+import org.jboss.xb.binding.sunday.unmarshalling.XsdBinder;
+import org.jboss.xb.util.ConfiguredInstances;
+
+/**
+ * Shares one ThreadSafeMarshaller and one ThreadSafeUnmarshaller between threads.
+ * 
+ * @version $Revision: 1.1 $
+ */
+public class ThreadSafeMarshallingUnitTestCase extends AbstractJBossXBTest
+{
+   private static final String NS = "http://www.jboss.org/test/xml/threadsafe";
+
+   private static final String XSD =
+      "<?xml version='1.0' encoding='UTF-8'?>" +
+      "<xsd:schema xmlns:xsd='http://www.w3.org/2001/XMLSchema'" +
+      " targetNamespace='" + NS + "'" +
+      " elementFormDefault='qualified'" +
+      " version='1.0'>" +
+      " <xsd:element name='top'>" +
+      "  <xsd:complexType>" +
+      "   <xsd:sequence>" +
+      "    <xsd:element name='item' type='xsd:string' minOccurs='0' maxOccurs='unbounded'/>" +
+      "   </xsd:sequence>" +
+      "  </xsd:complexType>" +
+      " </xsd:element>" +
+      "</xsd:schema>";
+
+   private static final int THREADS = 4;
+   private static final int ITERATIONS = 25;
+
+   public static final TestSuite suite()
+   {
+      return new TestSuite(ThreadSafeMarshallingUnitTestCase.class);
+   }
+
+   public ThreadSafeMarshallingUnitTestCase(String name)
+   {
+      super(name);
+   }
+
+   public void testConcurrentRoundTrip() throws Exception
+   {
+      final SchemaBinding schema = XsdBinder.bind(new StringReader(XSD), null);
+      ClassMetaData classMetaData = new ClassMetaData();
+      classMetaData.setImpl(Top.class.getName());
+      schema.getElement(new QName(NS, "top")).setClassMetaData(classMetaData);
+
+      final ThreadSafeMarshaller marshaller = new ThreadSafeMarshaller();
+      final ThreadSafeUnmarshaller unmarshaller = new ThreadSafeUnmarshaller();
+      unmarshaller.setNamespaceAware(true);
+      final List<Throwable> failures = Collections.synchronizedList(new ArrayList<Throwable>());
+
+      Thread[] threads = new Thread[THREADS];
+      for(int t = 0; t < threads.length; ++t)
+      {
+         final String name = "thread" + t;
+         threads[t] = new Thread(new Runnable()
+         {
+            public void run()
+            {
+               try
+               {
+                  for(int i = 0; i < ITERATIONS; ++i)
+                  {
+                     Top top = new Top();
+                     top.item = new ArrayList<String>();
+                     top.item.add(name);
+                     top.item.add("item" + i);
+
+                     StringWriter writer = new StringWriter();
+                     marshaller.marshal(schema, null, top, writer);
+                     Object o = unmarshaller.unmarshal(new StringReader(writer.toString()), schema);
+                     assertEquals(top, o);
+                  }
+               }
+               catch(Throwable e)
+               {
+                  failures.add(e);
+               }
+            }
+         });
+         threads[t].start();
+      }
+
+      for(Thread thread : threads)
+         thread.join();
+      if(!failures.isEmpty())
+      {
+         Throwable t = failures.get(0);
+         throw new Exception("" + failures.size() + " thread(s) failed: " + t, t);
+      }
+   }
+
+   public void testReentrantAcquireGetsAnotherInstance() throws Exception
+   {
+      ConfiguredInstances<Object> instances = new ConfiguredInstances<Object>()
+      {
+         protected Object newInstance()
+         {
+            return new Object();
+         }
+      };
+
+      Object first = instances.acquire();
+      Object nested = instances.acquire();
+      assertNotSame(first, nested);
+      instances.release(nested, true);
+      instances.release(first, true);
+      assertSame(first, instances.acquire());
+      instances.release(first, false);
+      assertNotSame(first, instances.acquire());
+   }
+
+   public void testSettingsRecreateInstances() throws Exception
+   {
+      final List<String> applied = new ArrayList<String>();
+      ConfiguredInstances<Object> instances = new ConfiguredInstances<Object>()
+      {
+         protected Object newInstance()
+         {
+            return new Object();
+         }
+      };
+      instances.addSetting(new ConfiguredInstances.Setting<Object>()
+      {
+         public void apply(Object instance) throws JBossXBException
+         {
+            applied.add("first");
+         }
+      });
+
+      // applied to the probe
+      assertEquals(1, applied.size());
+
+      Object instance = instances.acquire();
+      instances.release(instance, true);
+      assertEquals(2, applied.size());
+
+      instances.addSetting(new ConfiguredInstances.Setting<Object>()
+      {
+         public void apply(Object instance) throws JBossXBException
+         {
+            applied.add("second");
+         }
+      });
+      assertEquals(3, applied.size());
+      assertNotSame(instance, instances.acquire());
+      assertEquals(5, applied.size());
+      assertEquals("first", applied.get(3));
+      assertEquals("second", applied.get(4));
+   }
+
+   public void testNamedSettingReplacesPrevious() throws Exception
+   {
+      final List<String> applied = new ArrayList<String>();
+      ConfiguredInstances<Object> instances = new ConfiguredInstances<Object>()
+      {
+         protected Object newInstance()
+         {
+            return new Object();
+         }
+      };
+      for(int i = 0; i < 3; ++i)
+      {
+         final String value = "value" + i;
+         instances.addSetting("setting", new ConfiguredInstances.Setting<Object>()
+         {
+            public void apply(Object instance) throws JBossXBException
+            {
+               applied.add(value);
+            }
+         });
+      }
+
+      applied.clear();
+      instances.acquire();
+      assertEquals(Collections.singletonList("value2"), applied);
+   }
+
+   public void testBadSettingFailsWhenAdded() throws Exception
+   {
+      ThreadSafeUnmarshaller unmarshaller = new ThreadSafeUnmarshaller();
+      try
+      {
+         unmarshaller.setFeature("http://www.jboss.org/test/xml/unknown-feature", true);
+         fail("The unknown feature should be rejected");
+      }
+      catch(JBossXBRuntimeException expected)
+      {
+      }
+
+      // the rejected setting is not recorded
+      unmarshaller.setNamespaceAware(true);
+   }
+
+   public void testNamespaceDeclarationsAreNamedByPrefix() throws Exception
+   {
+      SchemaBinding schema = XsdBinder.bind(new StringReader(XSD), null);
+      ClassMetaData classMetaData = new ClassMetaData();
+      classMetaData.setImpl(Top.class.getName());
+      schema.getElement(new QName(NS, "top")).setClassMetaData(classMetaData);
+
+      Top top = new Top();
+      top.item = new ArrayList<String>();
+      top.item.add("item");
+
+      ThreadSafeMarshaller marshaller = new ThreadSafeMarshaller();
+      marshaller.declareNamespace("other", "http://www.jboss.org/test/xml/other");
+      marshaller.declareNamespace("other", "http://www.jboss.org/test/xml/other2");
+      StringWriter writer = new StringWriter();
+      marshaller.marshal(schema, null, top, writer);
+      String xml = writer.toString();
+      assertTrue(xml, xml.indexOf("http://www.jboss.org/test/xml/other2") >= 0);
+      assertTrue(xml, xml.indexOf("http://www.jboss.org/test/xml/other\"") < 0);
+      assertTrue(xml, xml.indexOf("http://www.jboss.org/test/xml/other'") < 0);
+
+      marshaller.removePrefixMapping("other");
+      writer = new StringWriter();
+      marshaller.marshal(schema, null, top, writer);
+      xml = writer.toString();
+      assertTrue(xml, xml.indexOf("xmlns:other") < 0);
+   }
+
+   public void testMapPublicIdToSystemIdIsNotSupported() throws Exception
+   {
+      try
+      {
+         new ThreadSafeMarshaller().mapPublicIdToSystemId("publicId", "systemId");
+         fail("MarshallerImpl doesn't map public ids");
+      }
+      catch(UnsupportedOperationException expected)
+      {
+         assertNotNull(expected.getMessage());
+      }
+   }
+
+   public static class Top
+   {
+      public List<String> item;
+
+      public int hashCode()
+      {
+         return item == null ? 0 : item.hashCode();
+      }
+
+      public boolean equals(Object obj)
+      {
+         if(this == obj)
+            return true;
+         if(!(obj instanceof Top))
+            return false;
+         Top other = (Top) obj;
+         return item == null ? other.item == null : item.equals(other.item);
+      }
+
+      public String toString()
+      {
+         return "[top: item=" + item + "]";
+      }
+   }
+}
@@ -140,6 +140,70 @@ public class WildcardUnresolvedElementsUnitTestCase
       assertArrayOfAnyDom(o);
    }
 
+   public void testUnresolvedElementBindingsAreReused() throws Exception
+   {
+      SchemaBinding schema = getSchemaBinding(true);
+
+      TypeBinding type = schema.getType(new QName("http://org.jboss.ws/jbws434/types", "ArrayOfAny"));
+      WildcardBinding wildcard = type.getWildcard();
+
+      QName child1 = new QName("http://somens", "child1");
+      ElementBinding element = wildcard.getElement(child1, null);
+      assertNotNull(element);
+      assertSame(element, wildcard.getElement(child1, null));
+      assertNotSame(element, wildcard.getElement(new QName("http://anotherns", "child6"), null));
+
+      Unmarshaller unmarshaller = UnmarshallerFactory.newInstance().newUnmarshaller();
+      assertArrayOfAnyGenericElement(unmarshaller.unmarshal(new StringReader(XML), schema));
+      assertArrayOfAnyGenericElement(unmarshaller.unmarshal(new StringReader(XML), schema));
+   }
+
+   public void testUnresolvedElementCacheIsBounded() throws Exception
+   {
+      SchemaBinding schema = getSchemaBinding(true);
+
+      TypeBinding type = schema.getType(new QName("http://org.jboss.ws/jbws434/types", "ArrayOfAny"));
+      WildcardBinding wildcard = type.getWildcard();
+
+      QName first = new QName("http://somens", "first");
+      ElementBinding element = wildcard.getElement(first, null);
+      for(int i = 0; i < 1000; ++i)
+         wildcard.getElement(new QName("http://somens", "child" + i), null);
+
+      // the cache has been cleared when it was full, so the binding is created again
+      ElementBinding rebound = wildcard.getElement(first, null);
+      assertNotNull(rebound);
+      assertNotSame(element, rebound);
+      assertSame(rebound, wildcard.getElement(first, null));
+   }
+
+   public void testUnresolvedElementNotResolvedAgain() throws Exception
+   {
+      SchemaBinding schema = getSchemaBinding(true);
+
+      TypeBinding type = schema.getType(new QName("http://org.jboss.ws/jbws434/types", "ArrayOfAny"));
+      WildcardBinding wildcard = type.getWildcard();
+      CountingResolver resolver = new CountingResolver();
+      wildcard.setSchemaResolver(resolver);
+
+      QName child1 = new QName("http://somens", "child1");
+      ElementBinding element = wildcard.getElement(child1, null);
+      assertNotNull(element);
+      assertSame(element, wildcard.getElement(child1, null));
+      assertEquals(1, resolver.resolved);
+
+      // a different resolver is asked again
+      CountingResolver another = new CountingResolver();
+      wildcard.setSchemaResolver(another);
+      wildcard.getElement(child1, null);
+      wildcard.getElement(child1, null);
+      assertEquals(1, another.resolved);
+
+      wildcard.clearElementCache();
+      wildcard.getElement(child1, null);
+      assertEquals(2, another.resolved);
+   }
+
    public void testMarshallingXercesGenericElement() throws Exception
    {
       XercesXsMarshaller marshaller = new XercesXsMarshaller();
@@ -254,6 +318,31 @@ public class WildcardUnresolvedElementsUnitTestCase
       );
    }
 
+   private static class CountingResolver implements SchemaBindingResolver
+   {
+      int resolved;
+
+      public String getBaseURI()
+      {
+         return null;
+      }
+
+      public void setBaseURI(String baseURI)
+      {
+      }
+
+      public SchemaBinding resolve(String nsUri, String elementName, String schemaLocation)
+      {
+         ++resolved;
+         return null;
+      }
+
+      public LSInput resolveAsLSInput(String nsUri, String baseUri, String schemaLocation)
+      {
+         return null;
+      }
+   }
+
    private SchemaBinding getSchemaBinding(boolean genericElement)
    {
       // bind